@@ -0,0 +1,41 @@
+package org.proteored.pacom.benchmarks;
+
+import java.io.File;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of PACOM. It accepts the same arguments as the JMH
+ * runner (for example, a regular expression to select the benchmarks, or
+ * '-p numProteins=5000' to change the size of the synthetic project), but by
+ * default the results are also written in JSON in the file
+ * {@value #DEFAULT_RESULT_FILE}, so that the results of different versions
+ * can be compared.<br>
+ * Build it with 'mvn -Pbenchmarks package' and run it with 'java -jar
+ * target/benchmarks.jar'.
+ *
+ * @author Salva
+ *
+ */
+public class BenchmarkRunner {
+	public static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		final ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLineOptions);
+		// JSON unless other format is requested
+		if (!commandLineOptions.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+			if (!commandLineOptions.getResult().hasValue()) {
+				options.result(new File(DEFAULT_RESULT_FILE).getAbsolutePath());
+			}
+		}
+		new Runner(options.build()).run();
+	}
+}
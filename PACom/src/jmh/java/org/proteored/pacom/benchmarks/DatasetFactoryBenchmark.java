@@ -0,0 +1,120 @@
+package org.proteored.pacom.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jfree.data.category.CategoryDataset;
+import org.jfree.data.category.DefaultCategoryDataset;
+import org.jfree.data.statistics.HistogramDataset;
+import org.jfree.data.statistics.HistogramType;
+import org.jfree.data.xy.XYDataset;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.proteored.miapeapi.experiment.model.IdentificationItemEnum;
+import org.proteored.miapeapi.experiment.model.sort.ProteinGroupComparisonType;
+import org.proteored.pacom.analysis.gui.tasks.DatasetCache;
+import org.proteored.pacom.analysis.gui.tasks.DatasetFactory;
+
+/**
+ * The main families of datasets of the {@link DatasetFactory}, with one series
+ * per replicate of the synthetic project. The values cached by the
+ * {@link DatasetCache} are discarded before each operation, so that the
+ * datasets are always calculated from the data, as after applying filters.
+ *
+ * @author Salva
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DatasetFactoryBenchmark {
+	private static final int BINS = 30;
+
+	@Benchmark
+	public CategoryDataset numberIdentification(SyntheticProjectState project) {
+		DatasetCache.newFilterGeneration();
+		return DatasetFactory.createNumberIdentificationCategoryDataSet(project.getReplicates(),
+				IdentificationItemEnum.PROTEIN, false, false, true, true);
+	}
+
+	@Benchmark
+	public HistogramDataset peptideScoreHistogram(SyntheticProjectState project) {
+		DatasetCache.newFilterGeneration();
+		return DatasetFactory.createScoreHistogramDataSet(project.getReplicates(),
+				SyntheticMiapeMSIGenerator.SCORE_NAME, IdentificationItemEnum.PEPTIDE, BINS, false,
+				HistogramType.FREQUENCY, false, false, true);
+	}
+
+	@Benchmark
+	public HistogramDataset peptideMassHistogram(SyntheticProjectState project) {
+		DatasetCache.newFilterGeneration();
+		return DatasetFactory.createPeptideMassHistogramDataSet(project.getReplicates(), BINS,
+				HistogramType.FREQUENCY, false);
+	}
+
+	@Benchmark
+	public CategoryDataset peptideLengthHistogram(SyntheticProjectState project) {
+		DatasetCache.newFilterGeneration();
+		return DatasetFactory.createPeptideLengthHistogramDataSet(project.getReplicates(), 6, 30);
+	}
+
+	@Benchmark
+	public CategoryDataset peptideChargeHistogram(SyntheticProjectState project) {
+		DatasetCache.newFilterGeneration();
+		return DatasetFactory.createPeptideChargeHistogramDataSet(project.getReplicates());
+	}
+
+	@Benchmark
+	public CategoryDataset missedCleavages(SyntheticProjectState project) {
+		DatasetCache.newFilterGeneration();
+		return DatasetFactory.createMissedCleavagesDistributionCategoryDataSet(project.getReplicates(), "KR", 30);
+	}
+
+	@Benchmark
+	public CategoryDataset proteinGroupTypes(SyntheticProjectState project) {
+		DatasetCache.newFilterGeneration();
+		return DatasetFactory.createProteinGroupTypesDistributionCategoryDataSet(project.getReplicates());
+	}
+
+	@Benchmark
+	public CategoryDataset peptideRepeatability(SyntheticProjectState project) {
+		DatasetCache.newFilterGeneration();
+		return DatasetFactory.createRepeatabilityCategoryDataSet(project.getExperiments(),
+				IdentificationItemEnum.PEPTIDE, false, 30, true);
+	}
+
+	@Benchmark
+	public List<DefaultCategoryDataset> exclusivePeptides(SyntheticProjectState project) {
+		DatasetCache.newFilterGeneration();
+		return DatasetFactory.createExclusiveNumberIdentificationCategoryDataSetForPeptides(project.getReplicates(),
+				false, true);
+	}
+
+	@Benchmark
+	public List<DefaultCategoryDataset> exclusiveProteins(SyntheticProjectState project) {
+		DatasetCache.newFilterGeneration();
+		return DatasetFactory.createExclusiveNumberIdentificationCategoryDataSetForProteins(project.getReplicates(),
+				ProteinGroupComparisonType.BEST_PROTEIN, true);
+	}
+
+	@Benchmark
+	public XYDataset fdrCurves(SyntheticProjectState project) {
+		DatasetCache.newFilterGeneration();
+		return DatasetFactory.createFDRDataSet(project.getReplicates(), true, true, true, true);
+	}
+
+	@Benchmark
+	public double[][] peptideOccurrenceHeatMap(SyntheticProjectState project) {
+		DatasetCache.newFilterGeneration();
+		return DatasetFactory.createPeptideOccurrenceHeapMapDataSet(project.experimentList,
+				project.getReplicates(), new ArrayList<String>(), new ArrayList<String>(), null, false, 2);
+	}
+}
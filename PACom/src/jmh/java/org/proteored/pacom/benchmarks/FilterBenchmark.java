@@ -0,0 +1,88 @@
+package org.proteored.pacom.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.proteored.miapeapi.experiment.model.Experiment;
+import org.proteored.miapeapi.experiment.model.ExperimentList;
+import org.proteored.miapeapi.experiment.model.IdentificationItemEnum;
+import org.proteored.miapeapi.experiment.model.Replicate;
+import org.proteored.miapeapi.experiment.model.filters.FDRFilter;
+import org.proteored.miapeapi.experiment.model.filters.Filter;
+import org.proteored.miapeapi.experiment.model.filters.PeptideLengthFilter;
+import org.proteored.miapeapi.experiment.model.filters.PeptideNumberFilter;
+import org.proteored.miapeapi.experiment.model.sort.SortingManager;
+import org.proteored.miapeapi.experiment.model.sort.SortingParameters;
+import org.proteored.pacom.analysis.gui.tasks.FilterTask;
+import org.proteored.pacom.gui.tasks.OntologyLoaderTask;
+import org.proteored.pacom.utils.PACOMSoftware;
+
+/**
+ * Filtering of the synthetic project by the {@link FilterTask}, down to the
+ * replicates, as when the filters are applied from the
+ * {@link org.proteored.pacom.analysis.gui.FiltersDialog}. The filters change
+ * in every operation, because the same filters are not applied twice.
+ *
+ * @author Salva
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FilterBenchmark {
+	// two versions of each set of filters, with a different parameter, that
+	// are applied alternately so that the filters always change
+	private final List<List<Filter>> lengthAndNumberFilters = new ArrayList<List<Filter>>();
+	private final List<List<Filter>> fdrFilters = new ArrayList<List<Filter>>();
+	private int invocation = 0;
+
+	@Setup(Level.Trial)
+	public void createFilters(SyntheticProjectState project) {
+		final SortingParameters sortingParameters = SortingManager.getInstance(OntologyLoaderTask.getCvManager())
+				.getSortingParameters(SyntheticMiapeMSIGenerator.SCORE_NAME);
+		for (int version = 0; version < 2; version++) {
+			final List<Filter> filters = new ArrayList<Filter>();
+			filters.add(new PeptideLengthFilter(7 + version, 30, false, false, PACOMSoftware.getInstance()));
+			filters.add(new PeptideNumberFilter(2, false, PACOMSoftware.getInstance()));
+			lengthAndNumberFilters.add(filters);
+
+			final List<Filter> fdrFilterList = new ArrayList<Filter>();
+			final ExperimentList experimentList = project.experimentList;
+			for (final Experiment experiment : experimentList.getExperiments()) {
+				for (final Replicate replicate : experiment.getNextLevelIdentificationSetList()) {
+					fdrFilterList.add(new FDRFilter(1.0f + version, SyntheticMiapeMSIGenerator.DECOY_PREFIX, true,
+							sortingParameters, IdentificationItemEnum.PEPTIDE, experiment.getName(),
+							replicate.getName(), false, false, PACOMSoftware.getInstance()));
+				}
+			}
+			fdrFilters.add(fdrFilterList);
+		}
+	}
+
+	@Benchmark
+	public ExperimentList peptideLengthAndNumberFilters(SyntheticProjectState project) {
+		FilterTask.applyFilters(lengthAndNumberFilters.get(invocation++ % 2), project.experimentList, true);
+		return project.experimentList;
+	}
+
+	@Benchmark
+	public ExperimentList fdrFilters(SyntheticProjectState project) {
+		FilterTask.applyFilters(fdrFilters.get(invocation++ % 2), project.experimentList, true);
+		return project.experimentList;
+	}
+}
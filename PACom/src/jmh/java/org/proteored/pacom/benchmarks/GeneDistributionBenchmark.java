@@ -0,0 +1,70 @@
+package org.proteored.pacom.benchmarks;
+
+import java.io.FileNotFoundException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.proteored.miapeapi.experiment.model.ExtendedIdentifiedProtein;
+import org.proteored.pacom.analysis.genes.ENSGInfo;
+import org.proteored.pacom.analysis.genes.GeneDistributionReader;
+
+/**
+ * Lookups of the genes and chromosomes of the proteins of the synthetic
+ * project in the {@link GeneDistributionReader}, using a mapping file
+ * generated by the {@link SyntheticMiapeMSIGenerator} for the same proteins.
+ *
+ * @author Salva
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeneDistributionBenchmark {
+	private GeneDistributionReader reader;
+	private List<ExtendedIdentifiedProtein> proteins;
+
+	@Setup(Level.Trial)
+	public void createReader(SyntheticProjectState project) throws FileNotFoundException {
+		// the reader is a singleton, and this is the first time it is created
+		// in the forked JVM
+		reader = GeneDistributionReader.getInstance(project.geneMappingFile);
+		proteins = project.experimentList.getIdentifiedProteins();
+		// build the index out of the measurement
+		reader.getProteinGeneMapping(null);
+	}
+
+	@Benchmark
+	public void genesFromProteins(Blackhole blackhole) {
+		for (final ExtendedIdentifiedProtein protein : proteins) {
+			blackhole.consume(reader.getGenesFromProtein(protein, null));
+		}
+	}
+
+	@Benchmark
+	public void chromosomesFromProteins(Blackhole blackhole) {
+		for (final ExtendedIdentifiedProtein protein : proteins) {
+			blackhole.consume(reader.getChromosomesFromProtein(protein));
+		}
+	}
+
+	@Benchmark
+	public Map<String, List<ENSGInfo>> geneDistributionByChromosome() {
+		return reader.getGeneDistributionByChromosome("16");
+	}
+}
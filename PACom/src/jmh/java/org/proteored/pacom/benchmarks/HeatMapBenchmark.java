@@ -0,0 +1,88 @@
+package org.proteored.pacom.benchmarks;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.proteored.pacom.analysis.charts.HeatChart;
+import org.proteored.pacom.analysis.gui.tasks.DatasetFactory;
+
+/**
+ * Rendering of the peptide occurrence heatmap of the synthetic project by the
+ * {@link HeatChart}: the whole image, as when it is saved, and only the part
+ * that fits in a window, as when it is shown by the
+ * {@link org.proteored.pacom.analysis.charts.HeatChartComponent}.
+ *
+ * @author Salva
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HeatMapBenchmark {
+	private static final int VISIBLE_WIDTH = 1000;
+	private static final int VISIBLE_HEIGHT = 800;
+	private HeatChart chart;
+	private BufferedImage visibleImage;
+
+	@Setup(Level.Trial)
+	public void createChart(SyntheticProjectState project) {
+		final List<String> rowList = new ArrayList<String>();
+		final List<String> columnList = new ArrayList<String>();
+		final double[][] dataset = DatasetFactory.createPeptideOccurrenceHeapMapDataSet(project.experimentList,
+				project.getReplicates(), rowList, columnList, null, false, 1);
+		chart = new HeatChart(dataset);
+		chart.setXValues(columnList.toArray());
+		chart.setYValues(rowList.toArray());
+		chart.setTitle("Peptide occurrence");
+		chart.setXValuesHorizontal(false);
+		chart.measure();
+		visibleImage = new BufferedImage(VISIBLE_WIDTH, VISIBLE_HEIGHT, BufferedImage.TYPE_INT_RGB);
+	}
+
+	@TearDown(Level.Trial)
+	public void disposeImage() {
+		visibleImage.flush();
+	}
+
+	@Benchmark
+	public Image fullImage() {
+		return chart.getChartImage();
+	}
+
+	@Benchmark
+	public BufferedImage visibleRegion() {
+		final Dimension chartSize = chart.getChartSize();
+		// the region in the middle of the heatmap
+		final Rectangle clip = new Rectangle(0, Math.max(0, chartSize.height / 2 - VISIBLE_HEIGHT / 2),
+				Math.min(VISIBLE_WIDTH, chartSize.width), Math.min(VISIBLE_HEIGHT, chartSize.height));
+		final Graphics2D graphics = visibleImage.createGraphics();
+		try {
+			graphics.translate(-clip.x, -clip.y);
+			chart.paintChart(graphics, clip);
+		} finally {
+			graphics.dispose();
+		}
+		return visibleImage;
+	}
+}
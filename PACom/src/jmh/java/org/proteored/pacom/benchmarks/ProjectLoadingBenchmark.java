@@ -0,0 +1,65 @@
+package org.proteored.pacom.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.proteored.miapeapi.experiment.model.ExperimentList;
+import org.proteored.pacom.analysis.util.FileManager;
+import org.proteored.pacom.analysis.util.MiapeMSISnapshotCache;
+
+/**
+ * Loading of a comparison project by the
+ * {@link org.proteored.pacom.analysis.conf.ExperimentListAdapter}, reading
+ * the MIAPE MSI files from the XML or from their binary snapshots.
+ *
+ * @author Salva
+ *
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProjectLoadingBenchmark {
+
+	@Param({ "true", "false" })
+	public boolean useSnapshots;
+
+	@Setup(Level.Invocation)
+	public void deleteSnapshots(SyntheticProjectState project) {
+		if (useSnapshots) {
+			return;
+		}
+		final File[] files = new File(FileManager.getMiapeLocalDataPath(SyntheticProjectState.PROJECT_NAME))
+				.listFiles();
+		if (files != null) {
+			for (final File file : files) {
+				if (file.getName().endsWith(".xml")) {
+					MiapeMSISnapshotCache.delete(file);
+				}
+			}
+		}
+	}
+
+	@Benchmark
+	public ExperimentList loadProject(SyntheticProjectState project) {
+		final ExperimentList experimentList = project.loadProject();
+		// the protein groups are built when the data is loaded in the GUI
+		experimentList.getProteinGroupOccurrenceList();
+		experimentList.getPeptideOccurrenceList(true);
+		return experimentList;
+	}
+}
@@ -0,0 +1,419 @@
+package org.proteored.pacom.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import javax.xml.bind.JAXBException;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.log4j.Logger;
+import org.proteored.pacom.analysis.conf.jaxb.CPExperiment;
+import org.proteored.pacom.analysis.conf.jaxb.CPExperimentList;
+import org.proteored.pacom.analysis.conf.jaxb.CPMSI;
+import org.proteored.pacom.analysis.conf.jaxb.CPMSIList;
+import org.proteored.pacom.analysis.conf.jaxb.CPReplicate;
+import org.proteored.pacom.analysis.util.FileManager;
+
+import gnu.trove.map.hash.THashMap;
+
+/**
+ * Generates a comparison project with MIAPE MSI files of random but
+ * reproducible data, so that the benchmarks don't need real data files.<br>
+ * All the datasets take their proteins from the same pool, so that the
+ * proteins and peptides are shared between replicates and experiments as in a
+ * real project. Each protein has a set of tryptic peptides, some of them
+ * shared with the previous protein, so that there are protein groups. Some
+ * proteins are decoys, with the prefix {@link #DECOY_PREFIX}, so that the FDR
+ * can be calculated.<br>
+ * The files are written where the {@link FileManager} expects them, that is,
+ * under the folder in the system property 'user.dir'.
+ *
+ * @author Salva
+ *
+ */
+public class SyntheticMiapeMSIGenerator {
+	private static final Logger log = Logger.getLogger("log4j.logger.org.proteored");
+	public static final String DECOY_PREFIX = "rev_";
+	public static final String SCORE_NAME = "Mascot:score";
+	private static final String AMINOACIDS = "ACDEFGHIKLMNPQRSTVWY";
+	private static final double[] AMINOACID_MASSES = { 71.03711, 103.00919, 115.02694, 129.04259, 147.06841,
+			57.02146, 137.05891, 113.08406, 128.09496, 113.08406, 131.04049, 114.04293, 97.05276, 128.05858,
+			156.10111, 87.03203, 101.04768, 99.06841, 186.07931, 163.06333 };
+	private static final double WATER = 18.01056;
+	private static final double PROTON = 1.00728;
+	private static final String[] DESCRIPTION_WORDS = { "kinase", "receptor", "protein", "binding", "domain",
+			"containing", "factor", "transcription", "subunit", "ribosomal", "mitochondrial", "zinc", "finger",
+			"alpha", "beta", "heat", "shock", "ubiquitin", "ligase", "transporter", "channel", "membrane",
+			"nuclear", "serine", "threonine", "phosphatase", "dehydrogenase", "synthase", "histone", "actin",
+			"tubulin", "collagen", "keratin", "immunoglobulin", "heavy", "light", "chain", "regulatory",
+			"associated", "elongation", "initiation", "translation", "splicing", "helicase", "polymerase" };
+	private static final String[] CHROMOSOMES = { "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12",
+			"13", "14", "15", "16", "17", "18", "19", "20", "21", "22", "X", "Y" };
+
+	private final String projectName;
+	private final int numExperiments;
+	private final int numReplicates;
+	private final int numProteins;
+	private final double proteinFractionPerDataset;
+	private final double decoyFraction;
+	private final long seed;
+	private final List<SyntheticProtein> proteinPool = new ArrayList<SyntheticProtein>();
+
+	/**
+	 *
+	 * @param projectName
+	 * @param numExperiments
+	 * @param numReplicates
+	 *            number of replicates per experiment, each one with a MIAPE
+	 *            MSI file
+	 * @param numProteins
+	 *            number of proteins in the pool
+	 * @param proteinFractionPerDataset
+	 *            fraction of the pool that is identified in each dataset
+	 * @param decoyFraction
+	 *            fraction of the pool that are decoy proteins
+	 * @param seed
+	 *            of the random generator, so that the same data is generated
+	 *            every time
+	 */
+	public SyntheticMiapeMSIGenerator(String projectName, int numExperiments, int numReplicates, int numProteins,
+			double proteinFractionPerDataset, double decoyFraction, long seed) {
+		this.projectName = projectName;
+		this.numExperiments = numExperiments;
+		this.numReplicates = numReplicates;
+		this.numProteins = numProteins;
+		this.proteinFractionPerDataset = proteinFractionPerDataset;
+		this.decoyFraction = decoyFraction;
+		this.seed = seed;
+	}
+
+	/**
+	 * Writes the MIAPE MSI files and the project file
+	 *
+	 * @return the project file
+	 * @throws IOException
+	 * @throws JAXBException
+	 */
+	public File generate() throws IOException, JAXBException {
+		final Random random = new Random(seed);
+		createProteinPool(random);
+
+		final CPExperimentList cpExpList = new CPExperimentList();
+		cpExpList.setName(projectName);
+		int msiID = 1;
+		for (int numExp = 1; numExp <= numExperiments; numExp++) {
+			final CPExperiment cpExp = new CPExperiment();
+			cpExp.setName("Experiment_" + numExp);
+			cpExp.setCurated(false);
+			for (int numRep = 1; numRep <= numReplicates; numRep++) {
+				final String datasetName = "Exp" + numExp + "_Rep" + numRep;
+				final File msiFile = new File(FileManager.getMiapeMSIXMLFileLocalPathFromMiapeInformation(projectName,
+						msiID, datasetName));
+				writeMiapeMSI(msiFile, msiID, datasetName, random);
+
+				final CPMSI cpMsi = new CPMSI();
+				cpMsi.setId(msiID);
+				cpMsi.setName(FilenameUtils.getBaseName(msiFile.getName()));
+				cpMsi.setLocal(true);
+				cpMsi.setLocalProjectName(projectName);
+				final CPMSIList cpMsiList = new CPMSIList();
+				cpMsiList.getCPMSI().add(cpMsi);
+				final CPReplicate cpRep = new CPReplicate();
+				cpRep.setName(datasetName);
+				cpRep.setCPMSIList(cpMsiList);
+				cpExp.getCPReplicate().add(cpRep);
+				msiID++;
+			}
+			cpExpList.getCPExperiment().add(cpExp);
+		}
+		final File projectFile = FileManager.saveProjectFile(cpExpList);
+		log.info("Synthetic project with " + numExperiments * numReplicates + " datasets of " + numProteins
+				+ " proteins written at " + projectFile.getAbsolutePath());
+		return projectFile;
+	}
+
+	/**
+	 * Writes a mapping file between the accessions of the proteins of the pool
+	 * and genes, with the format of the file that is read by the
+	 * {@link org.proteored.pacom.analysis.genes.GeneDistributionReader}
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public void writeGeneMappingFile(File file) throws IOException {
+		if (proteinPool.isEmpty()) {
+			createProteinPool(new Random(seed));
+		}
+		final PrintWriter pw = getWriter(file);
+		try {
+			pw.println("Gene,Transcript,Protein,Protein_TrEMBL,Chromosome,Protein_Ensembl");
+			int numGene = 0;
+			for (final SyntheticProtein protein : proteinPool) {
+				if (protein.decoy) {
+					continue;
+				}
+				// two proteins per gene
+				if (protein.index % 2 == 0) {
+					numGene++;
+				}
+				final String chr = CHROMOSOMES[numGene % CHROMOSOMES.length];
+				pw.println(String.format(Locale.US, "ENSG%011d,ENST%011d,%s,,%s,ENSP%011d", numGene, protein.index,
+						protein.accession, chr, protein.index));
+			}
+		} finally {
+			pw.close();
+		}
+	}
+
+	private void createProteinPool(Random random) {
+		proteinPool.clear();
+		for (int index = 0; index < numProteins; index++) {
+			final boolean decoy = random.nextDouble() < decoyFraction;
+			final String accession = (decoy ? DECOY_PREFIX : "") + String.format(Locale.US, "P%05d", index);
+			final StringBuilder description = new StringBuilder();
+			final int numWords = 2 + random.nextInt(4);
+			for (int i = 0; i < numWords; i++) {
+				if (i > 0) {
+					description.append(" ");
+				}
+				description.append(DESCRIPTION_WORDS[random.nextInt(DESCRIPTION_WORDS.length)]);
+			}
+			description.append(" OS=Homo sapiens GN=GENE" + index / 2 + " PE=1 SV=1");
+			final SyntheticProtein protein = new SyntheticProtein(index, accession, description.toString(), decoy);
+			final int numPeptides = 1 + random.nextInt(12);
+			for (int i = 0; i < numPeptides; i++) {
+				protein.peptides.add(createTrypticPeptide(random));
+			}
+			// shared peptides with the previous protein, to have protein
+			// groups
+			if (index > 0 && random.nextDouble() < 0.1) {
+				final SyntheticProtein previous = proteinPool.get(index - 1);
+				protein.peptides.add(previous.peptides.get(0));
+			}
+			proteinPool.add(protein);
+		}
+	}
+
+	private String createTrypticPeptide(Random random) {
+		final int length = 6 + random.nextInt(15);
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < length - 1; i++) {
+			char aa = AMINOACIDS.charAt(random.nextInt(AMINOACIDS.length()));
+			// some missed cleavages
+			if ((aa == 'K' || aa == 'R') && random.nextDouble() < 0.7) {
+				aa = 'L';
+			}
+			sb.append(aa);
+		}
+		sb.append(random.nextBoolean() ? 'K' : 'R');
+		return sb.toString();
+	}
+
+	private double getMz(String sequence, int charge) {
+		double mass = WATER;
+		for (int i = 0; i < sequence.length(); i++) {
+			mass += AMINOACID_MASSES[AMINOACIDS.indexOf(sequence.charAt(i))];
+		}
+		return (mass + charge * PROTON) / charge;
+	}
+
+	/**
+	 * Writes a MIAPE MSI file with a random subset of the proteins of the pool
+	 * and their peptides
+	 *
+	 * @param file
+	 * @param msiID
+	 * @param datasetName
+	 * @param random
+	 * @throws IOException
+	 */
+	private void writeMiapeMSI(File file, int msiID, String datasetName, Random random) throws IOException {
+		final List<SyntheticProtein> proteins = new ArrayList<SyntheticProtein>();
+		for (final SyntheticProtein protein : proteinPool) {
+			if (random.nextDouble() < proteinFractionPerDataset) {
+				proteins.add(protein);
+			}
+		}
+		// the proteins of the dataset by peptide sequence
+		final Map<String, List<SyntheticProtein>> proteinsBySequence = new THashMap<String, List<SyntheticProtein>>();
+		for (final SyntheticProtein protein : proteins) {
+			for (final String sequence : protein.peptides) {
+				List<SyntheticProtein> list = proteinsBySequence.get(sequence);
+				if (list == null) {
+					list = new ArrayList<SyntheticProtein>();
+					proteinsBySequence.put(sequence, list);
+				}
+				list.add(protein);
+			}
+		}
+		// the PSMs
+		final List<String> psmSequences = new ArrayList<String>();
+		final Map<SyntheticProtein, List<Integer>> psmsByProtein = new THashMap<SyntheticProtein, List<Integer>>();
+		for (final String sequence : proteinsBySequence.keySet()) {
+			if (random.nextDouble() < 0.2) {
+				continue;
+			}
+			final int numPSMs = 1 + random.nextInt(3);
+			for (int i = 0; i < numPSMs; i++) {
+				final int psmID = psmSequences.size();
+				psmSequences.add(sequence);
+				for (final SyntheticProtein protein : proteinsBySequence.get(sequence)) {
+					List<Integer> psmIDs = psmsByProtein.get(protein);
+					if (psmIDs == null) {
+						psmIDs = new ArrayList<Integer>();
+						psmsByProtein.put(protein, psmIDs);
+					}
+					psmIDs.add(psmID);
+				}
+			}
+		}
+
+		final PrintWriter pw = getWriter(file);
+		try {
+			pw.println("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>");
+			pw.println("<MSI_MIAPE_MSI id=\"" + msiID + "\">");
+			pw.println("\t<MIAPEProject id=\"1\">");
+			pw.println("\t\t<Name>" + projectName + "</Name>");
+			pw.println("\t</MIAPEProject>");
+			pw.println("\t<Name>" + datasetName + "</Name>");
+			pw.println("\t<Version>1.1.0</Version>");
+			pw.println("\t<MSI_Software id=\"SW_" + msiID + "\">");
+			pw.println("\t\t<Name>");
+			pw.println("\t\t\t<cvParam accession=\"MS:1001207\" cvRef=\"MS\" name=\"Mascot\"/>");
+			pw.println("\t\t</Name>");
+			pw.println("\t</MSI_Software>");
+			pw.println("\t<MSI_Input_Data_Set id=\"INDATASET_" + msiID + "\">");
+			pw.println("\t\t<Name>" + datasetName + "</Name>");
+			pw.println("\t\t<MSI_Input_Data id=\"INDATA_" + msiID + "\">");
+			pw.println("\t\t\t<Name>" + datasetName + "</Name>");
+			pw.println("\t\t</MSI_Input_Data>");
+			pw.println("\t</MSI_Input_Data_Set>");
+			pw.println("\t<MSI_Input_Parameters id=\"PARAM_" + msiID + "\">");
+			pw.println("\t\t<Name>SIP</Name>");
+			pw.println("\t\t<Software_Ref>SW_" + msiID + "</Software_Ref>");
+			pw.println("\t</MSI_Input_Parameters>");
+
+			pw.println("\t<MSI_Identified_Protein_Set>");
+			pw.println("\t\t<Name>identified proteins</Name>");
+			pw.println("\t\t<Parameters_Ref>PARAM_" + msiID + "</Parameters_Ref>");
+			pw.println("\t\t<Input_Data_Set_References>");
+			pw.println("\t\t\t<Input_Data_Set_Ref>INDATASET_" + msiID + "</Input_Data_Set_Ref>");
+			pw.println("\t\t</Input_Data_Set_References>");
+			for (final SyntheticProtein protein : proteins) {
+				final List<Integer> psmIDs = psmsByProtein.get(protein);
+				if (psmIDs == null) {
+					continue;
+				}
+				pw.println("\t\t<MSI_Identified_Protein id=\"PROT_" + protein.index + "\">");
+				pw.println("\t\t\t<AC>" + protein.accession + "</AC>");
+				pw.println("\t\t\t<ProteinScore>");
+				pw.println(getScoreCVParam("MS:1001171", SCORE_NAME, getScore(protein.decoy, random) * 2));
+				pw.println("\t\t\t</ProteinScore>");
+				pw.println("\t\t\t<Description>" + protein.description + "</Description>");
+				pw.println("\t\t\t<Validation_Status>true</Validation_Status>");
+				pw.println("\t\t\t<Peptide_Number>" + psmIDs.size() + "</Peptide_Number>");
+				pw.println("\t\t\t<Peptide_Refs>");
+				for (final Integer psmID : psmIDs) {
+					pw.println("\t\t\t\t<Ref id=\"PEP_" + psmID + "\"/>");
+				}
+				pw.println("\t\t\t</Peptide_Refs>");
+				pw.println("\t\t</MSI_Identified_Protein>");
+			}
+			pw.println("\t</MSI_Identified_Protein_Set>");
+
+			pw.println("\t<MSI_Identified_Peptide_Set>");
+			for (int psmID = 0; psmID < psmSequences.size(); psmID++) {
+				final String sequence = psmSequences.get(psmID);
+				final List<SyntheticProtein> psmProteins = proteinsBySequence.get(sequence);
+				boolean decoy = true;
+				for (final SyntheticProtein protein : psmProteins) {
+					decoy &= protein.decoy;
+				}
+				final double score = getScore(decoy, random);
+				final int charge = 2 + random.nextInt(2);
+				final double mz = getMz(sequence, charge);
+				pw.println("\t\t<MSI_Identified_Peptide id=\"PEP_" + psmID + "\">");
+				pw.println("\t\t\t<Sequence>" + sequence + "</Sequence>");
+				pw.println("\t\t\t<PeptideScore>");
+				pw.println(getScoreCVParam("MS:1001171", SCORE_NAME, score));
+				pw.println("\t\t\t</PeptideScore>");
+				pw.println("\t\t\t<PeptideScore>");
+				pw.println(getScoreCVParam("MS:1001172", "Mascot:expectation value", Math.pow(10, -score / 10)));
+				pw.println("\t\t\t</PeptideScore>");
+				pw.println("\t\t\t<Spectrum_Ref>scan=" + (psmID + 1) + "</Spectrum_Ref>");
+				pw.println("\t\t\t<Charge>" + charge + "</Charge>");
+				pw.println(String.format(Locale.US,
+						"\t\t\t<Mass_Deviation>Calculated Mass to Charge=%.6f\n"
+								+ "Experimental Mass to Charge=%.6f</Mass_Deviation>",
+						mz, mz + (random.nextDouble() - 0.5) * 0.02));
+				pw.println("\t\t\t<Input_Data_Ref>INDATA_" + msiID + "</Input_Data_Ref>");
+				pw.println(String.format(Locale.US, "\t\t\t<RT>%.2f</RT>", 600 + random.nextDouble() * 6000));
+				pw.println("\t\t\t<Rank>1</Rank>");
+				pw.println("\t\t\t<Protein_Refs>");
+				for (final SyntheticProtein protein : psmProteins) {
+					if (psmsByProtein.containsKey(protein)) {
+						pw.println("\t\t\t\t<Ref id=\"PROT_" + protein.index + "\"/>");
+					}
+				}
+				pw.println("\t\t\t</Protein_Refs>");
+				pw.println("\t\t</MSI_Identified_Peptide>");
+			}
+			pw.println("\t</MSI_Identified_Peptide_Set>");
+			pw.println("</MSI_MIAPE_MSI>");
+		} finally {
+			pw.close();
+		}
+		log.debug(datasetName + ": " + psmsByProtein.size() + " proteins and " + psmSequences.size() + " PSMs");
+	}
+
+	/**
+	 * The decoy hits have lower scores than the target ones, so that the FDR
+	 * filter removes them
+	 *
+	 * @param decoy
+	 * @param random
+	 * @return
+	 */
+	private double getScore(boolean decoy, Random random) {
+		if (decoy) {
+			return 5 + random.nextDouble() * 30;
+		}
+		return 10 + random.nextDouble() * 70;
+	}
+
+	private String getScoreCVParam(String accession, String name, double value) {
+		return String.format(Locale.US, "\t\t\t\t<cvParam accession=\"%s\" cvRef=\"MS\" value=\"%s\" name=\"%s\"/>",
+				accession, String.valueOf(value), name);
+	}
+
+	private PrintWriter getWriter(File file) throws IOException {
+		if (file.getParentFile() != null && !file.getParentFile().exists()) {
+			file.getParentFile().mkdirs();
+		}
+		return new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8")));
+	}
+
+	private static class SyntheticProtein {
+		private final int index;
+		private final String accession;
+		private final String description;
+		private final boolean decoy;
+		private final List<String> peptides = new ArrayList<String>();
+
+		private SyntheticProtein(int index, String accession, String description, boolean decoy) {
+			this.index = index;
+			this.accession = accession;
+			this.description = description;
+			this.decoy = decoy;
+		}
+	}
+}
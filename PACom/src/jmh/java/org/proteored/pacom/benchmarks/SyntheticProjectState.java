@@ -0,0 +1,117 @@
+package org.proteored.pacom.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.JAXBException;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.proteored.miapeapi.experiment.model.Experiment;
+import org.proteored.miapeapi.experiment.model.ExperimentList;
+import org.proteored.miapeapi.experiment.model.IdentificationSet;
+import org.proteored.miapeapi.experiment.model.Replicate;
+import org.proteored.miapeapi.experiment.model.datamanager.DataManager;
+import org.proteored.pacom.analysis.conf.ExperimentListAdapter;
+
+/**
+ * Synthetic comparison project shared by the benchmarks of a trial. It is
+ * generated by the {@link SyntheticMiapeMSIGenerator} in a temporary folder,
+ * that is used as the application folder while the benchmark runs, and it is
+ * loaded once, so that the benchmarks only measure their own operation.
+ *
+ * @author Salva
+ *
+ */
+@State(Scope.Benchmark)
+public class SyntheticProjectState {
+	public static final String PROJECT_NAME = "synthetic_project";
+
+	@Param({ "500", "2000" })
+	public int numProteins;
+
+	@Param({ "2" })
+	public int numExperiments;
+
+	@Param({ "3" })
+	public int numReplicates;
+
+	public File workFolder;
+	public File projectFile;
+	public File geneMappingFile;
+	public ExperimentList experimentList;
+	private String previousUserDir;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, JAXBException {
+		System.setProperty("java.awt.headless", "true");
+		workFolder = Files.createTempDirectory("pacom_benchmarks").toFile();
+		// the FileManager takes all the folders from the application folder
+		previousUserDir = System.getProperty("user.dir");
+		System.setProperty("user.dir", workFolder.getAbsolutePath());
+
+		final SyntheticMiapeMSIGenerator generator = new SyntheticMiapeMSIGenerator(PROJECT_NAME, numExperiments,
+				numReplicates, numProteins, 0.7, 0.05, 1234L);
+		projectFile = generator.generate();
+		geneMappingFile = new File(workFolder, "synthetic_uniprot_ensembl_mapping.csv");
+		generator.writeGeneMappingFile(geneMappingFile);
+		experimentList = loadProject();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (previousUserDir != null) {
+			System.setProperty("user.dir", previousUserDir);
+		}
+		FileUtils.deleteQuietly(workFolder);
+	}
+
+	/**
+	 * Loads the project as the
+	 * {@link org.proteored.pacom.analysis.gui.ChartManagerFrame} does
+	 *
+	 * @return
+	 */
+	public ExperimentList loadProject() {
+		DataManager.clearStaticInfo();
+		return new ExperimentListAdapter(projectFile, null, false, null, true, false, false, false).adapt();
+	}
+
+	/**
+	 * The replicates of the project, as the series of the charts with one
+	 * series per replicate
+	 *
+	 * @return
+	 */
+	public List<IdentificationSet> getReplicates() {
+		final List<IdentificationSet> ret = new ArrayList<IdentificationSet>();
+		for (final Experiment experiment : experimentList.getExperiments()) {
+			for (final Replicate replicate : experiment.getNextLevelIdentificationSetList()) {
+				ret.add(replicate);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * The experiments of the project, as the series of the charts with one
+	 * series per experiment
+	 *
+	 * @return
+	 */
+	public List<IdentificationSet> getExperiments() {
+		final List<IdentificationSet> ret = new ArrayList<IdentificationSet>();
+		for (final Experiment experiment : experimentList.getExperiments()) {
+			ret.add(experiment);
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,101 @@
+package org.proteored.pacom.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.proteored.miapeapi.experiment.model.sort.ProteinGroupComparisonType;
+import org.proteored.pacom.analysis.exporters.ExporterManager;
+import org.proteored.pacom.analysis.exporters.tasks.TSVExporter;
+import org.proteored.pacom.analysis.util.DataLevel;
+
+/**
+ * Export of the proteins and of the peptides of the replicates of the
+ * synthetic project by the {@link TSVExporter}, with no annotations from
+ * UniprotKB.
+ *
+ * @author Salva
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TSVExporterBenchmark {
+
+	@Benchmark
+	public File exportProteins(SyntheticProjectState project) {
+		return export(project, false);
+	}
+
+	@Benchmark
+	public File exportPeptides(SyntheticProjectState project) {
+		return export(project, true);
+	}
+
+	private File export(SyntheticProjectState project, final boolean peptides) {
+		final ExporterManager exporterManager = new ExporterManager() {
+
+			@Override
+			public boolean isDecoyHitsIncluded() {
+				return false;
+			}
+
+			@Override
+			public boolean isFDRApplied() {
+				return false;
+			}
+
+			@Override
+			public boolean showPeptides() {
+				return peptides;
+			}
+
+			@Override
+			public boolean showBestPeptides() {
+				return true;
+			}
+
+			@Override
+			public boolean showBestProteins() {
+				return true;
+			}
+
+			@Override
+			public boolean retrieveFromUniprotKB() {
+				return false;
+			}
+
+			@Override
+			public boolean showGeneInfo() {
+				return false;
+			}
+
+			@Override
+			public boolean isDistinguishModifiedPeptides() {
+				return false;
+			}
+
+			@Override
+			public ProteinGroupComparisonType getComparisonType() {
+				return ProteinGroupComparisonType.BEST_PROTEIN;
+			}
+
+			@Override
+			public DataLevel getDataLevel() {
+				return DataLevel.LEVEL2;
+			}
+		};
+		final File file = new File(project.workFolder, peptides ? "peptides.tsv" : "proteins.tsv");
+		final TSVExporter exporter = new TSVExporter(exporterManager, project.getReplicates(), file, null);
+		exporter.setDistinguisModificatedPeptides(false);
+		return exporter.export();
+	}
+}
@@ -0,0 +1,126 @@
+package org.proteored.pacom.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.proteored.miapeapi.experiment.model.ExtendedIdentifiedProtein;
+import org.proteored.pacom.analysis.charts.WordCramChart;
+
+import gnu.trove.map.hash.THashMap;
+import processing.core.PApplet;
+import processing.core.PConstants;
+import processing.core.PFont;
+import processing.core.PGraphics;
+import wordcram.Anglers;
+import wordcram.Colorers;
+import wordcram.Placers;
+import wordcram.Sizers;
+import wordcram.SpiralWordNudger;
+import wordcram.Word;
+import wordcram.WordCram;
+
+/**
+ * Counting of the words of the protein descriptions of the synthetic project
+ * for the {@link WordCramChart}, mapping each word to its proteins as the chart
+ * does, and layout of these words with the settings of the chart. The words
+ * are drawn in an offscreen canvas, so no window is needed.
+ *
+ * @author Salva
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WordCramBenchmark {
+
+	/**
+	 * Words of the synthetic project and the offscreen canvas in where they
+	 * are drawn
+	 *
+	 * @author Salva
+	 *
+	 */
+	@State(Scope.Benchmark)
+	public static class LayoutState {
+		private static final int WIDTH = 800;
+		private static final int HEIGHT = 550;
+		private static final int MAX_WORDS = 500;
+
+		private Word[] countedWords;
+		private PApplet applet;
+		private PFont font;
+		public PGraphics canvas;
+
+		@Setup(Level.Trial)
+		public void setUp(SyntheticProjectState project) {
+			countedWords = WordCramChart.countWords(project.experimentList.getIdentifiedProteins(),
+					WordCramChart.getDefaultSkippedWords(), 3, null);
+			// the applet is not shown, it only creates the canvas and the font
+			applet = new PApplet();
+			font = applet.createFont("SansSerif", 1);
+			canvas = applet.createGraphics(WIDTH, HEIGHT, PConstants.JAVA2D);
+		}
+
+		/**
+		 * Creates the {@link WordCram} of the chart, with new words, because
+		 * the words are changed while they are placed
+		 *
+		 * @param threads
+		 *            number of threads used to place the words
+		 * @return
+		 */
+		public WordCram createWordCram(int threads) {
+			final Word[] words = new Word[countedWords.length];
+			for (int i = 0; i < words.length; i++) {
+				words[i] = new Word(countedWords[i].word, countedWords[i].weight);
+			}
+			// the colors of the chart need a shown applet, but they don't
+			// change the layout
+			return new WordCram(applet).withCustomCanvas(canvas).fromWords(words).includeNumbers().withFonts(font)
+					.withColorer(Colorers.alwaysUse(0xff000000)).withAngler(Anglers.mostlyHoriz())
+					.withPlacer(Placers.centerClump()).withSizer(Sizers.byWeight(1, 100)).withWordPadding(1)
+					.sizedByWeight(5, 100).minShapeSize(1).maxNumberOfWordsToDraw(MAX_WORDS + 1)
+					.withNudger(new SpiralWordNudger()).withParallelPlacement(threads);
+		}
+	}
+
+	@Benchmark
+	public Word[] countWords(SyntheticProjectState project) {
+		final Map<String, List<ExtendedIdentifiedProtein>> wordMapping = new THashMap<String, List<ExtendedIdentifiedProtein>>();
+		return WordCramChart.countWords(project.experimentList.getIdentifiedProteins(),
+				WordCramChart.getDefaultSkippedWords(), 3, wordMapping);
+	}
+
+	@Benchmark
+	public Word[] drawAll(LayoutState layout) {
+		return draw(layout, Runtime.getRuntime().availableProcessors());
+	}
+
+	@Benchmark
+	public Word[] drawAllOneThread(LayoutState layout) {
+		return draw(layout, 1);
+	}
+
+	private Word[] draw(LayoutState layout, int threads) {
+		final WordCram wordCram = layout.createWordCram(threads);
+		layout.canvas.beginDraw();
+		layout.canvas.background(255);
+		wordCram.drawAll();
+		layout.canvas.endDraw();
+		return wordCram.getSkippedWords();
+	}
+}
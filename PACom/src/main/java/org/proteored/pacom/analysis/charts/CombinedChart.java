@@ -58,6 +58,10 @@ public class CombinedChart {
 		return chartPanel;
 	}
 
+	public JFreeChart getChart() {
+		return chart;
+	}
+
 	private JFreeChart createChart(CategoryDataset barDataset, CategoryDataset lineDataset) {
 		// Bar chart
 		final CategoryDataset dataset1 = lineDataset;
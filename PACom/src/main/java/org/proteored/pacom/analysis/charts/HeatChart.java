@@ -18,11 +18,17 @@ import java.awt.FontMetrics;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Iterator;
 
 import javax.imageio.IIOImage;
@@ -220,6 +226,15 @@ public class HeatChart {
 	// Control variable for mapping z-values to colours.
 	private double colourScale;
 
+	// RGB of each colour position, from the low to the high value colour
+	private int[] colourLUT;
+
+	// Size of the square tiles in which the heat map is rendered.
+	private static final int TILE_SIZE = 256;
+
+	// Maximum width or height of a JPEG image
+	private static final int MAX_JPEG_SIZE = 65500;
+
 	/**
 	 * Constructs a heatmap for the given z-values against x/y-values that by
 	 * default will be the values 0 to n-1, where n is the number of columns or
@@ -1279,6 +1294,7 @@ public class HeatChart {
 		colourValueDistance = Math.abs(r1 - r2);
 		colourValueDistance += Math.abs(g1 - g2);
 		colourValueDistance += Math.abs(b1 - b2);
+		colourLUT = null;
 	}
 
 	/**
@@ -1297,6 +1313,11 @@ public class HeatChart {
 	 * <code>getChartImage()</code> method are called. All successive calls will
 	 * result in the generation of a new chart image, no caching is used.
 	 * 
+	 * <p>
+	 * The chart is painted in strips of rows while the image writer reads it,
+	 * so the whole image is never in memory. JPEG images cannot be larger than
+	 * 65500 pixels in width or height.
+	 * 
 	 * @param outputFile
 	 *            the file location that the generated image file should be
 	 *            written to. The File must have a suitable filename, with an
@@ -1321,19 +1342,80 @@ public class HeatChart {
 		// Determine the extension of the filename.
 		final String ext = filename.substring(extPoint + 1);
 
-		// Handle jpg without transparency.
+		final BufferedImage chart = getStripsChartImage();
 		if (ext.toLowerCase().equals("jpg") || ext.toLowerCase().equals("jpeg")) {
-			final BufferedImage chart = (BufferedImage) getChartImage(false);
-
+			if (chart.getWidth() > MAX_JPEG_SIZE || chart.getHeight() > MAX_JPEG_SIZE) {
+				throw new IllegalMiapeArgumentException("The chart is too big to be saved as JPEG ("
+						+ chart.getWidth() + "x" + chart.getHeight() + " pixels).\nSave it as PNG");
+			}
 			// Save our graphic.
 			saveGraphicJpeg(chart, outputFile, 1.0f);
 		} else {
-			final BufferedImage chart = (BufferedImage) getChartImage(true);
-
 			ImageIO.write(chart, ext, outputFile);
 		}
 	}
 
+	/*
+	 * Creates an image of the whole chart whose pixels are painted on demand,
+	 * in strips of rows, by a ChartStripsDataBuffer.
+	 */
+	private BufferedImage getStripsChartImage() {
+		measure();
+		if ((long) chartSize.width * chartSize.height > Integer.MAX_VALUE) {
+			throw new IllegalMiapeArgumentException(
+					"Too many rows in the image.\nTry to increase the number on the text box: 'Do not paint rows with less than (occurrence)'");
+		}
+		final BufferedImage prototype = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+		final WritableRaster raster = Raster.createWritableRaster(
+				prototype.getSampleModel().createCompatibleSampleModel(chartSize.width, chartSize.height),
+				new ChartStripsDataBuffer(chartSize.width, chartSize.height), null);
+		return new BufferedImage(prototype.getColorModel(), raster, false, null);
+	}
+
+	/*
+	 * Pixels of the chart, in TYPE_INT_RGB format, that are painted with
+	 * paintChart when they are read. Only the last strip of TILE_SIZE rows is
+	 * kept, so the image writers, that read the image row by row, paint each
+	 * strip just once.
+	 */
+	private class ChartStripsDataBuffer extends DataBuffer {
+		private final int width;
+		private final int height;
+		private int stripIndex = -1;
+		private int[] strip;
+
+		private ChartStripsDataBuffer(int width, int height) {
+			super(TYPE_INT, width * height);
+			this.width = width;
+			this.height = height;
+		}
+
+		@Override
+		public int getElem(int bank, int i) {
+			final int index = i / width / TILE_SIZE;
+			if (index != stripIndex) {
+				paintStrip(index);
+			}
+			return strip[i - index * TILE_SIZE * width];
+		}
+
+		@Override
+		public void setElem(int bank, int i, int val) {
+			throw new UnsupportedOperationException("The chart image is read only");
+		}
+
+		private void paintStrip(int index) {
+			final int y = index * TILE_SIZE;
+			final BufferedImage image = new BufferedImage(width, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+			final Graphics2D stripGraphics = image.createGraphics();
+			stripGraphics.translate(0, -y);
+			paintChart(stripGraphics, new Rectangle(0, y, width, Math.min(TILE_SIZE, height - y)));
+			stripGraphics.dispose();
+			strip = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+			stripIndex = index;
+		}
+	}
+
 	private void saveGraphicJpeg(BufferedImage chart, File outputFile, float quality) throws IOException {
 		// Setup correct compression for jpeg.
 		final Iterator<ImageWriter> iter = ImageIO.getImageWritersByFormatName("jpeg");
@@ -1572,35 +1654,165 @@ public class HeatChart {
 	}
 
 	/*
-	 * Creates the actual heatmap element as an image, that can then be drawn
-	 * onto a chart.
+	 * Draws the heat map onto the chart, rendering it in strips of rows so
+	 * that a second image of the size of the whole heat map is not needed.
 	 */
 	private void drawHeatMap(Graphics2D chartGraphics, double[][] data) {
-		// Calculate the available size for the heatmap.
-		final int noYCells = data.length;
-		final int noXCells = data[0].length;
+		for (int y = 0; y < heatMapSize.height; y += TILE_SIZE) {
+			final int height = Math.min(TILE_SIZE, heatMapSize.height - y);
+			final BufferedImage strip = renderHeatMap(data, 0, y, heatMapSize.width, height);
+			chartGraphics.drawImage(strip, heatMapTL.x, heatMapTL.y + y, null);
+		}
+	}
+
+	/*
+	 * Renders a region of the heat map, in heat map pixel co-ordinates, writing
+	 * the colours of the cells directly into the raster of the image.
+	 */
+	private BufferedImage renderHeatMap(double[][] data, int x, int y, int width, int height) {
+		final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		final int[] rowColours = new int[width];
+		int previousCellY = -1;
+		for (int py = 0; py < height; py++) {
+			final int cellY = (y + py) / cellSize.height;
+			if (cellY != previousCellY) {
+				// the colours of the row only change when the cell changes
+				final double[] dataRow = data[cellY];
+				int previousCellX = -1;
+				int rgb = 0;
+				for (int px = 0; px < width; px++) {
+					final int cellX = (x + px) / cellSize.width;
+					if (cellX != previousCellX) {
+						rgb = getCellRGB(dataRow[cellX]);
+						previousCellX = cellX;
+					}
+					rowColours[px] = rgb;
+				}
+				previousCellY = cellY;
+			}
+			System.arraycopy(rowColours, 0, pixels, py * width, width);
+		}
+		return image;
+	}
 
-		// double dataMin = min(data);
-		// double dataMax = max(data);
+	/**
+	 * Calculates the size of the chart and the position of its components
+	 * with the current settings. It has to be called after changing the
+	 * settings of a chart that is painted with
+	 * {@link #paintChart(Graphics2D, Rectangle)}.
+	 */
+	public void measure() {
+		measureComponents();
+		updateCoordinates();
+	}
 
-		final BufferedImage heatMapImage = new BufferedImage(heatMapSize.width, heatMapSize.height,
-				BufferedImage.TYPE_INT_ARGB);
-		final Graphics2D heatMapGraphics = heatMapImage.createGraphics();
+	/**
+	 * Paints the region of the chart inside of the clip, which usually is the
+	 * visible part of the component in which the chart is shown. Only the
+	 * tiles of the heat map and the y-values that intersect the clip are
+	 * painted, so the cost doesn't depend on the number of rows of the chart.
+	 *
+	 * @param chartGraphics
+	 * @param clip
+	 *            the region to paint, in chart co-ordinates. If null, the
+	 *            whole chart is painted.
+	 */
+	public void paintChart(Graphics2D chartGraphics, Rectangle clip) {
+		if (heatMapTL == null) {
+			measure();
+		}
+		if (clip == null) {
+			clip = new Rectangle(0, 0, chartSize.width, chartSize.height);
+		}
+		chartGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+		chartGraphics.setColor(backgroundColour);
+		chartGraphics.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+		drawTitle(chartGraphics);
+
+		// the tiles of the heat map intersecting the clip
+		final Rectangle visibleHeatMap = clip.intersection(getHeatMapBounds());
+		if (!visibleHeatMap.isEmpty()) {
+			final int firstX = (visibleHeatMap.x - heatMapTL.x) / TILE_SIZE * TILE_SIZE;
+			final int firstY = (visibleHeatMap.y - heatMapTL.y) / TILE_SIZE * TILE_SIZE;
+			final int lastX = visibleHeatMap.x + visibleHeatMap.width - heatMapTL.x;
+			final int lastY = visibleHeatMap.y + visibleHeatMap.height - heatMapTL.y;
+			for (int y = firstY; y < lastY; y += TILE_SIZE) {
+				for (int x = firstX; x < lastX; x += TILE_SIZE) {
+					final int width = Math.min(TILE_SIZE, heatMapSize.width - x);
+					final int height = Math.min(TILE_SIZE, heatMapSize.height - y);
+					final BufferedImage tile = renderHeatMap(zValues, x, y, width, height);
+					chartGraphics.drawImage(tile, heatMapTL.x + x, heatMapTL.y + y, null);
+				}
+			}
+		}
 
-		for (int x = 0; x < noXCells; x++) {
-			for (int y = 0; y < noYCells; y++) {
-				// Set colour depending on zValues.
-				heatMapGraphics.setColor(getCellColour(data[y][x], lowValue, highValue));
+		drawXLabel(chartGraphics);
+		drawYLabel(chartGraphics);
+		drawAxisBars(chartGraphics);
+		drawXValues(chartGraphics);
 
-				final int cellX = x * cellSize.width;
-				final int cellY = y * cellSize.height;
+		// the y-values of the rows intersecting the clip
+		final int firstRow = Math.max(0, (clip.y - heatMapTL.y) / cellSize.height - 1);
+		final int lastRow = Math.min(yValues.length - 1, (clip.y + clip.height - heatMapTL.y) / cellSize.height + 1);
+		drawYValues(chartGraphics, firstRow, lastRow);
+	}
 
-				heatMapGraphics.fillRect(cellX, cellY, cellSize.width, cellSize.height);
+	/**
+	 * Returns the region of the chart in which the cells of the heat map are
+	 * painted.
+	 *
+	 * @return the bounds of the heat map in chart co-ordinates.
+	 */
+	public Rectangle getHeatMapBounds() {
+		if (heatMapTL == null) {
+			measure();
+		}
+		return new Rectangle(heatMapTL.x, heatMapTL.y, heatMapSize.width, heatMapSize.height);
+	}
+
+	/**
+	 * Generates a downsampled image of the heat map cells, without title, axis
+	 * or values, that fits in the given size. Each pixel shows the highest
+	 * z-value of the cells that it covers, so that the high values are not
+	 * lost when there are more rows than pixels.
+	 *
+	 * @param width
+	 *            the width of the image in pixels.
+	 * @param height
+	 *            the height of the image in pixels.
+	 * @return the overview image.
+	 */
+	public BufferedImage getOverviewImage(int width, int height) {
+		final int noYCells = zValues.length;
+		final int noXCells = zValues[0].length;
+		width = Math.max(1, width);
+		height = Math.max(1, height);
+		final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		final double[] maxValues = new double[noXCells];
+		final int[] rowColours = new int[width];
+		for (int py = 0; py < height; py++) {
+			// the rows covered by this pixel row
+			final int firstRow = (int) ((long) py * noYCells / height);
+			final int lastRow = Math.max(firstRow + 1, (int) ((long) (py + 1) * noYCells / height));
+			Arrays.fill(maxValues, -Double.MAX_VALUE);
+			for (int row = firstRow; row < lastRow && row < noYCells; row++) {
+				final double[] dataRow = zValues[row];
+				for (int column = 0; column < noXCells; column++) {
+					if (dataRow[column] > maxValues[column]) {
+						maxValues[column] = dataRow[column];
+					}
+				}
+			}
+			for (int px = 0; px < width; px++) {
+				rowColours[px] = getCellRGB(maxValues[(int) ((long) px * noXCells / width)]);
 			}
+			System.arraycopy(rowColours, 0, pixels, py * width, width);
 		}
-
-		// Draw the heat map onto the chart.
-		chartGraphics.drawImage(heatMapImage, heatMapTL.x, heatMapTL.y, heatMapSize.width, heatMapSize.height, null);
+		return image;
 	}
 
 	/*
@@ -1724,13 +1936,21 @@ public class HeatChart {
 	 * Draws the y-values onto the y-axis if showYAxisValues is set to true.
 	 */
 	private void drawYValues(Graphics2D chartGraphics) {
+		drawYValues(chartGraphics, 0, yValues.length - 1);
+	}
+
+	/*
+	 * Draws the y-values of the rows between firstRow and lastRow (both
+	 * included) onto the y-axis if showYAxisValues is set to true.
+	 */
+	private void drawYValues(Graphics2D chartGraphics, int firstRow, int lastRow) {
 		if (!showYAxisValues) {
 			return;
 		}
 
 		chartGraphics.setColor(axisValuesColour);
 
-		for (int i = 0; i < yValues.length; i++) {
+		for (int i = firstRow; i <= lastRow; i++) {
 			if (i % yAxisValuesFrequency != 0) {
 				continue;
 			}
@@ -1769,42 +1989,59 @@ public class HeatChart {
 	}
 
 	/*
-	 * Determines what colour a heat map cell should be based upon the cell
-	 * values.
+	 * Determines the RGB colour that a heat map cell should be based upon the
+	 * cell value.
 	 */
-	private Color getCellColour(double data, double min, double max) {
-		final double range = max - min;
-		final double position = data - min;
+	private int getCellRGB(double data) {
+		final double range = highValue - lowValue;
+		final double position = data - lowValue;
 
 		// What proportion of the way through the possible values is that.
 		final double percentPosition = position / range;
 
 		// Which colour group does that put us in.
-		final int colourPosition = getColourPosition(percentPosition);
-
-		int r = lowValueColour.getRed();
-		int g = lowValueColour.getGreen();
-		int b = lowValueColour.getBlue();
-
-		// Make n shifts of the colour, where n is the colourPosition.
-		for (int i = 0; i < colourPosition; i++) {
-			final int rDistance = r - highValueColour.getRed();
-			final int gDistance = g - highValueColour.getGreen();
-			final int bDistance = b - highValueColour.getBlue();
-
-			if ((Math.abs(rDistance) >= Math.abs(gDistance)) && (Math.abs(rDistance) >= Math.abs(bDistance))) {
-				// Red must be the largest.
-				r = changeColourValue(r, rDistance);
-			} else if (Math.abs(gDistance) >= Math.abs(bDistance)) {
-				// Green must be the largest.
-				g = changeColourValue(g, gDistance);
-			} else {
-				// Blue must be the largest.
-				b = changeColourValue(b, bDistance);
-			}
+		int colourPosition = getColourPosition(percentPosition);
+		final int[] lut = getColourLUT();
+		if (colourPosition < 0) {
+			colourPosition = 0;
+		} else if (colourPosition >= lut.length) {
+			colourPosition = lut.length - 1;
 		}
+		return lut[colourPosition];
+	}
 
-		return new Color(r, g, b);
+	/*
+	 * Returns the RGB colour of each colour position, calculating them if the
+	 * colours have changed. The colour of each position is the one of the
+	 * previous position shifted one step towards the high value colour.
+	 */
+	private int[] getColourLUT() {
+		if (colourLUT == null) {
+			final int[] lut = new int[colourValueDistance + 1];
+			int r = lowValueColour.getRed();
+			int g = lowValueColour.getGreen();
+			int b = lowValueColour.getBlue();
+			lut[0] = (r << 16) | (g << 8) | b;
+			for (int i = 1; i < lut.length; i++) {
+				final int rDistance = r - highValueColour.getRed();
+				final int gDistance = g - highValueColour.getGreen();
+				final int bDistance = b - highValueColour.getBlue();
+
+				if ((Math.abs(rDistance) >= Math.abs(gDistance)) && (Math.abs(rDistance) >= Math.abs(bDistance))) {
+					// Red must be the largest.
+					r = changeColourValue(r, rDistance);
+				} else if (Math.abs(gDistance) >= Math.abs(bDistance)) {
+					// Green must be the largest.
+					g = changeColourValue(g, gDistance);
+				} else {
+					// Blue must be the largest.
+					b = changeColourValue(b, bDistance);
+				}
+				lut[i] = (r << 16) | (g << 8) | b;
+			}
+			colourLUT = lut;
+		}
+		return colourLUT;
 	}
 
 	/*
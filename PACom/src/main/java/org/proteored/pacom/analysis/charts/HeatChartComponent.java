@@ -0,0 +1,67 @@
+package org.proteored.pacom.analysis.charts;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+
+import javax.swing.JComponent;
+
+/**
+ * Component that shows a {@link HeatChart} painting only the region of the
+ * chart that is visible (the clip of each paint), instead of creating an image
+ * of the whole chart. Tall heatmaps can be shown in a scroll pane without
+ * allocating an image of the size of the chart.
+ *
+ * @author Salva
+ *
+ */
+public class HeatChartComponent extends JComponent {
+	private static final long serialVersionUID = -1984305749357402877L;
+	private final HeatChart chart;
+
+	public HeatChartComponent(HeatChart chart) {
+		this.chart = chart;
+		setOpaque(true);
+		chartChanged();
+	}
+
+	/**
+	 * Updates the size of the component and repaints it. It has to be called
+	 * when the settings of the chart change.
+	 */
+	public void chartChanged() {
+		chart.measure();
+		final Dimension chartSize = chart.getChartSize();
+		setPreferredSize(new Dimension(chartSize.width, chartSize.height));
+		revalidate();
+		repaint();
+	}
+
+	public HeatChart getChart() {
+		return chart;
+	}
+
+	/**
+	 *
+	 * @return the region of the component in which the cells of the heat map
+	 *         are painted
+	 */
+	public Rectangle getHeatMapBounds() {
+		return chart.getHeatMapBounds();
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		final Graphics2D g2 = (Graphics2D) g.create();
+		try {
+			Rectangle clip = g2.getClipBounds();
+			if (clip == null) {
+				clip = new Rectangle(0, 0, getWidth(), getHeight());
+			}
+			chart.paintChart(g2, clip);
+		} finally {
+			g2.dispose();
+		}
+	}
+}
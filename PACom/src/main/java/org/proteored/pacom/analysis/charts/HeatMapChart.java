@@ -1,17 +1,16 @@
 package org.proteored.pacom.analysis.charts;
 
+import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
-import java.awt.Image;
 import java.awt.Toolkit;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import javax.swing.ImageIcon;
-import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
 
 import org.apache.log4j.Logger;
 
@@ -27,6 +26,8 @@ public class HeatMapChart {
 	private final int numColumns;
 	private static final int screenHeight = Toolkit.getDefaultToolkit().getScreenSize().height;
 	private final JPanel jPanel = new JPanel();
+	private HeatChartComponent chartComponent;
+	private HeatMapOverview overview;
 
 	/**
 	 * 
@@ -81,34 +82,33 @@ public class HeatMapChart {
 	}
 
 	private void addPicture() {
-		Image image = this.chart.getChartImage();
-		// printSize("chart", this.chart.getChartSize());
-		ImageIcon imageIcon = new ImageIcon(image);
-
-		JLabel label = new JLabel(imageIcon);
-		// printSize("label", label.getSize());
-		// Rule rule = new Rule(0, false);
-		// Set up the picture
-		// ScrollablePicture picture = new ScrollablePicture(imageIcon,
-		// rule.getIncrement());
-
-		// Set up the scroll pane.
-		// add(picture);
-
-		// final Long round1 = Math.round(this.chart.getChartSize().getWidth());
-		// final Long round2 =
-		// Math.round(this.chart.getChartSize().getHeight());
-		// this.pictureScrollPane.setPreferredSize(new
-		// Dimension(Integer.valueOf(round1.toString())
-		// + this.SIZE_MARGINS, Integer.valueOf(round2.toString()) +
-		// this.SIZE_MARGINS));
-		// jPanel.setViewportView(label);
+		if (chartComponent != null) {
+			chartComponent.chartChanged();
+			if (overview != null) {
+				overview.chartChanged();
+			}
+			return;
+		}
+		// the chart is painted by the component, only the visible part
+		chartComponent = new HeatChartComponent(chart);
 		jPanel.removeAll();
-		jPanel.add(label);
-
-		// jPanel.setViewportBorder(BorderFactory.createLineBorder(Color.black));
-		// printSize("panel", jPanel.getSize());
-
+		final Dimension chartSize = chart.getChartSize();
+		final int maxHeight = (int) (screenHeight * HEIGHT_PERCENTAJE_SCREEN);
+		if (chartSize.height > maxHeight) {
+			// tall heatmaps are shown in their own scroll pane, together with
+			// an overview of the whole heatmap
+			final JScrollPane scrollPane = new JScrollPane(chartComponent);
+			scrollPane.setBorder(null);
+			scrollPane.getVerticalScrollBar().setUnitIncrement(chart.getCellSize().height);
+			scrollPane.setPreferredSize(new Dimension(
+					chartSize.width + scrollPane.getVerticalScrollBar().getPreferredSize().width, maxHeight));
+			overview = new HeatMapOverview(chartComponent, scrollPane.getViewport());
+			jPanel.setLayout(new BorderLayout());
+			jPanel.add(scrollPane, BorderLayout.CENTER);
+			jPanel.add(overview, BorderLayout.EAST);
+		} else {
+			jPanel.add(chartComponent);
+		}
 	}
 
 	private void printSize(String string, Dimension size) {
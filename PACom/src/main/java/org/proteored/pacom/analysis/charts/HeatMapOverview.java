@@ -0,0 +1,103 @@
+package org.proteored.pacom.analysis.charts;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+
+import javax.swing.JComponent;
+import javax.swing.JViewport;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * Downsampled view of the whole heat map of a {@link HeatChartComponent} that
+ * is shown in a scroll pane. The region that is visible in the scroll pane is
+ * highlighted, and clicking or dragging on the overview scrolls the heat map
+ * to that position.
+ *
+ * @author Salva
+ *
+ */
+public class HeatMapOverview extends JComponent {
+	private static final long serialVersionUID = 3398172006452137431L;
+	private static final int DEFAULT_WIDTH = 60;
+	private final HeatChartComponent chartComponent;
+	private final JViewport viewport;
+	private BufferedImage overviewImage;
+
+	public HeatMapOverview(HeatChartComponent chartComponent, JViewport viewport) {
+		this.chartComponent = chartComponent;
+		this.viewport = viewport;
+		setPreferredSize(new Dimension(DEFAULT_WIDTH, 0));
+		setToolTipText("Overview of the whole heatmap. Click or drag to scroll it.");
+		viewport.addChangeListener(new ChangeListener() {
+			@Override
+			public void stateChanged(ChangeEvent e) {
+				repaint();
+			}
+		});
+		final MouseAdapter mouseAdapter = new MouseAdapter() {
+			@Override
+			public void mousePressed(MouseEvent e) {
+				scrollTo(e.getY());
+			}
+
+			@Override
+			public void mouseDragged(MouseEvent e) {
+				scrollTo(e.getY());
+			}
+		};
+		addMouseListener(mouseAdapter);
+		addMouseMotionListener(mouseAdapter);
+	}
+
+	/**
+	 * Renders the overview again. It has to be called when the colours of the
+	 * chart change.
+	 */
+	public void chartChanged() {
+		overviewImage = null;
+		repaint();
+	}
+
+	private void scrollTo(int y) {
+		final Rectangle heatMap = chartComponent.getHeatMapBounds();
+		final Rectangle view = viewport.getViewRect();
+		final int height = Math.max(1, getHeight());
+		// center the view in the clicked row
+		int viewY = heatMap.y + (int) ((long) y * heatMap.height / height) - view.height / 2;
+		viewY = Math.max(0, Math.min(viewY, chartComponent.getHeight() - view.height));
+		viewport.setViewPosition(new Point(view.x, viewY));
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		final int width = getWidth();
+		final int height = getHeight();
+		if (width <= 0 || height <= 0) {
+			return;
+		}
+		if (overviewImage == null || overviewImage.getWidth() != width || overviewImage.getHeight() != height) {
+			overviewImage = chartComponent.getChart().getOverviewImage(width, height);
+		}
+		g.drawImage(overviewImage, 0, 0, null);
+
+		// the region that is visible
+		final Rectangle heatMap = chartComponent.getHeatMapBounds();
+		if (heatMap.height > 0) {
+			final Rectangle view = viewport.getViewRect();
+			final int y1 = (int) ((long) Math.max(0, view.y - heatMap.y) * height / heatMap.height);
+			final int y2 = (int) ((long) Math.min(heatMap.height, view.y + view.height - heatMap.y) * height
+					/ heatMap.height);
+			g.setColor(new Color(255, 0, 0, 60));
+			g.fillRect(0, y1, width, Math.max(2, y2 - y1));
+			g.setColor(Color.RED);
+			g.drawRect(0, y1, width - 1, Math.max(2, y2 - y1));
+		}
+	}
+}
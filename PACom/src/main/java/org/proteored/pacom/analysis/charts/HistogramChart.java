@@ -77,6 +77,10 @@ public class HistogramChart {
 		return chartPanel;
 	}
 
+	public JFreeChart getChart() {
+		return chart;
+	}
+
 	private static JFreeChart createHistogram(String title, String subtitle, String xAxisLabel, String yAxisLabel,
 			IntervalXYDataset dataset, PlotOrientation orientation, boolean legend, boolean tooltips, boolean urls,
 			boolean bars) {
@@ -0,0 +1,212 @@
+package org.proteored.pacom.analysis.charts;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.proteored.miapeapi.exceptions.IllegalMiapeArgumentException;
+import org.proteored.miapeapi.experiment.model.IdentificationSet;
+import org.proteored.miapeapi.experiment.model.ProteinGroupOccurrence;
+import org.proteored.miapeapi.experiment.model.sort.ProteinGroupComparisonType;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+/**
+ * Sizes of all the regions of a Venn diagram of up to {@link #MAX_SETS} sets
+ * of identification items (peptides or proteins).<br>
+ * The keys of the items are interned once, and each one gets an int mask with
+ * a bit per set in which it is present, so that all the 2^k regions are
+ * counted in a single pass over the items of each set. The region of a mask is
+ * the number of items that are present in exactly the sets of the mask.
+ *
+ * @author Salva
+ *
+ */
+public class SetOverlaps {
+	public static final int MAX_SETS = 8;
+	private final int numSets;
+	// number of items per membership mask
+	private final int[] regionSizes;
+
+	/**
+	 *
+	 * @param keySets
+	 *            the keys of the items of each set
+	 */
+	public SetOverlaps(List<? extends Collection<?>> keySets) {
+		checkNumSets(keySets.size());
+		numSets = keySets.size();
+		final TObjectIntHashMap<Object> idsByKey = new TObjectIntHashMap<Object>(10, 0.5f, -1);
+		final TIntArrayList masks = new TIntArrayList();
+		for (int set = 0; set < numSets; set++) {
+			final int bit = 1 << set;
+			for (final Object key : keySets.get(set)) {
+				int id = idsByKey.get(key);
+				if (id == -1) {
+					id = masks.size();
+					idsByKey.put(key, id);
+					masks.add(bit);
+				} else {
+					masks.set(id, masks.get(id) | bit);
+				}
+			}
+		}
+		regionSizes = new int[1 << numSets];
+		for (int id = 0; id < masks.size(); id++) {
+			regionSizes[masks.get(id)]++;
+		}
+	}
+
+	private SetOverlaps(int numSets, int[] regionSizes) {
+		this.numSets = numSets;
+		this.regionSizes = regionSizes;
+	}
+
+	/**
+	 * Creates the overlaps from the sizes of the regions, already calculated
+	 *
+	 * @param numSets
+	 * @param regionSizes
+	 *            the number of items in exactly the sets of each mask
+	 * @return
+	 */
+	public static SetOverlaps fromRegionSizes(int numSets, int[] regionSizes) {
+		checkNumSets(numSets);
+		if (regionSizes.length != 1 << numSets) {
+			throw new IllegalArgumentException("There must be " + (1 << numSets) + " regions for " + numSets + " sets");
+		}
+		return new SetOverlaps(numSets, regionSizes.clone());
+	}
+
+	private static void checkNumSets(int numSets) {
+		if (numSets > MAX_SETS) {
+			throw new IllegalMiapeArgumentException(
+					"PACom can only represent Venn diagrams for up to " + MAX_SETS + " datasets");
+		}
+	}
+
+	/**
+	 * Overlaps of the peptides of some {@link IdentificationSet}s
+	 *
+	 * @param idSets
+	 * @param distModPeptides
+	 * @return
+	 */
+	public static SetOverlaps forPeptides(List<IdentificationSet> idSets, boolean distModPeptides) {
+		return new SetOverlaps(getPeptideKeys(idSets, distModPeptides));
+	}
+
+	/**
+	 *
+	 * @param idSets
+	 * @param distModPeptides
+	 * @return the keys of the peptides of each {@link IdentificationSet}
+	 */
+	public static List<Collection<String>> getPeptideKeys(List<IdentificationSet> idSets, boolean distModPeptides) {
+		final List<Collection<String>> keySets = new ArrayList<Collection<String>>();
+		for (final IdentificationSet idSet : idSets) {
+			keySets.add(idSet.getPeptideOccurrenceList(distModPeptides).keySet());
+		}
+		return keySets;
+	}
+
+	/**
+	 * Overlaps of the protein groups of some {@link IdentificationSet}s.<br>
+	 * Two protein groups are the same item if they have the same
+	 * {@link ProteinGroupOccurrence#getKey(ProteinGroupComparisonType)}, as in
+	 * the Venn diagrams of up to three sets.
+	 *
+	 * @param idSets
+	 * @param comparisonType
+	 * @return
+	 */
+	public static SetOverlaps forProteins(List<IdentificationSet> idSets, ProteinGroupComparisonType comparisonType) {
+		return new SetOverlaps(getProteinGroupKeys(idSets, comparisonType));
+	}
+
+	/**
+	 *
+	 * @param idSets
+	 * @param comparisonType
+	 * @return the keys of the protein groups of each {@link IdentificationSet}
+	 *         for the comparison type
+	 */
+	public static List<Collection<Object>> getProteinGroupKeys(List<IdentificationSet> idSets,
+			ProteinGroupComparisonType comparisonType) {
+		final List<Collection<Object>> keySets = new ArrayList<Collection<Object>>();
+		for (final IdentificationSet idSet : idSets) {
+			final Collection<ProteinGroupOccurrence> groups = idSet.getProteinGroupOccurrenceList().values();
+			final List<Object> keys = new ArrayList<Object>(groups.size());
+			for (final ProteinGroupOccurrence group : groups) {
+				keys.add(group.getKey(comparisonType));
+			}
+			keySets.add(keys);
+		}
+		return keySets;
+	}
+
+	public int getNumSets() {
+		return numSets;
+	}
+
+	/**
+	 *
+	 * @param mask
+	 *            a bit per set
+	 * @return the number of items present in exactly the sets of the mask
+	 */
+	public int getRegionSize(int mask) {
+		return regionSizes[mask];
+	}
+
+	/**
+	 *
+	 * @param mask
+	 *            a bit per set
+	 * @return the number of items present in all the sets of the mask (and
+	 *         maybe in others)
+	 */
+	public int getIntersectionSize(int mask) {
+		int ret = 0;
+		for (int region = 1; region < regionSizes.length; region++) {
+			if ((region & mask) == mask) {
+				ret += regionSizes[region];
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 *
+	 * @param mask
+	 *            a bit per set
+	 * @return the number of items present in any of the sets of the mask
+	 */
+	public int getUnionSize(int mask) {
+		int ret = 0;
+		for (int region = 1; region < regionSizes.length; region++) {
+			if ((region & mask) != 0) {
+				ret += regionSizes[region];
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 *
+	 * @param set
+	 * @return the number of items of a set
+	 */
+	public int getSize(int set) {
+		return getIntersectionSize(1 << set);
+	}
+
+	/**
+	 *
+	 * @return the number of items present in any of the sets
+	 */
+	public int getTotalSize() {
+		return getUnionSize((1 << numSets) - 1);
+	}
+}
@@ -4,14 +4,12 @@ import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Container;
 import java.awt.Image;
-import java.awt.Toolkit;
 import java.awt.Window;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -27,7 +25,6 @@ import javax.swing.JPanel;
 
 import org.apache.log4j.Logger;
 import org.jfree.chart.encoders.ImageFormat;
-import org.proteored.miapeapi.exceptions.IllegalMiapeArgumentException;
 import org.proteored.miapeapi.experiment.VennData;
 import org.proteored.miapeapi.experiment.VennDataForPeptides;
 import org.proteored.miapeapi.experiment.VennDataForProteins;
@@ -55,34 +52,27 @@ public class VennChart {
 	// ALL_PROTEINS, FIRST_PROTEIN, BEST_PROTEIN, SHARE_ONE_PROTEIN
 	// };
 
+	// null when there are more than 3 datasets
 	private final org.proteored.miapeapi.experiment.VennData vennData;
-	private Color color1 = ColorGenerator.hex2Rgb("FF6342");
-	private Color color2 = ColorGenerator.hex2Rgb("ADDE63");
-	private Color color3 = ColorGenerator.hex2Rgb("63C6DE");
-	private String title;
-	private String label1;
-	private String label2;
-	private String label3;
+	private final SetOverlaps overlaps;
+	private final List<String> names = new ArrayList<String>();
+	private final List<String> labels = new ArrayList<String>();
+	private final List<Color> colors = new ArrayList<Color>();
 	private final String originalTitle;
 
 	public VennChart(String title, IdentificationSet idset1, String label1, IdentificationSet idset2, String label2,
 			IdentificationSet idset3, String label3, IdentificationItemEnum plotItem, Boolean distModPep,
 			ProteinGroupComparisonType proteinGroupComparisonType, Color color1, Color color2, Color color3) {
 		this.originalTitle = title;
-		if (title != null)
-			this.title = title.replace(" ", "%20");
-		if (label1 != null)
-			this.label1 = label1.replace(" ", "%20");
-		if (label2 != null)
-			this.label2 = label2.replace(" ", "%20");
-		if (label3 != null)
-			this.label3 = label3.replace(" ", "%20");
 		if (idset1 != null)
 			name1 = idset1.getFullName();
 		if (idset2 != null)
 			name2 = idset2.getFullName();
 		if (idset3 != null)
 			name3 = idset3.getFullName();
+		addSeries(name1, label1, ColorGenerator.hex2Rgb("FF6342"));
+		addSeries(name2, label2, ColorGenerator.hex2Rgb("ADDE63"));
+		addSeries(name3, label3, ColorGenerator.hex2Rgb("63C6DE"));
 		setColor1(color1);
 		setColor2(color2);
 		setColor3(color3);
@@ -101,14 +91,6 @@ public class VennChart {
 			this.vennData = new VennDataForProteins(proteinGroupOccurrenceList1, proteinGroupOccurrenceList2,
 					proteinGroupOccurrenceList3, proteinGroupComparisonType);
 
-			try {
-				updateChart();
-				return;
-			} catch (MalformedURLException e) {
-				e.printStackTrace();
-				throw new IllegalMiapeArgumentException(e.getMessage());
-			}
-
 		} else {
 			Collection pepList1 = null;
 			Collection pepList2 = null;
@@ -121,174 +103,131 @@ public class VennChart {
 				pepList3 = idset3.getPeptideOccurrenceList(distModPep).values();// getPeptideHash(idset3,
 			// distModPep);
 			this.vennData = new VennDataForPeptides(pepList1, pepList2, pepList3);
-			try {
-				updateChart();
-				return;
-			} catch (MalformedURLException e) {
-				e.printStackTrace();
-				throw new IllegalMiapeArgumentException(e.getMessage());
-			}
 		}
+		overlaps = getOverlaps(vennData);
+		updateChart();
 	}
 
-	public void updateChart() throws MalformedURLException {
-		URL url = createChartURL(title, label1, label2, label3);
-		addPicture(url);
-	}
-
-	public Collection<Object> getJustIn1() {
-		return this.vennData.getUniqueTo1();
-	}
-
-	public Collection<Object> getJustIn2() {
-		return this.vennData.getUniqueTo2();
+	/**
+	 * Venn diagram of up to {@link SetOverlaps#MAX_SETS} datasets. The overlaps
+	 * are calculated in a single pass over the items of each dataset, but the
+	 * items of each region are not kept, so {@link #getVennData()} returns
+	 * null.
+	 *
+	 * @param title
+	 * @param idSets
+	 * @param labels
+	 *            one per dataset
+	 * @param plotItem
+	 * @param distModPep
+	 * @param proteinGroupComparisonType
+	 * @param colors
+	 *            one per dataset, or null
+	 */
+	public VennChart(String title, List<IdentificationSet> idSets, List<String> labels,
+			IdentificationItemEnum plotItem, Boolean distModPep, ProteinGroupComparisonType proteinGroupComparisonType,
+			List<Color> colors) {
+		this.originalTitle = title;
+		for (int i = 0; i < idSets.size(); i++) {
+			Color color = null;
+			if (colors != null && i < colors.size()) {
+				color = colors.get(i);
+			}
+			addSeries(idSets.get(i).getFullName(), labels.get(i), color);
+		}
+		this.vennData = null;
+		if (plotItem.equals(IdentificationItemEnum.PROTEIN)) {
+			overlaps = SetOverlaps.forProteins(idSets, proteinGroupComparisonType);
+		} else {
+			overlaps = SetOverlaps.forPeptides(idSets, distModPep);
+		}
+		updateChart();
 	}
 
-	public Collection<Object> getJustIn3() {
-		return this.vennData.getUniqueTo3();
+	private void addSeries(String name, String label, Color color) {
+		if (name == null) {
+			return;
+		}
+		names.add(name);
+		labels.add(label);
+		colors.add(color);
 	}
 
 	/**
-	 * @return the panel
+	 * Gets the sizes of the regions of the diagram from the sizes of the
+	 * intersections of the {@link VennData}
 	 */
-	public JPanel getChartPanel() {
-		return chartPanel;
-	}
-
-	private URL createChartURL(String title, String label1, String label2, String label3) throws MalformedURLException {
-		StringBuilder sb = new StringBuilder();
-		sb.append("http://chart.apis.google.com/chart?chs=547x547");
-		sb.append("&chd=t:" + getDataString(vennData));
-		sb.append("&cht=v");
-
-		sb.append("&chdl=");
-		final String listString1 = getListString(label1, vennData.getSize1());
-		final String listString2 = getListString(label2, vennData.getSize2());
-		final String listString3 = getListString(label3, vennData.getSize3());
-		sb.append(listString1);
-		if (!"".equals(listString1) && !"".equals(listString2))
-			sb.append("|");
-
-		sb.append(listString2);
-		if (!"".equals(listString2) && !"".equals(listString3))
-			sb.append("|");
-
-		sb.append(listString3);
-
-		// sb.append("&chdl=" + label1 + "(" + this.list1.size() + ")|" + label2
-		// + "("
-		// + this.list2.size() + ")|" + label3 + "(" + this.list3.size() + ")");
-		sb.append("&chtt=" + title);
-		sb.append("&chds=0," + vennData.getMaxCollectionSize());
-		sb.append("&chdlp=b&chma=|10,10");
-		// colors:
-		sb.append("&chco=");
-		if (label1 != null) {
-			sb.append(getRGBHEX(getColor1()));
-		}
-		if (label2 != null) {
-			if (label1 != null) {
-				sb.append(",");
+	private SetOverlaps getOverlaps(VennData vennData) {
+		final int numSets = names.size();
+		final int[] regionSizes = new int[1 << numSets];
+		if (numSets == 2) {
+			// the datasets can be 1 and 2, 1 and 3 or 2 and 3
+			final Integer size1 = vennData.getSize1() != null ? vennData.getSize1() : vennData.getSize2();
+			final Integer size2 = vennData.getSize3() != null ? vennData.getSize3() : vennData.getSize2();
+			int intersection;
+			if (vennData.getSize1() != null && vennData.getSize2() != null) {
+				intersection = intersection12 = vennData.getIntersection12Size();
+			} else if (vennData.getSize1() != null) {
+				intersection = intersection13 = vennData.getIntersection13Size();
+			} else {
+				intersection = intersection23 = vennData.getIntersection23Size();
 			}
-			sb.append(getRGBHEX(getColor2()));
+			regionSizes[1] = size1 - intersection;
+			regionSizes[2] = size2 - intersection;
+			regionSizes[3] = intersection;
+		} else if (numSets == 3) {
+			intersection12 = vennData.getIntersection12Size();
+			intersection13 = vennData.getIntersection13Size();
+			intersection23 = vennData.getIntersection23Size();
+			intersection123 = vennData.getIntersection123Size();
+			regionSizes[7] = intersection123;
+			regionSizes[3] = intersection12 - intersection123;
+			regionSizes[5] = intersection13 - intersection123;
+			regionSizes[6] = intersection23 - intersection123;
+			regionSizes[1] = vennData.getSize1() - regionSizes[3] - regionSizes[5] - intersection123;
+			regionSizes[2] = vennData.getSize2() - regionSizes[3] - regionSizes[6] - intersection123;
+			regionSizes[4] = vennData.getSize3() - regionSizes[5] - regionSizes[6] - intersection123;
 		}
-		if (label3 != null) {
-			if (label2 != null || label3 != null) {
-				sb.append(",");
-			}
-			sb.append(getRGBHEX(getColor3()));
+		if (intersection123 == null) {
+			intersection123 = vennData.getIntersection123Size();
 		}
-		log.debug("URL created=" + sb.toString());
-		return new URL(sb.toString());
-		// return new URL(
-		// "https://chart.googleapis.com/chart?chs=400x300&chd=t:100,80,60,30,30,30,10"
-		// +
-		// "&cht=v&chl=Hello|World|asdf&chtt=Titulo");
-		// }
+		return SetOverlaps.fromRegionSizes(numSets, regionSizes);
 	}
 
-	private String getRGBHEX(Color color) {
-
-		int transparency = color.getAlpha();
-		String format = String.format("%02x", transparency);
-		String replace = ColorGenerator.getHexString(color).replace("#", "");
-		String string = replace + format;
-		return string;
+	/**
+	 * Draws the diagram again, with the current colors
+	 */
+	public void updateChart() {
+		image = VennDiagramRenderer.render(overlaps, originalTitle, labels, colors, getImageWidth(),
+				VennDiagramRenderer.DEFAULT_HEIGHT);
+		addPicture();
 	}
 
-	private Color getColor1() {
-		return color1;
+	private int getImageWidth() {
+		if (overlaps.getNumSets() > 4) {
+			// a column per region
+			return VennDiagramRenderer.DEFAULT_WIDTH * 3 / 2;
+		}
+		return VennDiagramRenderer.DEFAULT_WIDTH;
 	}
 
-	private Color getColor2() {
-		return color2;
+	public Collection<Object> getJustIn1() {
+		return this.vennData.getUniqueTo1();
 	}
 
-	private Color getColor3() {
-		return color3;
+	public Collection<Object> getJustIn2() {
+		return this.vennData.getUniqueTo2();
 	}
 
-	private String getListString(String label, Integer size) {
-		if (size != null)
-			return label + "(" + size + ")";
-		return "";
+	public Collection<Object> getJustIn3() {
+		return this.vennData.getUniqueTo3();
 	}
 
-	private String getDataString(VennData vennData) {
-		StringBuilder sb = new StringBuilder();
-		// The first three values specify the sizes of three circles: A, B, and
-		// C. For a chart with
-		// only two circles, specify zero for the third value.
-
-		Integer size1 = vennData.getSize1();
-		Integer size2 = vennData.getSize2();
-		Integer size3 = vennData.getSize3();
-		if (size1 != null) {
-			sb.append(size1);
-		} else {
-			sb.append(0);
-		}
-		sb.append(",");
-		if (size2 != null) {
-			sb.append(size2);
-		} else {
-			sb.append(0);
-		}
-		sb.append(",");
-		if (size3 != null) {
-			sb.append(size3);
-		} else {
-			sb.append(0);
-		}
-
-		// The fourth value specifies the size of the intersection of A and B.
-		if (size1 != null && size2 != null) {
-			this.intersection12 = vennData.getIntersection12Size();
-			sb.append("," + intersection12);
-		}
-		// The fifth value specifies the size of the intersection of A and C.
-		// For a chart with only
-		// two circles, do not specify a value here.
-		if (size1 != null && size3 != null) {
-			this.intersection13 = vennData.getIntersection13Size();
-			sb.append("," + intersection13);
-		}
-		// The sixth value specifies the size of the intersection of B and C.
-		// For a chart with only
-		// two circles, do not specify a value here.
-		if (size2 != null && size3 != null) {
-			this.intersection23 = vennData.getIntersection23Size();
-			sb.append("," + intersection23);
-		}
-
-		// The seventh value specifies the size of the common intersection of A,
-		// B, and C. For a
-		// chart with only two circles, do not specify a value here.
-		this.intersection123 = vennData.getIntersection123Size();
-		if (this.intersection123 > 0)
-			sb.append("," + intersection123);
-
-		return sb.toString();
+	/**
+	 * @return the panel
+	 */
+	public JPanel getChartPanel() {
+		return chartPanel;
 	}
 
 	// private int getIntersection(List<ProteinGroup> list1,
@@ -370,9 +309,7 @@ public class VennChart {
 		return count;
 	}
 
-	private void addPicture(URL url) {
-		this.image = getImageFromURL(url);
-
+	private void addPicture() {
 		String imageDescription = "Venn diagram";
 		ImageIcon imageIcon = new ImageIcon(image, imageDescription);
 		// Rule rule = new Rule(0,false);
@@ -400,18 +337,6 @@ public class VennChart {
 		}
 	}
 
-	private Image getImageFromURL(URL url) {
-		try {
-			image = Toolkit.getDefaultToolkit().createImage(url);
-		} catch (SecurityException e) {
-			throw new IllegalMiapeArgumentException(e.getMessage());
-		}
-		if (image == null)
-			throw new IllegalMiapeArgumentException(
-					"It is not possible to reach the URL: " + url + ". Check the internet connection.");
-		return image;
-	}
-
 	public String saveImage(File outputFile) throws IOException {
 		this.saveToFile(outputFile);
 		return outputFile.getAbsolutePath();
@@ -493,6 +418,9 @@ public class VennChart {
 	}
 
 	public String getIntersectionsText(String experiment) {
+		if (vennData == null) {
+			return getRegionsText(experiment);
+		}
 		StringBuilder sb = new StringBuilder();
 		DecimalFormat df = new DecimalFormat("#.#");
 
@@ -593,36 +521,85 @@ public class VennChart {
 	}
 
 	/**
-	 * @return
+	 * Text with the size of each dataset and of each region of the diagram,
+	 * used when there are more than 3 datasets
+	 */
+	private String getRegionsText(String experiment) {
+		StringBuilder sb = new StringBuilder();
+		DecimalFormat df = new DecimalFormat("#.#");
+
+		if (experiment != null)
+			sb.append("<b>" + experiment + "</b><br>");
+		int union = overlaps.getTotalSize();
+		for (int i = 0; i < names.size(); i++) {
+			sb.append("<br> " + getSetLetter(i) + " -> " + names.get(i) + " = " + overlaps.getSize(i) + " ("
+					+ df.format(getPercentage(overlaps.getSize(i), union)) + "% of union)");
+		}
+		sb.append("<br>");
+		sb.append("<br>Union=" + union + " (100%)");
+		int all = (1 << names.size()) - 1;
+		sb.append("<br>Overlap (all) = " + overlaps.getIntersectionSize(all) + " ("
+				+ df.format(getPercentage(overlaps.getIntersectionSize(all), union)) + "% of union)");
+		for (int region = 1; region <= all; region++) {
+			int size = overlaps.getRegionSize(region);
+			if (size == 0) {
+				continue;
+			}
+			StringBuilder regionName = new StringBuilder();
+			for (int i = 0; i < names.size(); i++) {
+				if ((region & (1 << i)) != 0) {
+					if (regionName.length() > 0)
+						regionName.append(",");
+					regionName.append(getSetLetter(i));
+				}
+			}
+			sb.append("<br>Just in " + regionName + " = " + size + " (" + df.format(getPercentage(size, union))
+					+ "% of union)");
+		}
+		sb.append("<br><br>");
+
+		return sb.toString();
+	}
+
+	private String getSetLetter(int index) {
+		return String.valueOf((char) ('A' + index));
+	}
+
+	private double getPercentage(int size, int total) {
+		if (total == 0)
+			return 0.0;
+		return size * 100.0 / total;
+	}
+
+	/**
+	 * @return the data of the diagram, or null if there are more than 3
+	 *         datasets
 	 */
 	public VennData getVennData() {
 		return this.vennData;
 	}
 
 	public void setColor1(Color color1) {
-		if (color1 != null)
-			this.color1 = color1;
+		setColor(0, color1);
 	}
 
 	public void setColor2(Color color2) {
-		if (color2 != null)
-			this.color2 = color2;
+		setColor(1, color2);
 	}
 
 	public void setColor3(Color color3) {
-		if (color3 != null)
-			this.color3 = color3;
+		setColor(2, color3);
+	}
+
+	private void setColor(int index, Color color) {
+		if (color != null && index < colors.size())
+			colors.set(index, color);
 	}
 
 	public void setColorToSeries(String seriesName, Color color) {
-		if (this.name1 != null && name1.equals(seriesName)) {
-			setColor1(color);
-		}
-		if (this.name2 != null && name2.equals(seriesName)) {
-			setColor2(color);
-		}
-		if (this.name3 != null && name3.equals(seriesName)) {
-			setColor3(color);
+		final int index = names.indexOf(seriesName);
+		if (index != -1) {
+			setColor(index, color);
 		}
 	}
 
@@ -0,0 +1,456 @@
+package org.proteored.pacom.analysis.charts;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Draws Venn diagrams locally with Java2D from the sizes of the regions of a
+ * {@link SetOverlaps}:
+ * <ul>
+ * <li>2 or 3 sets: circles with areas proportional to the size of the sets,
+ * placed so that the areas of the pairwise overlaps approximate the size of
+ * the intersections (Euler diagram).</li>
+ * <li>4 sets: four ellipses, showing all the 15 regions.</li>
+ * <li>More sets: the size of each non empty region as a bar, over a matrix
+ * showing the sets of each region.</li>
+ * </ul>
+ * The number of items of each region is written in the point of the region
+ * that is the furthest from its borders.
+ *
+ * @author Salva
+ *
+ */
+public class VennDiagramRenderer {
+	public static final int DEFAULT_WIDTH = 547;
+	public static final int DEFAULT_HEIGHT = 547;
+	private static final int MARGIN = 10;
+	// size of the cells used to locate the regions
+	private static final int CELL_SIZE = 3;
+	private static final int MAX_BARS = 40;
+	private static final Font TITLE_FONT = new Font("SansSerif", Font.BOLD, 14);
+	private static final Font LABEL_FONT = new Font("SansSerif", Font.PLAIN, 12);
+	private static final Font COUNT_FONT = new Font("SansSerif", Font.BOLD, 12);
+
+	private VennDiagramRenderer() {
+	}
+
+	/**
+	 *
+	 * @param overlaps
+	 * @param title
+	 * @param labels
+	 *            one per set
+	 * @param colors
+	 *            one per set
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public static BufferedImage render(SetOverlaps overlaps, String title, List<String> labels, List<Color> colors,
+			int width, int height) {
+		final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		final Graphics2D g = image.createGraphics();
+		try {
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+			g.setColor(Color.white);
+			g.fillRect(0, 0, width, height);
+
+			int top = MARGIN;
+			if (title != null && !"".equals(title)) {
+				g.setFont(TITLE_FONT);
+				g.setColor(Color.black);
+				final FontMetrics metrics = g.getFontMetrics();
+				top += metrics.getAscent();
+				drawCentered(g, title, width / 2, top);
+				top += metrics.getDescent() + MARGIN;
+			}
+			final Rectangle2D area = new Rectangle2D.Double(MARGIN, top, width - 2 * MARGIN, height - top - MARGIN);
+			if (overlaps.getNumSets() > 4) {
+				drawRegionBars(g, overlaps, labels, colors, area);
+			} else {
+				// legend at the bottom
+				g.setFont(LABEL_FONT);
+				final int legendHeight = drawLegend(g, overlaps, labels, colors, width, height - MARGIN);
+				area.setRect(area.getX(), area.getY(), area.getWidth(), area.getHeight() - legendHeight - MARGIN);
+				final List<Shape> shapes = overlaps.getNumSets() == 4 ? getEllipses(area)
+						: getProportionalCircles(overlaps, area);
+				drawShapes(g, overlaps, shapes, colors, area);
+			}
+		} finally {
+			g.dispose();
+		}
+		return image;
+	}
+
+	private static void drawCentered(Graphics2D g, String text, int x, int baseline) {
+		g.drawString(text, x - g.getFontMetrics().stringWidth(text) / 2, baseline);
+	}
+
+	private static Color getColor(List<Color> colors, int set, int alpha) {
+		Color color = null;
+		if (colors != null && set < colors.size()) {
+			color = colors.get(set);
+		}
+		if (color == null) {
+			color = Color.gray;
+		}
+		return new Color(color.getRed(), color.getGreen(), color.getBlue(), alpha);
+	}
+
+	private static String getLabel(List<String> labels, int set) {
+		if (labels != null && set < labels.size() && labels.get(set) != null) {
+			return labels.get(set);
+		}
+		return String.valueOf((char) ('A' + set));
+	}
+
+	/**
+	 * Draws the legend in as many lines as needed, centered in the width of
+	 * the image, and ending at the given y
+	 *
+	 * @return the height of the legend
+	 */
+	private static int drawLegend(Graphics2D g, SetOverlaps overlaps, List<String> labels, List<Color> colors,
+			int width, int bottom) {
+		final FontMetrics metrics = g.getFontMetrics();
+		final int boxSize = metrics.getAscent();
+		// the items of each line
+		final List<List<Integer>> lines = new ArrayList<List<Integer>>();
+		final TIntArrayList lineWidths = new TIntArrayList();
+		final String[] texts = new String[overlaps.getNumSets()];
+		for (int set = 0; set < texts.length; set++) {
+			texts[set] = getLabel(labels, set) + " (" + overlaps.getSize(set) + ")";
+			final int itemWidth = boxSize + 4 + metrics.stringWidth(texts[set]) + 2 * MARGIN;
+			if (lines.isEmpty() || lineWidths.get(lines.size() - 1) + itemWidth > width - 2 * MARGIN) {
+				lines.add(new ArrayList<Integer>());
+				lineWidths.add(0);
+			}
+			lines.get(lines.size() - 1).add(set);
+			lineWidths.set(lines.size() - 1, lineWidths.get(lines.size() - 1) + itemWidth);
+		}
+		final int height = lines.size() * metrics.getHeight();
+		int baseline = bottom - height + metrics.getAscent();
+		for (int line = 0; line < lines.size(); line++) {
+			int x = Math.max(MARGIN, (width - lineWidths.get(line)) / 2 + MARGIN);
+			for (final int set : lines.get(line)) {
+				g.setColor(getColor(colors, set, 255));
+				g.fillRect(x, baseline - boxSize, boxSize, boxSize);
+				x += boxSize + 4;
+				g.setColor(Color.black);
+				g.drawString(texts[set], x, baseline);
+				x += metrics.stringWidth(texts[set]) + 2 * MARGIN;
+			}
+			baseline += metrics.getHeight();
+		}
+		return height;
+	}
+
+	private static void drawShapes(Graphics2D g, SetOverlaps overlaps, List<Shape> shapes, List<Color> colors,
+			Rectangle2D area) {
+		for (int set = 0; set < shapes.size(); set++) {
+			g.setColor(getColor(colors, set, 110));
+			g.fill(shapes.get(set));
+		}
+		g.setStroke(new BasicStroke(1.5f));
+		for (int set = 0; set < shapes.size(); set++) {
+			g.setColor(getColor(colors, set, 255).darker());
+			g.draw(shapes.get(set));
+		}
+		// the number of items of each region
+		g.setFont(COUNT_FONT);
+		g.setColor(Color.black);
+		final FontMetrics metrics = g.getFontMetrics();
+		final int[][] labelPoints = getRegionLabelPoints(shapes, area);
+		for (int region = 1; region < labelPoints.length; region++) {
+			final int size = overlaps.getRegionSize(region);
+			if (size > 0 && labelPoints[region] != null) {
+				drawCentered(g, String.valueOf(size), labelPoints[region][0],
+						labelPoints[region][1] + metrics.getAscent() / 2);
+			}
+		}
+	}
+
+	/**
+	 * Locates the point of each region that is the furthest from the borders
+	 * of the region, by rasterizing the region of each cell of the area and
+	 * calculating the distance of the cells to the borders.
+	 *
+	 * @return the point of each region (by mask) or null if the region is not
+	 *         shown
+	 */
+	private static int[][] getRegionLabelPoints(List<Shape> shapes, Rectangle2D area) {
+		final int columns = Math.max(1, (int) (area.getWidth() / CELL_SIZE));
+		final int rows = Math.max(1, (int) (area.getHeight() / CELL_SIZE));
+		final int[] masks = new int[columns * rows];
+		for (int row = 0; row < rows; row++) {
+			final double y = area.getY() + (row + 0.5) * CELL_SIZE;
+			for (int column = 0; column < columns; column++) {
+				final double x = area.getX() + (column + 0.5) * CELL_SIZE;
+				int mask = 0;
+				for (int set = 0; set < shapes.size(); set++) {
+					if (shapes.get(set).contains(x, y)) {
+						mask |= 1 << set;
+					}
+				}
+				masks[row * columns + column] = mask;
+			}
+		}
+		// distance to the border of the region, in cells (breadth first search
+		// from the cells that have a neighbour of other region)
+		final int[] distances = new int[masks.length];
+		final TIntArrayList queue = new TIntArrayList();
+		for (int cell = 0; cell < masks.length; cell++) {
+			final int row = cell / columns;
+			final int column = cell % columns;
+			if (row == 0 || column == 0 || row == rows - 1 || column == columns - 1
+					|| masks[cell - 1] != masks[cell] || masks[cell + 1] != masks[cell]
+					|| masks[cell - columns] != masks[cell] || masks[cell + columns] != masks[cell]) {
+				distances[cell] = 0;
+				queue.add(cell);
+			} else {
+				distances[cell] = -1;
+			}
+		}
+		for (int i = 0; i < queue.size(); i++) {
+			final int cell = queue.get(i);
+			final int row = cell / columns;
+			final int column = cell % columns;
+			final int[] neighbours = { row > 0 ? cell - columns : -1, row < rows - 1 ? cell + columns : -1,
+					column > 0 ? cell - 1 : -1, column < columns - 1 ? cell + 1 : -1 };
+			for (final int neighbour : neighbours) {
+				if (neighbour != -1 && distances[neighbour] == -1) {
+					distances[neighbour] = distances[cell] + 1;
+					queue.add(neighbour);
+				}
+			}
+		}
+		final int[][] ret = new int[1 << shapes.size()][];
+		final int[] bestDistances = new int[ret.length];
+		for (int cell = 0; cell < masks.length; cell++) {
+			final int mask = masks[cell];
+			if (ret[mask] == null || distances[cell] > bestDistances[mask]) {
+				bestDistances[mask] = distances[cell];
+				ret[mask] = new int[] { (int) (area.getX() + (cell % columns + 0.5) * CELL_SIZE),
+						(int) (area.getY() + (cell / columns + 0.5) * CELL_SIZE) };
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Four ellipses that show all the regions of 4 sets
+	 */
+	private static List<Shape> getEllipses(Rectangle2D area) {
+		final double size = Math.min(area.getWidth(), area.getHeight());
+		final double x0 = area.getCenterX() - size / 2;
+		final double y0 = area.getCenterY() - size / 2;
+		// center x, center y, angle, in a unit square
+		final double[][] ellipses = { { 0.35, 0.6, 40 }, { 0.45, 0.5, 40 }, { 0.544, 0.5, -40 },
+				{ 0.644, 0.6, -40 } };
+		final double width = 0.72 * size;
+		final double height = 0.45 * size;
+		final List<Shape> ret = new ArrayList<Shape>();
+		for (final double[] ellipse : ellipses) {
+			final double centerX = x0 + ellipse[0] * size;
+			final double centerY = y0 + ellipse[1] * size;
+			final Shape shape = new Ellipse2D.Double(centerX - width / 2, centerY - height / 2, width, height);
+			ret.add(AffineTransform.getRotateInstance(Math.toRadians(ellipse[2]), centerX, centerY)
+					.createTransformedShape(shape));
+		}
+		return ret;
+	}
+
+	/**
+	 * Circles with areas proportional to the sizes of the sets, with the
+	 * distance between each pair of circles chosen so that the area of their
+	 * overlap is proportional to the size of their intersection
+	 */
+	private static List<Shape> getProportionalCircles(SetOverlaps overlaps, Rectangle2D area) {
+		final int numSets = overlaps.getNumSets();
+		final double[] radius = new double[numSets];
+		double maxRadius = 0;
+		for (int set = 0; set < numSets; set++) {
+			radius[set] = Math.sqrt(overlaps.getSize(set) / Math.PI);
+			maxRadius = Math.max(maxRadius, radius[set]);
+		}
+		if (maxRadius == 0) {
+			maxRadius = 1;
+		}
+		// empty sets are drawn as small circles
+		for (int set = 0; set < numSets; set++) {
+			radius[set] = Math.max(radius[set], maxRadius / 10);
+		}
+		final double[] x = new double[numSets];
+		final double[] y = new double[numSets];
+		if (numSets > 1) {
+			final double d01 = getDistance(radius[0], radius[1], overlaps, 0, 1);
+			x[1] = d01;
+			if (numSets > 2) {
+				final double d02 = getDistance(radius[0], radius[2], overlaps, 0, 2);
+				double d12 = getDistance(radius[1], radius[2], overlaps, 1, 2);
+				// the three distances have to make a triangle
+				d12 = Math.max(Math.abs(d01 - d02), Math.min(d01 + d02, d12));
+				final double cos = d01 == 0 || d02 == 0 ? 1 : (d01 * d01 + d02 * d02 - d12 * d12) / (2 * d01 * d02);
+				final double angle = Math.acos(Math.max(-1, Math.min(1, cos)));
+				x[2] = d02 * Math.cos(angle);
+				y[2] = d02 * Math.sin(angle);
+			}
+		}
+		// fit in the area
+		double minX = Double.MAX_VALUE;
+		double minY = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE;
+		double maxY = -Double.MAX_VALUE;
+		for (int set = 0; set < numSets; set++) {
+			minX = Math.min(minX, x[set] - radius[set]);
+			minY = Math.min(minY, y[set] - radius[set]);
+			maxX = Math.max(maxX, x[set] + radius[set]);
+			maxY = Math.max(maxY, y[set] + radius[set]);
+		}
+		final double scale = Math.min(area.getWidth() / (maxX - minX), area.getHeight() / (maxY - minY));
+		final double offsetX = area.getCenterX() - (minX + maxX) / 2 * scale;
+		final double offsetY = area.getCenterY() - (minY + maxY) / 2 * scale;
+		final List<Shape> ret = new ArrayList<Shape>();
+		for (int set = 0; set < numSets; set++) {
+			final double r = radius[set] * scale;
+			ret.add(new Ellipse2D.Double(offsetX + x[set] * scale - r, offsetY + y[set] * scale - r, 2 * r, 2 * r));
+		}
+		return ret;
+	}
+
+	/**
+	 * Distance between the centers of two circles so that the area of their
+	 * overlap is the size of the intersection of the two sets
+	 */
+	private static double getDistance(double r1, double r2, SetOverlaps overlaps, int set1, int set2) {
+		final double intersection = overlaps.getIntersectionSize((1 << set1) | (1 << set2));
+		if (intersection <= 0) {
+			// a small gap between them
+			return (r1 + r2) * 1.05;
+		}
+		final double maxOverlap = Math.PI * Math.pow(Math.min(r1, r2), 2);
+		if (intersection >= maxOverlap) {
+			return Math.abs(r1 - r2);
+		}
+		// the overlap decreases with the distance
+		double min = Math.abs(r1 - r2);
+		double max = r1 + r2;
+		for (int i = 0; i < 50; i++) {
+			final double distance = (min + max) / 2;
+			if (getOverlapArea(r1, r2, distance) > intersection) {
+				min = distance;
+			} else {
+				max = distance;
+			}
+		}
+		return (min + max) / 2;
+	}
+
+	private static double getOverlapArea(double r1, double r2, double d) {
+		if (d >= r1 + r2) {
+			return 0;
+		}
+		if (d <= Math.abs(r1 - r2)) {
+			return Math.PI * Math.pow(Math.min(r1, r2), 2);
+		}
+		final double a1 = r1 * r1 * Math.acos((d * d + r1 * r1 - r2 * r2) / (2 * d * r1));
+		final double a2 = r2 * r2 * Math.acos((d * d + r2 * r2 - r1 * r1) / (2 * d * r2));
+		final double a3 = 0.5 * Math.sqrt((-d + r1 + r2) * (d + r1 - r2) * (d - r1 + r2) * (d + r1 + r2));
+		return a1 + a2 - a3;
+	}
+
+	/**
+	 * For more than 4 sets: a bar per non empty region, sorted by size, with
+	 * a matrix below showing the sets of each region
+	 */
+	private static void drawRegionBars(Graphics2D g, SetOverlaps overlaps, List<String> labels, List<Color> colors,
+			Rectangle2D area) {
+		final int numSets = overlaps.getNumSets();
+		// non empty regions, sorted by size. The size and the region are
+		// packed in a long to sort them without boxing
+		final long[] packed = new long[1 << numSets];
+		int numRegions = 0;
+		for (int region = 1; region < 1 << numSets; region++) {
+			final int size = overlaps.getRegionSize(region);
+			if (size > 0) {
+				packed[numRegions++] = ((long) (Integer.MAX_VALUE - size) << 32) | region;
+			}
+		}
+		Arrays.sort(packed, 0, numRegions);
+		final TIntArrayList sortedRegions = new TIntArrayList();
+		for (int i = 0; i < numRegions && i < MAX_BARS; i++) {
+			sortedRegions.add((int) packed[i]);
+		}
+
+		g.setFont(LABEL_FONT);
+		final FontMetrics metrics = g.getFontMetrics();
+		int labelWidth = 0;
+		final String[] setLabels = new String[numSets];
+		for (int set = 0; set < numSets; set++) {
+			setLabels[set] = getLabel(labels, set) + " (" + overlaps.getSize(set) + ")";
+			labelWidth = Math.max(labelWidth, metrics.stringWidth(setLabels[set]));
+		}
+		final double rowHeight = Math.min(20, area.getHeight() / 2 / numSets);
+		final double matrixTop = area.getMaxY() - numSets * rowHeight;
+		final double barsLeft = area.getX() + labelWidth + MARGIN;
+		final double columnWidth = (area.getMaxX() - barsLeft) / Math.max(1, sortedRegions.size());
+		final double barsTop = area.getY() + metrics.getHeight();
+		final double barsBottom = matrixTop - MARGIN;
+		final int maxSize = sortedRegions.isEmpty() ? 1 : overlaps.getRegionSize(sortedRegions.get(0));
+
+		// set labels
+		for (int set = 0; set < numSets; set++) {
+			final double rowCenter = matrixTop + (set + 0.5) * rowHeight;
+			g.setColor(getColor(colors, set, 40));
+			g.fill(new Rectangle2D.Double(area.getX(), rowCenter - rowHeight / 2, area.getWidth(), rowHeight));
+			g.setColor(Color.black);
+			g.drawString(setLabels[set], (int) area.getX(), (int) (rowCenter + metrics.getAscent() / 2.0 - 1));
+		}
+		final double dotSize = Math.min(rowHeight, columnWidth) * 0.6;
+		for (int i = 0; i < sortedRegions.size(); i++) {
+			final int region = sortedRegions.get(i);
+			final double centerX = barsLeft + (i + 0.5) * columnWidth;
+			// bar
+			final int size = overlaps.getRegionSize(region);
+			final double barHeight = (barsBottom - barsTop) * size / maxSize;
+			g.setColor(Color.darkGray);
+			g.fill(new Rectangle2D.Double(centerX - columnWidth * 0.35, barsBottom - barHeight, columnWidth * 0.7,
+					barHeight));
+			if (metrics.stringWidth(String.valueOf(size)) < columnWidth) {
+				g.setColor(Color.black);
+				drawCentered(g, String.valueOf(size), (int) centerX, (int) (barsBottom - barHeight - 2));
+			}
+			// sets of the region, joined by a line
+			final int firstSet = Integer.numberOfTrailingZeros(region);
+			final int lastSet = 31 - Integer.numberOfLeadingZeros(region);
+			if (firstSet != lastSet) {
+				g.setColor(Color.darkGray);
+				g.setStroke(new BasicStroke(2f));
+				g.draw(new Line2D.Double(centerX, matrixTop + (firstSet + 0.5) * rowHeight, centerX,
+						matrixTop + (lastSet + 0.5) * rowHeight));
+			}
+			for (int set = 0; set < numSets; set++) {
+				final double rowCenter = matrixTop + (set + 0.5) * rowHeight;
+				final boolean inSet = (region & (1 << set)) != 0;
+				g.setColor(inSet ? getColor(colors, set, 255).darker() : Color.lightGray);
+				g.fill(new Ellipse2D.Double(centerX - dotSize / 2, rowCenter - dotSize / 2, dotSize, dotSize));
+			}
+		}
+	}
+}
@@ -151,40 +151,7 @@ public class WordCramChart extends PApplet {
 		final List<ExtendedIdentifiedProtein> identifiedProteins = identificationSet.getIdentifiedProteins();
 		log.info(identifiedProteins.size() + " proteins");
 		this.chartManagerFrame = parent;
-		StringBuilder skipWordsBuffer = new StringBuilder();
-		if (skipWords != null) {
-			for (String word : skipWords) {
-				if (!"".equals(skipWordsBuffer.toString()))
-					skipWordsBuffer.append(" ");
-				skipWordsBuffer.append(word);
-			}
-		}
-		WordCounter wc = new WordCounter(minWordLength).withExtraStopWords(skipWordsBuffer.toString());
-		wc.shouldExcludeNumbers(false);
-		StringBuilder sb2 = new StringBuilder();
-		for (ExtendedIdentifiedProtein protein : identifiedProteins) {
-			if (!protein.isDecoy()) {
-				String description = protein.getDescription();
-				if (description != null) {
-					description = description.toLowerCase();
-					sb2.append(" ");
-					sb2.append(description);
-					if (mapWordsAndProteins) {
-						final Word[] proteinWords = wc.count(description);
-						for (Word word : proteinWords) {
-							if (!wordMapping.containsKey(word.word)) {
-								List<ExtendedIdentifiedProtein> proteinList = new ArrayList<ExtendedIdentifiedProtein>();
-								proteinList.add(protein);
-								wordMapping.put(word.word, proteinList);
-							} else {
-								wordMapping.get(word.word).add(protein);
-							}
-						}
-					}
-				}
-			}
-		}
-		words = wc.count(sb2.toString());
+		words = countWords(identifiedProteins, skipWords, minWordLength, mapWordsAndProteins ? wordMapping : null);
 
 		log.info(words.length + " words");
 		log.info(wordMapping.size() + " words mapped to proteins");
@@ -225,6 +192,59 @@ public class WordCramChart extends PApplet {
 		// initialize(myWidth, myHeight);
 	}
 
+	/**
+	 * Counts the words of the descriptions of the non decoy proteins, that are
+	 * the words of the word cloud. It doesn't need the {@link PApplet}, so it
+	 * can be called with no screen.
+	 * 
+	 * @param proteins
+	 * @param skipWords
+	 *            words that are not counted, in addition to the default stop
+	 *            words
+	 * @param minWordLength
+	 * @param wordMapping
+	 *            if not null, it is filled with the proteins that contain each
+	 *            word
+	 * @return
+	 */
+	public static Word[] countWords(List<ExtendedIdentifiedProtein> proteins, List<String> skipWords,
+			int minWordLength, Map<String, List<ExtendedIdentifiedProtein>> wordMapping) {
+		StringBuilder skipWordsBuffer = new StringBuilder();
+		if (skipWords != null) {
+			for (String word : skipWords) {
+				if (!"".equals(skipWordsBuffer.toString()))
+					skipWordsBuffer.append(" ");
+				skipWordsBuffer.append(word);
+			}
+		}
+		WordCounter wc = new WordCounter(minWordLength).withExtraStopWords(skipWordsBuffer.toString());
+		wc.shouldExcludeNumbers(false);
+		StringBuilder sb2 = new StringBuilder();
+		for (ExtendedIdentifiedProtein protein : proteins) {
+			if (!protein.isDecoy()) {
+				String description = protein.getDescription();
+				if (description != null) {
+					description = description.toLowerCase();
+					sb2.append(" ");
+					sb2.append(description);
+					if (wordMapping != null) {
+						final Word[] proteinWords = wc.count(description);
+						for (Word word : proteinWords) {
+							if (!wordMapping.containsKey(word.word)) {
+								List<ExtendedIdentifiedProtein> proteinList = new ArrayList<ExtendedIdentifiedProtein>();
+								proteinList.add(protein);
+								wordMapping.put(word.word, proteinList);
+							} else {
+								wordMapping.get(word.word).add(protein);
+							}
+						}
+					}
+				}
+			}
+		}
+		return wc.count(sb2.toString());
+	}
+
 	public static List<String> getDefaultSkippedWords() {
 		return wordsToSkip;
 	}
@@ -352,6 +372,7 @@ public class WordCramChart extends PApplet {
 				.minShapeSize(1)//
 				// .MaxAttemptsForPlacement(10)
 				.maxNumberOfWordsToDraw(getMaximumNumberOfWords()).withNudger(new SpiralWordNudger())
+				.withParallelPlacement(Runtime.getRuntime().availableProcessors())
 		// .withNudger(
 		// new PlottingWordNudger(this, new SpiralWordNudger()))
 		// .withNudger(new RandomWordNudger())
@@ -3,6 +3,7 @@ package org.proteored.pacom.analysis.conf;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import javax.xml.bind.JAXBException;
 
@@ -25,6 +26,7 @@ public class ExperimentAdapter implements Adapter<Experiment> {
 	private final boolean annotateProteinsInUniprot;
 	private final boolean doNotGroupNonConclusiveProteins;
 	private final boolean separateNonConclusiveProteins;
+	private ParallelAdapterLoader parallelLoader;
 
 	public ExperimentAdapter(CPExperiment xmlExp, Integer minPeptideLength, List<Filter> filters,
 			boolean annotateProteinsInUniprot, boolean doNotGroupNonConclusiveProteins,
@@ -87,21 +89,52 @@ public class ExperimentAdapter implements Adapter<Experiment> {
 		return xmlExp;
 	}
 
+	/**
+	 * Sets the loader used to adapt the replicates concurrently when
+	 * processInParallel is true. If not set, a new one will be used.
+	 * 
+	 * @param parallelLoader
+	 */
+	public void setParallelLoader(ParallelAdapterLoader parallelLoader) {
+		this.parallelLoader = parallelLoader;
+	}
+
 	@Override
 	public Experiment adapt() {
 		log.info("Adapting experiment");
 		List<Replicate> replicates = new ArrayList<Replicate>();
 		if (xmlExp != null && xmlExp.getCPReplicate() != null) {
-			for (CPReplicate xmlRep : xmlExp.getCPReplicate()) {
-				replicates.add(new ReplicateAdapter(xmlRep, xmlExp.getName(), xmlExp.isCurated(), minPeptideLength,
-						filters, processInParallel, annotateProteinsInUniprot, doNotGroupNonConclusiveProteins,
-						separateNonConclusiveProteins).adapt());
+			if (processInParallel) {
+				if (parallelLoader == null) {
+					parallelLoader = new ParallelAdapterLoader();
+				}
+				List<Callable<Replicate>> tasks = new ArrayList<Callable<Replicate>>();
+				for (final CPReplicate xmlRep : xmlExp.getCPReplicate()) {
+					tasks.add(new Callable<Replicate>() {
+						@Override
+						public Replicate call() throws Exception {
+							parallelLoader.checkCancelled();
+							return getReplicateAdapter(xmlRep).adapt();
+						}
+					});
+				}
+				replicates.addAll(parallelLoader.invokeAll(tasks));
+				parallelLoader.checkCancelled();
+			} else {
+				for (CPReplicate xmlRep : xmlExp.getCPReplicate()) {
+					replicates.add(getReplicateAdapter(xmlRep).adapt());
+				}
 			}
-
 		}
 		Experiment ret = new Experiment(xmlExp.getName(), replicates, filters, doNotGroupNonConclusiveProteins,
 				separateNonConclusiveProteins, minPeptideLength, OntologyLoaderTask.getCvManager(), processInParallel);
 		return ret;
 	}
 
+	private ReplicateAdapter getReplicateAdapter(CPReplicate xmlRep) {
+		return new ReplicateAdapter(xmlRep, xmlExp.getName(), xmlExp.isCurated(), minPeptideLength, filters,
+				processInParallel, annotateProteinsInUniprot, doNotGroupNonConclusiveProteins,
+				separateNonConclusiveProteins, parallelLoader);
+	}
+
 }
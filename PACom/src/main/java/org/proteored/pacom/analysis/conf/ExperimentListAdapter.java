@@ -3,6 +3,7 @@ package org.proteored.pacom.analysis.conf;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import javax.xml.bind.JAXBException;
 
@@ -86,10 +87,28 @@ public class ExperimentListAdapter implements Adapter<ExperimentList> {
 		log.info("Adapting experiment list");
 		List<Experiment> experimentList = new ArrayList<Experiment>();
 		if (cpExperimentList != null && cpExperimentList.getCPExperiment() != null) {
-			for (CPExperiment xmlExp : cpExperimentList.getCPExperiment()) {
-				experimentList.add(new ExperimentAdapter(xmlExp, minPeptideLength, filters, processInParallel,
-						annotateProteinsInUniprot, doNotGroupNonConclusiveProteins, separateNonConclusiveProteins)
-								.adapt());
+			if (processInParallel) {
+				// all the experiments, replicates and MIAPE files of the tree
+				// are read using the same bounded loader
+				final ParallelAdapterLoader parallelLoader = new ParallelAdapterLoader();
+				List<Callable<Experiment>> tasks = new ArrayList<Callable<Experiment>>();
+				for (final CPExperiment xmlExp : cpExperimentList.getCPExperiment()) {
+					tasks.add(new Callable<Experiment>() {
+						@Override
+						public Experiment call() throws Exception {
+							parallelLoader.checkCancelled();
+							ExperimentAdapter experimentAdapter = getExperimentAdapter(xmlExp);
+							experimentAdapter.setParallelLoader(parallelLoader);
+							return experimentAdapter.adapt();
+						}
+					});
+				}
+				experimentList.addAll(parallelLoader.invokeAll(tasks));
+				parallelLoader.checkCancelled();
+			} else {
+				for (CPExperiment xmlExp : cpExperimentList.getCPExperiment()) {
+					experimentList.add(getExperimentAdapter(xmlExp).adapt());
+				}
 			}
 			ExperimentList elist = new ExperimentList(cpExperimentList.getName(), experimentList,
 					groupingAtExperimentListLevel, filters, doNotGroupNonConclusiveProteins,
@@ -99,4 +118,9 @@ public class ExperimentListAdapter implements Adapter<ExperimentList> {
 		}
 		throw new MiapeDataInconsistencyException("Experiment list is empty");
 	}
+
+	private ExperimentAdapter getExperimentAdapter(CPExperiment xmlExp) {
+		return new ExperimentAdapter(xmlExp, minPeptideLength, filters, processInParallel, annotateProteinsInUniprot,
+				doNotGroupNonConclusiveProteins, separateNonConclusiveProteins);
+	}
 }
@@ -0,0 +1,199 @@
+package org.proteored.pacom.analysis.conf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.log4j.Logger;
+import org.proteored.miapeapi.exceptions.InterruptedMIAPEThreadException;
+import org.proteored.miapeapi.exceptions.MiapeDataInconsistencyException;
+
+/**
+ * Bounded parallel loader shared by the {@link ExperimentListAdapter},
+ * {@link ExperimentAdapter} and {@link ReplicateAdapter} when the project is
+ * loaded with the 'process in parallel' option.<br>
+ * All the tasks of a whole CPExperimentList tree are executed in the same
+ * {@link ForkJoinPool}, so nested loads (experiments -> replicates -> MIAPE
+ * files) do not block each other. Results are always returned in the order
+ * of the input tasks and, if some of them fail, the error of the first failing
+ * task (in input order) is the one reported.
+ *
+ * @author Salva
+ *
+ */
+public class ParallelAdapterLoader {
+	private static final Logger log = Logger.getLogger("log4j.logger.org.proteored");
+	private static ForkJoinPool sharedPool;
+	private final ForkJoinPool pool;
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Creates a loader that uses a pool shared by all the loaders, bounded by
+	 * the number of available processors
+	 */
+	public ParallelAdapterLoader() {
+		this(getSharedPool());
+	}
+
+	/**
+	 * Creates a loader that will not use more than maxThreads threads at the
+	 * same time
+	 *
+	 * @param maxThreads
+	 */
+	public ParallelAdapterLoader(int maxThreads) {
+		this(new ForkJoinPool(Math.max(1, maxThreads)));
+	}
+
+	private ParallelAdapterLoader(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	private static synchronized ForkJoinPool getSharedPool() {
+		if (sharedPool == null) {
+			final int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+			log.info("Creating pool for parallel loading of datasets with " + threads + " threads");
+			sharedPool = new ForkJoinPool(threads);
+		}
+		return sharedPool;
+	}
+
+	/**
+	 * Executes all the tasks and returns their results in the same order as
+	 * the tasks. If it is called from a thread of the pool of this loader, the
+	 * tasks are forked from it. Otherwise (including threads of other
+	 * {@link ForkJoinPool}s), the calling thread waits until all the tasks are
+	 * done, and if it is interrupted, the whole load is cancelled.<br>
+	 * Note that the pool doesn't interrupt the tasks that are already running,
+	 * so the adapters have to call to {@link #checkCancelled()} between their
+	 * steps to stop as soon as the load is cancelled.
+	 *
+	 * @param tasks
+	 * @return
+	 * @throws InterruptedMIAPEThreadException
+	 *             if the load has been cancelled
+	 */
+	public <T> List<T> invokeAll(List<Callable<T>> tasks) {
+		checkCancelled();
+		final InvokeAllTask<T> invokeAllTask = new InvokeAllTask<T>(tasks);
+		if (ForkJoinTask.getPool() == pool) {
+			return invokeAllTask.invoke();
+		}
+		final ForkJoinTask<List<T>> future = pool.submit(invokeAllTask);
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			// the running tasks will stop when they check the cancellation
+			cancel();
+			future.cancel(true);
+			throw new InterruptedMIAPEThreadException("Task cancelled");
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new MiapeDataInconsistencyException(cause.getMessage());
+		}
+	}
+
+	/**
+	 * Cancels the load. Tasks that have not been started yet will not be
+	 * executed and the running ones will fail as soon as they call to
+	 * {@link #checkCancelled()}
+	 */
+	public void cancel() {
+		if (!cancelled) {
+			log.info("Cancelling parallel loading of datasets");
+		}
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @throws InterruptedMIAPEThreadException
+	 *             if the load has been cancelled or the current thread has
+	 *             been interrupted
+	 */
+	public void checkCancelled() {
+		if (cancelled || Thread.currentThread().isInterrupted()) {
+			cancel();
+			throw new InterruptedMIAPEThreadException("Task cancelled");
+		}
+	}
+
+	private class InvokeAllTask<T> extends RecursiveTask<List<T>> {
+		private static final long serialVersionUID = 1L;
+		private final List<Callable<T>> callables;
+
+		private InvokeAllTask(List<Callable<T>> callables) {
+			this.callables = callables;
+		}
+
+		@Override
+		protected List<T> compute() {
+			final List<CallableTask<T>> subtasks = new ArrayList<CallableTask<T>>();
+			for (final Callable<T> callable : callables) {
+				subtasks.add(new CallableTask<T>(callable));
+			}
+			ForkJoinTask.invokeAll(subtasks);
+			// report the error of the first failing task, so that the error
+			// is always the same regardless of the execution order. Tasks
+			// cancelled because of that error are only reported if there is
+			// no other error
+			Exception cancellation = null;
+			final List<T> ret = new ArrayList<T>();
+			for (final CallableTask<T> subtask : subtasks) {
+				if (subtask.error instanceof InterruptedMIAPEThreadException) {
+					if (cancellation == null) {
+						cancellation = subtask.error;
+					}
+				} else if (subtask.error instanceof RuntimeException) {
+					throw (RuntimeException) subtask.error;
+				} else if (subtask.error != null) {
+					throw new MiapeDataInconsistencyException(subtask.error.getMessage());
+				}
+				ret.add(subtask.result);
+			}
+			if (cancellation != null) {
+				throw (InterruptedMIAPEThreadException) cancellation;
+			}
+			return ret;
+		}
+	}
+
+	private class CallableTask<T> extends RecursiveTask<T> {
+		private static final long serialVersionUID = 1L;
+		private final Callable<T> callable;
+		private T result;
+		private Exception error;
+
+		private CallableTask(Callable<T> callable) {
+			this.callable = callable;
+		}
+
+		@Override
+		protected T compute() {
+			try {
+				checkCancelled();
+				result = callable.call();
+				// the result of a task that finished after the cancellation
+				// is discarded
+				checkCancelled();
+			} catch (final InterruptedMIAPEThreadException e) {
+				error = e;
+			} catch (final Exception e) {
+				error = e;
+				// the rest of the load is useless, so do not start more tasks
+				ParallelAdapterLoader.this.cancel();
+			}
+			return result;
+		}
+	}
+}
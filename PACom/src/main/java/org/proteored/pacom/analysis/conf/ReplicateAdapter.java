@@ -1,8 +1,10 @@
 package org.proteored.pacom.analysis.conf;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.apache.log4j.Logger;
 import org.proteored.miapeapi.cv.ControlVocabularyManager;
@@ -22,7 +24,9 @@ import org.proteored.miapeapi.xml.msi.MiapeMSIXmlFactory;
 import org.proteored.pacom.analysis.conf.jaxb.CPMS;
 import org.proteored.pacom.analysis.conf.jaxb.CPMSI;
 import org.proteored.pacom.analysis.conf.jaxb.CPReplicate;
+import org.proteored.pacom.analysis.util.CuratedMiapeMSIMask;
 import org.proteored.pacom.analysis.util.FileManager;
+import org.proteored.pacom.analysis.util.MiapeMSISnapshotCache;
 import org.proteored.pacom.gui.tasks.OntologyLoaderTask;
 
 public class ReplicateAdapter implements Adapter<Replicate> {
@@ -36,10 +40,35 @@ public class ReplicateAdapter implements Adapter<Replicate> {
 	private final boolean processInParallel;
 	private final boolean doNotGroupNonConclusiveProteins;
 	private final boolean separateNonConclusiveProteins;
+	private final ParallelAdapterLoader parallelLoader;
 
 	public ReplicateAdapter(CPReplicate xmlRep, String experimentName, boolean curated, Integer minPeptideLength,
 			List<Filter> filters, boolean processInParallel, boolean annotateProteinsInUniprot,
 			boolean doNotGroupNonConclusiveProteins, boolean separateNonConclusiveProteins) {
+		this(xmlRep, experimentName, curated, minPeptideLength, filters, processInParallel, annotateProteinsInUniprot,
+				doNotGroupNonConclusiveProteins, separateNonConclusiveProteins, null);
+	}
+
+	/**
+	 * 
+	 * @param xmlRep
+	 * @param experimentName
+	 * @param curated
+	 * @param minPeptideLength
+	 * @param filters
+	 * @param processInParallel
+	 * @param annotateProteinsInUniprot
+	 * @param doNotGroupNonConclusiveProteins
+	 * @param separateNonConclusiveProteins
+	 * @param parallelLoader
+	 *            if not null and processInParallel is true, the MIAPE MS and
+	 *            MSI files of the replicate will be read concurrently using
+	 *            it
+	 */
+	public ReplicateAdapter(CPReplicate xmlRep, String experimentName, boolean curated, Integer minPeptideLength,
+			List<Filter> filters, boolean processInParallel, boolean annotateProteinsInUniprot,
+			boolean doNotGroupNonConclusiveProteins, boolean separateNonConclusiveProteins,
+			ParallelAdapterLoader parallelLoader) {
 		this.xmlRep = xmlRep;
 		cvManager = OntologyLoaderTask.getCvManager();
 		this.experimentName = experimentName;
@@ -49,6 +78,11 @@ public class ReplicateAdapter implements Adapter<Replicate> {
 		this.processInParallel = processInParallel;
 		this.doNotGroupNonConclusiveProteins = doNotGroupNonConclusiveProteins;
 		this.separateNonConclusiveProteins = separateNonConclusiveProteins;
+		if (processInParallel) {
+			this.parallelLoader = parallelLoader;
+		} else {
+			this.parallelLoader = null;
+		}
 	}
 
 	@Override
@@ -56,7 +90,10 @@ public class ReplicateAdapter implements Adapter<Replicate> {
 		List<MiapeMSDocument> miapeMSs = new ArrayList<MiapeMSDocument>();
 		List<MiapeMSIDocument> miapeMSIs = new ArrayList<MiapeMSIDocument>();
 		log.info("Adapting replicate");
-		if (xmlRep.getCPMSIList() != null) {
+		if (parallelLoader != null) {
+			readFilesInParallel(miapeMSs, miapeMSIs);
+			parallelLoader.checkCancelled();
+		} else if (xmlRep.getCPMSIList() != null) {
 			for (CPMSI cpMsi : xmlRep.getCPMSIList().getCPMSI()) {
 
 				// local
@@ -78,7 +115,7 @@ public class ReplicateAdapter implements Adapter<Replicate> {
 				}
 			}
 		}
-		if (xmlRep.getCPMSList() != null) {
+		if (parallelLoader == null && xmlRep.getCPMSList() != null) {
 			for (CPMS cpMs : xmlRep.getCPMSList().getCPMS()) {
 
 				log.info("Reading locally created MIAPE MS file: " + cpMs.getName());
@@ -101,6 +138,63 @@ public class ReplicateAdapter implements Adapter<Replicate> {
 
 	}
 
+	/**
+	 * Reads all the MIAPE MSI and MS files of the replicate at the same time,
+	 * keeping the order in which they are in the comparison project
+	 * 
+	 * @param miapeMSs
+	 * @param miapeMSIs
+	 */
+	private void readFilesInParallel(List<MiapeMSDocument> miapeMSs, List<MiapeMSIDocument> miapeMSIs) {
+		List<Callable<MiapeMSIDocument>> msiTasks = new ArrayList<Callable<MiapeMSIDocument>>();
+		if (xmlRep.getCPMSIList() != null) {
+			for (final CPMSI cpMsi : xmlRep.getCPMSIList().getCPMSI()) {
+				msiTasks.add(new Callable<MiapeMSIDocument>() {
+					@Override
+					public MiapeMSIDocument call() throws Exception {
+						parallelLoader.checkCancelled();
+						log.info("Reading locally created MIAPE MSI file: " + cpMsi.getName());
+						MiapeMSIDocument miapeMSI = getMIAPEMSIFromFile(cpMsi);
+						if (miapeMSI == null) {
+							String message = "Error reading MIAPE MSI file: " + cpMsi.getName() + " with ID "
+									+ cpMsi.getId();
+							log.warn(message);
+							throw new MiapeDataInconsistencyException(message);
+						}
+						return miapeMSI;
+					}
+				});
+			}
+		}
+		List<Callable<MiapeMSDocument>> msTasks = new ArrayList<Callable<MiapeMSDocument>>();
+		if (xmlRep.getCPMSList() != null) {
+			for (final CPMS cpMs : xmlRep.getCPMSList().getCPMS()) {
+				msTasks.add(new Callable<MiapeMSDocument>() {
+					@Override
+					public MiapeMSDocument call() throws Exception {
+						parallelLoader.checkCancelled();
+						log.info("Reading locally created MIAPE MS file: " + cpMs.getName());
+						MiapeMSDocument miapeMS = getMIAPEMSFromFile(cpMs);
+						if (miapeMS == null) {
+							log.warn("Error reading MIAPE MS file: " + cpMs.getName() + " with ID " + cpMs.getId());
+						}
+						return miapeMS;
+					}
+				});
+			}
+		}
+		if (!msiTasks.isEmpty()) {
+			miapeMSIs.addAll(parallelLoader.invokeAll(msiTasks));
+		}
+		if (!msTasks.isEmpty()) {
+			for (MiapeMSDocument miapeMS : parallelLoader.invokeAll(msTasks)) {
+				if (miapeMS != null) {
+					miapeMSs.add(miapeMS);
+				}
+			}
+		}
+	}
+
 	private MiapeMSDocument getMIAPEMSFromFile(CPMS cpMs) {
 		File file = null;
 		try {
@@ -133,19 +227,54 @@ public class ReplicateAdapter implements Adapter<Replicate> {
 
 		File file = null;
 		if (curated) {
-			file = new File(FileManager.getMiapeMSICuratedXMLFilePathFromMiapeInformation(cpMsi));
+			file = FileManager.getMiapeMSICuratedFile(cpMsi);
 		} else {
 			file = new File(FileManager.getMiapeMSIXMLFileLocalPathFromMiapeInformation(cpMsi));
 		}
 		if (!file.exists()) {
 			throw new IllegalMiapeArgumentException("Error loading dataset file: " + file.getAbsolutePath());
 		}
-		MiapeMSIDocument ret;
+		if (curated && file.getName().endsWith(CuratedMiapeMSIMask.MASK_EXTENSION)) {
+			return getMaskedMIAPEMSIFromFile(file);
+		}
+		return getMIAPEMSIFromXMLFile(file);
+	}
+
+	/**
+	 * Reads the original document of a curated MIAPE MSI saved as a
+	 * {@link CuratedMiapeMSIMask} and applies the mask over it
+	 *
+	 * @param maskFile
+	 * @return
+	 */
+	private MiapeMSIDocument getMaskedMIAPEMSIFromFile(File maskFile) {
+		CuratedMiapeMSIMask mask;
+		try {
+			mask = CuratedMiapeMSIMask.load(maskFile);
+		} catch (IOException e) {
+			log.warn(e.getMessage());
+			throw new IllegalMiapeArgumentException("Error loading dataset file: " + maskFile.getAbsolutePath());
+		}
+		if (mask.isOriginalFileModified()) {
+			throw new IllegalMiapeArgumentException("Error loading curated dataset file: "
+					+ maskFile.getAbsolutePath() + ". The original dataset file "
+					+ mask.getOriginalFile().getAbsolutePath() + " has been removed or modified");
+		}
+		return mask.apply(getMIAPEMSIFromXMLFile(mask.getOriginalFile()));
+	}
+
+	private MiapeMSIDocument getMIAPEMSIFromXMLFile(File file) {
+		// use the binary snapshot of the file if it is still valid
+		MiapeMSIDocument ret = MiapeMSISnapshotCache.load(file);
+		if (ret != null) {
+			return ret;
+		}
 
 		MIAPEMSIXmlFile msiFile = new MIAPEMSIXmlFile(file);
 
 		try {
 			ret = MiapeMSIXmlFactory.getFactory(processInParallel).toDocument(msiFile, cvManager, null, null, null);
+			MiapeMSISnapshotCache.save(file, ret);
 			return ret;
 		} catch (MiapeDatabaseException e) {
 			log.warn(e.getMessage());
@@ -0,0 +1,342 @@
+package org.proteored.pacom.analysis.exporters.gui;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Pattern;
+
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.SwingWorker;
+import javax.swing.table.TableModel;
+
+import org.apache.log4j.Logger;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * {@link RowSorter} that sorts and filters the rows of a table using arrays of
+ * model row indexes, instead of keeping a copy of the rows.<br>
+ * The values of the sorted or filtered column are read once per sort or
+ * filter. If the model is a {@link VirtualIdentificationTableModel}, just that
+ * column is computed for each row, without rendering the whole rows, and it is
+ * done in a background thread, keeping the previous order until the new one
+ * is ready.
+ *
+ * @author Salva
+ *
+ */
+public class IndexedRowSorter extends RowSorter<TableModel> {
+	private static final Logger log = Logger.getLogger("log4j.logger.org.proteored");
+	private final TableModel model;
+	private final Comparator<Object> comparator;
+	private List<SortKey> sortKeys = Collections.emptyList();
+	private int filterColumn = -1;
+	private Pattern filterPattern;
+	// view index -> model index. Null if it is the identity
+	private int[] viewToModel;
+	// model index -> view index (-1 if filtered out). Null if it is the
+	// identity
+	private int[] modelToView;
+	// incremented in each sort, so that the result of a background sort is
+	// discarded if another sort has been requested after it
+	private int sortGeneration = 0;
+
+	public IndexedRowSorter(TableModel model, Comparator<Object> comparator) {
+		this.model = model;
+		this.comparator = comparator;
+	}
+
+	@Override
+	public TableModel getModel() {
+		return model;
+	}
+
+	/**
+	 * Only shows the rows in which the value of the column contains the
+	 * pattern
+	 *
+	 * @param columnIndex
+	 * @param pattern
+	 *            if null, the filter is removed
+	 */
+	public void setRowFilter(int columnIndex, Pattern pattern) {
+		filterColumn = columnIndex;
+		filterPattern = pattern;
+		sort();
+	}
+
+	@Override
+	public void toggleSortOrder(int column) {
+		SortOrder order = SortOrder.ASCENDING;
+		if (!sortKeys.isEmpty() && sortKeys.get(0).getColumn() == column
+				&& sortKeys.get(0).getSortOrder() == SortOrder.ASCENDING) {
+			order = SortOrder.DESCENDING;
+		}
+		setSortKeys(Collections.singletonList(new SortKey(column, order)));
+	}
+
+	@Override
+	public void setSortKeys(List<? extends SortKey> keys) {
+		final List<SortKey> old = sortKeys;
+		if (keys == null || keys.isEmpty()) {
+			sortKeys = Collections.emptyList();
+		} else {
+			// only the first key is used
+			sortKeys = Collections.singletonList((SortKey) keys.get(0));
+		}
+		fireSortOrderChanged();
+		if (!old.equals(sortKeys)) {
+			sort();
+		}
+	}
+
+	@Override
+	public List<? extends SortKey> getSortKeys() {
+		return sortKeys;
+	}
+
+	@Override
+	public int convertRowIndexToModel(int index) {
+		if (viewToModel == null) {
+			if (index < 0 || index >= model.getRowCount()) {
+				throw new IndexOutOfBoundsException("Invalid index");
+			}
+			return index;
+		}
+		return viewToModel[index];
+	}
+
+	@Override
+	public int convertRowIndexToView(int index) {
+		if (modelToView == null) {
+			if (index < 0 || index >= model.getRowCount()) {
+				throw new IndexOutOfBoundsException("Invalid index");
+			}
+			return index;
+		}
+		return modelToView[index];
+	}
+
+	@Override
+	public int getViewRowCount() {
+		if (viewToModel == null) {
+			return model.getRowCount();
+		}
+		return viewToModel.length;
+	}
+
+	@Override
+	public int getModelRowCount() {
+		return model.getRowCount();
+	}
+
+	@Override
+	public void modelStructureChanged() {
+		sortKeys = Collections.emptyList();
+		filterColumn = -1;
+		filterPattern = null;
+		sort();
+	}
+
+	@Override
+	public void allRowsChanged() {
+		sort();
+	}
+
+	@Override
+	public void rowsInserted(int firstRow, int endRow) {
+		sort();
+	}
+
+	@Override
+	public void rowsDeleted(int firstRow, int endRow) {
+		sort();
+	}
+
+	@Override
+	public void rowsUpdated(int firstRow, int endRow) {
+		// the values of a virtual model don't change, it only notifies that
+		// the rows have been rendered
+		if (!(model instanceof VirtualIdentificationTableModel)) {
+			sort();
+		}
+	}
+
+	@Override
+	public void rowsUpdated(int firstRow, int endRow, int column) {
+		if (!(model instanceof VirtualIdentificationTableModel) && isSortedOrFilteredBy(column)) {
+			sort();
+		}
+	}
+
+	private boolean isSortedOrFilteredBy(int column) {
+		return (!sortKeys.isEmpty() && sortKeys.get(0).getColumn() == column)
+				|| (filterPattern != null && filterColumn == column);
+	}
+
+	private void sort() {
+		sortGeneration++;
+		final int rowCount = model.getRowCount();
+		final int filterColumn = filterPattern != null && this.filterColumn >= 0
+				&& this.filterColumn < model.getColumnCount() ? this.filterColumn : -1;
+		final Pattern filterPattern = this.filterPattern;
+		final boolean sort = !sortKeys.isEmpty() && sortKeys.get(0).getSortOrder() != SortOrder.UNSORTED
+				&& sortKeys.get(0).getColumn() < model.getColumnCount();
+		final int sortColumn = sort ? sortKeys.get(0).getColumn() : -1;
+		final boolean descending = sort && sortKeys.get(0).getSortOrder() == SortOrder.DESCENDING;
+		if (filterColumn < 0 && !sort) {
+			setViewToModel(null);
+			return;
+		}
+		if (!(model instanceof VirtualIdentificationTableModel)) {
+			setViewToModel(getViewToModel(rowCount, filterColumn, filterPattern, sortColumn, descending));
+			return;
+		}
+		// the current order is only valid if the rows are the same
+		if (modelToView != null && modelToView.length != rowCount) {
+			setViewToModel(null);
+		}
+		final int generation = sortGeneration;
+		new SwingWorker<int[], Void>() {
+			@Override
+			protected int[] doInBackground() throws Exception {
+				return getViewToModel(rowCount, filterColumn, filterPattern, sortColumn, descending);
+			}
+
+			@Override
+			protected void done() {
+				if (generation != sortGeneration || model.getRowCount() != rowCount) {
+					return;
+				}
+				try {
+					setViewToModel(get());
+				} catch (final InterruptedException e) {
+				} catch (final ExecutionException e) {
+					log.warn("Error sorting the table: " + e.getMessage());
+				}
+			}
+		}.execute();
+	}
+
+	private void setViewToModel(int[] indexes) {
+		final int[] oldViewToModel = viewToModel;
+		if (indexes == null) {
+			viewToModel = null;
+			modelToView = null;
+			fireRowSorterChanged(oldViewToModel);
+			return;
+		}
+		final int rowCount = model.getRowCount();
+		viewToModel = indexes;
+		modelToView = new int[rowCount];
+		for (int row = 0; row < rowCount; row++) {
+			modelToView[row] = -1;
+		}
+		for (int viewIndex = 0; viewIndex < viewToModel.length; viewIndex++) {
+			modelToView[viewToModel[viewIndex]] = viewIndex;
+		}
+		fireRowSorterChanged(oldViewToModel);
+	}
+
+	/**
+	 * Filters and sorts the model indexes. It doesn't change the state of the
+	 * sorter, so it can be called from a background thread.
+	 *
+	 * @param rowCount
+	 * @param filterColumn
+	 *            -1 for no filter
+	 * @param filterPattern
+	 * @param sortColumn
+	 *            -1 for no sorting
+	 * @param descending
+	 * @return
+	 */
+	private int[] getViewToModel(int rowCount, int filterColumn, Pattern filterPattern, int sortColumn,
+			boolean descending) {
+		// filter
+		TIntArrayList rows = new TIntArrayList(rowCount);
+		if (filterColumn >= 0) {
+			final Object[] values = getColumnValues(filterColumn);
+			for (int row = 0; row < rowCount; row++) {
+				final Object value = values[row];
+				if (value != null && filterPattern.matcher(value.toString()).find()) {
+					rows.add(row);
+				}
+			}
+		} else {
+			for (int row = 0; row < rowCount; row++) {
+				rows.add(row);
+			}
+		}
+		int[] indexes = rows.toArray();
+		rows = null;
+		// sort
+		if (sortColumn >= 0) {
+			final Object[] values = getColumnValues(sortColumn);
+			indexes = mergeSort(indexes, values, descending);
+		}
+		return indexes;
+	}
+
+	private Object[] getColumnValues(int column) {
+		if (model instanceof VirtualIdentificationTableModel) {
+			return ((VirtualIdentificationTableModel) model).getColumnValues(column);
+		}
+		final Object[] ret = new Object[model.getRowCount()];
+		for (int row = 0; row < ret.length; row++) {
+			ret[row] = model.getValueAt(row, column);
+		}
+		return ret;
+	}
+
+	/**
+	 * Stable sort of the model indexes by the values of the column
+	 */
+	private int[] mergeSort(int[] indexes, Object[] values, boolean descending) {
+		int[] src = indexes;
+		int[] dst = new int[indexes.length];
+		for (int width = 1; width < src.length; width *= 2) {
+			for (int left = 0; left < src.length; left += 2 * width) {
+				final int middle = Math.min(left + width, src.length);
+				final int right = Math.min(left + 2 * width, src.length);
+				int i = left;
+				int j = middle;
+				int k = left;
+				while (i < middle && j < right) {
+					if (compare(values[src[j]], values[src[i]], descending) < 0) {
+						dst[k++] = src[j++];
+					} else {
+						dst[k++] = src[i++];
+					}
+				}
+				while (i < middle) {
+					dst[k++] = src[i++];
+				}
+				while (j < right) {
+					dst[k++] = src[j++];
+				}
+			}
+			final int[] tmp = src;
+			src = dst;
+			dst = tmp;
+		}
+		return src;
+	}
+
+	private int compare(Object value1, Object value2, boolean descending) {
+		int ret;
+		// null values at the end
+		if (value1 == null && value2 == null) {
+			ret = 0;
+		} else if (value1 == null) {
+			return 1;
+		} else if (value2 == null) {
+			return -1;
+		} else {
+			ret = comparator.compare(value1, value2);
+		}
+		return descending ? -ret : ret;
+	}
+}
@@ -48,6 +48,10 @@ public class MyIdentificationTable extends JTable {
 		if (model instanceof MyDefaultTableModel) {
 			((MyDefaultTableModel) model).setRowCount(0);
 			((MyDefaultTableModel) model).setColumnCount(0);
+		} else if (model instanceof VirtualIdentificationTableModel) {
+			((VirtualIdentificationTableModel) model).dispose();
+			setRowSorter(null);
+			setModel(new MyDefaultTableModel());
 		}
 
 	}
@@ -9,16 +9,14 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
 import javax.swing.ListSelectionModel;
-import javax.swing.RowFilter;
 import javax.swing.border.BevelBorder;
-import javax.swing.table.TableModel;
-import javax.swing.table.TableRowSorter;
 
 import org.apache.log4j.Logger;
 import org.proteored.pacom.analysis.exporters.util.ExportedColumns;
@@ -37,9 +35,9 @@ public class ScrollableJTable extends JPanel {
 
 	private JTable table = new MyIdentificationTable();
 
-	private TableRowSorter<TableModel> sorter = null;
+	private IndexedRowSorter sorter = null;
 
-	private Comparator comp;
+	private Comparator<Object> comp;
 	private static final String UNIPROT_ONE_PROTEIN_QUERY_URL = "http://www.uniprot.org/uniprot/?sort=score&query=";
 	private static final String NCBI_ONE_PROTEIN_QUERY_URL = "http://www.ncbi.nlm.nih.gov/protein/";
 	private static final String ENSEMBL_HOMO_SAPIENS_QUERY = "http://www.ensembl.org/Multi/Search/Results?db=core;idx=;species=all;q=";
@@ -77,10 +75,7 @@ public class ScrollableJTable extends JPanel {
 	}
 
 	public void initializeSorter() {
-		sorter = new TableRowSorter<TableModel>(table.getModel());
-		final int columnCount = table.getModel().getColumnCount();
-		for (int i = 0; i < columnCount; i++)
-			sorter.setComparator(i, getMyComparator2());
+		sorter = new IndexedRowSorter(table.getModel(), getMyComparator2());
 		table.setRowSorter(sorter);
 	}
 
@@ -133,7 +128,9 @@ public class ScrollableJTable extends JPanel {
 							}
 							if (column == proteinACCIndex || column == ensgIDIndex) {
 								final String value = target.getModel().getValueAt(row, column).toString();
-								openBrowser(value);
+								if (!VirtualIdentificationTableModel.RENDERING_VALUE.equals(value)) {
+									openBrowser(value);
+								}
 
 							}
 						}
@@ -149,33 +146,21 @@ public class ScrollableJTable extends JPanel {
 
 		try {
 
-			final RowFilter<Object, Object> paginatorFilter = getColumnFilter(columnName, regexp);
-			// if (paginatorFilter != null)
-			// filters.add(paginatorFilter);
-
 			if (sorter != null) {
-
-				sorter.setRowFilter(paginatorFilter);
-				table.setRowSorter(sorter);
-
+				if (regexp != null && !"".equals(regexp)) {
+					sorter.setRowFilter(getColumnIndex(columnName), Pattern.compile(regexp));
+				} else {
+					sorter.setRowFilter(-1, null);
+				}
 			}
 		} catch (final java.util.regex.PatternSyntaxException e) {
 			return;
 		}
 	}
 
-	private RowFilter<Object, Object> getColumnFilter(final String columnName, final String regexp) {
-		if (regexp != null && !"".equals(regexp)) {
-			final int columnIndex = getColumnIndex(columnName);
-			if (columnIndex >= 0)
-				return RowFilter.regexFilter(regexp, columnIndex);
-		}
-		return null;
-	}
-
-	private Comparator<?> getMyComparator2() {
+	private Comparator<Object> getMyComparator2() {
 		if (comp == null)
-			comp = new Comparator() {
+			comp = new Comparator<Object>() {
 
 				@Override
 				public int compare(Object obj1, Object obj2) {
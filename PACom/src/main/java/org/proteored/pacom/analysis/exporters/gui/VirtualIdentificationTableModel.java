@@ -0,0 +1,278 @@
+package org.proteored.pacom.analysis.exporters.gui;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+import org.apache.log4j.Logger;
+import org.proteored.miapeapi.exceptions.IllegalMiapeArgumentException;
+import org.proteored.miapeapi.experiment.model.ExtendedIdentifiedPeptide;
+import org.proteored.miapeapi.experiment.model.IdentificationSet;
+import org.proteored.miapeapi.experiment.model.PeptideOccurrence;
+import org.proteored.miapeapi.experiment.model.ProteinGroup;
+import org.proteored.miapeapi.experiment.model.ProteinGroupOccurrence;
+import org.proteored.pacom.analysis.exporters.util.ExporterUtil;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * Table model of the identification table that doesn't store the values of
+ * the cells. It just keeps a reference to the {@link PeptideOccurrence},
+ * {@link ExtendedIdentifiedPeptide}, {@link ProteinGroupOccurrence} or
+ * {@link ProteinGroup} of each row, and the cells are computed with the
+ * {@link ExporterUtil} when they are painted. The last rendered rows are kept
+ * in a small LRU cache.<br>
+ * Rendering a row can need annotations from disk or from the network, so
+ * when a row that is not in the cache is requested from the event dispatch
+ * thread, {@link #RENDERING_VALUE} is returned and the row is rendered in a
+ * background thread, notifying the listeners when it is ready. The values of
+ * the rows never change, so that notification doesn't mean that the row has
+ * to be sorted again.
+ *
+ * @author Salva
+ *
+ */
+public class VirtualIdentificationTableModel extends AbstractTableModel {
+	private static final long serialVersionUID = 8370853367451938151L;
+	private static final Logger log = Logger.getLogger("log4j.logger.org.proteored");
+	private static final int DEFAULT_CACHED_ROWS = 500;
+	/**
+	 * Value of the cells of the rows that are being rendered
+	 */
+	public static final String RENDERING_VALUE = "...";
+	private final List<String> columns;
+	private final ExporterUtil exporterUtil;
+	private final List<Object> items = new ArrayList<Object>();
+	private final List<IdentificationSet> idSets = new ArrayList<IdentificationSet>();
+	private final TIntArrayList idSetIndexes = new TIntArrayList();
+	private final TIntArrayList rowNumbers = new TIntArrayList();
+	// guarded by this
+	private final Map<Integer, List<String>> renderedRows;
+	// rows requested from the event dispatch thread and not rendered yet. The
+	// last requested ones are rendered first. Guarded by this
+	private final LinkedList<Integer> pendingRows = new LinkedList<Integer>();
+	private final TIntHashSet pendingRowSet = new TIntHashSet();
+	private ExecutorService renderer;
+
+	public VirtualIdentificationTableModel(List<String> columns, ExporterUtil exporterUtil) {
+		this(columns, exporterUtil, DEFAULT_CACHED_ROWS);
+	}
+
+	public VirtualIdentificationTableModel(List<String> columns, ExporterUtil exporterUtil, final int cachedRows) {
+		this.columns = new ArrayList<String>(columns);
+		this.exporterUtil = exporterUtil;
+		renderedRows = new LinkedHashMap<Integer, List<String>>(cachedRows, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, List<String>> eldest) {
+				return size() > cachedRows;
+			}
+		};
+	}
+
+	/**
+	 * Adds a row to the table. This method doesn't notify the listeners, so it
+	 * should be used before the model is set to the table.
+	 *
+	 * @param item
+	 *            a {@link PeptideOccurrence},
+	 *            {@link ExtendedIdentifiedPeptide},
+	 *            {@link ProteinGroupOccurrence} or {@link ProteinGroup}
+	 * @param idSet
+	 * @param rowNumber
+	 *            the value of the 'number' column
+	 */
+	public void addRow(Object item, IdentificationSet idSet, int rowNumber) {
+		if (!(item instanceof PeptideOccurrence || item instanceof ExtendedIdentifiedPeptide
+				|| item instanceof ProteinGroupOccurrence || item instanceof ProteinGroup)) {
+			throw new IllegalMiapeArgumentException("Row type not supported: " + item);
+		}
+		if (idSets.isEmpty() || idSets.get(idSets.size() - 1) != idSet) {
+			idSets.add(idSet);
+		}
+		items.add(item);
+		idSetIndexes.add(idSets.size() - 1);
+		rowNumbers.add(rowNumber);
+	}
+
+	@Override
+	public int getRowCount() {
+		return items.size();
+	}
+
+	@Override
+	public int getColumnCount() {
+		return columns.size();
+	}
+
+	@Override
+	public String getColumnName(int column) {
+		return columns.get(column);
+	}
+
+	@Override
+	public Class<?> getColumnClass(int columnIndex) {
+		return String.class;
+	}
+
+	@Override
+	public boolean isCellEditable(int rowIndex, int columnIndex) {
+		return false;
+	}
+
+	@Override
+	public Object getValueAt(int rowIndex, int columnIndex) {
+		List<String> row;
+		if (SwingUtilities.isEventDispatchThread()) {
+			row = getRenderedRow(rowIndex);
+			if (row == null) {
+				renderInBackground(rowIndex);
+				return RENDERING_VALUE;
+			}
+		} else {
+			row = getRow(rowIndex);
+		}
+		if (columnIndex < row.size()) {
+			return row.get(columnIndex);
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the values of all the cells of a row, rendering them in the
+	 * calling thread if they are not in the cache
+	 *
+	 * @param rowIndex
+	 * @return
+	 */
+	public List<String> getRow(int rowIndex) {
+		List<String> row = getRenderedRow(rowIndex);
+		if (row == null) {
+			row = render(rowIndex, columns);
+			synchronized (this) {
+				renderedRows.put(rowIndex, row);
+			}
+		}
+		return row;
+	}
+
+	private synchronized List<String> getRenderedRow(int rowIndex) {
+		return renderedRows.get(rowIndex);
+	}
+
+	/**
+	 * Gets the values of a column for all the rows, rendering just that column
+	 * for the rows that are not in the cache. Used for sorting and filtering
+	 * without rendering the whole table, so it should not be called from the
+	 * event dispatch thread.
+	 *
+	 * @param columnIndex
+	 * @return
+	 */
+	public String[] getColumnValues(int columnIndex) {
+		final String[] ret = new String[getRowCount()];
+		final List<String> column = Collections.singletonList(columns.get(columnIndex));
+		for (int rowIndex = 0; rowIndex < ret.length; rowIndex++) {
+			final List<String> row = getRenderedRow(rowIndex);
+			if (row != null) {
+				ret[rowIndex] = columnIndex < row.size() ? row.get(columnIndex) : null;
+			} else {
+				final List<String> values = render(rowIndex, column);
+				ret[rowIndex] = values.isEmpty() ? null : values.get(0);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Stops the rendering of the pending rows, when the model is not used
+	 * anymore
+	 */
+	public synchronized void dispose() {
+		pendingRows.clear();
+		pendingRowSet.clear();
+		if (renderer != null) {
+			renderer.shutdownNow();
+			renderer = null;
+		}
+	}
+
+	private synchronized void renderInBackground(int rowIndex) {
+		if (!pendingRowSet.add(rowIndex)) {
+			return;
+		}
+		pendingRows.addFirst(rowIndex);
+		if (renderer == null) {
+			renderer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					final Thread thread = new Thread(runnable, "Identification table renderer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		renderer.submit(new Runnable() {
+			@Override
+			public void run() {
+				renderNextPendingRow();
+			}
+		});
+	}
+
+	private void renderNextPendingRow() {
+		final int rowIndex;
+		synchronized (this) {
+			if (pendingRows.isEmpty()) {
+				return;
+			}
+			rowIndex = pendingRows.removeFirst();
+		}
+		try {
+			getRow(rowIndex);
+		} catch (final RuntimeException e) {
+			log.warn("Error rendering row " + rowIndex + ": " + e.getMessage());
+		} finally {
+			synchronized (this) {
+				pendingRowSet.remove(rowIndex);
+			}
+		}
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				fireTableRowsUpdated(rowIndex, rowIndex);
+			}
+		});
+	}
+
+	private List<String> render(int rowIndex, List<String> columnsToRender) {
+		final Object item = items.get(rowIndex);
+		final IdentificationSet idSet = idSets.get(idSetIndexes.get(rowIndex));
+		final int rowNumber = rowNumbers.get(rowIndex);
+		if (item instanceof PeptideOccurrence) {
+			return exporterUtil.getPeptideInfoList((PeptideOccurrence) item, columnsToRender, rowNumber, idSet);
+		} else if (item instanceof ExtendedIdentifiedPeptide) {
+			final ExtendedIdentifiedPeptide peptide = (ExtendedIdentifiedPeptide) item;
+			final PeptideOccurrence peptideOccurrence = new PeptideOccurrence(peptide.getModificationString());
+			peptideOccurrence.addOccurrence(peptide);
+			return exporterUtil.getPeptideInfoList(peptideOccurrence, columnsToRender, rowNumber, idSet);
+		} else if (item instanceof ProteinGroupOccurrence) {
+			return exporterUtil.getProteinInfoList((ProteinGroupOccurrence) item, columnsToRender, rowNumber, idSet);
+		} else {
+			final ProteinGroupOccurrence proteinGroupOccurrence = new ProteinGroupOccurrence();
+			proteinGroupOccurrence.addOccurrence((ProteinGroup) item);
+			return exporterUtil.getProteinInfoList(proteinGroupOccurrence, columnsToRender, rowNumber, idSet);
+		}
+	}
+}
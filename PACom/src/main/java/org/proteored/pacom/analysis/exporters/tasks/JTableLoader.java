@@ -1,18 +1,14 @@
 package org.proteored.pacom.analysis.exporters.tasks;
 
-import java.util.ArrayList;
+import java.lang.reflect.InvocationTargetException;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import javax.swing.JTable;
 import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableColumn;
-import javax.swing.table.TableModel;
 
 import org.apache.log4j.Logger;
 import org.proteored.miapeapi.exceptions.IllegalMiapeArgumentException;
@@ -25,11 +21,11 @@ import org.proteored.miapeapi.experiment.model.ProteinGroupOccurrence;
 import org.proteored.pacom.analysis.exporters.Exporter;
 import org.proteored.pacom.analysis.exporters.ExporterManager;
 import org.proteored.pacom.analysis.exporters.gui.MyIdentificationTable;
+import org.proteored.pacom.analysis.exporters.gui.VirtualIdentificationTableModel;
 import org.proteored.pacom.analysis.exporters.util.ExportedColumns;
 import org.proteored.pacom.analysis.exporters.util.ExporterUtil;
-import org.proteored.pacom.analysis.util.FileManager;
+import org.proteored.pacom.analysis.util.ProteinAnnotationService;
 
-import edu.scripps.yates.annotations.uniprot.UniprotProteinLocalRetriever;
 import edu.scripps.yates.utilities.fasta.FastaParser;
 import edu.scripps.yates.utilities.progresscounter.ProgressCounter;
 import edu.scripps.yates.utilities.progresscounter.ProgressPrintingType;
@@ -108,9 +104,7 @@ public class JTableLoader extends SwingWorker<Void, Void> implements Exporter<JT
 							+ uniprotAccs.size() + " different proteins in UniprotKB");
 					firePropertyChange(PROTEIN_SEQUENCE_RETRIEVAL, null,
 							"This could take several minutes depending on the number of proteins to retrieve. However, once it is done, it won't be necessary to do it again in the future.");
-					UniprotProteinLocalRetriever upr = FileManager.getUniprotProteinLocalRetriever();
-					upr.setCacheEnabled(true);
-					upr.getAnnotatedProteins(null, uniprotAccs);
+					ProteinAnnotationService.getInstance().getAnnotations(uniprotAccs);
 				} finally {
 					firePropertyChange(PROTEIN_SEQUENCE_RETRIEVAL_DONE, null, null);
 				}
@@ -120,248 +114,86 @@ public class JTableLoader extends SwingWorker<Void, Void> implements Exporter<JT
 
 		log.info("Starting JTable exporting");
 		try {
-			// ((DefaultTableModel)
-			// this.table.getModel()).getDataVector().removeAllElements();
 			((MyIdentificationTable) this.table).clearData();
 
 			List<String> columnsStringList = ExportedColumns.getColumnsStringForTable(this.includePeptides,
 					this.includeGeneInfo, this.isFDRApplied, this.idSets);
-
-			addColumnsInTable(columnsStringList);
-			int progress = 0;
+			// the cells of the table are computed when they are shown, so here
+			// we just collect the items of the rows
+			final VirtualIdentificationTableModel model = new VirtualIdentificationTableModel(columnsStringList,
+					ExporterUtil.getInstance(idSets, includePeptides, retrieveFromUniprot));
 			if (this.includePeptides) {
 				if (this.collapsePeptides) {
 					int total = 0;
-					progress = 0;
 					for (IdentificationSet idSet : idSets) {
 						total += idSet.getPeptideOccurrenceList(true).size();
 					}
+					ProgressCounter counter = new ProgressCounter(total, ProgressPrintingType.PERCENTAGE_STEPS, 0);
 					for (IdentificationSet idSet : idSets) {
-						final Map<String, PeptideOccurrence> peptideOccurrenceHashMap = idSet
-								.getPeptideOccurrenceList(true);
-								// sort if there is a FDR Filter activated that
-								// tells us
-								// which is the score sort
-
-						// firePropertyChange(DATA_EXPORTING_SORTING, null,
-						// peptideOccurrenceHashMap.size());
-						ArrayList<PeptideOccurrence> peptideOccurrenceList = new ArrayList<PeptideOccurrence>();
-						for (PeptideOccurrence peptideOccurrence : peptideOccurrenceHashMap.values()) {
-							peptideOccurrenceList.add(peptideOccurrence);
-						}
-
-						// SorterUtil.sortPeptideOcurrencesByBestPeptideScore(peptideOccurrenceList);
-						// firePropertyChange(DATA_EXPORTING_SORTING_DONE, null,
-						// null);
-						Iterator<PeptideOccurrence> iterator = peptideOccurrenceList.iterator();
-
 						int i = 1;
-						while (iterator.hasNext()) {
-							PeptideOccurrence peptideOccurrence = iterator.next();
-							Thread.sleep(1);
-							boolean isdecoy = peptideOccurrence.isDecoy();
-
-							boolean pass = true;
-
-							if (pass && (includeDecoyHits || (!includeDecoyHits && !isdecoy))) {
-								final List<String> lineStringList = ExporterUtil
-										.getInstance(idSets, includePeptides, retrieveFromUniprot)
-										.getPeptideInfoList(peptideOccurrence, columnsStringList, i++, idSet);
-								addNewRow(lineStringList);
-							}
-
-							progress++;
-							if (total > 0) {
-								int percentage = progress * 100 / total;
-								// log.info(percentage + " %");
-								if (percentage > 100) {
-									percentage = 100;
-								}
-								setProgress(percentage);
+						for (PeptideOccurrence peptideOccurrence : idSet.getPeptideOccurrenceList(true).values()) {
+							checkCancelled();
+							if (includeDecoyHits || !peptideOccurrence.isDecoy()) {
+								model.addRow(peptideOccurrence, idSet, i++);
 							}
-							SwingUtilities.invokeLater(new Runnable() {
-
-								@Override
-								public void run() {
-									JTableLoader.this.table.repaint();
-								}
-							});
-
+							reportProgress(counter);
 						}
 					}
 				} else {
 					int total = 0;
-					progress = 0;
 					for (IdentificationSet idSet : idSets) {
 						total += idSet.getIdentifiedPeptides().size();
 					}
+					ProgressCounter counter = new ProgressCounter(total, ProgressPrintingType.PERCENTAGE_STEPS, 0);
 					for (IdentificationSet idSet : idSets) {
-						final List<ExtendedIdentifiedPeptide> identifiedPeptides = idSet.getIdentifiedPeptides();
-						// sort if there is a FDR Filter activated that tells us
-						// which is the score sort
-
-						// firePropertyChange(DATA_EXPORTING_SORTING, null,
-						// identifiedPeptides.size());
-
-						// SorterUtil.sortPeptidesByBestPeptideScore(identifiedPeptides,
-						// true);
-						// firePropertyChange(DATA_EXPORTING_SORTING_DONE, null,
-						// null);
-
 						int i = 1;
-						for (ExtendedIdentifiedPeptide peptide : identifiedPeptides) {
-							Thread.sleep(1);
-							boolean isdecoy = peptide.isDecoy();
-							boolean pass = true;
-							if (pass && (includeDecoyHits || (!includeDecoyHits && !isdecoy))) {
-								PeptideOccurrence peptideOccurrence = new PeptideOccurrence(
-										peptide.getModificationString());
-								peptideOccurrence.addOccurrence(peptide);
-								final List<String> lineStringList = ExporterUtil
-										.getInstance(idSets, includePeptides, retrieveFromUniprot)
-										.getPeptideInfoList(peptideOccurrence, columnsStringList, i++, idSet);
-
-								// log.info(lineString);
-								addNewRow(lineStringList);
-							}
-
-							progress++;
-							int percentage = progress * 100 / total;
-							if (percentage > 100) {
-								percentage = 100;
+						for (ExtendedIdentifiedPeptide peptide : idSet.getIdentifiedPeptides()) {
+							checkCancelled();
+							if (includeDecoyHits || !peptide.isDecoy()) {
+								model.addRow(peptide, idSet, i++);
 							}
-							// log.info(percentage + " %");
-							setProgress(percentage);
-							SwingUtilities.invokeLater(new Runnable() {
-
-								@Override
-								public void run() {
-									JTableLoader.this.table.repaint();
-								}
-							});
+							reportProgress(counter);
 						}
 					}
 				}
 			} else {
 				// JUST PROTEINS
 				if (this.collapseProteins) {
-
 					int total = 0;
-					progress = 0;
 					for (IdentificationSet idSet : idSets) {
 						total += idSet.getProteinGroupOccurrenceList().size();
 					}
 					ProgressCounter counter = new ProgressCounter(total, ProgressPrintingType.PERCENTAGE_STEPS, 0);
+					int i = 1;
 					for (IdentificationSet idSet : idSets) {
-						final Collection<ProteinGroupOccurrence> proteinOccurrenceSet = idSet
-								.getProteinGroupOccurrenceList().values();
-						final List<ProteinGroupOccurrence> proteinOccurrenceList = new ArrayList<ProteinGroupOccurrence>();
-						for (ProteinGroupOccurrence proteinGroupOccurrence : proteinOccurrenceSet) {
-							proteinOccurrenceList.add(proteinGroupOccurrence);
-						}
-						// sort if there is a FDR Filter activated that tells us
-						// which is the score sort
-
-						// firePropertyChange(DATA_EXPORTING_SORTING, null,
-						// proteinOccurrenceList.size());
-						try {
-							// SorterUtil.sortProteinGroupOcurrencesByBestPeptideScore(proteinOccurrenceList);
-						} catch (Exception e) {
-							log.info(e.getMessage());
-						}
-						// firePropertyChange(DATA_EXPORTING_SORTING_DONE, null,
-						// null);
-						Iterator<ProteinGroupOccurrence> iterator = proteinOccurrenceList.iterator();
-
-						while (iterator.hasNext()) {
-							String printIfNecessary = counter.printIfNecessary();
-							if (printIfNecessary != null && !"".equals(printIfNecessary)) {
-								log.info(printIfNecessary);
+						for (ProteinGroupOccurrence proteinGroupOccurrence : idSet.getProteinGroupOccurrenceList()
+								.values()) {
+							checkCancelled();
+							if (includeDecoyHits || !proteinGroupOccurrence.isDecoy()) {
+								model.addRow(proteinGroupOccurrence, idSet, i++);
 							}
-							ProteinGroupOccurrence proteinGroupOccurrence = iterator.next();
-							Thread.sleep(1L);
-
-							boolean isdecoy = proteinGroupOccurrence.isDecoy();
-							boolean pass = true;
-							if (pass && (includeDecoyHits || (!includeDecoyHits && !isdecoy))) {
-
-								final List<String> lineStringList = ExporterUtil
-										.getInstance(idSets, includePeptides, retrieveFromUniprot)
-										.getProteinInfoList(proteinGroupOccurrence, columnsStringList,
-												Long.valueOf(counter.getCount()).intValue() + 1, idSet);
-								counter.increment();
-								// System.out.println(peptideString);
-								addNewRow(lineStringList);
-							}
-
-							progress++;
-							int percentage = progress * 100 / total;
-							if (percentage > 100) {
-								percentage = 100;
-							}
-							// log.info(percentage + " %");
-							setProgress(percentage);
-							SwingUtilities.invokeLater(new Runnable() {
-
-								@Override
-								public void run() {
-									JTableLoader.this.table.repaint();
-								}
-							});
+							reportProgress(counter);
 						}
 					}
 				} else {
 					int total = 0;
-					progress = 0;
 					for (IdentificationSet idSet : idSets) {
 						total += idSet.getIdentifiedProteinGroups().size();
 					}
+					ProgressCounter counter = new ProgressCounter(total, ProgressPrintingType.PERCENTAGE_STEPS, 0);
 					for (IdentificationSet idSet : idSets) {
-						final List<ProteinGroup> proteinGroups = idSet.getIdentifiedProteinGroups();
-						// sort if there is a FDR Filter activated that tells us
-						// which is the score sort
-
-						// firePropertyChange(DATA_EXPORTING_SORTING, null,
-						// proteinGroups.size());
-
-						// SorterUtil.sortProteinGroupsByBestPeptideScore(proteinGroups);
-						// firePropertyChange(DATA_EXPORTING_SORTING_DONE, null,
-						// null);
-
 						int i = 1;
-						for (ProteinGroup proteinGroup : proteinGroups) {
-							Thread.sleep(1);
-							boolean isdecoy = proteinGroup.isDecoy();
-							boolean pass = true;
-							if (pass && (includeDecoyHits || (!includeDecoyHits && !isdecoy))) {
-								ProteinGroupOccurrence proteinGroupOccurrence = new ProteinGroupOccurrence();
-								proteinGroupOccurrence.addOccurrence(proteinGroup);
-								final List<String> lineStringList = ExporterUtil
-										.getInstance(idSets, includePeptides, retrieveFromUniprot)
-										.getProteinInfoList(proteinGroupOccurrence, columnsStringList, i++, idSet);
-
-								// System.out.println(peptideString);
-								addNewRow(lineStringList);
-							}
-
-							progress++;
-							int percentage = progress * 100 / total;
-							if (percentage > 100) {
-								percentage = 100;
+						for (ProteinGroup proteinGroup : idSet.getIdentifiedProteinGroups()) {
+							checkCancelled();
+							if (includeDecoyHits || !proteinGroup.isDecoy()) {
+								model.addRow(proteinGroup, idSet, i++);
 							}
-							// log.info(percentage + " %");
-							setProgress(percentage);
-							SwingUtilities.invokeLater(new Runnable() {
-
-								@Override
-								public void run() {
-									JTableLoader.this.table.repaint();
-								}
-							});
+							reportProgress(counter);
 						}
 					}
 				}
 			}
+			setTableModel(model);
 		} catch (Exception e) {
 			if (!(e instanceof InterruptedException)) {
 				e.printStackTrace();
@@ -378,49 +210,50 @@ public class JTableLoader extends SwingWorker<Void, Void> implements Exporter<JT
 		return table;
 	}
 
-	private void addColumnsInTable(List<String> columnsStringList) {
-		DefaultTableModel defaultModel = getTableModel();
-		log.info("Adding colums " + columnsStringList.size() + " columns");
-		if (columnsStringList != null) {
-
-			for (String columnName : columnsStringList) {
-				defaultModel.addColumn(columnName);
-			}
-			log.info("Added " + this.table.getColumnCount() + " colums");
-			for (int i = 0; i < this.table.getColumnCount(); i++) {
-				TableColumn column = this.table.getColumnModel().getColumn(i);
-				final ExportedColumns[] columHeaders = ExportedColumns.values();
-				for (ExportedColumns header : columHeaders) {
-					if (column.getHeaderValue().equals(header.getName()))
-						column.setPreferredWidth(header.getDefaultWidth());
-				}
-				column.setResizable(true);
-			}
+	private void checkCancelled() throws InterruptedException {
+		if (isCancelled() || Thread.currentThread().isInterrupted()) {
+			throw new InterruptedException("Table loading cancelled");
 		}
 	}
 
-	private void addNewRow(List<String> lineStringList) {
-		DefaultTableModel defaultModel = getTableModel();
-		try {
-			defaultModel.addRow(lineStringList.toArray());
-		} catch (IndexOutOfBoundsException e) {
-			e.printStackTrace();
-			log.error(lineStringList);
+	private void reportProgress(ProgressCounter counter) {
+		counter.increment();
+		final String percentage = counter.printIfNecessary();
+		if (!"".equals(percentage)) {
+			log.info(percentage);
+			setProgress(Double.valueOf(counter.getPercentage()).intValue());
 		}
-		// this.table.repaint();
-
 	}
 
-	private DefaultTableModel getTableModel() {
-		if (this.table == null) {
-			return null;
-		}
-		TableModel model = this.table.getModel();
-		if (model == null) {
-			model = new DefaultTableModel();
-		}
-		final DefaultTableModel defaultModel = (DefaultTableModel) model;
-		return defaultModel;
+	/**
+	 * Sets the model in the table from the event dispatch thread, and sets the
+	 * default width of the columns
+	 *
+	 * @param model
+	 * @throws InterruptedException
+	 * @throws InvocationTargetException
+	 */
+	private void setTableModel(final VirtualIdentificationTableModel model)
+			throws InterruptedException, InvocationTargetException {
+		SwingUtilities.invokeAndWait(new Runnable() {
+
+			@Override
+			public void run() {
+				// the sorter of the previous model is not valid
+				table.setRowSorter(null);
+				table.setModel(model);
+				log.info("Added " + table.getColumnCount() + " colums and " + model.getRowCount() + " rows");
+				for (int i = 0; i < table.getColumnCount(); i++) {
+					TableColumn column = table.getColumnModel().getColumn(i);
+					final ExportedColumns[] columHeaders = ExportedColumns.values();
+					for (ExportedColumns header : columHeaders) {
+						if (column.getHeaderValue().equals(header.getName()))
+							column.setPreferredWidth(header.getDefaultWidth());
+					}
+					column.setResizable(true);
+				}
+			}
+		});
 	}
 
 	@Override
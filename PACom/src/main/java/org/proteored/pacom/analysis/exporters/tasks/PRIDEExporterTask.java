@@ -5,17 +5,14 @@ import java.util.ArrayList;
 import java.util.List;
 
 import javax.swing.SwingWorker;
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBException;
-import javax.xml.bind.Marshaller;
 
 import org.apache.log4j.Logger;
-import org.proteored.miapeapi.exceptions.WrongXMLFormatException;
 import org.proteored.miapeapi.experiment.model.Experiment;
 import org.proteored.miapeapi.experiment.model.ExperimentList;
 import org.proteored.miapeapi.xml.pride.adapter.ExperimentCollectionAdapterFromExperiment;
 import org.proteored.miapeapi.xml.pride.autogenerated.ExperimentCollection;
 import org.proteored.pacom.analysis.exporters.Exporter;
+import org.proteored.pacom.analysis.exporters.util.PRIDEXmlFileWriter;
 import org.proteored.pacom.gui.MainFrame;
 import org.proteored.pacom.gui.tasks.OntologyLoaderTask;
 
@@ -30,7 +27,7 @@ public class PRIDEExporterTask extends SwingWorker<Void, Void> implements Export
 
 	private final boolean addPeakLists;
 	private final boolean removeNotMatchedSpectra;
-	private static JAXBContext jc;
+	private final PRIDEXmlFileWriter xmlWriter = new PRIDEXmlFileWriter();
 
 	public static final String SINGLE_PRIDE_EXPORTED = "single PRIDE Exported";
 	public static final String SINGLE_PRIDE_EXPORTED_ERROR = "single PRIDE Exported error";
@@ -48,15 +45,6 @@ public class PRIDEExporterTask extends SwingWorker<Void, Void> implements Export
 	private final boolean compressResultingFiles;
 
 	private final boolean excludeNonConclusiveProteins;
-	static {
-		try {
-			jc = JAXBContext.newInstance("org.proteored.miapeapi.xml.pride.autogenerated");
-		} catch (JAXBException e) {
-			e.printStackTrace();
-			log.error(e);
-			throw new WrongXMLFormatException(e);
-		}
-	}
 
 	public PRIDEExporterTask(ExperimentList experimentList, File outputFolder, boolean addPeakLists,
 			boolean removeNotMatchedSpectra, boolean compressResultingFiles, boolean excludeNonConclusiveProteins) {
@@ -88,73 +76,81 @@ public class PRIDEExporterTask extends SwingWorker<Void, Void> implements Export
 	@Override
 	public List<File> export() {
 		log.info("PRIDE Exporter started");
-		Marshaller marshaller;
+		// one experiment at a time, since each one keeps its whole XML tree
+		// in memory, and the adapter and the CV manager are not thread safe
+		for (final Experiment experiment : experimentList.getExperiments()) {
+			if (isCancelled()) {
+				log.info("PRIDE exporter cancelled");
+				break;
+			}
+			final File generatedFile = export(experiment);
+			if (generatedFile != null) {
+				generatedFiles.add(generatedFile);
+			}
+		}
+		return generatedFiles;
+	}
+
+	/**
+	 * Exports an experiment to a PRIDE XML file
+	 *
+	 * @param experiment
+	 * @return the new file, or null if it was already present or if there was
+	 *         an error
+	 */
+	private File export(Experiment experiment) {
+		if (isCancelled()) {
+			return null;
+		}
+		File outputFile = null;
 		try {
-			marshaller = jc.createMarshaller();
-
-			marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, new Boolean(true));
-
-			for (Experiment experiment : this.experimentList.getExperiments()) {
-				try {
-					String newFilePath = outputFolder.getAbsolutePath() + File.separator + experiment.getName()
-							+ ".xml";
-					File xmlFile = new File(newFilePath);
-					if (xmlFile.exists()) {
-						firePropertyChange(SINGLE_PRIDE_ALREADY_PRESENT, null, xmlFile);
-
-						if (compressResultingFiles) {
-							firePropertyChange(SINGLE_PRIDE_COMPRESSING_STARTED, null, xmlFile);
-							File compressedXmlFile = ZipManager.compressGZipFile(xmlFile);
-							xmlFile.delete();
-							firePropertyChange(SINGLE_PRIDE_COMPRESSING_FINISHED, null, compressedXmlFile);
-							experiment.setPrideXMLFile(compressedXmlFile);
-							// generatedFiles.add(compressedXmlFile);
-						} else {
-
-							experiment.setPrideXMLFile(xmlFile);
-							// generatedFiles.add(xmlFile);
-						}
-						continue;
-					}
-
-					firePropertyChange(SINGLE_PRIDE_EXPORTING_STARTED, null, experiment.getFullName());
-					log.info("output file for experiment: " + xmlFile.getAbsolutePath());
-					ExperimentCollection experimentCollection = new ExperimentCollectionAdapterFromExperiment(
-							experiment, OntologyLoaderTask.getCvManager(), this.addPeakLists,
-							this.removeNotMatchedSpectra, this.excludeNonConclusiveProteins,
-							"PACOM v" + MainFrame.getVersion()).adapt();
-					log.info("adapted to XML: " + experimentCollection);
-
-					marshaller.marshal(experimentCollection, xmlFile);
-
-					log.info("created file: " + xmlFile.getAbsolutePath() + " - " + xmlFile.length() / 1024 / 1024
-							+ "Mbytes");
-
-					if (compressResultingFiles) {
-						firePropertyChange(SINGLE_PRIDE_COMPRESSING_STARTED, null, xmlFile);
-						File compressedXmlFile = ZipManager.compressGZipFile(xmlFile);
-						xmlFile.delete();
-						firePropertyChange(SINGLE_PRIDE_COMPRESSING_FINISHED, null, compressedXmlFile);
-						firePropertyChange(SINGLE_PRIDE_EXPORTED, null, compressedXmlFile);
-						experiment.setPrideXMLFile(compressedXmlFile);
-						generatedFiles.add(compressedXmlFile);
-					} else {
-						firePropertyChange(SINGLE_PRIDE_EXPORTED, null, xmlFile);
-						experiment.setPrideXMLFile(xmlFile);
-						generatedFiles.add(xmlFile);
-					}
-				} catch (Exception e) {
-					e.printStackTrace();
-					log.warn(e.getMessage());
-					firePropertyChange(SINGLE_PRIDE_EXPORTED_ERROR, null, e.getMessage());
+			final String newFilePath = outputFolder.getAbsolutePath() + File.separator + experiment.getName()
+					+ ".xml";
+			final File xmlFile = new File(newFilePath);
+			final File compressedXmlFile = PRIDEXmlFileWriter.getOutputFile(xmlFile, true);
+			if (compressResultingFiles && compressedXmlFile.exists()) {
+				firePropertyChange(SINGLE_PRIDE_ALREADY_PRESENT, null, compressedXmlFile);
+				experiment.setPrideXMLFile(compressedXmlFile);
+				return null;
+			}
+			if (xmlFile.exists()) {
+				firePropertyChange(SINGLE_PRIDE_ALREADY_PRESENT, null, xmlFile);
+
+				if (compressResultingFiles) {
+					firePropertyChange(SINGLE_PRIDE_COMPRESSING_STARTED, null, xmlFile);
+					final File compressedFile = ZipManager.compressGZipFile(xmlFile);
+					xmlFile.delete();
+					firePropertyChange(SINGLE_PRIDE_COMPRESSING_FINISHED, null, compressedFile);
+					experiment.setPrideXMLFile(compressedFile);
+				} else {
+					experiment.setPrideXMLFile(xmlFile);
 				}
+				return null;
 			}
 
-		} catch (JAXBException e1) {
-			e1.printStackTrace();
-			firePropertyChange(PRIDE_EXPORTER_ERROR, null, e1.getMessage());
+			firePropertyChange(SINGLE_PRIDE_EXPORTING_STARTED, null, experiment.getFullName());
+			outputFile = PRIDEXmlFileWriter.getOutputFile(xmlFile, compressResultingFiles);
+			log.info("output file for experiment: " + outputFile.getAbsolutePath());
+			ExperimentCollection experimentCollection = new ExperimentCollectionAdapterFromExperiment(experiment,
+					OntologyLoaderTask.getCvManager(), addPeakLists, removeNotMatchedSpectra,
+					excludeNonConclusiveProteins, "PACOM v" + MainFrame.getVersion()).adapt();
+			log.info("adapted to XML: " + experimentCollection);
+
+			xmlWriter.write(experimentCollection, outputFile, compressResultingFiles);
+			// release the XML tree before the next experiment is adapted
+			experimentCollection = null;
+
+			log.info("created file: " + outputFile.getAbsolutePath() + " - " + outputFile.length() / 1024 / 1024
+					+ "Mbytes");
+			firePropertyChange(SINGLE_PRIDE_EXPORTED, null, outputFile);
+			experiment.setPrideXMLFile(outputFile);
+			return outputFile;
+		} catch (final Exception e) {
+			e.printStackTrace();
+			log.warn(e.getMessage());
+			firePropertyChange(SINGLE_PRIDE_EXPORTED_ERROR, null, e.getMessage());
+			return null;
 		}
-		return null;
 	}
 
 }
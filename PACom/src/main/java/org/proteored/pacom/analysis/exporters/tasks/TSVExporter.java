@@ -1,14 +1,10 @@
 package org.proteored.pacom.analysis.exporters.tasks;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import javax.swing.SwingWorker;
@@ -27,10 +23,12 @@ import org.proteored.pacom.analysis.exporters.Exporter;
 import org.proteored.pacom.analysis.exporters.ExporterManager;
 import org.proteored.pacom.analysis.exporters.util.ExportedColumns;
 import org.proteored.pacom.analysis.exporters.util.ExporterUtil;
-import org.proteored.pacom.analysis.util.FileManager;
+import org.proteored.pacom.analysis.exporters.util.ParallelRowRenderer;
+import org.proteored.pacom.analysis.exporters.util.ParallelRowRenderer.RowRenderer;
+import org.proteored.pacom.analysis.exporters.util.ParallelRowRenderer.RowSink;
+import org.proteored.pacom.analysis.exporters.util.TSVLineWriter;
+import org.proteored.pacom.analysis.util.ProteinAnnotationService;
 
-import edu.scripps.yates.annotations.uniprot.UniprotProteinLocalRetriever;
-import edu.scripps.yates.annotations.uniprot.xml.Entry;
 import edu.scripps.yates.utilities.fasta.FastaParser;
 import edu.scripps.yates.utilities.progresscounter.ProgressCounter;
 import edu.scripps.yates.utilities.progresscounter.ProgressPrintingType;
@@ -76,8 +74,9 @@ public class TSVExporter extends SwingWorker<Void, String> implements Exporter<F
 
 	private void saveAs(String path) throws IOException {
 
-		BufferedOutputStream out = null;
-		out = null;
+		TSVLineWriter out = null;
+		// to release the prefetched coverages at the end
+		ExporterUtil usedExporterUtil = null;
 		// create file
 		try {
 
@@ -99,9 +98,7 @@ public class TSVExporter extends SwingWorker<Void, String> implements Exporter<F
 						firePropertyChange(PROTEIN_SEQUENCE_RETRIEVAL, null,
 								"Retrieving protein annotations from " + uniprotAccs.size() + " proteins in UniprotKB");
 
-						UniprotProteinLocalRetriever upr = FileManager.getUniprotProteinLocalRetriever();
-						upr.setCacheEnabled(true);
-						Map<String, Entry> annotatedProteins = upr.getAnnotatedProteins(null, uniprotAccs);
+						ProteinAnnotationService.getInstance().getAnnotations(uniprotAccs);
 					} finally {
 						firePropertyChange(PROTEIN_SEQUENCE_RETRIEVAL_DONE, null, null);
 					}
@@ -109,174 +106,105 @@ public class TSVExporter extends SwingWorker<Void, String> implements Exporter<F
 				}
 			}
 
-			out = new BufferedOutputStream(new FileOutputStream(file));
+			out = new TSVLineWriter(file, separator);
 
-			List<String> columnsStringList = ExportedColumns.getColumnsString(this.showPeptides, this.includeGeneInfo,
+			final List<String> columnsStringList = ExportedColumns.getColumnsString(this.showPeptides, this.includeGeneInfo,
 					this.isFDRApplied, idSets);
-			ExporterUtil exporterUtil = ExporterUtil.getInstance(idSets, showPeptides, retrieveProteinSequences);
-			String columnsString = exporterUtil.getStringFromList(columnsStringList, separator) + NEWLINE;
+			final ExporterUtil exporterUtil = ExporterUtil.getInstance(idSets, showPeptides,
+					retrieveProteinSequences);
+			usedExporterUtil = exporterUtil;
 
-			log.info(columnsString);
-			out.write(columnsString.getBytes());
+			log.info(exporterUtil.getStringFromList(columnsStringList, separator));
+			out.writeLine(columnsStringList);
 
 			// final Map<String,
 			// IdentificationOccurrence<ExtendedIdentifiedProtein>>
 			// proteinOccurrenceList = this.idSet
 			// .getProteinOccurrenceList();
+			// the rows are rendered in parallel and written in order. The
+			// coverages use the Uniprot retriever, so they are calculated
+			// before, all at once
+			final boolean coverages = columnsStringList.contains(ExportedColumns.PROTEIN_COV.toString());
 			int i = 1;
-			for (IdentificationSet idSet : idSets) {
-				// if (progress == 0)
-				// return;
+			for (final IdentificationSet idSet : idSets) {
 				if (this.showPeptides) {
 					if (this.showBestPeptides) {
 
 						Collection<PeptideOccurrence> peptideOccurrenceList = getPeptideOccurrenceListToExport(idSet);
-
-						// firePropertyChange(DATA_EXPORTING_SORTING, null,
-						// peptideOccurrenceList.size());
+						if (coverages) {
+							final List<ExtendedIdentifiedPeptide> peptides = new ArrayList<ExtendedIdentifiedPeptide>();
+							for (final PeptideOccurrence peptideOccurrence : peptideOccurrenceList) {
+								peptides.add(peptideOccurrence.getFirstOccurrence());
+							}
+							exporterUtil.prefetchCoveragesOfPeptides(peptides, idSet);
+						}
 
 						// SorterUtil.sortPeptideOcurrencesByBestPeptideScore(peptideOccurrenceList);
-						// firePropertyChange(DATA_EXPORTING_SORTING_DONE, null,
-						// null);
-						Iterator<PeptideOccurrence> iterator = peptideOccurrenceList.iterator();
-
-						int total = peptideOccurrenceList.size();
-						ProgressCounter counter = new ProgressCounter(total, ProgressPrintingType.PERCENTAGE_STEPS, 0);
-
-						while (iterator.hasNext()) {
-							PeptideOccurrence peptideOccurrence = iterator.next();
-
-							Thread.sleep(1);
-
-							final List<String> peptideColumns = exporterUtil.getPeptideInfoList(peptideOccurrence,
-									columnsStringList, i++, idSet);
-							String lineString = exporterUtil.getStringFromList(peptideColumns, separator) + NEWLINE;
-							// log.info(lineString);
-							out.write(lineString.getBytes());
-
-							counter.increment();
-
-							final String percentage = counter.printIfNecessary();
-							if (!"".equals(percentage)) {
-								log.info(percentage);
+						i = new ParallelRowRenderer<PeptideOccurrence>(new RowRenderer<PeptideOccurrence>() {
+							@Override
+							public List<String> render(PeptideOccurrence peptideOccurrence, int index) {
+								return exporterUtil.getPeptideInfoList(peptideOccurrence, columnsStringList, index,
+										idSet);
 							}
-							setProgress(Double.valueOf(counter.getPercentage()).intValue());
-						}
+						}).render(peptideOccurrenceList, i, new ExportSink(out, peptideOccurrenceList.size()));
 					} else {
 						final Collection<ExtendedIdentifiedPeptide> peptidelistToExport = getPeptideListToExport(idSet);
-						// sort if there is a FDR Filter activated that tells us
-						// which is the score sort
-						// firePropertyChange(DATA_EXPORTING_SORTING, null,
-						// peptidelistToExport.size());
+						if (coverages) {
+							exporterUtil.prefetchCoveragesOfPeptides(peptidelistToExport, idSet);
+						}
 						// SorterUtil.sortPeptidesByBestPeptideScore(peptidelistToExport,
 						// true);
-						// firePropertyChange(DATA_EXPORTING_SORTING_DONE, null,
-						// null);
-
-						int total = peptidelistToExport.size();
-						ProgressCounter counter = new ProgressCounter(total, ProgressPrintingType.PERCENTAGE_STEPS, 0);
-
-						for (ExtendedIdentifiedPeptide peptide : peptidelistToExport) {
-
-							Thread.sleep(1);
-
-							PeptideOccurrence peptideOccurrence = new PeptideOccurrence(
-									peptide.getModificationString());
-							peptideOccurrence.addOccurrence(peptide);
-							final List<String> lineStringList = exporterUtil.getPeptideInfoList(peptideOccurrence,
-									columnsStringList, i++, idSet);
-							String lineString = exporterUtil.getStringFromList(lineStringList, separator) + NEWLINE;
-							// log.info(lineString);
-							out.write(lineString.getBytes());
-
-							counter.increment();
-
-							final String percentage = counter.printIfNecessary();
-							if (!"".equals(percentage)) {
-								log.info(percentage);
-								setProgress(Double.valueOf(counter.getPercentage()).intValue());
-							}
-
-						}
+						i = new ParallelRowRenderer<ExtendedIdentifiedPeptide>(
+								new RowRenderer<ExtendedIdentifiedPeptide>() {
+									@Override
+									public List<String> render(ExtendedIdentifiedPeptide peptide, int index) {
+										PeptideOccurrence peptideOccurrence = new PeptideOccurrence(
+												peptide.getModificationString());
+										peptideOccurrence.addOccurrence(peptide);
+										return exporterUtil.getPeptideInfoList(peptideOccurrence, columnsStringList,
+												index, idSet);
+									}
+								}).render(peptidelistToExport, i, new ExportSink(out, peptidelistToExport.size()));
 					}
 				} else {
 					// JUST PROTEINS
 					if (this.showBestProteins) {
 						Collection<ProteinGroupOccurrence> proteinGroupOccurrenceList = getProteinGroupOccurrenceToExport(
 								idSet);
-
-						// sort if there is a FDR Filter activated that tells us
-						// which is the score sort
-
-						// firePropertyChange(DATA_EXPORTING_SORTING, null,
-						// proteinGroupOccurrenceList.size());
-						try {
-							// SorterUtil.sortProteinGroupOcurrencesByBestPeptideScore(proteinGroupOccurrenceList);
-						} catch (Exception e) {
-
+						if (coverages) {
+							exporterUtil.prefetchCoverages(proteinGroupOccurrenceList);
 						}
-						// firePropertyChange(DATA_EXPORTING_SORTING_DONE, null,
-						// null);
-						Iterator<ProteinGroupOccurrence> iterator = proteinGroupOccurrenceList.iterator();
-
-						int total = proteinGroupOccurrenceList.size();
-						ProgressCounter counter = new ProgressCounter(total, ProgressPrintingType.PERCENTAGE_STEPS, 0);
-
-						while (iterator.hasNext()) {
-							ProteinGroupOccurrence proteinGroupOccurrence = iterator.next();
-							Thread.sleep(1);
 
-							final List<String> proteinStringList = exporterUtil
-									.getProteinInfoList(proteinGroupOccurrence, columnsStringList, i++, idSet);
-							String proteinString = exporterUtil.getStringFromList(proteinStringList, separator)
-									+ NEWLINE;
-							// System.out.println(peptideString);
-							out.write(proteinString.getBytes());
-
-							counter.increment();
-
-							final String percentage = counter.printIfNecessary();
-							if (!"".equals(percentage)) {
-								log.info(percentage);
+						// SorterUtil.sortProteinGroupOcurrencesByBestPeptideScore(proteinGroupOccurrenceList);
+						i = new ParallelRowRenderer<ProteinGroupOccurrence>(new RowRenderer<ProteinGroupOccurrence>() {
+							@Override
+							public List<String> render(ProteinGroupOccurrence proteinGroupOccurrence, int index) {
+								return exporterUtil.getProteinInfoList(proteinGroupOccurrence, columnsStringList,
+										index, idSet);
 							}
-							setProgress(Double.valueOf(counter.getPercentage()).intValue());
-						}
+						}).render(proteinGroupOccurrenceList, i,
+								new ExportSink(out, proteinGroupOccurrenceList.size()));
 					} else {
 						final List<ProteinGroup> proteinGroupsToExport = getProteinGroupsToExport(idSet);
-						// sort if there is a FDR Filter activated that tells us
-						// which is the score sort
-						// firePropertyChange(DATA_EXPORTING_SORTING, null,
-						// proteinGroupsToExport.size());
-
 						// SorterUtil.sortProteinGroupsByBestPeptideScore(proteinGroupsToExport);
-						// firePropertyChange(DATA_EXPORTING_SORTING_DONE, null,
-						// null);
-
-						int total = proteinGroupsToExport.size();
-						ProgressCounter counter = new ProgressCounter(total, ProgressPrintingType.PERCENTAGE_STEPS, 0);
-
-						for (ProteinGroup proteinGroup : proteinGroupsToExport) {
-
-							Thread.sleep(1);
-
-							ProteinGroupOccurrence proteinOccurrence = new ProteinGroupOccurrence();
+						// a protein group occurrence per row, so that their
+						// coverages can be calculated before
+						final List<ProteinGroupOccurrence> proteinOccurrences = new ArrayList<ProteinGroupOccurrence>();
+						for (final ProteinGroup proteinGroup : proteinGroupsToExport) {
+							final ProteinGroupOccurrence proteinOccurrence = new ProteinGroupOccurrence();
 							proteinOccurrence.addOccurrence(proteinGroup);
-
-							final List<String> proteinStringList = exporterUtil.getProteinInfoList(proteinOccurrence,
-									columnsStringList, i++, idSet);
-							String proteinString = exporterUtil.getStringFromList(proteinStringList, separator)
-									+ NEWLINE;
-							// System.out.println(peptideString);
-							out.write(proteinString.getBytes());
-
-							counter.increment();
-
-							final String percentage = counter.printIfNecessary();
-							if (!"".equals(percentage)) {
-								log.info(percentage);
-							}
-							setProgress(Double.valueOf(counter.getPercentage()).intValue());
+							proteinOccurrences.add(proteinOccurrence);
+						}
+						if (coverages) {
+							exporterUtil.prefetchCoverages(proteinOccurrences);
 						}
+						i = new ParallelRowRenderer<ProteinGroupOccurrence>(new RowRenderer<ProteinGroupOccurrence>() {
+							@Override
+							public List<String> render(ProteinGroupOccurrence proteinOccurrence, int index) {
+								return exporterUtil.getProteinInfoList(proteinOccurrence, columnsStringList, index,
+										idSet);
+							}
+						}).render(proteinOccurrences, i, new ExportSink(out, proteinOccurrences.size()));
 					}
 				}
 			}
@@ -286,10 +214,12 @@ public class TSVExporter extends SwingWorker<Void, String> implements Exporter<F
 				error = e.getMessage();
 			}
 		} finally {
-			// Close the BufferedOutputStream
+			if (usedExporterUtil != null) {
+				usedExporterUtil.clearPrefetchedCoverages();
+			}
+			// Close the writer
 			try {
 				if (out != null) {
-					out.flush();
 					out.close();
 				}
 			} catch (IOException ex) {
@@ -302,6 +232,37 @@ public class TSVExporter extends SwingWorker<Void, String> implements Exporter<F
 
 	}
 
+	/**
+	 * Writes the rendered rows into the file, checking cooperatively whether
+	 * the task has been cancelled and only updating the progress of the task
+	 * when the percentage changes
+	 */
+	private class ExportSink implements RowSink {
+		private final TSVLineWriter out;
+		private final ProgressCounter counter;
+
+		private ExportSink(TSVLineWriter out, int total) {
+			this.out = out;
+			counter = new ProgressCounter(total, ProgressPrintingType.PERCENTAGE_STEPS, 0);
+		}
+
+		@Override
+		public void write(List<String> row) throws IOException {
+			out.writeLine(row);
+			counter.increment();
+			final String percentage = counter.printIfNecessary();
+			if (!"".equals(percentage)) {
+				log.info(percentage);
+				setProgress(Double.valueOf(counter.getPercentage()).intValue());
+			}
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return TSVExporter.this.isCancelled();
+		}
+	}
+
 	private Collection<PeptideOccurrence> getPeptideOccurrenceListToExport(IdentificationSet idSet) {
 		Collection<PeptideOccurrence> peptideOccurrences = idSet.getPeptideOccurrenceList(distinguisModificatedPeptides)
 				.values();
@@ -445,13 +406,23 @@ public class TSVExporter extends SwingWorker<Void, String> implements Exporter<F
 		try {
 			save();
 		} catch (IOException e) {
-			firePropertyChange(DATA_EXPORTING_ERROR, null, e.getMessage());
 			e.printStackTrace();
+			// reported by done(), or by getError() when it is not executed as
+			// a task
+			error = e.getMessage();
 			this.cancel(true);
 		}
 		return null;
 	}
 
+	/**
+	 *
+	 * @return the error of the export, or null if there was no error
+	 */
+	public String getError() {
+		return error;
+	}
+
 	public void setDistinguisModificatedPeptides(boolean distinguisModificatedPeptides) {
 		this.distinguisModificatedPeptides = distinguisModificatedPeptides;
 	}
@@ -6,6 +6,7 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -30,10 +31,10 @@ import org.proteored.pacom.analysis.genes.ENSGInfo;
 import org.proteored.pacom.analysis.genes.GeneDistributionReader;
 import org.proteored.pacom.analysis.util.DataLevel;
 import org.proteored.pacom.analysis.util.FileManager;
+import org.proteored.pacom.analysis.util.ProteinAnnotation;
+import org.proteored.pacom.analysis.util.ProteinAnnotationService;
 
 import edu.scripps.yates.annotations.uniprot.UniprotProteinLocalRetriever;
-import edu.scripps.yates.annotations.uniprot.xml.Entry;
-import edu.scripps.yates.annotations.util.UniprotEntryUtil;
 import edu.scripps.yates.utilities.fasta.FastaParser;
 import gnu.trove.map.hash.THashMap;
 import gnu.trove.set.hash.THashSet;
@@ -50,23 +51,38 @@ public class ExporterUtil {
 	// Peptide Score Order
 	private List<String> peptideScoreNames;
 
-	private final static NumberFormat threeDigitsDecimal;
+	// formats are not thread safe, and rows can be rendered in parallel
+	private final static ThreadLocal<NumberFormat> threeDigitsDecimal = new ThreadLocal<NumberFormat>() {
+		@Override
+		protected NumberFormat initialValue() {
+			final NumberFormat ret = NumberFormat.getInstance();
+			ret.setMaximumFractionDigits(3);
+			ret.setGroupingUsed(false);
+			return ret;
+		}
+	};
 
-	private final static DecimalFormat df;
+	private final static ThreadLocal<DecimalFormat> df = new ThreadLocal<DecimalFormat>() {
+		@Override
+		protected DecimalFormat initialValue() {
+			return new DecimalFormat("#.##");
+		}
+	};
 
-	private final static DecimalFormat scientificDecimalFormat;
+	private final static ThreadLocal<DecimalFormat> scientificDecimalFormat = new ThreadLocal<DecimalFormat>() {
+		@Override
+		protected DecimalFormat initialValue() {
+			return new DecimalFormat("0.00E00");
+		}
+	};
 	private static boolean retrieveFromUniprot;
 	private static boolean testOntologies;
+	// coverages of the protein groups of the rows being exported, computed
+	// before the rows are rendered in parallel, so that the rendering threads
+	// don't wait for each other on the Uniprot retriever
+	private volatile Map<ProteinGroupOccurrence, String> prefetchedCoverages = Collections.emptyMap();
 	public static final String VALUE_SEPARATOR = ",";
 
-	static {
-		threeDigitsDecimal = NumberFormat.getInstance();
-		threeDigitsDecimal.setMaximumFractionDigits(3);
-		threeDigitsDecimal.setGroupingUsed(false);
-		df = new DecimalFormat("#.##");
-		scientificDecimalFormat = new DecimalFormat("0.00E00");
-	}
-
 	private ExporterUtil(Collection<IdentificationSet> idSets, boolean includePeptides, boolean retrieveFromUniprot) {
 		// utils
 
@@ -615,11 +631,9 @@ public class ExporterUtil {
 					final String uniprotACC = FastaParser.getUniProtACC(protein.getAccession());
 					if (uniprotACC != null) {
 						if (retrieveFromUniprot) {
-							final Map<String, Entry> annotatedProtein = FileManager.getUniprotProteinLocalRetriever()
-									.getAnnotatedProtein(null, uniprotACC);
-							if (annotatedProtein.containsKey(uniprotACC)) {
-								final Entry entry = annotatedProtein.get(uniprotACC);
-								description = UniprotEntryUtil.getProteinDescription(entry);
+							final ProteinAnnotation annotation = ProteinAnnotationService.getInstance().getAnnotation(uniprotACC);
+							if (annotation != null) {
+								description = annotation.getDescription();
 							}
 						}
 					}
@@ -638,19 +652,89 @@ public class ExporterUtil {
 		return cleanString(proteinsDescriptions.toString());
 	}
 
+	/**
+	 * Computes, in the calling thread, the coverages of the protein groups of
+	 * the rows that are going to be rendered, so that the rows can be rendered
+	 * in parallel without waiting for the Uniprot retriever. They are kept
+	 * until the next call or until {@link #clearPrefetchedCoverages()} is
+	 * called.
+	 *
+	 * @param occurrences
+	 *            the protein groups of the rows
+	 */
+	public void prefetchCoverages(Collection<ProteinGroupOccurrence> occurrences) {
+		final long t1 = System.currentTimeMillis();
+		final Map<ProteinGroupOccurrence, String> coverages = new IdentityHashMap<ProteinGroupOccurrence, String>();
+		final UniprotProteinLocalRetriever upr = FileManager.getUniprotProteinLocalRetriever();
+		synchronized (upr) {
+			for (final ProteinGroupOccurrence occurrence : occurrences) {
+				if (occurrence == null || coverages.containsKey(occurrence)) {
+					continue;
+				}
+				String coverage = null;
+				try {
+					coverage = ProteinMerger.getCoverage(occurrence, null, retrieveFromUniprot, upr);
+				} catch (final Exception e) {
+					log.debug("Error calculating coverage: " + e.getMessage());
+				}
+				coverages.put(occurrence, coverage);
+			}
+		}
+		prefetchedCoverages = coverages;
+		log.info(coverages.size() + " protein coverages calculated in " + (System.currentTimeMillis() - t1) + " ms");
+	}
+
+	/**
+	 * Computes the coverages of the protein groups of the proteins of some
+	 * peptides, as in {@link #prefetchCoverages(Collection)}
+	 *
+	 * @param peptides
+	 *            the peptides of the rows
+	 * @param idSet
+	 *            where the protein groups are taken from
+	 */
+	public void prefetchCoveragesOfPeptides(Collection<ExtendedIdentifiedPeptide> peptides, IdentificationSet idSet) {
+		final List<ProteinGroupOccurrence> occurrences = new ArrayList<ProteinGroupOccurrence>();
+		for (final ExtendedIdentifiedPeptide peptide : peptides) {
+			for (final IdentifiedProtein identifiedProtein : peptide.getIdentifiedProteins()) {
+				occurrences.add(idSet.getProteinGroupOccurrence(identifiedProtein.getAccession()));
+			}
+		}
+		prefetchCoverages(occurrences);
+	}
+
+	public void clearPrefetchedCoverages() {
+		prefetchedCoverages = Collections.emptyMap();
+	}
+
+	/**
+	 *
+	 * @param occurrence
+	 * @return the prefetched coverage of the protein group, or the one
+	 *         calculated now under the monitor of the Uniprot retriever
+	 */
+	private String getCoverage(ProteinGroupOccurrence occurrence) {
+		final Map<ProteinGroupOccurrence, String> coverages = prefetchedCoverages;
+		if (coverages.containsKey(occurrence)) {
+			return coverages.get(occurrence);
+		}
+		final UniprotProteinLocalRetriever upr = FileManager.getUniprotProteinLocalRetriever();
+		synchronized (upr) {
+			return ProteinMerger.getCoverage(occurrence, null, retrieveFromUniprot, upr);
+		}
+	}
+
 	private String getProteinCoverage(PeptideOccurrence peptideOccurrence, IdentificationSet idSet) {
 		final StringBuilder proteinsCovs = new StringBuilder();
-		final UniprotProteinLocalRetriever uplr = FileManager.getUniprotProteinLocalRetriever();
 		final ExtendedIdentifiedPeptide peptide = peptideOccurrence.getFirstOccurrence();
 		final List<IdentifiedProtein> peptideProteins = peptide.getIdentifiedProteins();
 		for (final IdentifiedProtein identifiedProtein : peptideProteins) {
-			String coverage = ProteinMerger.getCoverage(
-					idSet.getProteinGroupOccurrence(identifiedProtein.getAccession()), null, retrieveFromUniprot, uplr);
+			String coverage = getCoverage(idSet.getProteinGroupOccurrence(identifiedProtein.getAccession()));
 			if (coverage != null) {
 				Double cov = Double.valueOf(coverage);
 				cov = cov * 100.0;
 
-				coverage = df.format(cov);
+				coverage = df.get().format(cov);
 				if (!"".equals(proteinsCovs.toString()))
 					proteinsCovs.append(VALUE_SEPARATOR);
 				proteinsCovs.append(coverage);
@@ -666,13 +750,12 @@ public class ExporterUtil {
 		if (occurrence.isDecoy())
 			return cleanString("");
 		try {
-			final UniprotProteinLocalRetriever upr = FileManager.getUniprotProteinLocalRetriever();
-			String coverage = ProteinMerger.getCoverage(occurrence, null, retrieveFromUniprot, upr);
+			String coverage = getCoverage(occurrence);
 
 			if (coverage != null) {
 				Double cov = Double.valueOf(coverage);
 				cov = cov * 100.0;
-				coverage = df.format(cov);
+				coverage = df.get().format(cov);
 				if (!"".equals(proteinsCovs.toString()))
 					proteinsCovs.append(VALUE_SEPARATOR);
 				proteinsCovs.append(coverage);
@@ -732,11 +815,9 @@ public class ExporterUtil {
 			boolean added = false;
 			if (uniprotACC != null) {
 				if (retrieveFromUniprot) {
-					final Map<String, Entry> annotatedProtein = FileManager.getUniprotProteinLocalRetriever()
-							.getAnnotatedProtein(null, uniprotACC);
-					if (annotatedProtein.containsKey(uniprotACC)) {
-						final Entry entry = annotatedProtein.get(uniprotACC);
-						final String ensg_id = UniprotEntryUtil.getENSGID(entry);
+					final ProteinAnnotation annotation = ProteinAnnotationService.getInstance().getAnnotation(uniprotACC);
+					if (annotation != null) {
+						final String ensg_id = annotation.getENSGID();
 						if (ensg_id != null) {
 							if (!dicc.contains(ensg_id)) {
 								dicc.add(ensg_id);
@@ -807,14 +888,12 @@ public class ExporterUtil {
 			final String uniprotACC = FastaParser.getUniProtACC(acc);
 			if (uniprotACC != null) {
 				if (retrieveFromUniprot) {
-					final UniprotProteinLocalRetriever upr = FileManager.getUniprotProteinLocalRetriever();
-					final Map<String, Entry> annotatedProtein = upr.getAnnotatedProtein(null, uniprotACC);
-					if (annotatedProtein.containsKey(uniprotACC)) {
-						final Entry entry = annotatedProtein.get(uniprotACC);
-						final List<String> geneNameList = UniprotEntryUtil.getGeneName(entry, true, true);
-						if (!geneNameList.isEmpty()) {
-							if (!geneNames.contains(geneNameList.get(0))) {
-								geneNames.add(geneNameList.get(0));
+					final ProteinAnnotation annotation = ProteinAnnotationService.getInstance().getAnnotation(uniprotACC);
+					if (annotation != null) {
+						final String geneName = annotation.getGeneName();
+						if (geneName != null) {
+							if (!geneNames.contains(geneName)) {
+								geneNames.add(geneName);
 							}
 						}
 					}
@@ -890,11 +969,9 @@ public class ExporterUtil {
 			if (uniprotACC != null) {
 				if (retrieveFromUniprot) {
 					// try from internet
-					final UniprotProteinLocalRetriever upr = FileManager.getUniprotProteinLocalRetriever();
-					final Map<String, Entry> annotatedProtein = upr.getAnnotatedProtein(null, uniprotACC);
-					if (annotatedProtein.containsKey(uniprotACC)) {
-						final Entry entry = annotatedProtein.get(uniprotACC);
-						String chrName = UniprotEntryUtil.getChromosomeName(entry);
+					final ProteinAnnotation annotation = ProteinAnnotationService.getInstance().getAnnotation(uniprotACC);
+					if (annotation != null) {
+						String chrName = annotation.getChromosomeName();
 						if (chrName != null) {
 							if (chrName.startsWith("Chromosome")) {
 								chrName = chrName.substring("Chromosome".length()).trim();
@@ -955,11 +1032,9 @@ public class ExporterUtil {
 			}
 			final String uniprotACC = FastaParser.getUniProtACC(acc);
 			if (uniprotACC != null) {
-				final Map<String, Entry> annotatedProtein = FileManager.getUniprotProteinLocalRetriever()
-						.getAnnotatedProtein(null, uniprotACC);
-				if (annotatedProtein.containsKey(uniprotACC)) {
-					final Entry entry = annotatedProtein.get(uniprotACC);
-					final String evidence = UniprotEntryUtil.getUniprotEvidence(entry);
+				final ProteinAnnotation annotation = ProteinAnnotationService.getInstance().getAnnotation(uniprotACC);
+				if (annotation != null) {
+					final String evidence = annotation.getEvidence();
 					if (evidence != null) {
 						if (!dicc.contains(evidence)) {
 							dicc.add(evidence);
@@ -989,11 +1064,9 @@ public class ExporterUtil {
 			}
 			final String uniprotACC = FastaParser.getUniProtACC(acc);
 			if (uniprotACC != null) {
-				final Map<String, Entry> annotatedProtein = FileManager.getUniprotProteinLocalRetriever()
-						.getAnnotatedProtein(null, uniprotACC);
-				if (annotatedProtein.containsKey(uniprotACC)) {
-					final Entry entry = annotatedProtein.get(uniprotACC);
-					final String evidence = UniprotEntryUtil.getUniprotEvidence(entry);
+				final ProteinAnnotation annotation = ProteinAnnotationService.getInstance().getAnnotation(uniprotACC);
+				if (annotation != null) {
+					final String evidence = annotation.getEvidence();
 					if (evidence != null) {
 						if (!dicc.contains(evidence)) {
 							dicc.add(evidence);
@@ -1112,7 +1185,7 @@ public class ExporterUtil {
 			return "0";
 		if (score > 0.01) {
 
-			format = threeDigitsDecimal.format(score);
+			format = threeDigitsDecimal.get().format(score);
 		} else {
 			// NumberFormat formater = DecimalFormat.getInstance();
 			// formater.setMaximumFractionDigits(30);
@@ -1120,7 +1193,7 @@ public class ExporterUtil {
 			// formater.setGroupingUsed(false);
 			// format = formater.format(score);
 
-			format = scientificDecimalFormat.format(score);
+			format = scientificDecimalFormat.get().format(score);
 		}
 		// final String format = df.format(score);
 		// log.info("Parsed from " + score + " to " + format);
@@ -1158,7 +1231,7 @@ public class ExporterUtil {
 			// formater.setMinimumFractionDigits(3);
 			// formater.setGroupingUsed(false);
 			// format = formater.format(score);
-			format = scientificDecimalFormat.format(score);
+			format = scientificDecimalFormat.get().format(score);
 		}
 		// final String format = df.format(score);
 		// log.info("Parsed from " + score + " to " + format);
@@ -0,0 +1,94 @@
+package org.proteored.pacom.analysis.exporters.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+
+import org.apache.log4j.Logger;
+import org.proteored.miapeapi.exceptions.WrongXMLFormatException;
+import org.proteored.miapeapi.xml.pride.autogenerated.ExperimentCollection;
+
+/**
+ * Writes PRIDE XML documents, formatted, to a file.<br>
+ * The whole {@link ExperimentCollection} built by the adapter of miape-api is
+ * marshalled at once. When the output is compressed, the marshaller writes
+ * straight into a {@link GZIPOutputStream}, so that the uncompressed file is
+ * never written to disk and read again to be compressed.
+ *
+ * @author Salva
+ *
+ */
+public class PRIDEXmlFileWriter {
+	private static final Logger log = Logger.getLogger("log4j.logger.org.proteored");
+	private static final String ENCODING = "UTF-8";
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static JAXBContext jc;
+
+	private static synchronized JAXBContext getJAXBContext() {
+		if (jc == null) {
+			try {
+				jc = JAXBContext.newInstance("org.proteored.miapeapi.xml.pride.autogenerated");
+			} catch (final JAXBException e) {
+				e.printStackTrace();
+				log.error(e);
+				throw new WrongXMLFormatException(e);
+			}
+		}
+		return jc;
+	}
+
+	/**
+	 *
+	 * @param xmlFile
+	 *            the path of the uncompressed file
+	 * @param compress
+	 * @return the file that will be written for that path, with the '.gz'
+	 *         extension if compressed
+	 */
+	public static File getOutputFile(File xmlFile, boolean compress) {
+		if (compress) {
+			return new File(xmlFile.getAbsolutePath() + ".gz");
+		}
+		return xmlFile;
+	}
+
+	/**
+	 * Writes a PRIDE XML document to a file. If an error occurs, the partially
+	 * written file is deleted.
+	 *
+	 * @param experimentCollection
+	 * @param outputFile
+	 * @param compress
+	 *            if true, the document is gzipped while it is written
+	 * @throws IOException
+	 * @throws JAXBException
+	 */
+	public void write(ExperimentCollection experimentCollection, File outputFile, boolean compress)
+			throws IOException, JAXBException {
+		boolean written = false;
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile), BUFFER_SIZE);
+		try {
+			if (compress) {
+				out = new GZIPOutputStream(out, BUFFER_SIZE);
+			}
+			final Marshaller marshaller = getJAXBContext().createMarshaller();
+			marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+			marshaller.setProperty(Marshaller.JAXB_ENCODING, ENCODING);
+			marshaller.marshal(experimentCollection, out);
+			written = true;
+		} finally {
+			// also finishes the gzip stream
+			out.close();
+			if (!written) {
+				outputFile.delete();
+			}
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package org.proteored.pacom.analysis.exporters.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Renders the rows of an export in a pool of worker threads and delivers them
+ * to a sink in the original order.<br>
+ * The items are split in chunks that are rendered concurrently. Only a limited
+ * number of chunks are rendered ahead of the one being written, so the memory
+ * needed doesn't depend on the number of rows.
+ *
+ * @author Salva
+ *
+ * @param <T>
+ *            the type of the items to render, such as PeptideOccurrence or
+ *            ProteinGroupOccurrence
+ */
+public class ParallelRowRenderer<T> {
+	private static final Logger log = Logger.getLogger("log4j.logger.org.proteored");
+	private static final int DEFAULT_CHUNK_SIZE = 200;
+	private static ExecutorService sharedExecutor;
+	private static int numThreads;
+	private final RowRenderer<T> renderer;
+	private final int chunkSize;
+
+	/**
+	 * Renders a single row
+	 *
+	 * @param <T>
+	 */
+	public interface RowRenderer<T> {
+		/**
+		 * @param item
+		 * @param index
+		 *            the number of the row in the export
+		 * @return the values of the columns of the row
+		 */
+		public List<String> render(T item, int index);
+	}
+
+	/**
+	 * Receives the rendered rows, always in the order of the items
+	 */
+	public interface RowSink {
+		/**
+		 * @param row
+		 * @throws Exception
+		 *             that will stop the rendering
+		 */
+		public void write(List<String> row) throws Exception;
+
+		/**
+		 * @return true if the rendering has to be stopped
+		 */
+		public boolean isCancelled();
+	}
+
+	public ParallelRowRenderer(RowRenderer<T> renderer) {
+		this(renderer, DEFAULT_CHUNK_SIZE);
+	}
+
+	public ParallelRowRenderer(RowRenderer<T> renderer, int chunkSize) {
+		this.renderer = renderer;
+		this.chunkSize = Math.max(1, chunkSize);
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (sharedExecutor == null) {
+			numThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+			log.info("Creating pool of " + numThreads + " threads for exporting data");
+			final AtomicInteger threadNumber = new AtomicInteger(1);
+			sharedExecutor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					final Thread thread = new Thread(r, "export-renderer-" + threadNumber.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return sharedExecutor;
+	}
+
+	/**
+	 * Renders all the items and writes the rows to the sink in the same order
+	 * as the items
+	 *
+	 * @param items
+	 * @param firstIndex
+	 *            index of the first row. The rest of rows will have
+	 *            consecutive indexes
+	 * @param sink
+	 * @return the index of the next row after the rendered ones
+	 * @throws InterruptedException
+	 *             if the sink is cancelled or the thread is interrupted
+	 * @throws Exception
+	 *             the error thrown while rendering or writing a row
+	 */
+	public int render(Collection<T> items, int firstIndex, RowSink sink) throws Exception {
+		final ExecutorService executor = getExecutor();
+		// number of chunks rendered ahead of the one being written
+		final int maxChunksInFlight = numThreads * 2;
+		final Deque<Future<List<List<String>>>> inFlight = new ArrayDeque<Future<List<List<String>>>>();
+		int index = firstIndex;
+		try {
+			List<T> chunk = new ArrayList<T>(chunkSize);
+			for (final T item : items) {
+				chunk.add(item);
+				if (chunk.size() == chunkSize) {
+					inFlight.add(executor.submit(new ChunkTask(chunk, index)));
+					index += chunk.size();
+					chunk = new ArrayList<T>(chunkSize);
+					if (inFlight.size() >= maxChunksInFlight) {
+						writeChunk(inFlight.poll(), sink);
+					}
+				}
+			}
+			if (!chunk.isEmpty()) {
+				inFlight.add(executor.submit(new ChunkTask(chunk, index)));
+				index += chunk.size();
+			}
+			while (!inFlight.isEmpty()) {
+				writeChunk(inFlight.poll(), sink);
+			}
+			return index;
+		} finally {
+			// only not empty if something went wrong
+			for (final Future<List<List<String>>> future : inFlight) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	private void writeChunk(Future<List<List<String>>> future, RowSink sink) throws Exception {
+		checkCancelled(sink);
+		List<List<String>> rows;
+		try {
+			rows = future.get();
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw e;
+		}
+		for (final List<String> row : rows) {
+			checkCancelled(sink);
+			sink.write(row);
+		}
+	}
+
+	private void checkCancelled(RowSink sink) throws InterruptedException {
+		if (sink.isCancelled() || Thread.currentThread().isInterrupted()) {
+			throw new InterruptedException("Export cancelled");
+		}
+	}
+
+	private class ChunkTask implements Callable<List<List<String>>> {
+		private final List<T> chunk;
+		private final int firstIndex;
+
+		private ChunkTask(List<T> chunk, int firstIndex) {
+			this.chunk = chunk;
+			this.firstIndex = firstIndex;
+		}
+
+		@Override
+		public List<List<String>> call() throws Exception {
+			final List<List<String>> rows = new ArrayList<List<String>>(chunk.size());
+			int index = firstIndex;
+			for (final T item : chunk) {
+				if (Thread.currentThread().isInterrupted()) {
+					throw new InterruptedException("Export cancelled");
+				}
+				rows.add(renderer.render(item, index++));
+			}
+			return rows;
+		}
+	}
+}
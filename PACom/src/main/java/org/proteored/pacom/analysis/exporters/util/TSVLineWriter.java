@@ -0,0 +1,72 @@
+package org.proteored.pacom.analysis.exporters.util;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import org.proteored.pacom.analysis.exporters.Exporter;
+
+/**
+ * Writes the lines of a separated values file directly into a buffered
+ * character encoder, without building an intermediate {@link String} per line.
+ * <br>
+ * The output is the same as writing the bytes of
+ * {@link ExporterUtil#getStringFromList(List, char)} followed by a
+ * {@link Exporter#NEWLINE}, that is, null values are written as '-', every
+ * value (including the last one) is followed by the separator, and the
+ * platform default charset is used.
+ *
+ * @author Salva
+ *
+ */
+public class TSVLineWriter implements Closeable, Flushable {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private final Writer writer;
+	private final char separator;
+
+	public TSVLineWriter(File file, char separator) throws IOException {
+		this(new OutputStreamWriter(new FileOutputStream(file), Charset.defaultCharset()), separator);
+	}
+
+	public TSVLineWriter(Writer writer, char separator) {
+		this.writer = new BufferedWriter(writer, BUFFER_SIZE);
+		this.separator = separator;
+	}
+
+	/**
+	 * Writes the values separated by the separator and followed by a new line
+	 *
+	 * @param values
+	 * @throws IOException
+	 */
+	public void writeLine(List<String> values) throws IOException {
+		if (values != null) {
+			for (final String value : values) {
+				if (value != null) {
+					writer.write(value);
+				} else {
+					writer.write('-');
+				}
+				writer.write(separator);
+			}
+		}
+		writer.write(Exporter.NEWLINE);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+}
@@ -1,14 +1,10 @@
 package org.proteored.pacom.analysis.genes;
 
-import java.io.BufferedReader;
-import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.net.MalformedURLException;
 import java.net.URISyntaxException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -32,7 +28,7 @@ public class GeneDistributionReader {
 	public static final String[] chromosomeNames = { "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12",
 			"13", "14", "15", "16", "17", "18", "19", "20", "21", "22", "MT", "X", "Y" };
 	// private static final String chromosomeFileName = "nextprot_chromosome_";
-	private final InputStream uniprotEnsemblMapInputStream;
+	private final URL uniprotEnsemblMapURL;
 	// private static final String ensg2uniprotFileName =
 	// "Chr16_EnsG2Uniprot.tsv";
 	// private static final String ensg2uniprotChr16FileName =
@@ -52,7 +48,14 @@ public class GeneDistributionReader {
 	 * @throws FileNotFoundException
 	 */
 	private GeneDistributionReader(File uniprotEnsemblMapFile) throws FileNotFoundException {
-		uniprotEnsemblMapInputStream = new FileInputStream(uniprotEnsemblMapFile);
+		if (!uniprotEnsemblMapFile.exists()) {
+			throw new FileNotFoundException(uniprotEnsemblMapFile.getAbsolutePath() + " not found");
+		}
+		try {
+			uniprotEnsemblMapURL = uniprotEnsemblMapFile.toURI().toURL();
+		} catch (MalformedURLException e) {
+			throw new FileNotFoundException(e.getMessage());
+		}
 	}
 
 	/**
@@ -62,7 +65,7 @@ public class GeneDistributionReader {
 	 */
 	private GeneDistributionReader() {
 		ClassLoader cl = this.getClass().getClassLoader();
-		uniprotEnsemblMapInputStream = cl.getResourceAsStream(ensg2uniprotFileName);
+		uniprotEnsemblMapURL = cl.getResource(ensg2uniprotFileName);
 
 	}
 
@@ -81,221 +84,38 @@ public class GeneDistributionReader {
 		return instance;
 	}
 
-	private Map<String, List<ENSGInfo>> proteinGeneMapping;
-	private Map<String, Map<String, List<ENSGInfo>>> proteinGeneMappingByChromosome;
+	private UniprotEnsemblIndex index;
 
 	/**
-	 * Gets a hasMap with keys=uniprotACC and values=List of {@link ENSGInfo}
+	 * Gets the index of the mapping between uniprot accessions and genes,
+	 * building it from the file 'Uniprot_Ensembl_Map_03_May_2017.txt' the
+	 * first time. See {@link UniprotEnsemblIndex} for the format of that file.
 	 * 
-	 * @Param chrName name of the chromosome that is taken into account. If
-	 *        null, all chromosomes will be read.
 	 * @return
 	 */
-	public Map<String, List<ENSGInfo>> getProteinGeneMapping(String chrName) {
-		// Get proteins from Chr16 according to the table that comes from
-		// ENSEMBL
-		if (proteinGeneMapping != null) {
-			if (chrName != null) {
-				Map<String, List<ENSGInfo>> ret = getChromosomeProteinGeneMapping(chrName);
-				return ret;
-			} else
-				return proteinGeneMapping;
-		}
-
-		proteinGeneMapping = new THashMap<String, List<ENSGInfo>>();
-		proteinGeneMappingByChromosome = new THashMap<String, Map<String, List<ENSGInfo>>>();
-		// Map<String, ENSGInfo> assignedGenes =
-		// getGeneInfoFromProteoRedDistribution();
-		Map<String, ENSGInfo> assignedGenes = new THashMap<String, ENSGInfo>();
-		// log.info("Num assigned genes = " + assignedGenes.size());
-		// log.info("Mapping ENSG Ids to Uniprot IDS");
-		mapGenesToUniprot(assignedGenes);
-		// log.info(proteinGeneMapping.size() + " proteins mapped to a Gene");
-
-		// log.info("Getting Gene information from UNIPROT fasta files");
-		// Add information from TREMBL and SWISSPROT FILES
-		// addChr16InfoFromOtherFiles(assignedGenes, chrName);
-		// log.info(proteinGeneMapping.size() + " proteins mapped to a Gene");
-		// log.info("Getting Gene information from other chromosomes (nextprot
-		// files)");
-		// ADD information from other chromosomes from NextProt mapping
-
-		// addOtherChromosomesInfo(chrName);
-		// log.info(proteinGeneMapping.size() + " proteins mapped to a Gene");
-
-		return proteinGeneMapping;
-	}
-
-	private Map<String, List<ENSGInfo>> getChromosomeProteinGeneMapping(String chrName) {
-		// if (this.proteinGeneMapping != null) {
-		if (proteinGeneMappingByChromosome != null) {
-			return proteinGeneMappingByChromosome.get(chrName);
+	private synchronized UniprotEnsemblIndex getIndex() {
+		if (index == null) {
+			if (uniprotEnsemblMapURL == null) {
+				throw new IllegalMiapeArgumentException(ensg2uniprotFileName + " not found");
+			}
+			index = UniprotEnsemblIndex.load(uniprotEnsemblMapURL);
+			log.info(index.getNumAccessions() + " proteins mapped to " + index.getNumGenes()
+					+ " genes after reading from " + ensg2uniprotFileName);
 		}
-		// Map<String, List<ENSGInfo>> ret = new THashMap<String,
-		// List<ENSGInfo>>();
-		//
-		// for (String proteinACC : proteinGeneMapping.keySet()) {
-		// List<ENSGInfo> list = this.proteinGeneMapping.get(proteinACC);
-		// List<ENSGInfo> newList = new ArrayList<ENSGInfo>();
-		// for (ENSGInfo ensgInfo : list) {
-		// if (chrName.equals(ensgInfo.getChrName())) {
-		// newList.add(ensgInfo);
-		// }
-		// }
-		// if (!newList.isEmpty())
-		// ret.put(proteinACC, newList);
-		// }
-		// return ret;
-		// }
-		return null;
+		return index;
 	}
 
 	/**
-	 * Gets a mapping between the uniprot accessions and the list of genes,
-	 * adding values to the class variable proteinGeneMapping Map<String,
-	 * List<ENSGInfo>>.<br>
-	 * The information added is comming from the file
-	 * 'Uniprot_Ensembl_Map_06_02_2013.txt' and consist on a table with the
-	 * following columns:
-	 * <ul>
-	 * <li>Uniprot ACC</li>
-	 * <li>ENSG identifier</li>
-	 * <li>ENSP identifier</li>
-	 * <li>Gene name</li>
-	 * <li>chromosome number</li>
-	 * </ul>
-	 * That file is automatically generated by the test "testGetUniprotMappings"
-	 * in the GeneReaderTests.java file, reading from fasta uniprot and trembl
-	 * files generated by the bioinfo group.
+	 * Gets a hasMap with keys=uniprotACC and values=List of {@link ENSGInfo}.
+	 * The map is read only and it is backed by a memory-mapped index, so it
+	 * doesn't hold the whole table in memory.
 	 * 
-	 * @param genes
+	 * @Param chrName name of the chromosome that is taken into account. If
+	 *        null, all chromosomes will be read.
+	 * @return
 	 */
-	private void mapGenesToUniprot(Map<String, ENSGInfo> genes) {
-		try {
-
-			if (uniprotEnsemblMapInputStream != null) {
-				// Get the object of DataInputStream
-				DataInputStream in = new DataInputStream(uniprotEnsemblMapInputStream);
-				try {
-					BufferedReader br = new BufferedReader(new InputStreamReader(in));
-					String strLine;
-					int numLines = 0;
-					while ((strLine = br.readLine()) != null) {
-						numLines++;
-						if (numLines > 1) {
-							if (strLine.contains(",")) {
-								final String[] split = strLine.split(",");
-
-								String ensG_ID = "";
-								String ensP_ID = "";
-								// String ensT_ID = "";
-								String acc = "";
-								String acc_trembl = "";
-								String chr = "";
-								// String pe = "";
-								// String score = "";
-								// boolean missing = false;
-								// boolean anchor = false;
-								// if (split[1].equals("1")) {
-								// anchor = true;
-								// }
-								ensG_ID = split[0];
-								// ensT_ID = split[1];
-								acc = split[2];
-								acc_trembl = split[3];
-								chr = split[4];
-								ensP_ID = split[5];
-								// if (split.length > 4)
-								// pe = split[4];
-								// if (split.length > 5)
-								// missing = split[5].equals("1") ? true :
-								// false;
-								if (ensG_ID != null) {
-									ENSGInfo geneInfo = null;
-									if (genes.containsKey(ensG_ID)) {
-										geneInfo = genes.get(ensG_ID);
-									} else {
-										geneInfo = new ENSGInfo();
-										geneInfo.setEnsG_ID(ensG_ID);
-										genes.put(ensG_ID, geneInfo);
-									}
-									// geneInfo.setMissing(missing);
-									if (!"".equals(acc)) {
-										geneInfo.addProteinACC(acc);
-									}
-									if (!"".equals(acc_trembl)) {
-										geneInfo.addProteinACC(acc_trembl);
-									}
-									if (!"".equals(ensP_ID)) {
-										geneInfo.addENSP(ensP_ID);
-									}
-									if (!"".equals(chr)) {
-										geneInfo.setChrName(chr);
-									}
-									// if (!"".equals(pe)) {
-									// geneInfo.setProteinEvidence(pe);
-									// }
-
-								}
-							} else {
-								log.warn("The file doesn't contain tabs");
-							}
-						}
-					}
-					log.info("Num genes=" + genes.size() + " in " + ensg2uniprotFileName + " file");
-					if (genes != null && !genes.isEmpty()) {
-						for (ENSGInfo gene : genes.values()) {
-							final List<String> proteinACCList = gene.getProteinACC();
-							if (proteinACCList != null) {
-								for (String proteinACC : proteinACCList) {
-									if (!proteinGeneMapping.containsKey(proteinACC)) {
-										List<ENSGInfo> geneList = new ArrayList<ENSGInfo>();
-										geneList.add(gene);
-										proteinGeneMapping.put(proteinACC, geneList);
-									} else {
-										proteinGeneMapping.get(proteinACC).add(gene);
-									}
-									// By chromosome
-									String chrName = gene.getChrName();
-									if (chrName != null) {
-										if (!proteinGeneMappingByChromosome.containsKey(chrName)) {
-											Map<String, List<ENSGInfo>> proteinGeneMappingChr = new THashMap<String, List<ENSGInfo>>();
-											List<ENSGInfo> geneList = new ArrayList<ENSGInfo>();
-											geneList.add(gene);
-											proteinGeneMappingChr.put(proteinACC, geneList);
-											proteinGeneMappingByChromosome.put(chrName, proteinGeneMappingChr);
-										} else {
-											Map<String, List<ENSGInfo>> proteinGeneMappingChr = proteinGeneMappingByChromosome
-													.get(chrName);
-											if (!proteinGeneMappingChr.containsKey(proteinACC)) {
-												List<ENSGInfo> geneList = new ArrayList<ENSGInfo>();
-												geneList.add(gene);
-												proteinGeneMappingChr.put(proteinACC, geneList);
-											} else {
-												proteinGeneMappingChr.get(proteinACC).add(gene);
-											}
-										}
-									}
-								}
-							}
-						}
-					}
-				} finally {
-					in.close();
-					log.info(proteinGeneMapping.size() + " proteins mapped to some gene after reading from "
-							+ ensg2uniprotFileName);
-				}
-			} else {
-				throw new IllegalMiapeArgumentException(ensg2uniprotFileName + " not found");
-			}
-		} catch (FileNotFoundException e) {
-			log.info(e.getMessage());
-			throw new IllegalMiapeArgumentException(e.getMessage());
-		} catch (IOException e) {
-			log.info(e.getMessage());
-			throw new IllegalMiapeArgumentException(e.getMessage());
-		}
-
+	public Map<String, List<ENSGInfo>> getProteinGeneMapping(String chrName) {
+		return getIndex().getProteinGeneMapping(chrName);
 	}
 
 	// private void addOtherChromosomesInfo(String chrName) {
@@ -607,23 +427,16 @@ public class GeneDistributionReader {
 
 		Map<String, List<ENSGInfo>> ret = new THashMap<String, List<ENSGInfo>>();
 
-		Map<String, List<ENSGInfo>> genes = proteinGeneMappingByChromosome.get(chrName);
-		for (List<ENSGInfo> engInfos : genes.values()) {
-			for (ENSGInfo ensgInfo : engInfos) {
-				if (ensgInfo.getEnsG_ID() != null)
-					if (!ret.containsKey(chrName)) {
-
-						List<ENSGInfo> list = new ArrayList<ENSGInfo>();
-						list.add(ensgInfo);
-						ret.put(chrName, list);
-					} else {
-						List<ENSGInfo> list = ret.get(chrName);
-						if (!list.contains(ensgInfo))
-							list.add(ensgInfo);
-					}
-
+		for (ENSGInfo ensgInfo : getIndex().getGenesInChromosome(chrName)) {
+			if (ensgInfo.getEnsG_ID() != null) {
+				if (!ret.containsKey(chrName)) {
+					List<ENSGInfo> list = new ArrayList<ENSGInfo>();
+					list.add(ensgInfo);
+					ret.put(chrName, list);
+				} else {
+					ret.get(chrName).add(ensgInfo);
+				}
 			}
-
 		}
 
 		return ret;
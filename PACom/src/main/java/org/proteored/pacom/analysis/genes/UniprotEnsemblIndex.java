@@ -0,0 +1,826 @@
+package org.proteored.pacom.analysis.genes;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.log4j.Logger;
+import org.proteored.miapeapi.exceptions.IllegalMiapeArgumentException;
+import org.proteored.pacom.analysis.util.FileManager;
+
+import edu.scripps.yates.utilities.files.FileUtils;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.THashMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import gnu.trove.set.hash.THashSet;
+
+/**
+ * Compiled binary index of the mapping between Uniprot accessions and Ensembl
+ * genes.<br>
+ * The index is generated once from the CSV mapping file and stored in
+ * APP_FOLDER/user_data/gene_mapping/ . After that, it is memory-mapped, so
+ * the lookups from a protein accession to its genes and chromosomes are done
+ * with an open addressing hash table over the mapped file, without loading
+ * the whole table in the heap. Only the {@link ENSGInfo} of the genes that are
+ * requested are created, and they are kept with soft references, so that the
+ * same gene is represented by the same object while it is used, and the genes
+ * that are not used anymore can be collected when the memory is low.<br>
+ * The index is rebuilt automatically when the size or the last modification
+ * date of the CSV file change.
+ *
+ * @author Salva
+ *
+ */
+public class UniprotEnsemblIndex {
+	private static final Logger log = Logger.getLogger("log4j.logger.org.proteored");
+	private static final String INDEX_FOLDER_NAME = "gene_mapping";
+	private static final String INDEX_EXTENSION = ".index";
+	private static final int MAGIC_NUMBER = 0x454E5347; // "ENSG"
+	private static final int FORMAT_VERSION = 1;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// header
+	private static final int HEADER_SIZE = 64;
+	private static final int H_MAGIC = 0;
+	private static final int H_VERSION = 4;
+	private static final int H_SOURCE_LENGTH = 8;
+	private static final int H_SOURCE_LAST_MODIFIED = 16;
+	private static final int H_SOURCE_HASH = 24;
+	private static final int H_NUM_GENES = 28;
+	private static final int H_NUM_ACCS = 32;
+	private static final int H_NUM_CHRS = 36;
+	private static final int H_NUM_SLOTS = 40;
+	private static final int H_GENES = 44;
+	private static final int H_ACCS = 48;
+	private static final int H_SLOTS = 52;
+	private static final int H_CHRS = 56;
+	private static final int H_INTS = 60;
+	// gene record: ensG, chromosome index, accs start, accs count, ensPs
+	// start, ensPs count
+	private static final int GENE_RECORD = 6;
+	// accession record: hash, accession, genes start, genes count
+	private static final int ACC_RECORD = 4;
+	// chromosome record: name, accs start, accs count, genes start, genes
+	// count
+	private static final int CHR_RECORD = 5;
+
+	private final ByteBuffer buffer;
+	private final int numGenes;
+	private final int numAccs;
+	private final int numChrs;
+	private final int numSlots;
+	private final int genesOffset;
+	private final int accsOffset;
+	private final int slotsOffset;
+	private final int chrsOffset;
+	private final int intsOffset;
+	private final TIntObjectHashMap<GeneReference> genes = new TIntObjectHashMap<GeneReference>();
+	private final ReferenceQueue<ENSGInfo> collectedGenes = new ReferenceQueue<ENSGInfo>();
+	private final Map<String, Map<String, List<ENSGInfo>>> proteinGeneMappingByChromosome = new THashMap<String, Map<String, List<ENSGInfo>>>();
+	private final Map<String, List<ENSGInfo>> proteinGeneMapping;
+
+	private UniprotEnsemblIndex(ByteBuffer buffer) {
+		this.buffer = buffer;
+		numGenes = buffer.getInt(H_NUM_GENES);
+		numAccs = buffer.getInt(H_NUM_ACCS);
+		numChrs = buffer.getInt(H_NUM_CHRS);
+		numSlots = buffer.getInt(H_NUM_SLOTS);
+		genesOffset = buffer.getInt(H_GENES);
+		accsOffset = buffer.getInt(H_ACCS);
+		slotsOffset = buffer.getInt(H_SLOTS);
+		chrsOffset = buffer.getInt(H_CHRS);
+		intsOffset = buffer.getInt(H_INTS);
+		proteinGeneMapping = new ProteinGeneMap(-1);
+	}
+
+	/**
+	 * Gets the index of a CSV mapping file, building it if it is not created
+	 * yet or if it is outdated.
+	 *
+	 * @param source
+	 *            URL of the CSV file (a file or a resource in the classpath)
+	 * @return
+	 */
+	public static UniprotEnsemblIndex load(URL source) {
+		if (source == null) {
+			throw new IllegalMiapeArgumentException("Uniprot-Ensembl mapping file not found");
+		}
+		long sourceLength;
+		long sourceLastModified;
+		try {
+			final URLConnection connection = source.openConnection();
+			sourceLength = connection.getContentLengthLong();
+			sourceLastModified = connection.getLastModified();
+		} catch (final IOException e) {
+			throw new IllegalMiapeArgumentException(e.getMessage());
+		}
+		final int sourceHash = source.toString().hashCode();
+		final File indexFile = getIndexFile(source);
+		if (indexFile != null && indexFile.exists()) {
+			try {
+				final ByteBuffer mapped = map(indexFile);
+				if (isValidHeader(mapped, sourceLength, sourceLastModified, sourceHash)) {
+					log.info("Using gene mapping index " + indexFile.getAbsolutePath());
+					return new UniprotEnsemblIndex(mapped);
+				}
+				log.info("Gene mapping index " + indexFile.getAbsolutePath() + " is outdated");
+			} catch (final IOException e) {
+				log.warn("Error reading gene mapping index " + indexFile.getAbsolutePath() + ": " + e.getMessage());
+			}
+		}
+		log.info("Building gene mapping index from " + source);
+		final byte[] bytes = build(source, sourceLength, sourceLastModified, sourceHash);
+		if (indexFile != null && save(indexFile, bytes)) {
+			try {
+				return new UniprotEnsemblIndex(map(indexFile));
+			} catch (final IOException e) {
+				log.warn("Error reading gene mapping index " + indexFile.getAbsolutePath() + ": " + e.getMessage());
+			}
+		}
+		// the index couldn't be stored, so use it from the heap
+		return new UniprotEnsemblIndex(ByteBuffer.wrap(bytes));
+	}
+
+	private static File getIndexFile(URL source) {
+		final String userDataPath = FileManager.getUserDataPath();
+		if (userDataPath == null) {
+			return null;
+		}
+		final File folder = new File(userDataPath + INDEX_FOLDER_NAME);
+		return new File(folder, FilenameUtils.getBaseName(source.getPath()) + INDEX_EXTENSION);
+	}
+
+	private static ByteBuffer map(File indexFile) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(indexFile, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+			// the mapping remains valid after the channel is closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static boolean isValidHeader(ByteBuffer buffer, long sourceLength, long sourceLastModified,
+			int sourceHash) {
+		return buffer.capacity() >= HEADER_SIZE && buffer.getInt(H_MAGIC) == MAGIC_NUMBER
+				&& buffer.getInt(H_VERSION) == FORMAT_VERSION && buffer.getLong(H_SOURCE_LENGTH) == sourceLength
+				&& buffer.getLong(H_SOURCE_LAST_MODIFIED) == sourceLastModified
+				&& buffer.getInt(H_SOURCE_HASH) == sourceHash;
+	}
+
+	private static boolean save(File indexFile, byte[] bytes) {
+		final File folder = indexFile.getParentFile();
+		if (!folder.exists() && !folder.mkdirs()) {
+			return false;
+		}
+		File tmpFile = null;
+		OutputStream out = null;
+		boolean written = false;
+		try {
+			// a unique name, so that several instances don't write in the
+			// same file
+			tmpFile = File.createTempFile(indexFile.getName(), ".tmp", folder);
+			out = new FileOutputStream(tmpFile);
+			out.write(bytes);
+			written = true;
+		} catch (final IOException e) {
+			log.warn("Error writing gene mapping index " + indexFile.getAbsolutePath() + ": " + e.getMessage());
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (final IOException e) {
+					written = false;
+				}
+			}
+		}
+		if (!written) {
+			if (tmpFile != null) {
+				tmpFile.delete();
+			}
+			return false;
+		}
+		if (indexFile.exists()) {
+			indexFile.delete();
+		}
+		if (!tmpFile.renameTo(indexFile)) {
+			tmpFile.delete();
+			return false;
+		}
+		log.info("Gene mapping index created at " + indexFile.getAbsolutePath() + " ("
+				+ FileUtils.getDescriptiveSizeFromBytes(indexFile.length()) + ")");
+		return true;
+	}
+
+	/**
+	 * Reads the CSV file and builds the binary index.<br>
+	 * The CSV file has a header line and the following columns:
+	 * <ul>
+	 * <li>ENSG identifier</li>
+	 * <li>ENST identifier</li>
+	 * <li>Uniprot ACC</li>
+	 * <li>Uniprot ACC (TrEMBL)</li>
+	 * <li>chromosome name</li>
+	 * <li>ENSP identifier</li>
+	 * </ul>
+	 *
+	 * @param source
+	 * @return
+	 */
+	private static byte[] build(URL source, long sourceLength, long sourceLastModified, int sourceHash) {
+		final Map<String, ENSGInfo> genesByID = new LinkedHashMap<String, ENSGInfo>();
+		InputStream in = null;
+		try {
+			in = source.openStream();
+			final BufferedReader br = new BufferedReader(new InputStreamReader(in));
+			String strLine;
+			int numLines = 0;
+			while ((strLine = br.readLine()) != null) {
+				numLines++;
+				if (numLines == 1) {
+					continue;
+				}
+				if (!strLine.contains(",")) {
+					log.warn("The file doesn't contain commas");
+					continue;
+				}
+				final String[] split = strLine.split(",", -1);
+				final String ensG_ID = getColumn(split, 0);
+				final String acc = getColumn(split, 2);
+				final String acc_trembl = getColumn(split, 3);
+				final String chr = getColumn(split, 4);
+				final String ensP_ID = getColumn(split, 5);
+				ENSGInfo geneInfo = genesByID.get(ensG_ID);
+				if (geneInfo == null) {
+					geneInfo = new ENSGInfo();
+					geneInfo.setEnsG_ID(ensG_ID);
+					genesByID.put(ensG_ID, geneInfo);
+				}
+				if (!"".equals(acc)) {
+					geneInfo.addProteinACC(acc);
+				}
+				if (!"".equals(acc_trembl)) {
+					geneInfo.addProteinACC(acc_trembl);
+				}
+				if (!"".equals(ensP_ID)) {
+					geneInfo.addENSP(ensP_ID);
+				}
+				if (!"".equals(chr)) {
+					geneInfo.setChrName(chr);
+				}
+			}
+		} catch (final IOException e) {
+			log.info(e.getMessage());
+			throw new IllegalMiapeArgumentException(e.getMessage());
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (final IOException e) {
+				}
+			}
+		}
+		log.info("Num genes=" + genesByID.size() + " in " + source);
+		return new IndexBuilder(genesByID.values()).toBytes(sourceLength, sourceLastModified, sourceHash);
+	}
+
+	private static String getColumn(String[] split, int index) {
+		if (index < split.length) {
+			return split[index].trim();
+		}
+		return "";
+	}
+
+	/**
+	 * Gets a map with keys=uniprotACC and values=List of {@link ENSGInfo},
+	 * backed by the index
+	 *
+	 * @param chrName
+	 *            name of the chromosome that is taken into account. If null,
+	 *            all chromosomes are taken into account.
+	 * @return the map or null if the chromosome is not in the index
+	 */
+	public Map<String, List<ENSGInfo>> getProteinGeneMapping(String chrName) {
+		if (chrName == null) {
+			return proteinGeneMapping;
+		}
+		synchronized (proteinGeneMappingByChromosome) {
+			if (!proteinGeneMappingByChromosome.containsKey(chrName)) {
+				final int chrIndex = findChromosome(chrName);
+				proteinGeneMappingByChromosome.put(chrName, chrIndex >= 0 ? new ProteinGeneMap(chrIndex) : null);
+			}
+			return proteinGeneMappingByChromosome.get(chrName);
+		}
+	}
+
+	/**
+	 * Gets the genes of a chromosome
+	 *
+	 * @param chrName
+	 * @return the genes or an empty list if the chromosome is not in the index
+	 */
+	public List<ENSGInfo> getGenesInChromosome(String chrName) {
+		final int chrIndex = findChromosome(chrName);
+		if (chrIndex < 0) {
+			return Collections.emptyList();
+		}
+		final int record = chrsOffset + chrIndex * CHR_RECORD * 4;
+		final int start = buffer.getInt(record + 12);
+		final int count = buffer.getInt(record + 16);
+		final List<ENSGInfo> ret = new ArrayList<ENSGInfo>(count);
+		for (int i = 0; i < count; i++) {
+			ret.add(getGene(getInt(start + i)));
+		}
+		return ret;
+	}
+
+	/**
+	 *
+	 * @return the number of different accessions in the index
+	 */
+	public int getNumAccessions() {
+		return numAccs;
+	}
+
+	/**
+	 *
+	 * @return the number of genes in the index
+	 */
+	public int getNumGenes() {
+		return numGenes;
+	}
+
+	private int findChromosome(String chrName) {
+		for (int chrIndex = 0; chrIndex < numChrs; chrIndex++) {
+			if (chrName.equals(getString(buffer.getInt(chrsOffset + chrIndex * CHR_RECORD * 4)))) {
+				return chrIndex;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Looks for the accession in the hash table
+	 *
+	 * @param acc
+	 * @return the index of the accession record or -1 if not found
+	 */
+	private int findAccession(String acc) {
+		if (numSlots == 0) {
+			return -1;
+		}
+		final int hash = acc.hashCode();
+		byte[] key = null;
+		int slot = mix(hash) & (numSlots - 1);
+		while (true) {
+			final int accIndex = buffer.getInt(slotsOffset + slot * 4);
+			if (accIndex < 0) {
+				return -1;
+			}
+			final int record = accsOffset + accIndex * ACC_RECORD * 4;
+			if (buffer.getInt(record) == hash) {
+				if (key == null) {
+					key = acc.getBytes(UTF8);
+				}
+				if (equalsString(buffer.getInt(record + 4), key)) {
+					return accIndex;
+				}
+			}
+			slot = (slot + 1) & (numSlots - 1);
+		}
+	}
+
+	private String getAccession(int accIndex) {
+		return getString(buffer.getInt(accsOffset + accIndex * ACC_RECORD * 4 + 4));
+	}
+
+	/**
+	 * Gets the genes of an accession
+	 *
+	 * @param accIndex
+	 * @param chrIndex
+	 *            if >= 0, only the genes of that chromosome are returned
+	 * @return
+	 */
+	private List<ENSGInfo> getGenes(int accIndex, int chrIndex) {
+		final int record = accsOffset + accIndex * ACC_RECORD * 4;
+		final int start = buffer.getInt(record + 8);
+		final int count = buffer.getInt(record + 12);
+		final List<ENSGInfo> ret = new ArrayList<ENSGInfo>(count);
+		for (int i = 0; i < count; i++) {
+			final int geneIndex = getInt(start + i);
+			if (chrIndex < 0 || getChromosomeIndex(geneIndex) == chrIndex) {
+				ret.add(getGene(geneIndex));
+			}
+		}
+		return ret;
+	}
+
+	private boolean hasGenesInChromosome(int accIndex, int chrIndex) {
+		final int record = accsOffset + accIndex * ACC_RECORD * 4;
+		final int start = buffer.getInt(record + 8);
+		final int count = buffer.getInt(record + 12);
+		for (int i = 0; i < count; i++) {
+			if (getChromosomeIndex(getInt(start + i)) == chrIndex) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private int getChromosomeIndex(int geneIndex) {
+		return buffer.getInt(genesOffset + geneIndex * GENE_RECORD * 4 + 4);
+	}
+
+	private ENSGInfo getGene(int geneIndex) {
+		synchronized (genes) {
+			removeCollectedGenes();
+			final GeneReference reference = genes.get(geneIndex);
+			ENSGInfo gene = reference != null ? reference.get() : null;
+			if (gene == null) {
+				final int record = genesOffset + geneIndex * GENE_RECORD * 4;
+				gene = new ENSGInfo();
+				gene.setEnsG_ID(getString(buffer.getInt(record)));
+				final int chrIndex = buffer.getInt(record + 4);
+				if (chrIndex >= 0) {
+					gene.setChrName(getString(buffer.getInt(chrsOffset + chrIndex * CHR_RECORD * 4)));
+				}
+				final int accsStart = buffer.getInt(record + 8);
+				final int accsCount = buffer.getInt(record + 12);
+				for (int i = 0; i < accsCount; i++) {
+					gene.addProteinACC(getString(getInt(accsStart + i)));
+				}
+				final int enspsStart = buffer.getInt(record + 16);
+				final int enspsCount = buffer.getInt(record + 20);
+				for (int i = 0; i < enspsCount; i++) {
+					gene.addENSP(getString(getInt(enspsStart + i)));
+				}
+				genes.put(geneIndex, new GeneReference(geneIndex, gene, collectedGenes));
+			}
+			return gene;
+		}
+	}
+
+	/**
+	 * Removes the references of the genes that have been collected
+	 */
+	private void removeCollectedGenes() {
+		GeneReference reference;
+		while ((reference = (GeneReference) collectedGenes.poll()) != null) {
+			// the gene may have been created again
+			if (genes.get(reference.geneIndex) == reference) {
+				genes.remove(reference.geneIndex);
+			}
+		}
+	}
+
+	private int getInt(int index) {
+		return buffer.getInt(intsOffset + index * 4);
+	}
+
+	/**
+	 * Strings are stored as an unsigned short with the length followed by the
+	 * UTF-8 bytes
+	 */
+	private String getString(int offset) {
+		final int length = buffer.getShort(offset) & 0xFFFF;
+		final byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = buffer.get(offset + 2 + i);
+		}
+		return new String(bytes, UTF8);
+	}
+
+	private boolean equalsString(int offset, byte[] key) {
+		final int length = buffer.getShort(offset) & 0xFFFF;
+		if (length != key.length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (buffer.get(offset + 2 + i) != key[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int mix(int hash) {
+		final int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Read only map between accessions and genes backed by the index. The
+	 * lookups by accession don't iterate over the table.
+	 */
+	private class ProteinGeneMap extends AbstractMap<String, List<ENSGInfo>> {
+		private final int chrIndex;
+		private final int size;
+		private final int accsStart;
+
+		private ProteinGeneMap(int chrIndex) {
+			this.chrIndex = chrIndex;
+			if (chrIndex >= 0) {
+				final int record = chrsOffset + chrIndex * CHR_RECORD * 4;
+				accsStart = buffer.getInt(record + 4);
+				size = buffer.getInt(record + 8);
+			} else {
+				accsStart = -1;
+				size = numAccs;
+			}
+		}
+
+		@Override
+		public List<ENSGInfo> get(Object key) {
+			if (!(key instanceof String)) {
+				return null;
+			}
+			final int accIndex = findAccession((String) key);
+			if (accIndex < 0) {
+				return null;
+			}
+			final List<ENSGInfo> ret = getGenes(accIndex, chrIndex);
+			if (ret.isEmpty()) {
+				return null;
+			}
+			return ret;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			if (!(key instanceof String)) {
+				return false;
+			}
+			final int accIndex = findAccession((String) key);
+			if (accIndex < 0) {
+				return false;
+			}
+			return chrIndex < 0 || hasGenesInChromosome(accIndex, chrIndex);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public Set<Map.Entry<String, List<ENSGInfo>>> entrySet() {
+			return new AbstractSet<Map.Entry<String, List<ENSGInfo>>>() {
+
+				@Override
+				public Iterator<Map.Entry<String, List<ENSGInfo>>> iterator() {
+					return new Iterator<Map.Entry<String, List<ENSGInfo>>>() {
+						private int next = 0;
+
+						@Override
+						public boolean hasNext() {
+							return next < size;
+						}
+
+						@Override
+						public Map.Entry<String, List<ENSGInfo>> next() {
+							if (!hasNext()) {
+								throw new NoSuchElementException();
+							}
+							final int accIndex = chrIndex >= 0 ? getInt(accsStart + next) : next;
+							next++;
+							return new AbstractMap.SimpleImmutableEntry<String, List<ENSGInfo>>(getAccession(accIndex),
+									getGenes(accIndex, chrIndex));
+						}
+
+						@Override
+						public void remove() {
+							throw new UnsupportedOperationException();
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return size;
+				}
+			};
+		}
+	}
+
+	/**
+	 * Writes the genes read from the CSV file in the binary format
+	 */
+	private static class IndexBuilder {
+		private final TIntArrayList geneRecords = new TIntArrayList();
+		private final TIntArrayList accRecords = new TIntArrayList();
+		private final TIntArrayList chrRecords = new TIntArrayList();
+		private final TIntArrayList ints = new TIntArrayList();
+		// positions of the ints that are references to strings
+		private final BitSet stringReferences = new BitSet();
+		private final ByteArrayOutputStream strings = new ByteArrayOutputStream();
+		private final TObjectIntHashMap<String> stringOffsets = new TObjectIntHashMap<String>();
+		private final TIntArrayList accHashes = new TIntArrayList();
+		private int numSlots;
+		private int[] slots;
+
+		private IndexBuilder(Iterable<ENSGInfo> genes) {
+			// chromosomes, accessions and the genes of each one, in order of
+			// appearance
+			final Map<String, TIntArrayList> genesByChromosome = new LinkedHashMap<String, TIntArrayList>();
+			final Map<String, TIntArrayList> genesByAcc = new LinkedHashMap<String, TIntArrayList>();
+			final List<ENSGInfo> geneList = new ArrayList<ENSGInfo>();
+			for (final ENSGInfo gene : genes) {
+				final int geneIndex = geneList.size();
+				geneList.add(gene);
+				if (gene.getChrName() != null) {
+					TIntArrayList list = genesByChromosome.get(gene.getChrName());
+					if (list == null) {
+						list = new TIntArrayList();
+						genesByChromosome.put(gene.getChrName(), list);
+					}
+					list.add(geneIndex);
+				}
+				for (final String acc : gene.getProteinACC()) {
+					TIntArrayList list = genesByAcc.get(acc);
+					if (list == null) {
+						list = new TIntArrayList();
+						genesByAcc.put(acc, list);
+					}
+					list.add(geneIndex);
+				}
+			}
+			final TObjectIntHashMap<String> chrIndexes = new TObjectIntHashMap<String>();
+			for (final String chrName : genesByChromosome.keySet()) {
+				chrIndexes.put(chrName, chrIndexes.size());
+			}
+			// genes
+			for (final ENSGInfo gene : geneList) {
+				geneRecords.add(addString(gene.getEnsG_ID()));
+				geneRecords.add(gene.getChrName() != null ? chrIndexes.get(gene.getChrName()) : -1);
+				addStringList(geneRecords, gene.getProteinACC());
+				addStringList(geneRecords, gene.getENSPs());
+			}
+			// accessions
+			final Map<String, TIntArrayList> accsByChromosome = new THashMap<String, TIntArrayList>();
+			for (final Map.Entry<String, TIntArrayList> entry : genesByAcc.entrySet()) {
+				final int accIndex = accHashes.size();
+				final String acc = entry.getKey();
+				accHashes.add(acc.hashCode());
+				accRecords.add(acc.hashCode());
+				accRecords.add(addString(acc));
+				addIntList(accRecords, entry.getValue());
+				final Set<String> chrNames = new THashSet<String>();
+				for (int i = 0; i < entry.getValue().size(); i++) {
+					final String chrName = geneList.get(entry.getValue().get(i)).getChrName();
+					if (chrName != null && chrNames.add(chrName)) {
+						TIntArrayList list = accsByChromosome.get(chrName);
+						if (list == null) {
+							list = new TIntArrayList();
+							accsByChromosome.put(chrName, list);
+						}
+						list.add(accIndex);
+					}
+				}
+			}
+			// chromosomes
+			for (final Map.Entry<String, TIntArrayList> entry : genesByChromosome.entrySet()) {
+				chrRecords.add(addString(entry.getKey()));
+				TIntArrayList accs = accsByChromosome.get(entry.getKey());
+				if (accs == null) {
+					accs = new TIntArrayList();
+				}
+				addIntList(chrRecords, accs);
+				addIntList(chrRecords, entry.getValue());
+			}
+			// hash table with a load factor <= 0.5
+			numSlots = 1;
+			while (numSlots < accHashes.size() * 2) {
+				numSlots <<= 1;
+			}
+			slots = new int[numSlots];
+			for (int i = 0; i < numSlots; i++) {
+				slots[i] = -1;
+			}
+			for (int accIndex = 0; accIndex < accHashes.size(); accIndex++) {
+				int slot = mix(accHashes.get(accIndex)) & (numSlots - 1);
+				while (slots[slot] >= 0) {
+					slot = (slot + 1) & (numSlots - 1);
+				}
+				slots[slot] = accIndex;
+			}
+		}
+
+		private void addStringList(TIntArrayList records, List<String> values) {
+			records.add(ints.size());
+			records.add(values.size());
+			for (final String value : values) {
+				stringReferences.set(ints.size());
+				ints.add(addString(value));
+			}
+		}
+
+		private void addIntList(TIntArrayList records, TIntArrayList values) {
+			records.add(ints.size());
+			records.add(values.size());
+			ints.addAll(values);
+		}
+
+		/**
+		 * @return the offset of the string, relative to the beginning of the
+		 *         strings section
+		 */
+		private int addString(String value) {
+			if (stringOffsets.containsKey(value)) {
+				return stringOffsets.get(value);
+			}
+			final byte[] bytes = value.getBytes(UTF8);
+			final int length = Math.min(bytes.length, 0xFFFF);
+			final int offset = strings.size();
+			strings.write(length >>> 8);
+			strings.write(length);
+			strings.write(bytes, 0, length);
+			stringOffsets.put(value, offset);
+			return offset;
+		}
+
+		private byte[] toBytes(long sourceLength, long sourceLastModified, int sourceHash) {
+			final int genesOffset = HEADER_SIZE;
+			final int accsOffset = genesOffset + geneRecords.size() * 4;
+			final int slotsOffset = accsOffset + accRecords.size() * 4;
+			final int chrsOffset = slotsOffset + numSlots * 4;
+			final int intsOffset = chrsOffset + chrRecords.size() * 4;
+			final int stringsOffset = intsOffset + ints.size() * 4;
+			final ByteBuffer buffer = ByteBuffer.allocate(stringsOffset + strings.size());
+			buffer.putInt(H_MAGIC, MAGIC_NUMBER);
+			buffer.putInt(H_VERSION, FORMAT_VERSION);
+			buffer.putLong(H_SOURCE_LENGTH, sourceLength);
+			buffer.putLong(H_SOURCE_LAST_MODIFIED, sourceLastModified);
+			buffer.putInt(H_SOURCE_HASH, sourceHash);
+			buffer.putInt(H_NUM_GENES, geneRecords.size() / GENE_RECORD);
+			buffer.putInt(H_NUM_ACCS, accRecords.size() / ACC_RECORD);
+			buffer.putInt(H_NUM_CHRS, chrRecords.size() / CHR_RECORD);
+			buffer.putInt(H_NUM_SLOTS, numSlots);
+			buffer.putInt(H_GENES, genesOffset);
+			buffer.putInt(H_ACCS, accsOffset);
+			buffer.putInt(H_SLOTS, slotsOffset);
+			buffer.putInt(H_CHRS, chrsOffset);
+			buffer.putInt(H_INTS, intsOffset);
+			buffer.position(genesOffset);
+			// string references are converted to absolute offsets
+			for (int i = 0; i < geneRecords.size(); i++) {
+				final int field = i % GENE_RECORD;
+				final int value = geneRecords.get(i);
+				buffer.putInt(field == 0 ? stringsOffset + value : value);
+			}
+			for (int i = 0; i < accRecords.size(); i++) {
+				final int value = accRecords.get(i);
+				buffer.putInt(i % ACC_RECORD == 1 ? stringsOffset + value : value);
+			}
+			for (int i = 0; i < numSlots; i++) {
+				buffer.putInt(slots[i]);
+			}
+			for (int i = 0; i < chrRecords.size(); i++) {
+				final int value = chrRecords.get(i);
+				buffer.putInt(i % CHR_RECORD == 0 ? stringsOffset + value : value);
+			}
+			for (int i = 0; i < ints.size(); i++) {
+				final int value = ints.get(i);
+				buffer.putInt(stringReferences.get(i) ? stringsOffset + value : value);
+			}
+			buffer.put(strings.toByteArray());
+			return buffer.array();
+		}
+	}
+
+	private static class GeneReference extends SoftReference<ENSGInfo> {
+		private final int geneIndex;
+
+		private GeneReference(int geneIndex, ENSGInfo gene, ReferenceQueue<ENSGInfo> queue) {
+			super(gene, queue);
+			this.geneIndex = geneIndex;
+		}
+	}
+}
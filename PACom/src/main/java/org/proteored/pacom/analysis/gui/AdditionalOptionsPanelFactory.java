@@ -57,6 +57,7 @@ import org.proteored.pacom.analysis.charts.HeatChart;
 import org.proteored.pacom.analysis.charts.WordCramChart;
 import org.proteored.pacom.analysis.gui.components.JLabelColor;
 import org.proteored.pacom.analysis.util.DoSomethingToChangeColorInChart;
+import org.proteored.pacom.utils.AutoSuggestor;
 
 import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.map.hash.THashMap;
@@ -97,6 +98,7 @@ public class AdditionalOptionsPanelFactory {
 	private JTextArea jTextAreaUserPeptideList;
 	public String userPeptideList;
 	private JTextField jTextContaining;
+	private AutoSuggestor peptideSuggestor;
 	private JCheckBox jCheckBoxAsPercentage;
 	private final Set<String> proteinsInSample = new THashSet<String>();
 	private JButton jButtonShowInputTextFrame;
@@ -752,6 +754,11 @@ public class AdditionalOptionsPanelFactory {
 			if (jTextContaining == null) {
 				jTextContaining = new JTextField(10);
 				getControlList().add(jTextContaining);
+				// suggest the peptides with more PSMs while typing
+				peptideSuggestor = new AutoSuggestor(jTextContaining, frame, null, Color.WHITE, Color.BLUE, Color.RED,
+						1f);
+				peptideSuggestor
+						.setDictionary(frame.getPeptideOccurrencesFromExperiments(frame.distinguishModifiedPeptides()));
 			}
 
 			c.gridx = 0;
@@ -1845,6 +1852,10 @@ public class AdditionalOptionsPanelFactory {
 			size = jListPeptides.jListPeptides.getModel().getSize();
 			log.info("Now has " + size + " elements");
 			jlabelPeptideListHeader.setText(size + " peptide sequences:");
+			if (peptideSuggestor != null) {
+				peptideSuggestor
+						.setDictionary(frame.getPeptideOccurrencesFromExperiments(distiguishModificatedPeptides));
+			}
 			if (selectedValues != null && !selectedValues.isEmpty()) {
 				final TIntArrayList selectedIndexes = new TIntArrayList();
 				for (final Object object : selectedValues) {
@@ -25,7 +25,6 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.IOException;
-import java.net.MalformedURLException;
 import java.sql.Date;
 import java.text.DateFormat;
 import java.text.DecimalFormat;
@@ -36,7 +35,6 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.locks.ReentrantLock;
 
 import javax.swing.DefaultComboBoxModel;
 import javax.swing.GroupLayout;
@@ -89,6 +87,7 @@ import org.proteored.miapeapi.experiment.model.filters.ScoreFilter;
 import org.proteored.miapeapi.experiment.model.sort.ProteinComparatorKey;
 import org.proteored.miapeapi.experiment.model.sort.ProteinGroupComparisonType;
 import org.proteored.miapeapi.experiment.model.sort.SorterUtil;
+import org.proteored.pacom.analysis.charts.HeatChartComponent;
 import org.proteored.pacom.analysis.charts.ImageFileFormat;
 import org.proteored.pacom.analysis.charts.ImageLabel;
 import org.proteored.pacom.analysis.charts.VennChart;
@@ -177,8 +176,11 @@ public class ChartManagerFrame extends AbstractJFrameWithAttachedHelpAndAttached
 	private final Map<Object, Object> previousTogleValues = new THashMap<Object, Object>();
 	private long t1;
 	private final ComponentEnableStateKeeper enableStateKeeper = new ComponentEnableStateKeeper();
-	private final ReentrantLock chartCreatorlock = new ReentrantLock(true);
-	private boolean creatingChartLock = false;;
+	// true from the start of a chart creator until it notifies that it has
+	// finished, even if it was cancelled
+	private boolean creatingChart = false;
+	// a chart has been requested while other was being created
+	private boolean chartRequestPending = false;
 
 	@Override
 	public void dispose() {
@@ -715,6 +717,20 @@ public class ChartManagerFrame extends AbstractJFrameWithAttachedHelpAndAttached
 
 	}
 
+	/**
+	 * Applies the filters, or, if a chart is being created, cancels it and
+	 * applies them when it stops, so that the filters don't change the data
+	 * from which the chart is being created.
+	 */
+	private void applyFiltersWhenChartStops() {
+		if (isChartCreatorRunning()) {
+			// the pending chart applies the filters
+			requestNewChart();
+			return;
+		}
+		applyFilters();
+	}
+
 	private String getNumberIdentificationsString() {
 		final int numDifferentProteins = experimentList.getNumDifferentProteinGroups(countNonConclusiveProteins());
 		final int numProteins = experimentList.getTotalNumProteinGroups(countNonConclusiveProteins());
@@ -1405,6 +1421,7 @@ public class ChartManagerFrame extends AbstractJFrameWithAttachedHelpAndAttached
 		if (chartCreator != null && chartCreator.getState() == StateValue.STARTED) {
 			log.info("Cancelling chart creator");
 			appendStatus("Cancelling chart creator");
+			chartRequestPending = false;
 			cancelChartCreator();
 		}
 	}
@@ -2336,7 +2353,7 @@ public class ChartManagerFrame extends AbstractJFrameWithAttachedHelpAndAttached
 		final Set<String> filterProteinACC = GeneDistributionReader.getInstance().getProteinGeneMapping(chr).keySet();
 
 		filterDialog.enableProteinACCFilter(filterProteinACC);
-		filterDialog.applyFilters(experimentList);
+		applyFiltersWhenChartStops();
 
 	}
 
@@ -2810,6 +2827,27 @@ public class ChartManagerFrame extends AbstractJFrameWithAttachedHelpAndAttached
 		return null;
 	}
 
+	/**
+	 * Gets the peptide sequences of the experiments with their number of PSMs
+	 *
+	 * @param distinguishModPep
+	 * @return
+	 */
+	public TObjectIntHashMap<String> getPeptideOccurrencesFromExperiments(boolean distinguishModPep) {
+		final TObjectIntHashMap<String> ret = new TObjectIntHashMap<String>();
+		if (experimentList != null) {
+			final Collection<PeptideOccurrence> peptideOccurrences = experimentList
+					.getPeptideChargeOccurrenceList(distinguishModPep).values();
+			if (peptideOccurrences != null) {
+				for (final PeptideOccurrence peptideOccurrence : peptideOccurrences) {
+					final int numPSMs = peptideOccurrence.getItemList().size();
+					ret.adjustOrPutValue(peptideOccurrence.getKey(), numPSMs, numPSMs);
+				}
+			}
+		}
+		return ret;
+	}
+
 	public String[] getPeptidesPlusChargeFromExperiments(boolean distinguishModPep) {
 		log.info("Getting peptide sequences");
 		if (experimentList != null) {
@@ -3189,13 +3227,7 @@ public class ChartManagerFrame extends AbstractJFrameWithAttachedHelpAndAttached
 					// set color
 					vennChart.setColorToSeries(idSetName, color);
 					// change venn diagram with the new colors
-					try {
-						vennChart.updateChart();
-
-					} catch (final MalformedURLException e) {
-						e.printStackTrace();
-						throw new IllegalMiapeArgumentException(e.getMessage());
-					}
+					vennChart.updateChart();
 				}
 				return null;
 			}
@@ -3756,6 +3788,33 @@ public class ChartManagerFrame extends AbstractJFrameWithAttachedHelpAndAttached
 		File file = null;
 		try {
 			final Component component = jPanelChart.getComponent(0);
+			final HeatChartComponent heatChartComponent = getHeatChartComponent(component);
+			if (heatChartComponent != null) {
+				// the heatmap is painted directly from the chart, so the image
+				// is generated just for the file
+				final JFileChooser fileChooser = new JFileChooser(MainFrame.currentFolder);
+				fileChooser.setDialogTitle("Save heatmap");
+				for (final ImageFileFormat imageFileFormat : ImageFileFormat.values()) {
+					if (imageFileFormat == ImageFileFormat.GIF) {
+						continue;// if doesnt allow to zoom
+					}
+					fileChooser.addChoosableFileFilter(
+							new ExtensionFileFilter(imageFileFormat.getExtension(), imageFileFormat.getDescription()));
+				}
+				fileChooser.setAcceptAllFileFilterUsed(false);
+				final int retVal = fileChooser.showSaveDialog(this);
+				if (retVal == JFileChooser.APPROVE_OPTION) {
+					file = fileChooser.getSelectedFile();
+					if ("".equals(FilenameUtils.getExtension(file.getAbsolutePath()))) {
+						file = new File(file.getAbsolutePath() + "." + ImageFileFormat
+								.getFromDescription(fileChooser.getFileFilter().getDescription()).getExtension());
+					}
+					MainFrame.currentFolder = file.getParentFile();
+					heatChartComponent.getChart().saveToFile(file);
+					appendStatus("Image file saved to:" + file.getAbsolutePath());
+				}
+				return;
+			}
 			if (component instanceof JScrollPane) {
 				final JScrollPane jpanel = (JScrollPane) component;
 				final Component component2 = jpanel.getComponent(0);
@@ -3847,6 +3906,30 @@ public class ChartManagerFrame extends AbstractJFrameWithAttachedHelpAndAttached
 		appendStatus(error);
 	}
 
+	/**
+	 * Looks for the component in which a heatmap is painted
+	 *
+	 * @param component
+	 * @return the {@link HeatChartComponent} or null if not found
+	 */
+	private HeatChartComponent getHeatChartComponent(Component component) {
+		if (component instanceof HeatChartComponent) {
+			return (HeatChartComponent) component;
+		}
+		if (component instanceof JScrollPane) {
+			return getHeatChartComponent(((JScrollPane) component).getViewport().getView());
+		}
+		if (component instanceof Container) {
+			for (final Component child : ((Container) component).getComponents()) {
+				final HeatChartComponent ret = getHeatChartComponent(child);
+				if (ret != null) {
+					return ret;
+				}
+			}
+		}
+		return null;
+	}
+
 	protected void saveOverlappingImages() {
 		log.info("Saving overlapping image");
 		String error = "";
@@ -4195,45 +4278,55 @@ public class ChartManagerFrame extends AbstractJFrameWithAttachedHelpAndAttached
 		final ChartType chartType = currentChartType;
 		final String option = (String) jComboBoxChartOptions.getSelectedItem();
 
-		// if (chartCreator != null &&
-		// chartCreator.getState().equals(StateValue.STARTED)) {
-		// log.info("Trying to cancel chart creator from thread " +
-		// Thread.currentThread().getId());
-		// while (!chartCreator.cancel(true)) {
-		// try {
-		// Thread.sleep(1000);
-		// } catch (InterruptedException e) {
-		// e.printStackTrace();
-		// }
-		// }
-		// log.info("Chart creator cancelled from thread " +
-		// Thread.currentThread().getId());
-		//
-		// }
+		if (!filterDialog.isFilterTaskFinished()) {
+			// the chart will be shown when the filters are applied
+			return;
+		}
+		if (isChartCreatorRunning()) {
+			requestNewChart();
+			return;
+		}
+		appendStatus("Creating chart '" + chartType.getName() + "' (" + option + ")...");
+		setProgressBarIndeterminate(true);
+		jButtonCancel.setEnabled(true);
 
-		if (!creatingChartLock && (chartCreator == null || chartCreator.getState().equals(StateValue.DONE))
-				&& filterDialog.isFilterTaskFinished()) {
-			log.info("Trying to acquire the lock by thread " + Thread.currentThread().getId());
-			if (!chartCreatorlock.tryLock()) {
-				log.info(
-						"Chart creation in progress. Skiping this call... by thread " + Thread.currentThread().getId());
-				return;
-			}
-			log.debug("lock acquired by thread " + Thread.currentThread().getId());
-			creatingChartLock = true;
-			enableStateKeeper.keepEnableStates(this);
-			enableStateKeeper.disable(this);
-			appendStatus("Creating chart '" + chartType.getName() + "' (" + option + ")...");
-			setProgressBarIndeterminate(true);
+		creatingChart = true;
+		chartCreator = new ChartCreatorTask(this, chartType, option, experimentList);
+		chartCreator.addPropertyChangeListener(this);
+		chartCreator.execute();
+		t1 = System.currentTimeMillis();
+	}
+
+	/**
+	 *
+	 * @return true if a chart is being created. A cancelled chart creator is
+	 *         considered running until its background thread stops.
+	 */
+	private boolean isChartCreatorRunning() {
+		return creatingChart;
+	}
 
-			chartCreator = new ChartCreatorTask(this, chartType, option, experimentList);
-			chartCreator.addPropertyChangeListener(this);
-			chartCreator.execute();
-			t1 = System.currentTimeMillis();
+	/**
+	 * Cancels the chart that is being created, so that a new chart is created
+	 * with the current options as soon as the cancelled one stops. If several
+	 * charts are requested in the meantime, only the last one is created.
+	 */
+	private void requestNewChart() {
+		if (!chartRequestPending) {
+			log.info("Cancelling the chart that is being created, in favour of a new one");
+			chartRequestPending = true;
+			chartCreator.cancel(true);
+		}
+	}
 
-		} else {
-			log.info("The chart cannot be generated until the previous chart is finished");
-			// this.appendStatus("Wait to finish the chart");
+	/**
+	 * Creates the chart that was requested while other chart was being
+	 * created, if any
+	 */
+	private void startPendingChart() {
+		if (chartRequestPending) {
+			chartRequestPending = false;
+			startShowingChart(null);
 		}
 	}
 
@@ -4271,6 +4364,11 @@ public class ChartManagerFrame extends AbstractJFrameWithAttachedHelpAndAttached
 			// appendStatus("Datasets are being loaded. Please wait...");
 			return;
 		}
+		if (isChartCreatorRunning()) {
+			// the filters are not applied until the current chart stops
+			requestNewChart();
+			return;
+		}
 
 		setEmptyChart();
 
@@ -4366,10 +4464,12 @@ public class ChartManagerFrame extends AbstractJFrameWithAttachedHelpAndAttached
 		} else if (ChartCreatorTask.CHART_GENERATION_STARTED.equals(evt.getPropertyName())) {
 
 		} else if (ChartCreatorTask.CHART_CANCELED.equals(evt.getPropertyName())) {
-			enableStateKeeper.setToPreviousState(this);
-			log.info("Unlocking lock because task cancelled from thread: " + Thread.currentThread().getId());
-			chartCreatorlock.unlock();
-			creatingChartLock = false;
+			if (evt.getSource() == chartCreator) {
+				creatingChart = false;
+				setProgressBarIndeterminate(false);
+				jButtonCancel.setEnabled(false);
+				startPendingChart();
+			}
 		}
 		// else if ("state".equals(evt.getPropertyName())) {
 		// if (task != null && !task.isCancelled()) {
@@ -4445,7 +4545,8 @@ public class ChartManagerFrame extends AbstractJFrameWithAttachedHelpAndAttached
 		} else if (ChartCreatorTask.CHART_GENERATED.equals(evt.getPropertyName())
 				|| ChartCreatorTask.CHART_ERROR_GENERATED.equals(evt.getPropertyName())) {
 
-			try { // to release the lock
+			creatingChart = false;
+			try {
 				jPanelChart.removeAll();
 				final BorderLayout borderLayout = new BorderLayout();
 				jPanelChart.setLayout(borderLayout);
@@ -4542,9 +4643,6 @@ public class ChartManagerFrame extends AbstractJFrameWithAttachedHelpAndAttached
 				setProgressBarIndeterminate(false);
 
 			} finally {
-				log.debug("Unlocking lock from thread " + Thread.currentThread().getId());
-				enableStateKeeper.setToPreviousState(this);
-
 				updateControlStates();
 				jPanelAddOptions.updateUI();
 				if (!filterDialog.getFilters().isEmpty()) {
@@ -4556,8 +4654,7 @@ public class ChartManagerFrame extends AbstractJFrameWithAttachedHelpAndAttached
 					jButtonSaveAsFiltered.setEnabled(false);
 				}
 				jButtonCancel.setEnabled(false);
-				chartCreatorlock.unlock();
-				creatingChartLock = false;
+				startPendingChart();
 			}
 		} else if (ChartCreatorTask.DATASET_PROGRESS.equals(evt.getPropertyName())) {
 			final String message = (String) evt.getNewValue();
@@ -4814,7 +4911,7 @@ public class ChartManagerFrame extends AbstractJFrameWithAttachedHelpAndAttached
 		final Set<String> filterProteinACC = GeneDistributionReader.getInstance().getProteinGeneMapping("16").keySet();
 
 		filterDialog.enableProteinACCFilter(filterProteinACC);
-		filterDialog.applyFilters(experimentList);
+		applyFiltersWhenChartStops();
 
 	}
 
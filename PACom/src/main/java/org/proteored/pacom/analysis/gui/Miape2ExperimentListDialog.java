@@ -1610,8 +1610,7 @@ public class Miape2ExperimentListDialog extends AbstractJFrameWithAttachedHelpDi
 							// LOCAL MIAPE
 							boolean addNode = true;
 							if (curated) {
-								final File file = new File(
-										FileManager.getMiapeMSICuratedXMLFilePathFromMiapeInformation(cpMsi));
+								final File file = FileManager.getMiapeMSICuratedFile(cpMsi);
 								if (!file.exists()) {
 									final String notificacion = "Warning:  '" + cpMsi.getName()
 											+ ".xml' file doesn't exist at folder '"
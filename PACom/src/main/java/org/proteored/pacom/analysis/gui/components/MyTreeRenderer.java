@@ -104,7 +104,7 @@ public class MyTreeRenderer extends DefaultTreeCellRenderer {
 				setIcon(documentCuratedIcon);
 				if (cpMSI != null) {
 					setToolTipText("<html>Curated dataset:<br><b>" + name + "</b><br>Internal file located at:<br>"
-							+ FileManager.getMiapeMSICuratedXMLFilePathFromMiapeInformation(cpMSI) + "</html>");
+							+ FileManager.getMiapeMSICuratedFile(cpMSI).getAbsolutePath() + "</html>");
 				}
 			}
 		} else if (isCPReplicateNode(value)) {
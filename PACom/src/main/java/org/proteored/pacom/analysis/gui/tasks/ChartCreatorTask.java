@@ -8,6 +8,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.JCheckBox;
 import javax.swing.JLabel;
@@ -45,6 +47,7 @@ import org.proteored.pacom.analysis.charts.PieChart;
 import org.proteored.pacom.analysis.charts.SpiderChart;
 import org.proteored.pacom.analysis.charts.StackedBarChart;
 import org.proteored.pacom.analysis.charts.TableData;
+import org.proteored.pacom.analysis.charts.SetOverlaps;
 import org.proteored.pacom.analysis.charts.VennChart;
 import org.proteored.pacom.analysis.charts.WordCramChart;
 import org.proteored.pacom.analysis.charts.XYLineChart;
@@ -72,6 +75,9 @@ public class ChartCreatorTask extends SwingWorker<Object, Void> {
 	private final AdditionalOptionsPanelFactory optionsFactory;
 	private final boolean countNonConclusiveProteins;
 	private final Map<String, VennChart> vennChartMap = new THashMap<String, VennChart>();
+	private final AtomicBoolean started = new AtomicBoolean(false);
+	// the end of the chart creation and the call to done()
+	private final AtomicInteger pendingFinishes = new AtomicInteger(2);
 
 	public ChartCreatorTask(ChartManagerFrame parent, ChartType chartType, String optionParam,
 			ExperimentList experimentList) {
@@ -89,6 +95,31 @@ public class ChartCreatorTask extends SwingWorker<Object, Void> {
 
 	@Override
 	protected Object doInBackground() throws Exception {
+		if (!started.compareAndSet(false, true)) {
+			// cancelled before starting
+			return null;
+		}
+		try {
+			return createChart();
+		} finally {
+			chartCreationFinished();
+		}
+	}
+
+	/**
+	 * Notifies that the task has been cancelled when both the task has been
+	 * cancelled and the creation of the chart has really stopped, so that a
+	 * new {@link ChartCreatorTask} is not started while this one is still
+	 * reading the data.
+	 */
+	private void chartCreationFinished() {
+		if (pendingFinishes.decrementAndGet() == 0 && isCancelled()) {
+			log.info("Chart creation cancelled");
+			firePropertyChange(CHART_CANCELED, null, null);
+		}
+	}
+
+	private Object createChart() throws Exception {
 		firePropertyChange(CHART_GENERATION_STARTED, null, null);
 		parent.setToolTipInformation3("");
 		error = null;
@@ -1376,7 +1407,11 @@ public class ChartCreatorTask extends SwingWorker<Object, Void> {
 				log.info("chart passed to the dialog");
 			} else {
 				log.info("Cancelled by user");
-				firePropertyChange(CHART_CANCELED, null, null);
+				if (started.compareAndSet(false, true)) {
+					firePropertyChange(CHART_CANCELED, null, null);
+				} else {
+					chartCreationFinished();
+				}
 			}
 			return;
 		} catch (final InterruptedException e) {
@@ -2447,15 +2482,9 @@ public class ChartCreatorTask extends SwingWorker<Object, Void> {
 	private Object showOverlappingChart(IdentificationItemEnum plotItem) {
 		vennChartMap.clear();
 		parent.setInformation1(parent.getCurrentChartType().getName() + " / " + plotItem);
-		IdentificationSet idSet1 = null;
-		String label1 = null;
-		IdentificationSet idSet2 = null;
-		String label2 = null;
-		IdentificationSet idSet3 = null;
-		String label3 = null;
-		Color color1 = null;
-		Color color2 = null;
-		Color color3 = null;
+		final List<IdentificationSet> idSets = new ArrayList<IdentificationSet>();
+		final List<String> labels = new ArrayList<String>();
+		final List<Color> colors = new ArrayList<Color>();
 		final Map<String, JCheckBox> checkBoxControls = optionsFactory.getIdSetsJCheckBoxes();
 		// optionsFactory.setIntersectionText(null);
 		ProteinGroupComparisonType proteinSelection = null;
@@ -2469,31 +2498,16 @@ public class ChartCreatorTask extends SwingWorker<Object, Void> {
 					final Replicate replicate = (Replicate) identificationSet;
 					final String repName = replicate.getFullName();
 					if (checkBoxControls.containsKey(repName) && checkBoxControls.get(repName).isSelected()) {
-						if (idSet1 == null) {
-							idSet1 = replicate;
-							label1 = replicate.getName();
-							color1 = optionsFactory.getIdSetsColors().get(repName);
-						} else if (idSet2 == null) {
-							idSet2 = replicate;
-							label2 = replicate.getName();
-							color2 = optionsFactory.getIdSetsColors().get(repName);
-						} else if (idSet3 == null) {
-							idSet3 = replicate;
-							label3 = replicate.getName();
-							color3 = optionsFactory.getIdSetsColors().get(repName);
-						} else {
-							throw new IllegalMiapeArgumentException(
-									"PACom can only represent Venn diagrams for up to 3 datasets");
-						}
+						addVennDataset(idSets, labels, colors, replicate, replicate.getName(),
+								optionsFactory.getIdSetsColors().get(repName));
 					}
 				}
 			}
-			if (idSet1 == null || idSet2 == null) {
+			if (idSets.size() < 2) {
 				throw new IllegalMiapeArgumentException("Please, select at least 2 datasets to show the diagram");
 			}
-			final VennChart chart = new VennChart(parent.getChartTitle(chartType), idSet1, label1, idSet2, label2,
-					idSet3, label3, plotItem, parent.distinguishModifiedPeptides(), proteinSelection, color1, color2,
-					color3);
+			final VennChart chart = createVennChart(parent.getChartTitle(chartType), idSets, labels, colors, plotItem,
+					proteinSelection);
 
 			vennChartMap.put(null, chart);
 			final String intersectionsText = chart.getIntersectionsText(null);
@@ -2506,73 +2520,38 @@ public class ChartCreatorTask extends SwingWorker<Object, Void> {
 			for (final Experiment experiment : experiments) {
 				final String expName = experiment.getFullName();
 				if (checkBoxControls.containsKey(expName) && checkBoxControls.get(expName).isSelected()) {
-					if (idSet1 == null) {
-						idSet1 = experiment;
-						label1 = expName;
-						color1 = optionsFactory.getIdSetsColors().get(expName);
-					} else if (idSet2 == null) {
-						idSet2 = experiment;
-						label2 = expName;
-						color2 = optionsFactory.getIdSetsColors().get(expName);
-					} else if (idSet3 == null) {
-						idSet3 = experiment;
-						label3 = expName;
-						color3 = optionsFactory.getIdSetsColors().get(expName);
-					} else {
-						throw new IllegalMiapeArgumentException(
-								"PACom can only represent Venn diagrams for up to 3 datasets");
-					}
+					addVennDataset(idSets, labels, colors, experiment, expName,
+							optionsFactory.getIdSetsColors().get(expName));
 				}
 			}
-			if (idSet1 == null || idSet2 == null) {
+			if (idSets.size() < 2) {
 				throw new IllegalMiapeArgumentException("Please, select at least 2 datasets to show the diagram");
 			}
-			final VennChart chart = new VennChart(parent.getChartTitle(chartType), idSet1, label1, idSet2, label2,
-					idSet3, label3, plotItem, parent.distinguishModifiedPeptides(), proteinSelection, color1, color2,
-					color3);
+			final VennChart chart = createVennChart(parent.getChartTitle(chartType), idSets, labels, colors, plotItem,
+					proteinSelection);
 			vennChartMap.put(null, chart);
 			optionsFactory.setIntersectionText(chart.getIntersectionsText(null));
 			// this.jPanelChart.setGraphicPanel(chart.getChartPanel());
 			return chart.getChartPanel();
 		} else if (ChartManagerFrame.ONE_SERIES_PER_EXPERIMENT_LIST.equals(option)) {
-			if (idSet1 == null || idSet2 == null) {
-				throw new IllegalMiapeArgumentException(
-						"Please, select a different comparison level to be able to select at least 2 datasets");
-			}
+			throw new IllegalMiapeArgumentException(
+					"Please, select a different comparison level to be able to select at least 2 datasets");
 		} else if (ChartManagerFrame.ONE_CHART_PER_EXPERIMENT.equals(option)) {
 			final List<JPanel> chartList = new ArrayList<JPanel>();
 			String intersectionText = "";
 			for (final Experiment experiment : experimentList.getExperiments()) {
-				final int numReplicates = 1;
-				idSet1 = null;
-				label1 = null;
-				idSet2 = null;
-				label2 = null;
-				idSet3 = null;
-				label3 = null;
+				idSets.clear();
+				labels.clear();
+				colors.clear();
 				for (final Replicate replicate : experiment.getNextLevelIdentificationSetList()) {
 
 					final String repName = replicate.getFullName();
 					if (checkBoxControls.containsKey(repName) && checkBoxControls.get(repName).isSelected()) {
-						if (idSet1 == null) {
-							idSet1 = replicate;
-							label1 = replicate.getName();
-							color1 = optionsFactory.getIdSetsColors().get(repName);
-						} else if (idSet2 == null) {
-							idSet2 = replicate;
-							label2 = replicate.getName();
-							color2 = optionsFactory.getIdSetsColors().get(repName);
-						} else if (idSet3 == null) {
-							idSet3 = replicate;
-							label3 = replicate.getName();
-							color3 = optionsFactory.getIdSetsColors().get(repName);
-						} else {
-							throw new IllegalMiapeArgumentException(
-									"PACom can only represent Venn diagrams for up to 3 datasets");
-						}
+						addVennDataset(idSets, labels, colors, replicate, replicate.getName(),
+								optionsFactory.getIdSetsColors().get(repName));
 					}
 				}
-				if (idSet1 == null || idSet2 == null) {
+				if (idSets.size() < 2) {
 					final JLabel label = new JLabel("Please, select at least 2 datasets to show the Venn diagram for '"
 							+ experiment.getName() + "'");
 					final JPanel panel = new JPanel();
@@ -2580,10 +2559,9 @@ public class ChartCreatorTask extends SwingWorker<Object, Void> {
 					chartList.add(panel);
 					continue;
 				}
-				final VennChart chart = new VennChart(
-						parent.getChartTitle(chartType) + " (" + experiment.getName() + ")", idSet1, label1, idSet2,
-						label2, idSet3, label3, plotItem, parent.distinguishModifiedPeptides(), proteinSelection,
-						color1, color2, color3);
+				final VennChart chart = createVennChart(
+						parent.getChartTitle(chartType) + " (" + experiment.getName() + ")", idSets, labels, colors,
+						plotItem, proteinSelection);
 				vennChartMap.put(experiment.getName(), chart);
 
 				intersectionText += chart.getIntersectionsText(experiment.getName());
@@ -2597,6 +2575,34 @@ public class ChartCreatorTask extends SwingWorker<Object, Void> {
 		return null;
 	}
 
+	private void addVennDataset(List<IdentificationSet> idSets, List<String> labels, List<Color> colors,
+			IdentificationSet idSet, String label, Color color) {
+		if (idSets.size() == SetOverlaps.MAX_SETS) {
+			throw new IllegalMiapeArgumentException(
+					"PACom can only represent Venn diagrams for up to " + SetOverlaps.MAX_SETS + " datasets");
+		}
+		idSets.add(idSet);
+		labels.add(label);
+		colors.add(color);
+	}
+
+	/**
+	 * Creates a Venn diagram from the {@link VennData} of the datasets, or, if
+	 * there are more than 3 datasets, from their {@link SetOverlaps}
+	 */
+	private VennChart createVennChart(String title, List<IdentificationSet> idSets, List<String> labels,
+			List<Color> colors, IdentificationItemEnum plotItem, ProteinGroupComparisonType proteinSelection) {
+		if (idSets.size() <= 3) {
+			final boolean hasThird = idSets.size() == 3;
+			return new VennChart(title, idSets.get(0), labels.get(0), idSets.get(1), labels.get(1),
+					hasThird ? idSets.get(2) : null, hasThird ? labels.get(2) : null, plotItem,
+					parent.distinguishModifiedPeptides(), proteinSelection, colors.get(0), colors.get(1),
+					hasThird ? colors.get(2) : null);
+		}
+		return new VennChart(title, idSets, labels, plotItem, parent.distinguishModifiedPeptides(), proteinSelection,
+				colors);
+	}
+
 	private Object showHistogramChart(IdentificationItemEnum plotItem) {
 		parent.setInformation1(parent.getCurrentChartType().getName() + " / " + plotItem);
 		String xAxisLabel;
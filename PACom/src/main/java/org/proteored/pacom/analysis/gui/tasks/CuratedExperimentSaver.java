@@ -25,6 +25,7 @@ import org.proteored.pacom.analysis.conf.jaxb.CPMSList;
 import org.proteored.pacom.analysis.conf.jaxb.CPReplicate;
 import org.proteored.pacom.analysis.gui.CuratedExperimentNameCreatorDialog;
 import org.proteored.pacom.analysis.gui.CuratedExperimentNamePane;
+import org.proteored.pacom.analysis.util.CuratedMiapeMSIMask;
 import org.proteored.pacom.analysis.util.FileManager;
 
 public class CuratedExperimentSaver extends SwingWorker<Void, Void> {
@@ -112,9 +113,29 @@ public class CuratedExperimentSaver extends SwingWorker<Void, Void> {
 								}
 
 								try {
-									String savedPath = FileManager.saveCuratedMiapeMSI(cpExp.getName(),
-											miapeMSIFiltered, miapeMSIDocument.getName());
-									log.info("MIAPE MSI filtered saved at: " + savedPath);
+									// only the identifiers of what passed the
+									// filters, if the original file is known
+									final File maskFile = new File(
+											FileManager.getMiapeMSICuratedMaskFilePathFromMiapeInformation(
+													cpExp.getName(), miapeMSIDocument.getName()));
+									final File xmlFile = new File(
+											FileManager.getMiapeMSICuratedXMLFilePathFromMiapeInformation(
+													cpExp.getName(), miapeMSIDocument.getName()));
+									final File originalFile = getOriginalMiapeMSIFile(originalcpExp, originalCpRep,
+											miapeMSIDocument.getId());
+									if (originalFile != null
+											&& CuratedMiapeMSIMask.save(maskFile, originalFile, miapeMSIFiltered)) {
+										if (xmlFile.exists()) {
+											xmlFile.delete();
+										}
+									} else {
+										if (maskFile.exists()) {
+											maskFile.delete();
+										}
+										String savedPath = FileManager.saveCuratedMiapeMSI(cpExp.getName(),
+												miapeMSIFiltered, miapeMSIDocument.getName());
+										log.info("MIAPE MSI filtered saved at: " + savedPath);
+									}
 									cpMSI.setName(miapeMSIDocument.getName());
 									cpMSI.setLocalProjectName(cpExp.getName());
 									cpMsiList.getCPMSI().add(cpMSI);
@@ -153,6 +174,46 @@ public class CuratedExperimentSaver extends SwingWorker<Void, Void> {
 		return null;
 	}
 
+	/**
+	 * Gets the MIAPE MSI XML file from which a MIAPE MSI of the original
+	 * project was read. If the original experiment was also curated and saved
+	 * as a mask, it is the original file of that mask.
+	 *
+	 * @param originalCpExp
+	 * @param originalCpRep
+	 * @param miapeMSIId
+	 * @return the file or null if it is not found
+	 */
+	private File getOriginalMiapeMSIFile(CPExperiment originalCpExp, CPReplicate originalCpRep, int miapeMSIId) {
+		if (originalCpExp == null || originalCpRep == null || originalCpRep.getCPMSIList() == null) {
+			return null;
+		}
+		for (CPMSI cpMSI : originalCpRep.getCPMSIList().getCPMSI()) {
+			if (cpMSI.getId() != miapeMSIId) {
+				continue;
+			}
+			if (!originalCpExp.isCurated()) {
+				final File file = new File(FileManager.getMiapeMSIXMLFileLocalPathFromMiapeInformation(cpMSI));
+				if (file.exists()) {
+					return file;
+				}
+			} else {
+				final File maskFile = new File(FileManager.getMiapeMSICuratedMaskFilePathFromMiapeInformation(cpMSI));
+				if (maskFile.exists()) {
+					try {
+						final CuratedMiapeMSIMask mask = CuratedMiapeMSIMask.load(maskFile);
+						if (!mask.isOriginalFileModified()) {
+							return mask.getOriginalFile();
+						}
+					} catch (IOException e) {
+						log.warn(e.getMessage());
+					}
+				}
+			}
+		}
+		return null;
+	}
+
 	private CPExperiment getOriginalCPExperiment(String expName) {
 		if (originalCfgProject != null) {
 			for (CPExperiment exp : originalCfgProject.getCPExperiment()) {
@@ -1,5 +1,6 @@
 package org.proteored.pacom.analysis.gui.tasks;
 
+import java.util.Collections;
 import java.util.List;
 
 import javax.swing.SwingWorker;
@@ -13,6 +14,7 @@ import org.proteored.miapeapi.experiment.model.datamanager.DataManager;
 import org.proteored.miapeapi.experiment.model.filters.Filter;
 import org.proteored.pacom.analysis.conf.ExperimentListAdapter;
 import org.proteored.pacom.analysis.conf.jaxb.CPExperimentList;
+import org.proteored.pacom.analysis.util.ProteinAnnotationService;
 import org.springframework.beans.factory.BeanDefinitionStoreException;
 
 public class DataLoaderTask extends SwingWorker<ExperimentList, Void> {
@@ -61,6 +63,12 @@ public class DataLoaderTask extends SwingWorker<ExperimentList, Void> {
 			ExperimentList expList = new ExperimentListAdapter(cpExpList, minPeptideLength,
 					groupingAtExperimentListLevel, filters, processInParallel, annotateProteinsInUniprot,
 					doNotGroupNonConclusiveProteins, separateNonConclusiveProteins).adapt();
+			if (annotateProteinsInUniprot) {
+				// so that the annotations are ready when the charts and the
+				// exports need them
+				ProteinAnnotationService.getInstance().prefetch(
+						ProteinAnnotationService.getUniprotAccessions(Collections.singletonList(expList)));
+			}
 			firePropertyChange(DATA_LOADED_DONE, null, expList);
 
 			return expList;
@@ -0,0 +1,141 @@
+package org.proteored.pacom.analysis.gui.tasks;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.proteored.miapeapi.experiment.model.IdentificationSet;
+
+import gnu.trove.map.hash.THashMap;
+
+/**
+ * Memoization of the partial results that the {@link DatasetFactory} computes
+ * for each {@link IdentificationSet} (scores, masses, retention times...), so
+ * that when an option of a chart changes (number of bins, PSMs or peptides, a
+ * replicate is added or removed...) only the values of the
+ * {@link IdentificationSet}s that were not computed before with the same
+ * options are calculated again.<br>
+ * The results are stored per {@link IdentificationSet} object, and they are
+ * discarded when a new set of filters is applied (a new filter generation
+ * starts) or when the {@link IdentificationSet} is not referenced anymore.
+ * The cached values are shared, so they must not be modified.
+ *
+ * @author Salva
+ *
+ */
+public class DatasetCache {
+	private static final Logger log = Logger.getLogger("log4j.logger.org.proteored");
+	private static int filterGeneration = 0;
+	private static final Map<IdentityKey, IdSetEntry> entries = new THashMap<IdentityKey, IdSetEntry>();
+	private static final ReferenceQueue<IdentificationSet> referenceQueue = new ReferenceQueue<IdentificationSet>();
+
+	/**
+	 * Computes a partial result of a single {@link IdentificationSet}
+	 *
+	 * @param <T>
+	 */
+	public interface PartialResult<T> {
+		public T compute();
+	}
+
+	/**
+	 * Starts a new filter generation, discarding all the cached values. It has
+	 * to be called when the filters of the data change.
+	 */
+	public static synchronized void newFilterGeneration() {
+		filterGeneration++;
+		entries.clear();
+		log.debug("Dataset cache cleared. Filter generation: " + filterGeneration);
+	}
+
+	public static synchronized int getFilterGeneration() {
+		return filterGeneration;
+	}
+
+	/**
+	 * Gets a partial result of an {@link IdentificationSet}, computing it if it
+	 * is not cached
+	 *
+	 * @param idSet
+	 * @param key
+	 *            identifies the type of value and the options used to compute
+	 *            it
+	 * @param partialResult
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T get(IdentificationSet idSet, String key, PartialResult<T> partialResult) {
+		final int generation;
+		synchronized (DatasetCache.class) {
+			purge();
+			final IdSetEntry entry = entries.get(new IdentityKey(idSet, null));
+			if (entry != null && entry.values.containsKey(key)) {
+				return (T) entry.values.get(key);
+			}
+			generation = filterGeneration;
+		}
+		DatasetFactory.checkCancelled();
+		// computed outside of the lock, so that different idSets can be
+		// computed at the same time
+		final T value = partialResult.compute();
+		synchronized (DatasetCache.class) {
+			// don't store values computed with the previous filters
+			if (generation == filterGeneration) {
+				final IdentityKey identityKey = new IdentityKey(idSet, referenceQueue);
+				IdSetEntry entry = entries.get(identityKey);
+				if (entry == null) {
+					entry = new IdSetEntry();
+					entries.put(identityKey, entry);
+				}
+				entry.values.put(key, value);
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Removes the entries of the {@link IdentificationSet}s that have been
+	 * garbage collected
+	 */
+	private static void purge() {
+		Object reference;
+		while ((reference = referenceQueue.poll()) != null) {
+			entries.remove(reference);
+		}
+	}
+
+	private static class IdSetEntry {
+		private final Map<String, Object> values = new THashMap<String, Object>();
+	}
+
+	/**
+	 * Weak reference to an {@link IdentificationSet} that is equal to other
+	 * only if both refer to the same object
+	 */
+	private static class IdentityKey extends WeakReference<IdentificationSet> {
+		private final int hash;
+
+		private IdentityKey(IdentificationSet idSet, ReferenceQueue<IdentificationSet> queue) {
+			super(idSet, queue);
+			hash = System.identityHashCode(idSet);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj instanceof IdentityKey) {
+				final IdentificationSet idSet = get();
+				return idSet != null && idSet == ((IdentityKey) obj).get();
+			}
+			return false;
+		}
+	}
+}
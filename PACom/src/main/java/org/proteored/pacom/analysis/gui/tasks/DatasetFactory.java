@@ -7,6 +7,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 
 import org.apache.log4j.Logger;
 import org.jfree.data.category.CategoryDataset;
@@ -22,7 +23,6 @@ import org.jfree.data.xy.XYSeries;
 import org.jfree.data.xy.XYSeriesCollection;
 import org.proteored.miapeapi.exceptions.IllegalMiapeArgumentException;
 import org.proteored.miapeapi.experiment.VennData;
-import org.proteored.miapeapi.experiment.VennDataForPeptides;
 import org.proteored.miapeapi.experiment.VennDataForProteins;
 import org.proteored.miapeapi.experiment.model.ExtendedIdentifiedPeptide;
 import org.proteored.miapeapi.experiment.model.ExtendedIdentifiedProtein;
@@ -39,19 +39,19 @@ import org.proteored.miapeapi.experiment.model.sort.SorterUtil;
 import org.proteored.miapeapi.interfaces.ms.Spectrometer;
 import org.proteored.miapeapi.interfaces.msi.Database;
 import org.proteored.miapeapi.interfaces.msi.InputParameter;
-import org.proteored.miapeapi.util.ProteinSequenceRetrieval;
 import org.proteored.pacom.analysis.charts.MyXYItemLabelGenerator;
 import org.proteored.pacom.analysis.exporters.util.ExporterUtil;
 import org.proteored.pacom.analysis.genes.ENSGInfo;
 import org.proteored.pacom.analysis.genes.GeneDistributionReader;
 import org.proteored.pacom.analysis.gui.AdditionalOptionsPanelFactory;
 import org.proteored.pacom.analysis.util.FileManager;
+import org.proteored.pacom.analysis.util.ProteinAnnotation;
+import org.proteored.pacom.analysis.util.ProteinAnnotationService;
 
 import com.compomics.util.protein.AASequenceImpl;
 import com.compomics.util.protein.Protein;
 
-import edu.scripps.yates.annotations.uniprot.xml.Entry;
-import edu.scripps.yates.annotations.util.UniprotEntryUtil;
+import edu.scripps.yates.annotations.uniprot.UniprotProteinLocalRetriever;
 import edu.scripps.yates.utilities.fasta.FastaParser;
 import edu.scripps.yates.utilities.maths.Maths;
 import edu.scripps.yates.utilities.util.Pair;
@@ -66,6 +66,21 @@ import gnu.trove.set.hash.TIntHashSet;
 public class DatasetFactory {
 	private static final Logger log = Logger.getLogger("log4j.logger.org.proteored");
 
+	/**
+	 * Stops the creation of a dataset if the thread that is creating it has
+	 * been interrupted, that is, if the {@link ChartCreatorTask} has been
+	 * cancelled because a newer chart has been requested. It is called before
+	 * processing each {@link IdentificationSet}, also from the threads of the
+	 * {@link ParallelSeriesComputer}.
+	 *
+	 * @throws CancellationException
+	 */
+	static void checkCancelled() {
+		if (Thread.currentThread().isInterrupted() || ParallelSeriesComputer.isCurrentComputationCancelled()) {
+			throw new CancellationException("Dataset creation cancelled");
+		}
+	}
+
 	/**
 	 * Each category belongs to one of the {@link IdentificationSet} of the
 	 * list, and has the number of items identified in that
@@ -87,6 +102,7 @@ public class DatasetFactory {
 		try {
 
 			for (final IdentificationSet idSet : idSets) {
+				checkCancelled();
 				final String experimentName = idSet.getFullName();
 				if (itemType.equals(IdentificationItemEnum.PROTEIN)) {
 
@@ -133,6 +149,7 @@ public class DatasetFactory {
 		try {
 
 			for (final IdentificationSet idSet : idSets) {
+				checkCancelled();
 				final String experimentName = idSet.getFullName();
 
 				int numProteins = 0;
@@ -158,6 +175,7 @@ public class DatasetFactory {
 		try {
 			final Map<String, TIntObjectHashMap<Integer>> distributions = new THashMap<String, TIntObjectHashMap<Integer>>();
 			for (final IdentificationSet idSet : idSets) {
+				checkCancelled();
 				final String experimentName = idSet.getFullName();
 
 				final double numProteins = 0;
@@ -221,6 +239,7 @@ public class DatasetFactory {
 			if (!distributions.isEmpty()) {
 				for (int i = 1; i <= maximum; i++) {
 					for (final IdentificationSet idSet : idSets) {
+						checkCancelled();
 						final TIntObjectHashMap<Integer> distribution = distributions.get(idSet.getFullName());
 						if (distribution == null) {
 							dataset.addValue(0, "0", idSet.getFullName());
@@ -267,6 +286,7 @@ public class DatasetFactory {
 		try {
 
 			for (final IdentificationSet idSet : idSets) {
+				checkCancelled();
 				final String experimentName = idSet.getFullName();
 				if (itemType.equals(IdentificationItemEnum.PROTEIN)) {
 
@@ -304,6 +324,7 @@ public class DatasetFactory {
 		try {
 
 			for (final IdentificationSet idSet : idSets) {
+				checkCancelled();
 				final String experimentName = idSet.getFullName();
 				if (itemType.equals(IdentificationItemEnum.PROTEIN)) {
 					double meanNumProteins = 0;
@@ -355,6 +376,7 @@ public class DatasetFactory {
 		try {
 			// TODO
 			for (final IdentificationSet idSet : idSets) {
+				checkCancelled();
 				final String experimentName = idSet.getFullName();
 				if (itemType.equals(IdentificationItemEnum.PROTEIN)) {
 					double meanNumProteins = 0;
@@ -389,6 +411,7 @@ public class DatasetFactory {
 		final DefaultPieDataset dataset = new DefaultPieDataset();
 
 		for (final IdentificationSet identificationSet : idSets) {
+			checkCancelled();
 			if (plotItem.equals(IdentificationItemEnum.PROTEIN)) {
 
 				double numProteins = 0;
@@ -432,6 +455,7 @@ public class DatasetFactory {
 		final DefaultPieDataset dataset = new DefaultPieDataset();
 
 		for (final IdentificationSet identificationSet : idSets) {
+			checkCancelled();
 
 			double numProteins = 0;
 			if (differentIdentificationsShown) {
@@ -483,6 +507,7 @@ public class DatasetFactory {
 		final DefaultPieDataset dataset = new DefaultPieDataset();
 
 		for (final IdentificationSet identificationSet : idSets) {
+			checkCancelled();
 			if (plotItem.equals(IdentificationItemEnum.PROTEIN)) {
 
 				double numProteins = 0;
@@ -518,6 +543,7 @@ public class DatasetFactory {
 		try {
 
 			for (final IdentificationSet idSet : idSets) {
+				checkCancelled();
 				final double[] proteinCoverages = getProteinCoverages(idSet, retrieveProteinSeq,
 						countNonConclusiveProteins);
 				if (proteinCoverages != null) {
@@ -552,6 +578,7 @@ public class DatasetFactory {
 		try {
 
 			for (final IdentificationSet idSet : idSets) {
+				checkCancelled();
 				final String experimentName = idSet.getFullName();
 				final TIntObjectHashMap<Integer> map = new TIntObjectHashMap<Integer>();
 
@@ -638,6 +665,7 @@ public class DatasetFactory {
 		try {
 
 			for (final IdentificationSet parentIdSet : idSets) {
+				checkCancelled();
 				final TIntObjectHashMap<Integer> map = new TIntObjectHashMap<Integer>();
 				final List<IdentificationSet> nextLevelIdentificationSetList = parentIdSet
 						.getNextLevelIdentificationSetList();
@@ -651,6 +679,7 @@ public class DatasetFactory {
 						int occurrencesOverReplicates = 0;
 						try {
 							for (final IdentificationSet idSet : nextLevelIdentificationSetList) {
+								checkCancelled();
 								// System.out.println(occurrence.getKey() +
 								// ":"
 								// +
@@ -685,6 +714,7 @@ public class DatasetFactory {
 						int occurrencesOverReplicates = 0;
 						try {
 							for (final IdentificationSet idSet : nextLevelIdentificationSetList) {
+								checkCancelled();
 								// System.out.println(occurrence.getKey() + ":"
 								// +
 								// occurrence.getIdentificationItemList().size());
@@ -744,6 +774,7 @@ public class DatasetFactory {
 		try {
 
 			for (final IdentificationSet idSet : idSets) {
+				checkCancelled();
 
 				final String experimentName = idSet.getFullName();
 				for (final String modification : modifications) {
@@ -767,6 +798,7 @@ public class DatasetFactory {
 		try {
 
 			for (final IdentificationSet idSet : idSets) {
+				checkCancelled();
 
 				final String experimentName = idSet.getFullName();
 				for (final String modification : modifications) {
@@ -791,6 +823,7 @@ public class DatasetFactory {
 		try {
 
 			for (final IdentificationSet idSet : idSets) {
+				checkCancelled();
 				final String experimentName = idSet.getFullName();
 				int maximumOccurrence = 0;
 				for (final String modification : modifications) {
@@ -832,6 +865,7 @@ public class DatasetFactory {
 		try {
 
 			for (final IdentificationSet idSet : idSets) {
+				checkCancelled();
 				final String experimentName = idSet.getFullName();
 				int maximumOccurrence = 0;
 				final TIntIntHashMap missCleavageOccurrence = idSet
@@ -865,6 +899,7 @@ public class DatasetFactory {
 		try {
 
 			for (final IdentificationSet idSet : idSets) {
+				checkCancelled();
 				final Map<ProteinEvidence, Integer> proteinEvidenceMap = new THashMap<ProteinEvidence, Integer>();
 
 				final String idSetName = idSet.getFullName();
@@ -918,6 +953,7 @@ public class DatasetFactory {
 		try {
 
 			for (final IdentificationSet idSet : idSets) {
+				checkCancelled();
 				final String experimentName = idSet.getFullName();
 				for (final String originalSequence : peps) {
 					final int occurrence = idSet.getPeptideChargeOccurrenceNumber(originalSequence, distinguishModPep);
@@ -952,116 +988,56 @@ public class DatasetFactory {
 
 		if (columnList == null)
 			columnList = new ArrayList<String>();
-		double[][] dataset = null;
-		double[][] ret = null;
-		boolean someValueIsMoreThanZero = false;
+		final OccurrenceMatrix matrix = new OccurrenceMatrix(idSets.size());
 		if (plotItem.equals(IdentificationItemEnum.PROTEIN)) {
-			final Collection<ProteinGroupOccurrence> proteinOccurrenceSet = parentIdSet.getProteinGroupOccurrenceList()
-					.values();
-			final List<ProteinGroupOccurrence> proteinOccurrenceList = new ArrayList<ProteinGroupOccurrence>();
-			for (final ProteinGroupOccurrence proteinGroupOccurrence : proteinOccurrenceSet) {
-				proteinOccurrenceList.add(proteinGroupOccurrence);
-			}
-			dataset = new double[parentIdSet.getNumDifferentProteinGroups(countNonConclusiveProteins)][idSets.size()];
-			int proteinIndex = 0;
+			final List<ProteinGroupOccurrence> proteinOccurrenceList = new ArrayList<ProteinGroupOccurrence>(
+					parentIdSet.getProteinGroupOccurrenceList().values());
 			// sort from high occurrence to low occurrence
 			SorterUtil.sortProteinGroupOcurrencesByOccurrence(proteinOccurrenceList);
-
+			final List<ProteinGroup> proteinGroups = new ArrayList<ProteinGroup>();
 			for (final ProteinGroupOccurrence po : proteinOccurrenceList) {
 				if (po.getEvidence() == ProteinEvidence.NONCONCLUSIVE && !countNonConclusiveProteins)
 					continue;
-
-				log.info(po.getItemList().size());
-				int identSetIndex = 0;
-				final String key = po.getAccessionsString();
-				rowList.add(key);
-				int numOccurrence = 0;
-				for (final IdentificationSet nextLevelIdentSet : idSets) {
-					final int proteinOcurrence = nextLevelIdentSet
-							.getProteinGroupOccurrenceNumber(po.getFirstOccurrence());
-					if (proteinOcurrence > 0)
-						someValueIsMoreThanZero = true;
-					final String columnName = nextLevelIdentSet.getName() + " / "
-							+ nextLevelIdentSet.getDataManager().getExperimentName();
-					if (!columnList.contains(columnName))
-						columnList.add(columnName);
-					numOccurrence += proteinOcurrence;
-					dataset[proteinIndex][identSetIndex] = proteinOcurrence;
-					identSetIndex++;
+				if (matrix.addRow(po.getAccessionsString()) == proteinGroups.size())
+					proteinGroups.add(po.getFirstOccurrence());
+			}
+			int column = 0;
+			for (final IdentificationSet nextLevelIdentSet : idSets) {
+				checkCancelled();
+				columnList.add(nextLevelIdentSet.getName() + " / "
+						+ nextLevelIdentSet.getDataManager().getExperimentName());
+				for (int row = 0; row < proteinGroups.size(); row++) {
+					matrix.set(row, column, nextLevelIdentSet.getProteinGroupOccurrenceNumber(proteinGroups.get(row)));
 				}
-				if (numOccurrence < minOccurrenceThreshold)
-					break;
-				proteinIndex++;
-
+				column++;
 			}
 		} else if (plotItem.equals(IdentificationItemEnum.PEPTIDE)) {
-			final Collection<PeptideOccurrence> peptideOccurrenceCollection = parentIdSet
-					.getPeptideOccurrenceList(distiguishModificatedPeptides).values();
-			final List<PeptideOccurrence> peptideOccurrenceList = new ArrayList<PeptideOccurrence>();
-			for (final PeptideOccurrence occurrence : peptideOccurrenceCollection) {
-				peptideOccurrenceList.add(occurrence);
-			}
+			final List<PeptideOccurrence> peptideOccurrenceList = new ArrayList<PeptideOccurrence>(
+					parentIdSet.getPeptideOccurrenceList(distiguishModificatedPeptides).values());
 			// sort from high occurrence to low occurrence
 			SorterUtil.sortPeptideOcurrencesByOccurrence(peptideOccurrenceList);
 			log.info("Peptide occurrence list with " + peptideOccurrenceList.size() + " elements");
-			dataset = new double[peptideOccurrenceList.size()][idSets.size()];
-			int peptideIndex = 0;
-
 			for (final PeptideOccurrence po : peptideOccurrenceList) {
-				int identSetIndex = 0;
-				final String key = po.getKey();
-				// if (distiguishModificatedPeptides) {
-				// String modifiedSequence =
-				// po.getIdentificationItemList().get(0)
-				// .getModificationString();
-				// rowList.add(modifiedSequence);
-				// } else {
-				// rowList.add(sequence);
-				// }
-				rowList.add(key);
-				int numOccurrence = 0;
-				for (final IdentificationSet nextLevelIdentSet : idSets) {
-					final int peptideOccurrence = nextLevelIdentSet.getPeptideOccurrenceNumber(key,
-							distiguishModificatedPeptides);
-					if (peptideOccurrence > 0)
-						someValueIsMoreThanZero = true;
-					final String columnName = nextLevelIdentSet.getName();
-					if (!columnList.contains(columnName))
-						columnList.add(columnName);
-					dataset[peptideIndex][identSetIndex] = peptideOccurrence;
-
-					numOccurrence += peptideOccurrence;
-					identSetIndex++;
-				}
-				// System.out.println(dataset[peptideIndex][0] + " " +
-				// dataset[peptideIndex][1]);
-				if (numOccurrence < minOccurrenceThreshold) {
-					// rowList.remove(rowList.size());
-					break;
-				}
-				peptideIndex++;
+				matrix.addRow(po.getKey());
+			}
+			int column = 0;
+			for (final IdentificationSet nextLevelIdentSet : idSets) {
+				checkCancelled();
+				columnList.add(nextLevelIdentSet.getName());
+				matrix.fillPeptideOccurrences(column++, nextLevelIdentSet, distiguishModificatedPeptides);
 			}
 		}
-		if (!someValueIsMoreThanZero)
+		if (!matrix.hasNonZeroValues())
 			throw new IllegalMiapeArgumentException("There is not data to show");
-		ret = new double[rowList.size()][columnList.size()];
-		int i = 0;
-		min = Double.MAX_VALUE;
-		max = Double.MIN_VALUE;
-		for (final String rowName : rowList) {
-			int j = 0;
-			for (final String colName : columnList) {
-				final double d = dataset[i][j];
-				if (d < min)
-					min = d;
-				if (d > max)
-					max = d;
-				ret[i][j] = d;
-				j++;
-			}
-			i++;
+		// the rows keep the order from high to low occurrence in the parent
+		final int[] totals = matrix.getRowTotals();
+		final TIntArrayList rows = new TIntArrayList();
+		for (int row = 0; row < totals.length; row++) {
+			if (totals[row] >= minOccurrenceThreshold)
+				rows.add(row);
 		}
-		return ret;
+		rowList.addAll(matrix.getRowKeys(rows));
+		return matrix.toDataset(rows);
 	}
 
 	/**
@@ -1088,73 +1064,27 @@ public class DatasetFactory {
 
 		if (columnList == null)
 			columnList = new ArrayList<String>();
-		double[][] dataset = null;
-
-		boolean someValueIsMoreThanZero = false;
-		final TIntObjectHashMap<List<String>> occurrenceRankingPep = new TIntObjectHashMap<List<String>>();
-		// Firstly, to iterate over parent elements and fill the
-		// occurrenceRanking, where the key is the number of idSets that
-		// contains the item<br>
-		// Then, from 1 to numberOfIdSets, build the heatmap
-		final Collection<PeptideOccurrence> peptideOccurrenceSet = parentIdSet
-				.getPeptideOccurrenceList(distiguishModificatedPeptides).values();
-		dataset = new double[peptideOccurrenceSet.size()][idSets.size()];
-		for (final PeptideOccurrence peptideOccurrence : peptideOccurrenceSet) {
-			int present = 0;
-			for (final IdentificationSet idSet : idSets) {
-				present += idSet.getNumPSMsForAPeptide(peptideOccurrence.getKey());
-			}
-			if (present > 0 && present >= minOccurrenceThreshold)
-				if (!occurrenceRankingPep.containsKey(present)) {
-					final List<String> list = new ArrayList<String>();
-					list.add(peptideOccurrence.getKey());
-					occurrenceRankingPep.put(present, list);
-				} else {
-					occurrenceRankingPep.get(present).add(peptideOccurrence.getKey());
-				}
+		final OccurrenceMatrix matrix = new OccurrenceMatrix(idSets.size());
+		for (final PeptideOccurrence peptideOccurrence : parentIdSet
+				.getPeptideOccurrenceList(distiguishModificatedPeptides).values()) {
+			matrix.addRow(peptideOccurrence.getKey());
 		}
-		int peptideIndex = 0;
-		for (int numPresent = idSets.size(); numPresent >= 1; numPresent--) {
-			final List<String> peptideKeys = occurrenceRankingPep.get(numPresent);
-			if (peptideKeys != null)
-				for (final String peptideKey : peptideKeys) {
-					int identSetIndex = 0;
-					rowList.add(peptideKey);
-					int numOccurrence = 0;
-					for (final IdentificationSet idSet : idSets) {
-						final int numPSMs = idSet.getNumPSMsForAPeptide(peptideKey);
-						if (numPSMs > 0)
-							someValueIsMoreThanZero = true;
-						final String columnName = idSet.getFullName();
-						if (!columnList.contains(columnName))
-							columnList.add(columnName);
-						numOccurrence += numPSMs;
-						dataset[peptideIndex][identSetIndex] = numPSMs;
-						identSetIndex++;
-					}
-					peptideIndex++;
-				}
+		int column = 0;
+		for (final IdentificationSet idSet : idSets) {
+			checkCancelled();
+			columnList.add(idSet.getFullName());
+			for (int row = 0; row < matrix.getNumRows(); row++) {
+				matrix.set(row, column, idSet.getNumPSMsForAPeptide(matrix.getRowKey(row)));
+			}
+			column++;
 		}
-
-		if (!someValueIsMoreThanZero)
+		if (!matrix.hasNonZeroValues())
 			throw new IllegalMiapeArgumentException(
 					"<html>There is not data to show.<br>Try to lower the number in 'Do not paint rows with less than' text box,<br> which in this case means the number of psms per peptide across all datasets.</html>");
-		final double[][] ret = new double[rowList.size()][columnList.size()];
-		for (int row = 0; row < rowList.size(); row++) {
-			for (int column = 0; column < columnList.size(); column++) {
-				ret[row][column] = dataset[row][column];
-			}
-		}
-
-		// if there is a proteinACC filter, then, return just the data from the
-		// proteins of the filter and in the appropriate order
-		if (peptideSequenceOrder != null && !peptideSequenceOrder.isEmpty()) {
-			final double[][] newRet = getNewSortedData(peptideSequenceOrder, ret, rowList, columnList);
-			rowList.clear();
-			rowList.addAll(peptideSequenceOrder);
-			return newRet;
-		}
-		return ret;
+		// from the highest to the lowest number of PSMs
+		final TIntArrayList rows = matrix.getRowsSortedByScore(matrix.getRowTotals(),
+				Math.max(1, minOccurrenceThreshold));
+		return getHeatMapDataset(matrix, rows, rowList, peptideSequenceOrder);
 	}
 
 	/**
@@ -1181,80 +1111,23 @@ public class DatasetFactory {
 
 		if (columnList == null)
 			columnList = new ArrayList<String>();
-		double[][] dataset = null;
-
-		boolean someValueIsMoreThanZero = false;
-		final TIntObjectHashMap<List<String>> occurrenceRankingPep = new TIntObjectHashMap<List<String>>();
-		// Firstly, to iterate over parent elements and fill the
-		// occurrenceRanking, where the key is the number of idSets that
-		// contains the item<br>
-		// Then, from 1 to numberOfIdSets, build the heatmap
-		final Collection<PeptideOccurrence> peptideOccurrenceSet = parentIdSet
-				.getPeptideOccurrenceList(distiguishModificatedPeptides).values();
-		dataset = new double[peptideOccurrenceSet.size()][idSets.size()];
-		int maxOccurrence = 0;
-		for (final PeptideOccurrence peptideOccurrence : peptideOccurrenceSet) {
-			int present = 0;
-			for (final IdentificationSet idSet : idSets) {
-				final int peptideOccurrenceNumber = idSet.getPeptideOccurrenceNumber(
-						peptideOccurrence.getFirstOccurrence().getSequence(), distiguishModificatedPeptides);
-				present += peptideOccurrenceNumber;
-			}
-			if (present > 0 && present >= minOccurrenceThreshold) {
-				if (maxOccurrence < present) {
-					maxOccurrence = present;
-				}
-				if (!occurrenceRankingPep.containsKey(present)) {
-					final List<String> list = new ArrayList<String>();
-					list.add(peptideOccurrence.getKey());
-					occurrenceRankingPep.put(present, list);
-				} else {
-					occurrenceRankingPep.get(present).add(peptideOccurrence.getKey());
-				}
-			}
+		final OccurrenceMatrix matrix = new OccurrenceMatrix(idSets.size());
+		for (final PeptideOccurrence peptideOccurrence : parentIdSet
+				.getPeptideOccurrenceList(distiguishModificatedPeptides).values()) {
+			matrix.addRow(peptideOccurrence.getKey());
 		}
-		int peptideIndex = 0;
-		for (int numPresent = maxOccurrence; numPresent >= 0; numPresent--) {
-			final List<String> peptideKeys = occurrenceRankingPep.get(numPresent);
-			if (peptideKeys != null)
-				for (final String peptideKey : peptideKeys) {
-					int identSetIndex = 0;
-					rowList.add(peptideKey);
-					for (final IdentificationSet idSet : idSets) {
-						final int peptideOcurrence = idSet.getPeptideOccurrenceNumber(peptideKey,
-								distiguishModificatedPeptides);
-						if (peptideOcurrence > 0) {
-							someValueIsMoreThanZero = true;
-						}
-						final String columnName = idSet.getFullName();
-						if (!columnList.contains(columnName)) {
-							columnList.add(columnName);
-						}
-						dataset[peptideIndex][identSetIndex] = peptideOcurrence;
-						identSetIndex++;
-					}
-					peptideIndex++;
-				}
+		int column = 0;
+		for (final IdentificationSet idSet : idSets) {
+			checkCancelled();
+			columnList.add(idSet.getFullName());
+			matrix.fillPeptideOccurrences(column++, idSet, distiguishModificatedPeptides);
 		}
-
-		if (!someValueIsMoreThanZero)
+		if (!matrix.hasNonZeroValues())
 			throw new IllegalMiapeArgumentException("There is not data to show");
-		final double[][] ret = new double[rowList.size()][columnList.size()];
-		for (int row = 0; row < rowList.size(); row++) {
-			for (int column = 0; column < columnList.size(); column++) {
-				ret[row][column] = dataset[row][column];
-			}
-		}
-
-		// if there is a proteinACC filter, then, return just the data from the
-		// proteins of the filter and in the appropriate order
-		if (peptideSequenceOrder != null && !peptideSequenceOrder.isEmpty()) {
-			final double[][] newRet = getNewSortedData(peptideSequenceOrder, ret, rowList, columnList);
-			rowList.clear();
-			rowList.addAll(peptideSequenceOrder);
-			return newRet;
-		}
-		return ret;
+		// from the highest to the lowest occurrence
+		final TIntArrayList rows = matrix.getRowsSortedByScore(matrix.getRowTotals(),
+				Math.max(1, minOccurrenceThreshold));
+		return getHeatMapDataset(matrix, rows, rowList, peptideSequenceOrder);
 	}
 
 	/**
@@ -1281,98 +1154,48 @@ public class DatasetFactory {
 
 		if (columnList == null)
 			columnList = new ArrayList<String>();
-		double[][] dataset = null;
-
-		boolean someValueIsMoreThanZero = false;
-		final TIntObjectHashMap<List<String>> occurrenceRankingPep = new TIntObjectHashMap<List<String>>();
-		// Firstly, to iterate over parent elements and fill the
-		// occurrenceRanking, where the key is the number of idSets that
-		// contains the item<br>
-		// Then, from 1 to numberOfIdSets, build the heatmap
-		final TIntObjectHashMap<List<ProteinGroup>> occurrenceRankingProt = new TIntObjectHashMap<List<ProteinGroup>>();
-
-		final Collection<ProteinGroupOccurrence> proteinOccurrenceSet = parentIdSet.getProteinGroupOccurrenceList()
-				.values();
-		dataset = new double[proteinOccurrenceSet.size()][idSets.size()];
-
-		for (final ProteinGroupOccurrence proteinGroupOccurrence : proteinOccurrenceSet) {
-
+		final OccurrenceMatrix matrix = new OccurrenceMatrix(idSets.size());
+		final List<ProteinGroup> proteinGroups = new ArrayList<ProteinGroup>();
+		for (final ProteinGroupOccurrence proteinGroupOccurrence : parentIdSet.getProteinGroupOccurrenceList()
+				.values()) {
 			if (proteinGroupOccurrence.getEvidence() == ProteinEvidence.NONCONCLUSIVE && !countNonConclusiveProteins)
 				continue;
-			int present = 0;
-			for (final IdentificationSet idSet : idSets) {
-				if (idSet.getProteinGroupOccurrenceNumber(proteinGroupOccurrence.getFirstOccurrence()) > 0) {
-					someValueIsMoreThanZero = true;
-					present++;
-				}
-			}
-			if (present > 0 && present >= minOccurrenceThreshold)
-				if (!occurrenceRankingProt.containsKey(present)) {
-					final List<ProteinGroup> list = new ArrayList<ProteinGroup>();
-					list.add(proteinGroupOccurrence.getFirstOccurrence());
-					occurrenceRankingProt.put(present, list);
-				} else {
-					occurrenceRankingProt.get(present).add(proteinGroupOccurrence.getFirstOccurrence());
-				}
-
+			final ProteinGroup proteinGroup = proteinGroupOccurrence.getFirstOccurrence();
+			if (matrix.addRow(getProteinGroupKey(proteinGroup)) == proteinGroups.size())
+				proteinGroups.add(proteinGroup);
 		}
-		int proteinIndex = 0;
-		for (int numPresent = idSets.size(); numPresent >= 0; numPresent--) {
-			final List<ProteinGroup> proteinGroups = occurrenceRankingProt.get(numPresent);
-			if (proteinGroups != null)
-				for (final ProteinGroup proteinGroup : proteinGroups) {
-
-					int identSetIndex = 0;
-					final List<String> accs = proteinGroup.getAccessions();
-					String key = "";
-					for (final String acc : accs) {
-						if (!"".equals(key))
-							key += ",";
-						key += acc;
-					}
-					rowList.add(key);
-					for (final IdentificationSet idSet : idSets) {
-						final int proteinOcurrence = idSet.getProteinGroupOccurrenceNumber(proteinGroup);
-						if (proteinOcurrence > 0)
-							someValueIsMoreThanZero = true;
-						final String columnName = idSet.getFullName();
-						if (!columnList.contains(columnName))
-							columnList.add(columnName);
-						dataset[proteinIndex][identSetIndex] = proteinOcurrence;
-
-						// dataset[proteinIndex][identSetIndex] = 1;
-						identSetIndex++;
-					}
-					proteinIndex++;
-				}
+		int column = 0;
+		for (final IdentificationSet idSet : idSets) {
+			checkCancelled();
+			columnList.add(idSet.getFullName());
+			for (int row = 0; row < proteinGroups.size(); row++) {
+				matrix.set(row, column, idSet.getProteinGroupOccurrenceNumber(proteinGroups.get(row)));
+			}
+			column++;
 		}
 
-		if (!someValueIsMoreThanZero) {
+		if (!matrix.hasNonZeroValues()) {
 			throw new IllegalMiapeArgumentException("There is not data to show");
 		}
-		if (rowList.isEmpty() || columnList.isEmpty()) {
+		// from the highest to the lowest number of idSets in which the protein
+		// is present
+		final TIntArrayList rows = matrix.getRowsSortedByScore(matrix.getRowPresences(),
+				Math.max(1, minOccurrenceThreshold));
+		if (rows.isEmpty() || columnList.isEmpty()) {
 			throw new IllegalMiapeArgumentException(
 					"<html>There is not data to show.<br> Check the occurrence filter and write a lower value.</html>");
 		}
-		final double[][] ret = new double[rowList.size()][columnList.size()];
-		for (int row = 0; row < rowList.size(); row++) {
-			for (int column = 0; column < columnList.size(); column++) {
-				ret[row][column] = dataset[row][column];
-			}
-		}
-		// TODO put this variable in method parameters
-		final boolean sortAsACCFilter = true;
-		// if there is a proteinACC filter, then, return just the data from the
-		// proteins of the filter and in the appropriate order
-		if (sortAsACCFilter) {
-			if (proteinACCOrder != null && !proteinACCOrder.isEmpty()) {
-				final double[][] newRet = getNewSortedData(proteinACCOrder, ret, rowList, columnList);
-				rowList.clear();
-				rowList.addAll(proteinACCOrder);
-				return newRet;
-			}
+		return getHeatMapDataset(matrix, rows, rowList, proteinACCOrder);
+	}
+
+	private static String getProteinGroupKey(ProteinGroup proteinGroup) {
+		final StringBuilder key = new StringBuilder();
+		for (final String acc : proteinGroup.getAccessions()) {
+			if (key.length() > 0)
+				key.append(",");
+			key.append(acc);
 		}
-		return ret;
+		return key.toString();
 	}
 
 	/**
@@ -1399,131 +1222,65 @@ public class DatasetFactory {
 
 		if (columnList == null)
 			columnList = new ArrayList<String>();
-		double[][] dataset = null;
-
-		boolean someValueIsMoreThanZero = false;
-		// Firstly, to iterate over parent elements and fill the
-		// occurrenceRanking, where the key is the number of idSets that
-		// contains the item<br>
-		// Then, from 1 to numberOfIdSets, build the heatmap
-		// ranking the proteins by the number of peptides they have
-		final TIntObjectHashMap<List<ProteinGroup>> peptideNumberRankingProt = new TIntObjectHashMap<List<ProteinGroup>>();
 		log.info("Creating peptides per protein heatmap: PSM=" + isPSM);
-		final Collection<ProteinGroupOccurrence> proteinOccurrenceSet = parentIdSet.getProteinGroupOccurrenceList()
-				.values();
-		dataset = new double[proteinOccurrenceSet.size()][idSets.size()];
-		int maxNumberOfPeptidesPerProtein = 0;
-		for (final ProteinGroupOccurrence proteinGroupOccurrence : proteinOccurrenceSet) {
-
+		final OccurrenceMatrix matrix = new OccurrenceMatrix(idSets.size());
+		final List<ProteinGroup> proteinGroups = new ArrayList<ProteinGroup>();
+		for (final ProteinGroupOccurrence proteinGroupOccurrence : parentIdSet.getProteinGroupOccurrenceList()
+				.values()) {
 			if (proteinGroupOccurrence.getEvidence() == ProteinEvidence.NONCONCLUSIVE && !countNonConclusiveProteins)
 				continue;
-			int totalPeptidesForThatProtein = 0;
-			for (final IdentificationSet idSet : idSets) {
-				final ProteinGroupOccurrence proteinGroupOccurrenceIdSet = idSet
-						.getProteinGroupOccurrence(proteinGroupOccurrence.getFirstOccurrence());
-				if (proteinGroupOccurrenceIdSet != null && proteinGroupOccurrence.getPeptides() != null) {
-					someValueIsMoreThanZero = true;
-					int size = 0;
+			final ProteinGroup proteinGroup = proteinGroupOccurrence.getFirstOccurrence();
+			if (matrix.addRow(proteinGroup.getAccessionsString()) == proteinGroups.size())
+				proteinGroups.add(proteinGroup);
+		}
+		int column = 0;
+		for (final IdentificationSet idSet : idSets) {
+			checkCancelled();
+			columnList.add(idSet.getFullName());
+			for (int row = 0; row < proteinGroups.size(); row++) {
+				final ProteinGroupOccurrence proteinGroupOccurrence = idSet
+						.getProteinGroupOccurrence(proteinGroups.get(row));
+				if (proteinGroupOccurrence != null && proteinGroupOccurrence.getPeptides() != null) {
 					if (isPSM) {
-						size = proteinGroupOccurrence.getPeptides().size();
+						matrix.set(row, column, proteinGroupOccurrence.getPeptides().size());
 					} else {
-						size = DataManager.createPeptideOccurrenceList(proteinGroupOccurrence.getPeptides(),
-								distiguishModificatedPeptides).size();
-					}
-					totalPeptidesForThatProtein += size;
-				}
-			}
-			if (totalPeptidesForThatProtein < minThreshold) {
-				continue;
-			}
-			if (totalPeptidesForThatProtein > 0 && totalPeptidesForThatProtein >= minThreshold) {
-				if (maxNumberOfPeptidesPerProtein < totalPeptidesForThatProtein) {
-					maxNumberOfPeptidesPerProtein = totalPeptidesForThatProtein;
-				}
-			}
-			if (!peptideNumberRankingProt.containsKey(totalPeptidesForThatProtein)) {
-				final List<ProteinGroup> list = new ArrayList<ProteinGroup>();
-				list.add(proteinGroupOccurrence.getFirstOccurrence());
-				peptideNumberRankingProt.put(totalPeptidesForThatProtein, list);
-			} else {
-				peptideNumberRankingProt.get(totalPeptidesForThatProtein)
-						.add(proteinGroupOccurrence.getFirstOccurrence());
-			}
-
-		}
-		int proteinIndex = 0;
-		for (int peptidesPerprotein = maxNumberOfPeptidesPerProtein; peptidesPerprotein >= 0; peptidesPerprotein--) {
-			final List<ProteinGroup> proteinGroups = peptideNumberRankingProt.get(peptidesPerprotein);
-			if (proteinGroups != null) {
-				for (final ProteinGroup proteinGroup : proteinGroups) {
-					int identSetIndex = 0;
-					rowList.add(proteinGroup.getAccessionsString());
-					for (final IdentificationSet idSet : idSets) {
-						final ProteinGroupOccurrence proteinGroupOccurrence = idSet
-								.getProteinGroupOccurrence(proteinGroup);
-						int peptidesPerThisProtein = 0;
-						if (proteinGroupOccurrence != null) {
-							if (isPSM) {
-								peptidesPerThisProtein = proteinGroupOccurrence.getPeptides().size();
-							} else {
-								peptidesPerThisProtein = DataManager.createPeptideOccurrenceList(
-										proteinGroupOccurrence.getPeptides(), distiguishModificatedPeptides).size();
-							}
-							if (peptidesPerThisProtein > 0)
-								someValueIsMoreThanZero = true;
-
-						}
-						final String columnName = idSet.getFullName();
-						if (!columnList.contains(columnName)) {
-							columnList.add(columnName);
-						}
-						dataset[proteinIndex][identSetIndex] = peptidesPerThisProtein;
-						identSetIndex++;
+						matrix.set(row, column, DataManager.createPeptideOccurrenceList(
+								proteinGroupOccurrence.getPeptides(), distiguishModificatedPeptides).size());
 					}
-					proteinIndex++;
 				}
 			}
+			column++;
 		}
 
-		if (!someValueIsMoreThanZero)
+		if (!matrix.hasNonZeroValues())
 			throw new IllegalMiapeArgumentException("There is not data to show");
-		final double[][] ret = new double[rowList.size()][columnList.size()];
-		for (int row = 0; row < rowList.size(); row++) {
-			for (int column = 0; column < columnList.size(); column++) {
-				ret[row][column] = dataset[row][column];
-			}
-		}
-
-		// if there is a proteinACC filter, then, return just the data from the
-		// proteins of the filter and in the appropriate order
-		if (proteinACCOrder != null && !proteinACCOrder.isEmpty()) {
-			final double[][] newRet = getNewSortedData(proteinACCOrder, ret, rowList, columnList);
-			rowList.clear();
-			rowList.addAll(proteinACCOrder);
-			return newRet;
-		}
-		return ret;
+		// from the highest to the lowest number of peptides
+		final TIntArrayList rows = matrix.getRowsSortedByScore(matrix.getRowTotals(), minThreshold);
+		return getHeatMapDataset(matrix, rows, rowList, proteinACCOrder);
 	}
 
-	private static double[][] getNewSortedData(List<String> newOrder, double[][] ret, List<String> rowList,
-			List<String> columnList) {
-		final double[][] newRet = new double[newOrder.size()][columnList.size()];
-		int newRow = 0;
-
-		// search each new proteinKey in the ret array and put it in the new
-		// one
-		for (final String proteinKey : newOrder) {
-
-			for (int row = 0; row < rowList.size(); row++) {
-				if (rowList.get(row).equals(proteinKey)) {
-					for (int column = 0; column < columnList.size(); column++) {
-						newRet[newRow][column] = ret[row][column];
-					}
-				}
-			}
-			newRow++;
+	/**
+	 * Gets the dataset of a heatmap with some rows of an
+	 * {@link OccurrenceMatrix}, adding the keys of the rows to the rowList.
+	 *
+	 * @param matrix
+	 * @param rows
+	 *            the selected rows
+	 * @param rowList
+	 * @param order
+	 *            if not empty, the dataset will have one row per element of
+	 *            this list, in that order, instead of the selected rows.
+	 *            Elements that are not in the selected rows will have zeros.
+	 * @return
+	 */
+	private static double[][] getHeatMapDataset(OccurrenceMatrix matrix, TIntArrayList rows, List<String> rowList,
+			List<String> order) {
+		if (order != null && !order.isEmpty()) {
+			rowList.addAll(order);
+			return matrix.toDataset(matrix.getRowIds(order, rows));
 		}
-		return newRet;
+		rowList.addAll(matrix.getRowKeys(rows));
+		return matrix.toDataset(rows);
 	}
 
 	/**
@@ -1542,30 +1299,25 @@ public class DatasetFactory {
 			Boolean distinguishModificatedPeptides, boolean binary) {
 
 		// one columns per idSet and one row per peptide string in rowList
-		final double[][] dataset = new double[sequences.size()][idSets.size()];
-		boolean atLeastOneData = false;
-		int numRow = 0;
+		final OccurrenceMatrix matrix = new OccurrenceMatrix(idSets.size());
 		for (final String peptideString : sequences) {
-			int numColumn = 0;
-			for (final IdentificationSet idSet : idSets) {
-				final int peptideOccurrence = idSet.getPeptideOccurrenceNumber(peptideString,
-						distinguishModificatedPeptides);
-				if (binary) {
-					if (peptideOccurrence == 0)
-						dataset[numRow][numColumn] = 0;
-					else {
-						dataset[numRow][numColumn] = 1;
-						atLeastOneData = true;
-					}
-				} else {
-					dataset[numRow][numColumn] = peptideOccurrence;
-					if (peptideOccurrence > 0)
-						atLeastOneData = true;
+			matrix.addRow(peptideString);
+		}
+		int numColumn = 0;
+		for (final IdentificationSet idSet : idSets) {
+			checkCancelled();
+			matrix.fillPeptideOccurrences(numColumn++, idSet, distinguishModificatedPeptides);
+		}
+		final boolean atLeastOneData = matrix.hasNonZeroValues();
+		final TIntArrayList rows = matrix.getRowIds(sequences, null);
+		final double[][] dataset = matrix.toDataset(rows);
+		if (binary) {
+			for (final double[] row : dataset) {
+				for (int column = 0; column < row.length; column++) {
+					if (row[column] > 0)
+						row[column] = 1;
 				}
-
-				numColumn++;
 			}
-			numRow++;
 		}
 		if (!atLeastOneData)
 			throw new IllegalMiapeArgumentException(
@@ -1574,19 +1326,28 @@ public class DatasetFactory {
 		return dataset;
 	}
 
-	public static HistogramDataset createScoreHistogramDataSet(List<IdentificationSet> idSets, String scoreName,
-			IdentificationItemEnum plotItem, int bins, boolean addZeroZeroValue, HistogramType histogramType,
-			boolean applyLog, boolean separateDecoyHits, Boolean countNonConclusiveProteins) {
+	public static HistogramDataset createScoreHistogramDataSet(List<IdentificationSet> idSets,
+			final String scoreName, final IdentificationItemEnum plotItem, int bins, final boolean addZeroZeroValue,
+			HistogramType histogramType, final boolean applyLog, final boolean separateDecoyHits,
+			final Boolean countNonConclusiveProteins) {
 		final HistogramDataset dataset = new HistogramDataset();
 
-		for (final IdentificationSet idSet : idSets) {
-			List<double[]> values = null;
-			if (plotItem.equals(IdentificationItemEnum.PROTEIN)) {
-				values = getProteinScores(idSet, scoreName, addZeroZeroValue, applyLog, separateDecoyHits,
-						countNonConclusiveProteins);
-			} else if (plotItem.equals(IdentificationItemEnum.PEPTIDE)) {
-				values = getPeptideScores(idSet, scoreName, addZeroZeroValue, applyLog, separateDecoyHits);
-			}
+		final List<List<double[]>> valuesPerIdSet = ParallelSeriesComputer.computeAll(idSets,
+				new ParallelSeriesComputer.SeriesFunction<List<double[]>>() {
+					@Override
+					public List<double[]> compute(IdentificationSet idSet) {
+						if (plotItem.equals(IdentificationItemEnum.PROTEIN)) {
+							return getProteinScores(idSet, scoreName, addZeroZeroValue, applyLog, separateDecoyHits,
+									countNonConclusiveProteins);
+						} else if (plotItem.equals(IdentificationItemEnum.PEPTIDE)) {
+							return getPeptideScores(idSet, scoreName, addZeroZeroValue, applyLog, separateDecoyHits);
+						}
+						return null;
+					}
+				});
+		for (int numIdSet = 0; numIdSet < idSets.size(); numIdSet++) {
+			final IdentificationSet idSet = idSets.get(numIdSet);
+			final List<double[]> values = valuesPerIdSet.get(numIdSet);
 			if (values != null) {
 				for (int i = 0; i < values.size(); i++) {
 					final double[] ds = values.get(i);
@@ -1616,7 +1377,10 @@ public class DatasetFactory {
 			HistogramType histogramType, boolean retrieveProteinSeq, Boolean countNonConclusiveProteins) {
 		final HistogramDataset dataset = new HistogramDataset();
 
+		// not in the ParallelSeriesComputer: the coverages use the Uniprot
+		// retriever, that is not thread safe
 		for (final IdentificationSet idSet : idSets) {
+			checkCancelled();
 			final double[] values = getProteinCoverages(idSet, retrieveProteinSeq, countNonConclusiveProteins);
 			if (values != null && values.length > 0)
 				dataset.addSeries(idSet.getFullName(), values, bins);
@@ -1629,7 +1393,10 @@ public class DatasetFactory {
 			HistogramType histogramType, boolean retrieveFromInternet, Boolean countNonConclusiveProteins) {
 		final HistogramDataset dataset = new HistogramDataset();
 		boolean someDataset = false;
+		// not in the ParallelSeriesComputer: the masses are set in the
+		// proteins of the model
 		for (final IdentificationSet idSet : idSets) {
+			checkCancelled();
 			final double[] values = getNumPeptidesPerProteinMass(idSet, retrieveFromInternet,
 					countNonConclusiveProteins);
 
@@ -1651,6 +1418,7 @@ public class DatasetFactory {
 		final DefaultCategoryDataset dataset = new DefaultCategoryDataset();
 
 		for (final IdentificationSet idSet : idSets) {
+			checkCancelled();
 			retrieveUniprotProteins(idSet);
 			final HistogramDataset histogram = new HistogramDataset();
 
@@ -1684,19 +1452,16 @@ public class DatasetFactory {
 		final String uniprotAcc = FastaParser.getUniProtACC(protein.getAccession());
 		Double mass = protein.getProteinMass();
 		if (mass == null && uniprotAcc != null) {
-			final Map<String, Entry> annotatedProtein = FileManager.getUniprotProteinLocalRetriever()
-					.getAnnotatedProtein(null, uniprotAcc);
-			if (annotatedProtein.containsKey(uniprotAcc)) {
-				mass = UniprotEntryUtil.getMolecularWeightInDalton(annotatedProtein.get(uniprotAcc));
+			// the annotation has the mass from the sequence if Uniprot doesn't
+			// provide it
+			final ProteinAnnotation annotation = ProteinAnnotationService.getInstance().getAnnotation(uniprotAcc);
+			if (annotation != null && annotation.getMass() != null) {
+				mass = annotation.getMass();
 				protein.setProteinMass(mass);
 			}
 		}
 		// if still is null, try with the protein sequence
-		String proteinSequence = protein.getProteinSequence();
-		if (mass == null && proteinSequence == null && uniprotAcc != null) {
-			proteinSequence = ProteinSequenceRetrieval.getProteinSequence(uniprotAcc, true,
-					FileManager.getUniprotProteinLocalRetriever());
-		}
+		final String proteinSequence = protein.getProteinSequence();
 		if (mass == null && proteinSequence != null) {
 			final Protein prot = new Protein(new AASequenceImpl(proteinSequence));
 			mass = prot.getMass();
@@ -1705,7 +1470,18 @@ public class DatasetFactory {
 		return mass;
 	}
 
-	private static double[] getNumPeptidesPerProteinMass(IdentificationSet idSet, boolean retrieveFromInternet,
+	private static double[] getNumPeptidesPerProteinMass(final IdentificationSet idSet,
+			final boolean retrieveFromInternet, final Boolean countNonConclusiveProteins) {
+		final String key = "NumPeptidesPerProteinMass|" + retrieveFromInternet + "|" + countNonConclusiveProteins;
+		return DatasetCache.get(idSet, key, new DatasetCache.PartialResult<double[]>() {
+			@Override
+			public double[] compute() {
+				return computeNumPeptidesPerProteinMass(idSet, retrieveFromInternet, countNonConclusiveProteins);
+			}
+		});
+	}
+
+	private static double[] computeNumPeptidesPerProteinMass(IdentificationSet idSet, boolean retrieveFromInternet,
 			Boolean countNonConclusiveProteins) {
 		final TDoubleArrayList values = new TDoubleArrayList();
 		retrieveUniprotProteins(idSet);
@@ -1749,11 +1525,19 @@ public class DatasetFactory {
 	}
 
 	public static HistogramDataset createPeptideMassHistogramDataSet(List<IdentificationSet> idSets, int bins,
-			HistogramType histogramType, boolean mOverz) {
+			HistogramType histogramType, final boolean mOverz) {
 		final HistogramDataset dataset = new HistogramDataset();
 
-		for (final IdentificationSet idSet : idSets) {
-			final double[] values = getPeptideMasses(idSet, mOverz);
+		final List<double[]> valuesPerIdSet = ParallelSeriesComputer.computeAll(idSets,
+				new ParallelSeriesComputer.SeriesFunction<double[]>() {
+					@Override
+					public double[] compute(IdentificationSet idSet) {
+						return getPeptideMasses(idSet, mOverz);
+					}
+				});
+		for (int numIdSet = 0; numIdSet < idSets.size(); numIdSet++) {
+			final IdentificationSet idSet = idSets.get(numIdSet);
+			final double[] values = valuesPerIdSet.get(numIdSet);
 			if (values != null && values.length > 0)
 				dataset.addSeries(idSet.getFullName(), values, bins);
 		}
@@ -1765,16 +1549,20 @@ public class DatasetFactory {
 			int minimum, int maximum) {
 		final DefaultCategoryDataset dataset = new DefaultCategoryDataset();
 
-		final Map<IdentificationSet, TIntObjectHashMap<Integer>> map = new THashMap<IdentificationSet, TIntObjectHashMap<Integer>>();
-		for (final IdentificationSet idSet : idSets) {
-			final TIntObjectHashMap<Integer> values = getPeptideLengths(idSet);
-			map.put(idSet, values);
-		}
+		final List<TIntObjectHashMap<Integer>> valuesPerIdSet = ParallelSeriesComputer.computeAll(idSets,
+				new ParallelSeriesComputer.SeriesFunction<TIntObjectHashMap<Integer>>() {
+					@Override
+					public TIntObjectHashMap<Integer> compute(IdentificationSet idSet) {
+						return getPeptideLengths(idSet);
+					}
+				});
 
-		for (final IdentificationSet idSet : idSets) {
+		for (int numIdSet = 0; numIdSet < idSets.size(); numIdSet++) {
+			checkCancelled();
+			final IdentificationSet idSet = idSets.get(numIdSet);
 			int maxLength = 0;
 			int minLength = 0;
-			final TIntObjectHashMap<Integer> values = map.get(idSet);
+			final TIntObjectHashMap<Integer> values = valuesPerIdSet.get(numIdSet);
 			if (values != null) {
 				for (int length = 1; length < 100; length++) {
 					if (values.containsKey(length)) {
@@ -1803,76 +1591,58 @@ public class DatasetFactory {
 		return dataset;
 	}
 
-	private static double[] getPeptideMasses(IdentificationSet idSet, boolean mOverz) {
-		double[] ret = null;
-
-		final List<ExtendedIdentifiedPeptide> peptides = idSet.getIdentifiedPeptides();
-		if (peptides != null) {
-			ret = new double[peptides.size()];
-			int i = 0;
-			for (final ExtendedIdentifiedPeptide peptide : peptides) {
-				try {
-					final Float experimentalMassToCharge = peptide.getExperimentalMassToCharge();
-					if (experimentalMassToCharge != null) {
-						if (mOverz) {
-							final Double mz = Double.valueOf(experimentalMassToCharge);
-							ret[i] = mz;
-						} else {
-							try {
-								final int charge = Integer.valueOf(peptide.getCharge());
-								final Double mz = Double.valueOf(experimentalMassToCharge);
-								if (charge > 0)
-
-									ret[i] = mz * Double.valueOf(charge);
-							} catch (final NumberFormatException e) {
-
-							}
-						}
-					} else {
-						try {
-							if (mOverz) {
-								try {
-									final int charge = Integer.valueOf(peptide.getCharge());
-									final Double mz = Double.valueOf(peptide.getTheoreticMass());
-									if (charge > 0)
-
-										ret[i] = mz / Double.valueOf(charge);
-								} catch (final NumberFormatException e) {
-
-								}
-							} else {
-								ret[i] = peptide.getTheoreticMass();
-
-							}
-						} catch (final IllegalArgumentException e) {
+	private static double[] getPeptideMasses(final IdentificationSet idSet, final boolean mOverz) {
+		final String key = "PeptideMasses|" + mOverz;
+		return DatasetCache.get(idSet, key, new DatasetCache.PartialResult<double[]>() {
+			@Override
+			public double[] compute() {
+				return computePeptideMasses(idSet, mOverz);
+			}
+		});
+	}
 
-						}
-					}
-				} catch (final NumberFormatException ex) {
-					// do nothing
+	private static double[] computePeptideMasses(IdentificationSet idSet, boolean mOverz) {
+		final PSMColumns columns = PSMColumns.get(idSet);
+		final double[] experimentalMz = columns.getExperimentalMz();
+		final double[] theoreticMass = columns.getTheoreticMass();
+		final int[] charge = columns.getCharge();
+		final double[] ret = new double[columns.size()];
+		for (int i = 0; i < ret.length; i++) {
+			if (!Double.isNaN(experimentalMz[i])) {
+				if (mOverz) {
+					ret[i] = experimentalMz[i];
+				} else if (charge[i] > 0) {
+					ret[i] = experimentalMz[i] * charge[i];
+				}
+			} else if (!Double.isNaN(theoreticMass[i])) {
+				if (!mOverz) {
+					ret[i] = theoreticMass[i];
+				} else if (charge[i] > 0) {
+					ret[i] = theoreticMass[i] / charge[i];
 				}
-				i++;
 			}
 		}
 		return ret;
 	}
 
-	private static TIntObjectHashMap<Integer> getPeptideLengths(IdentificationSet idSet) {
-		final TIntObjectHashMap<Integer> ret = new TIntObjectHashMap<Integer>();
-
-		final List<ExtendedIdentifiedPeptide> peptides = idSet.getIdentifiedPeptides();
-		if (peptides != null) {
-			for (final ExtendedIdentifiedPeptide peptide : peptides) {
-				final String peptideSequence = peptide.getSequence();
-				if (peptideSequence != null) {
-
-					final int length = peptideSequence.length();
-					if (ret.containsKey(length)) {
-						ret.put(length, ret.get(length) + 1);
-					} else {
-						ret.put(length, 1);
-					}
+	private static TIntObjectHashMap<Integer> getPeptideLengths(final IdentificationSet idSet) {
+		final String key = "PeptideLengths";
+		return DatasetCache.get(idSet, key, new DatasetCache.PartialResult<TIntObjectHashMap<Integer>>() {
+			@Override
+			public TIntObjectHashMap<Integer> compute() {
+				return computePeptideLengths(idSet);
+			}
+		});
+	}
 
+	private static TIntObjectHashMap<Integer> computePeptideLengths(IdentificationSet idSet) {
+		final TIntObjectHashMap<Integer> ret = new TIntObjectHashMap<Integer>();
+		for (final int length : PSMColumns.get(idSet).getLength()) {
+			if (length >= 0) {
+				if (ret.containsKey(length)) {
+					ret.put(length, ret.get(length) + 1);
+				} else {
+					ret.put(length, 1);
 				}
 			}
 		}
@@ -1883,8 +1653,17 @@ public class DatasetFactory {
 		final DefaultCategoryDataset dataset = new DefaultCategoryDataset();
 
 		final List<TIntObjectHashMap<Integer>> totalList = new ArrayList<TIntObjectHashMap<Integer>>();
-		for (final IdentificationSet idSet : idSets) {
-			final int[] charges = getPeptideCharges(idSet);
+		final List<int[]> chargesPerIdSet = ParallelSeriesComputer.computeAll(idSets,
+				new ParallelSeriesComputer.SeriesFunction<int[]>() {
+					@Override
+					public int[] compute(IdentificationSet idSet) {
+						return getPeptideCharges(idSet);
+					}
+				});
+		for (int numIdSet = 0; numIdSet < idSets.size(); numIdSet++) {
+			checkCancelled();
+			final IdentificationSet idSet = idSets.get(numIdSet);
+			final int[] charges = chargesPerIdSet.get(numIdSet);
 			final TIntObjectHashMap<Integer> chargeHash = new TIntObjectHashMap<Integer>();
 			for (final int charge : charges) {
 				if (charge > 0)
@@ -1913,43 +1692,52 @@ public class DatasetFactory {
 	 * @param idSet
 	 * @return
 	 */
-	private static int[] getPeptideCharges(IdentificationSet idSet) {
-		int[] ret = null;
+	private static int[] getPeptideCharges(final IdentificationSet idSet) {
+		final String key = "PeptideCharges";
+		return DatasetCache.get(idSet, key, new DatasetCache.PartialResult<int[]>() {
+			@Override
+			public int[] compute() {
+				return computePeptideCharges(idSet);
+			}
+		});
+	}
 
-		final List<ExtendedIdentifiedPeptide> peptides = idSet.getIdentifiedPeptides();
-		if (peptides != null) {
-			ret = new int[peptides.size()];
-			int i = 0;
-			for (final ExtendedIdentifiedPeptide peptide : peptides) {
-				try {
-					final int charge = Integer.valueOf(peptide.getCharge());
-					if (charge > 0)
-						ret[i] = charge;
-				} catch (final NumberFormatException ex) {
+	private static int[] computePeptideCharges(IdentificationSet idSet) {
+		final PSMColumns columns = PSMColumns.get(idSet);
+		// not valid charges are already 0
+		return columns.getCharge();
+	}
 
-				}
-				i++;
+	private static double[] getProteinCoverages(final IdentificationSet idSet, final boolean retrieveProteinSeq,
+			final Boolean countNonConclusiveProteins) {
+		final String key = "ProteinCoverages|" + retrieveProteinSeq + "|" + countNonConclusiveProteins;
+		return DatasetCache.get(idSet, key, new DatasetCache.PartialResult<double[]>() {
+			@Override
+			public double[] compute() {
+				return computeProteinCoverages(idSet, retrieveProteinSeq, countNonConclusiveProteins);
 			}
-		}
-		return ret;
+		});
 	}
 
-	private static double[] getProteinCoverages(IdentificationSet idSet, boolean retrieveProteinSeq,
+	private static double[] computeProteinCoverages(IdentificationSet idSet, boolean retrieveProteinSeq,
 			Boolean countNonConclusiveProteins) {
 
 		final TDoubleArrayList ret = new TDoubleArrayList();
 		retrieveUniprotProteins(idSet);
 		final Collection<ProteinGroupOccurrence> proteinOccurrences = idSet.getProteinGroupOccurrenceList().values();
 		if (proteinOccurrences != null && !proteinOccurrences.isEmpty()) {
-
+			final UniprotProteinLocalRetriever upr = FileManager.getUniprotProteinLocalRetriever();
 			int i = 0;
 			for (final ProteinGroupOccurrence proteinGroupOccurrence : proteinOccurrences) {
 				if (proteinGroupOccurrence.getEvidence() == ProteinEvidence.NONCONCLUSIVE
 						&& !countNonConclusiveProteins)
 					continue;
 				try {
-					final Float meanProteinCoverage = proteinGroupOccurrence.getMeanProteinCoverage(retrieveProteinSeq,
-							FileManager.getUniprotProteinLocalRetriever());
+					final Float meanProteinCoverage;
+					// the retriever is shared with the annotation prefetching
+					synchronized (upr) {
+						meanProteinCoverage = proteinGroupOccurrence.getMeanProteinCoverage(retrieveProteinSeq, upr);
+					}
 					if (meanProteinCoverage != null) {
 						ret.add(100 * meanProteinCoverage);
 					}
@@ -1971,18 +1759,8 @@ public class DatasetFactory {
 	 */
 	private static void retrieveUniprotProteins(IdentificationSet idSet) {
 		// retrieve the information from uniprot first, all at once
-		final Set<String> uniprotACCs = new THashSet<String>();
-		final Collection<ProteinGroupOccurrence> collection = idSet.getProteinGroupOccurrenceList().values();
-		for (final ProteinGroupOccurrence proteinGroupOccurrence : collection) {
-			for (final String acc : proteinGroupOccurrence.getAccessions()) {
-				final String uniprotACC = FastaParser.getUniProtACC(acc);
-				if (uniprotACC != null) {
-					uniprotACCs.add(uniprotACC);
-				}
-			}
-		}
-		FileManager.getUniprotProteinLocalRetriever().getAnnotatedProteins(null, uniprotACCs);
-
+		ProteinAnnotationService.getInstance()
+				.getAnnotations(ProteinAnnotationService.getUniprotAccessions(Collections.singletonList(idSet)));
 	}
 
 	private static double max(double[] vals) {
@@ -2057,6 +1835,7 @@ public class DatasetFactory {
 		int numSeries = -1;
 		int numItem = -1;
 		for (final IdentificationSet identificationSet : idsets) {
+			checkCancelled();
 			final List<ExtendedIdentifiedPeptide> identifiedPeptides = identificationSet.getIdentifiedPeptides();
 			final XYSeries serie = new XYSeries(identificationSet.getName());
 			numSeries++;
@@ -2107,6 +1886,7 @@ public class DatasetFactory {
 		if (!showPeptideLevel && !showProteinLevel && !showPSMLevel)
 			throw new IllegalMiapeArgumentException("<html>Select either protein, peptide or PSM level</html>");
 		for (final IdentificationSet idSet : idSets) {
+			checkCancelled();
 
 			final FDRFilter filter = idSet.getFDRFilter();
 			if (filter == null) {
@@ -2119,198 +1899,21 @@ public class DatasetFactory {
 				throw new IllegalMiapeArgumentException(errorMessage);
 			}
 
-			// log.info("calculating FDR from :" + idSet.getFullName());
-			final double[] values = null;
-			// if they are proteins and we have to paint both redundant and non
-			// redundant FDR lines:
 			try {
-				final boolean autoSort = false;
-				final boolean allowDuplicateXValues = true;
 				log.info("Getting XYFDRSerie from " + idSet.getFullName());
-
 				if (showPSMLevel) {
-					final XYSeries xySeries = new XYSeries(idSet.getFullName() + "(PSM)", autoSort,
-							allowDuplicateXValues);
-					xySeries.add(0, 0);
-
-					final List<ExtendedIdentifiedPeptide> peptides = idSet.getIdentifiedPeptides();
-
-					SorterUtil.sortPeptidesByPeptideScore(peptides, filter.getSortingParameters().getScoreName(), true);
-
-					long numFWHits = 0; // forward hits
-					long numDCHits = 0; // decoy hits
-					double previousFDRPoint = 0;
-					final int i = 1;
-					for (final ExtendedIdentifiedPeptide peptide : peptides) {
-						// System.out.println(proteinACC);
-						// if (peptideOccurrence.isDecoy(filter)) {
-						if (peptide.isDecoy(filter)) {
-							numDCHits++;
-							peptide.setDecoy(true);
-						} else {
-							numFWHits++;
-							peptide.setDecoy(false);
-						}
-
-						final float currentFDR = filter.calculateFDR(numFWHits, numDCHits);
-						peptide.setPSMLocalFDR(currentFDR);
-						// System.out.println(i++ + "\t"
-						// + peptideOccurrence.getBestPeptideScore() + "\t"
-						// + numDCHits + "\t" + numFWHits + "\t" + currentFDR
-						// + "\t" + peptideOccurrence.getKey());
-
-						// log.info("DC=" + numDCHits + " FW=" + numFWHits +
-						// " "
-						// + filter.calculateFDR(numFWHits, numDCHits));
-						// System.out.println(numFWHits + "-" + numDCHits +
-						// " -> " +
-						// currentFDR + " -> "
-						// + peptideOccurrence.getKey() + " "
-						// +
-						// peptideOccurrence.getBestScore(filter.getSortingParameters()));
-
-						if (currentFDR <= previousFDRPoint && previousFDRPoint != 0.0) {
-							// delete last point
-							xySeries.remove(xySeries.getItemCount() - 1);
-						}
-						previousFDRPoint = currentFDR;
-						xySeries.add(currentFDR, numFWHits + numDCHits);
-
-					}
-					xySeriesCollection.addSeries(xySeries);
+					xySeriesCollection.addSeries(FDRCurve.getFDRCurve(idSet, filter, FDRCurve.Level.PSM, null)
+							.getFDRvsNumItemsSeries(idSet.getFullName() + "(PSM)", FDRCurve.DEFAULT_MAX_POINTS));
 				}
 				if (showPeptideLevel) {
-					final XYSeries xySeries = new XYSeries(idSet.getFullName() + "(Pep)", autoSort,
-							allowDuplicateXValues);
-					xySeries.add(0, 0);
-
-					// Collection<PeptideOccurrence> peptideOccurrenceCollection
-					// = DataManager
-					// .createPeptideOccurrenceList(peptides, false)
-					// .values();
-
-					final Collection<PeptideOccurrence> peptideOccurrenceCollection = idSet
-							.getPeptideOccurrenceList(false).values();
-					final List<PeptideOccurrence> peptideOccurrenceList = new ArrayList<PeptideOccurrence>();
-					for (final PeptideOccurrence identificationOccurrence : peptideOccurrenceCollection) {
-						peptideOccurrenceList.add(identificationOccurrence);
-					}
-					SorterUtil.sortPeptideOcurrencesByPeptideScore(peptideOccurrenceList,
-							filter.getSortingParameters().getScoreName());
-
-					long numFWHits = 0; // forward hits
-					long numDCHits = 0; // decoy hits
-					double previousFDRPoint = 0;
-					final int i = 1;
-					for (final PeptideOccurrence peptideOccurrence : peptideOccurrenceList) {
-						final ExtendedIdentifiedPeptide bestPeptideByScore = peptideOccurrence.getBestPeptide();
-
-						// System.out.println(proteinACC);
-						// if (peptideOccurrence.isDecoy(filter)) {
-						if (bestPeptideByScore.isDecoy(filter)) {
-							numDCHits++;
-							peptideOccurrence.setDecoy(true);
-						} else {
-							numFWHits++;
-							peptideOccurrence.setDecoy(false);
-						}
-
-						final float currentFDR = filter.calculateFDR(numFWHits, numDCHits);
-						peptideOccurrence.setPeptideLocalFDR(currentFDR);
-
-						// System.out.println(i++ + "\t"
-						// + peptideOccurrence.getBestPeptideScore() + "\t"
-						// + numDCHits + "\t" + numFWHits + "\t" + currentFDR
-						// + "\t" + peptideOccurrence.getKey());
-
-						// log.info("DC=" + numDCHits + " FW=" + numFWHits +
-						// " "
-						// + filter.calculateFDR(numFWHits, numDCHits));
-						// System.out.println(numFWHits + "-" + numDCHits +
-						// " -> " +
-						// currentFDR + " -> "
-						// + peptideOccurrence.getKey() + " "
-						// +
-						// peptideOccurrence.getBestScore(filter.getSortingParameters()));
-
-						if (currentFDR <= previousFDRPoint && previousFDRPoint != 0.0) {
-							// delete last point
-							xySeries.remove(xySeries.getItemCount() - 1);
-						}
-						previousFDRPoint = currentFDR;
-						xySeries.add(currentFDR, numFWHits + numDCHits);
-
-					}
-					xySeriesCollection.addSeries(xySeries);
+					xySeriesCollection.addSeries(FDRCurve.getFDRCurve(idSet, filter, FDRCurve.Level.PEPTIDE, null)
+							.getFDRvsNumItemsSeries(idSet.getFullName() + "(Pep)", FDRCurve.DEFAULT_MAX_POINTS));
 				}
 				// PROTEINS:
 				if (showProteinLevel) {
-					final XYSeries xySeries = new XYSeries(idSet.getFullName() + "(Prot)", autoSort,
-							allowDuplicateXValues);
-					xySeries.add(0, 0);
-					// List<ProteinGroup> proteinGroups = idSet
-					// .getIdentifiedProteinGroups();
-					// Collection<ProteinGroupOccurrence>
-					// proteinGroupOccurrencesSet = DataManager
-					// .createProteinGroupOccurrenceList(proteinGroups)
-					// .values();
-
-					final Collection<ProteinGroupOccurrence> proteinGroupOccurrencesSet = idSet
-							.getProteinGroupOccurrenceList().values();
-
-					final List<ProteinGroupOccurrence> proteinGroupOccurrences = new ArrayList<ProteinGroupOccurrence>();
-					for (final ProteinGroupOccurrence proteinGroupOccurrence : proteinGroupOccurrencesSet) {
-						proteinGroupOccurrences.add(proteinGroupOccurrence);
-					}
-
-					SorterUtil.sortProteinGroupOcurrencesByPeptideScore(proteinGroupOccurrences,
-							idSet.getFDRFilter().getSortingParameters().getScoreName());
-
-					long numFWHits = 0; // forward hits
-					long numDCHits = 0; // decoy hits
-					double previousFDRPoint = 0;
-					final List<ProteinGroup> proteinGroupList = new ArrayList<ProteinGroup>();
-					final int i = 1;
-					for (final ProteinGroupOccurrence proteinGroupOccurrence : proteinGroupOccurrences) {
-						if (proteinGroupOccurrence.getEvidence() == ProteinEvidence.NONCONCLUSIVE
-								&& !countNonConclusiveProteins)
-							continue;
-						// if
-						// (!proteinGroupList.contains(proteinGroupOccurrence))
-						// {
-						// proteinGroupList.add(proteinGroupOccurrence);
-						// if (proteinGroup.getEvidence() !=
-						// ProteinEvidence.NONCONCLUSIVE) {
-						if (proteinGroupOccurrence.isDecoy(filter)) {
-							numDCHits++;
-						} else {
-							numFWHits++;
-						}
-						// }
-						// } else {
-						// log.info("protein group" + proteinGroup
-						// + " already present");
-						// }
-
-						final float currentFDR = filter.calculateFDR(numFWHits, numDCHits);
-						proteinGroupOccurrence.setProteinLocalFDR(currentFDR);
-						// log.info(i++ + "\t" + numDCHits + "\t" +
-						// numFWHits + "\t"
-						// + currentFDR + "\t" + proteinGroup.getKey());
-						// System.out.println(numFWHits + "-" + numDCHits +
-						// " -> "
-						// + filter.calculateFDR(numFWHits, numDCHits)
-						// + " -> " + peptideOccurrence.getKey());
-
-						if (currentFDR <= previousFDRPoint && previousFDRPoint != 0.0) {
-							// delete last point
-							xySeries.remove(xySeries.getItemCount() - 1);
-						}
-						previousFDRPoint = currentFDR;
-						xySeries.add(currentFDR, numFWHits + numDCHits);
-					}
-
-					xySeriesCollection.addSeries(xySeries);
+					xySeriesCollection.addSeries(FDRCurve
+							.getFDRCurve(idSet, filter, FDRCurve.Level.PROTEIN, countNonConclusiveProteins)
+							.getFDRvsNumItemsSeries(idSet.getFullName() + "(Prot)", FDRCurve.DEFAULT_MAX_POINTS));
 				}
 
 			} catch (final IllegalMiapeArgumentException e) {
@@ -2431,7 +2034,21 @@ public class DatasetFactory {
 	 * @param separateDecoyHits
 	 * @return
 	 */
-	private static List<double[]> getProteinScores(IdentificationSet idSet, String scoreName, boolean addZeroZeroValue,
+	private static List<double[]> getProteinScores(final IdentificationSet idSet, final String scoreName,
+			final boolean addZeroZeroValue, final boolean applyLog, final boolean separateDecoyHits,
+			final Boolean countNonConclusiveProteins) {
+		final String key = "ProteinScores|" + scoreName + "|" + addZeroZeroValue + "|" + applyLog + "|"
+				+ separateDecoyHits + "|" + countNonConclusiveProteins;
+		return DatasetCache.get(idSet, key, new DatasetCache.PartialResult<List<double[]>>() {
+			@Override
+			public List<double[]> compute() {
+				return computeProteinScores(idSet, scoreName, addZeroZeroValue, applyLog, separateDecoyHits,
+						countNonConclusiveProteins);
+			}
+		});
+	}
+
+	private static List<double[]> computeProteinScores(IdentificationSet idSet, String scoreName, boolean addZeroZeroValue,
 			boolean applyLog, boolean separateDecoyHits, Boolean countNonConclusiveProteins) {
 
 		final TDoubleArrayList scores = new TDoubleArrayList();
@@ -2470,7 +2087,19 @@ public class DatasetFactory {
 		return ret;
 	}
 
-	private static List<double[]> getPeptideScores(IdentificationSet idSet, String scoreName, boolean addZeroZeroValue,
+	private static List<double[]> getPeptideScores(final IdentificationSet idSet, final String scoreName,
+			final boolean addZeroZeroValue, final boolean applyLog, final boolean separateDecoyHits) {
+		final String key = "PeptideScores|" + scoreName + "|" + addZeroZeroValue + "|" + applyLog + "|"
+				+ separateDecoyHits;
+		return DatasetCache.get(idSet, key, new DatasetCache.PartialResult<List<double[]>>() {
+			@Override
+			public List<double[]> compute() {
+				return computePeptideScores(idSet, scoreName, addZeroZeroValue, applyLog, separateDecoyHits);
+			}
+		});
+	}
+
+	private static List<double[]> computePeptideScores(IdentificationSet idSet, String scoreName, boolean addZeroZeroValue,
 			boolean applyLog, boolean separateDecoyHits) {
 
 		final TDoubleArrayList scores = new TDoubleArrayList();
@@ -2479,26 +2108,24 @@ public class DatasetFactory {
 			scores.add(0.0);
 			scoresDecoy.add(0.0);
 		}
-		for (final Object object : idSet.getIdentifiedPeptides()) {
-			final ExtendedIdentifiedPeptide peptide = (ExtendedIdentifiedPeptide) object;
-			try {
-				final Float score = peptide.getScore(scoreName);
-				if (score != null) {
-					double doubleValue = score.doubleValue();
-					if (applyLog) {
-						doubleValue = Math.log10(doubleValue);
-						if (Double.isInfinite(doubleValue)) {
-							continue;
-						}
-					}
-					if (separateDecoyHits && peptide.isDecoy()) {
-						scoresDecoy.add(doubleValue);
-					} else {
-						scores.add(doubleValue);
-					}
+		final PSMColumns columns = PSMColumns.get(idSet);
+		final double[] scoreValues = columns.getScore(scoreName);
+		final boolean[] decoy = columns.getDecoy();
+		for (int i = 0; i < scoreValues.length; i++) {
+			if (Double.isNaN(scoreValues[i])) {
+				continue;
+			}
+			double doubleValue = scoreValues[i];
+			if (applyLog) {
+				doubleValue = Math.log10(doubleValue);
+				if (Double.isInfinite(doubleValue)) {
+					continue;
 				}
-			} catch (final Exception e) {
-				// do nothign
+			}
+			if (separateDecoyHits && decoy[i]) {
+				scoresDecoy.add(doubleValue);
+			} else {
+				scores.add(doubleValue);
 			}
 		}
 		final List<double[]> ret = new ArrayList<double[]>();
@@ -2595,6 +2222,7 @@ public class DatasetFactory {
 		try {
 
 			for (final IdentificationSet idSet : idSets) {
+				checkCancelled();
 				final String experimentName = idSet.getFullName();
 				final int tp = idSet.getProteinGroupTP(proteinsInSample, countNonConclusiveProteins);
 				final int fn = idSet.getProteinGroupFN(proteinsInSample, countNonConclusiveProteins);
@@ -2647,6 +2275,7 @@ public class DatasetFactory {
 		try {
 
 			for (final IdentificationSet idSet : idSets) {
+				checkCancelled();
 				final String experimentName = idSet.getFullName();
 				final int tp = idSet.getPeptideTP(peptidesInSample, distinguisModificatedPeptides);
 				final int fn = idSet.getPeptideFN(peptidesInSample, distinguisModificatedPeptides);
@@ -2900,6 +2529,7 @@ public class DatasetFactory {
 		final DefaultCategoryDataset dataset = new DefaultCategoryDataset();
 		int totalNum = 0;
 		for (final IdentificationSet idSet : idSets) {
+			checkCancelled();
 			boolean totalShown = false;
 			final Collection<ProteinGroupOccurrence> proteinGroupOccurrences = idSet.getProteinGroupOccurrenceList()
 					.values();
@@ -3215,6 +2845,7 @@ public class DatasetFactory {
 		final String error = null;
 		try {
 			for (final IdentificationSet idSet : idSets) {
+				checkCancelled();
 				if (showPSMs) {
 					final int numPSMs = idSet.getTotalNumPeptides();
 					dataset.addValue(numPSMs, "PSM", idSet.getFullName());
@@ -3245,6 +2876,7 @@ public class DatasetFactory {
 		final XYSeriesCollection xySeriesCollection = new XYSeriesCollection();
 		String error = null;
 		for (final IdentificationSet idSet : idSets) {
+			checkCancelled();
 			log.info("calculating FDR from :" + idSet.getFullName());
 
 			try {
@@ -3271,142 +2903,28 @@ public class DatasetFactory {
 	}
 
 	private static XYSeries getXY_PSM_FDRvsScoreSerie(IdentificationSet idSet, String serieName) {
-		final boolean autoSort = false;
-		final boolean allowDuplicateXValues = true;
-
-		final XYSeries xySeries = new XYSeries(serieName, autoSort, allowDuplicateXValues);
-
-		final FDRFilter filter = idSet.getFDRFilter();
-		if (filter == null)
-			throw new IllegalMiapeArgumentException(
-					"<html>Error: Apply an FDR filter in order to select the score name as well<br> as the way to select the DECOY hits, in which the FDR calculation in going to be based</html>");
-
-		final List<ExtendedIdentifiedPeptide> identifiedPeptides = idSet.getIdentifiedPeptides();
-		SorterUtil.sortPeptidesByPeptideScore(identifiedPeptides, filter.getSortingParameters().getScoreName(), true);
-
-		int numFW = 0;
-		int numDC = 0;
-		float previousFDRValue = 0.0f;
-		for (final ExtendedIdentifiedPeptide extendedIdentifiedPeptide : identifiedPeptides) {
-			final boolean decoy = extendedIdentifiedPeptide.isDecoy(filter);
-			if (decoy) {
-				numDC++;
-			} else {
-				numFW++;
-			}
-			final Float fdrValue = filter.calculateFDR(numFW, numDC);
-			final Float peptideScore = extendedIdentifiedPeptide.getScore(filter.getSortingParameters().getScoreName());
-
-			if (peptideScore != null && fdrValue <= previousFDRValue && fdrValue != 0.0) {
-				// delete previous point
-				xySeries.remove(xySeries.getItemCount() - 1);
-			}
-			previousFDRValue = fdrValue;
-			xySeries.add(peptideScore, fdrValue);
-		}
-
-		return xySeries;
+		return getFDRCurve(idSet, FDRCurve.Level.PSM, null).getScoreVsFDRSeries(serieName,
+				FDRCurve.DEFAULT_MAX_POINTS);
 	}
 
 	private static XYSeries getXY_Peptide_FDRvsScoreSerie(IdentificationSet idSet, String serieName) {
-		final boolean autoSort = false;
-		final boolean allowDuplicateXValues = true;
-
-		final XYSeries xySeries = new XYSeries(serieName, autoSort, allowDuplicateXValues);
-
-		final FDRFilter filter = idSet.getFDRFilter();
-		if (filter == null)
-			throw new IllegalMiapeArgumentException(
-					"<html>Error: Apply an FDR filter in order to select the score name as well<br> as the way to select the DECOY hits, in which the FDR calculation in going to be based</html>");
-
-		final Collection<PeptideOccurrence> peptideOccurrenceColl = idSet.getPeptideOccurrenceList(false).values();
-		final List<PeptideOccurrence> peptideOccurrenceList = new ArrayList<PeptideOccurrence>();
-		for (final PeptideOccurrence peptideOccurrence : peptideOccurrenceColl) {
-			peptideOccurrenceList.add(peptideOccurrence);
-		}
-
-		SorterUtil.sortPeptideOcurrencesByPeptideScore(peptideOccurrenceList,
-				filter.getSortingParameters().getScoreName());
-
-		int numFW = 0;
-		int numDC = 0;
-		float previousFDRValue = 0.0f;
-		for (final PeptideOccurrence peptideOccurrence : peptideOccurrenceList) {
-			final boolean decoy = peptideOccurrence.isDecoy(filter);
-			if (decoy) {
-				numDC++;
-			} else {
-				numFW++;
-			}
-			final Float fdrValue = filter.calculateFDR(numFW, numDC);
-			final Float bestScore = peptideOccurrence.getBestPeptideScore(filter.getSortingParameters().getScoreName());
-
-			if (bestScore != null && fdrValue <= previousFDRValue && fdrValue != 0.0) {
-				// delete previous point
-				xySeries.remove(xySeries.getItemCount() - 1);
-			}
-			previousFDRValue = fdrValue;
-			xySeries.add(bestScore, fdrValue);
-
-		}
-
-		return xySeries;
+		return getFDRCurve(idSet, FDRCurve.Level.PEPTIDE, null).getScoreVsFDRSeries(serieName,
+				FDRCurve.DEFAULT_MAX_POINTS);
 	}
 
 	private static XYSeries getXY_Protein_FDRvsScoreSerie(IdentificationSet idSet, String serieName,
 			Boolean countNonConclusiveProteins) {
-		final boolean autoSort = false;
-		final boolean allowDuplicateXValues = true;
-
-		final XYSeries xySeries = new XYSeries(serieName, autoSort, allowDuplicateXValues);
+		return getFDRCurve(idSet, FDRCurve.Level.PROTEIN, countNonConclusiveProteins).getScoreVsFDRSeries(serieName,
+				FDRCurve.DEFAULT_MAX_POINTS);
+	}
 
+	private static FDRCurve getFDRCurve(IdentificationSet idSet, FDRCurve.Level level,
+			Boolean countNonConclusiveProteins) {
 		final FDRFilter filter = idSet.getFDRFilter();
 		if (filter == null)
 			throw new IllegalMiapeArgumentException(
 					"<html>Error: Apply an FDR filter in order to select the score name as well<br> as the way to select the DECOY hits, in which the FDR calculation in going to be based</html>");
-
-		final Collection<ProteinGroupOccurrence> proteinGroupOccurrencesSet = idSet.getProteinGroupOccurrenceList()
-				.values();
-		final List<ProteinGroupOccurrence> proteinGroupOccurrences = new ArrayList<ProteinGroupOccurrence>();
-		for (final ProteinGroupOccurrence proteinGroupOccurrence : proteinGroupOccurrencesSet) {
-			proteinGroupOccurrences.add(proteinGroupOccurrence);
-		}
-		SorterUtil.sortProteinGroupOcurrencesByPeptideScore(proteinGroupOccurrences,
-				filter.getSortingParameters().getScoreName());
-
-		int numFW = 0;
-		int numDC = 0;
-		float previousFDRValue = 0.0f;
-
-		for (final ProteinGroupOccurrence proteinGroupOccurrence : proteinGroupOccurrences) {
-			if (proteinGroupOccurrence.getEvidence() == ProteinEvidence.NONCONCLUSIVE && !countNonConclusiveProteins)
-				continue;
-
-			final ExtendedIdentifiedPeptide bestPeptide = proteinGroupOccurrence
-					.getBestPeptide(filter.getSortingParameters().getScoreName());
-
-			if (bestPeptide != null) {
-				final boolean decoy = proteinGroupOccurrence.isDecoy(filter);
-				if (decoy) {
-					numDC++;
-				} else {
-					numFW++;
-				}
-				final Float fdrValue = filter.calculateFDR(numFW, numDC);
-				final Float bestScore = proteinGroupOccurrence
-						.getBestPeptideScore(filter.getSortingParameters().getScoreName());
-
-				if (bestScore != null && fdrValue <= previousFDRValue && fdrValue != 0.0) {
-					// delete previous point
-					xySeries.remove(xySeries.getItemCount() - 1);
-				}
-				previousFDRValue = fdrValue;
-				xySeries.add(bestScore, fdrValue);
-			}
-
-		}
-
-		return xySeries;
+		return FDRCurve.getFDRCurve(idSet, filter, level, countNonConclusiveProteins);
 	}
 
 	public static XYDataset createScoreVsNumProteinsDataSet(List<IdentificationSet> idSets,
@@ -3414,6 +2932,7 @@ public class DatasetFactory {
 		final XYSeriesCollection xySeriesCollection = new XYSeriesCollection();
 		String error = null;
 		for (final IdentificationSet idSet : idSets) {
+			checkCancelled();
 			try {
 				final FDRFilter filter = idSet.getFDRFilter();
 				log.info(filter);
@@ -3456,7 +2975,8 @@ public class DatasetFactory {
 
 	/**
 	 * Gets two datasets, the first is the normal and then second is the
-	 * accumulative (if accumulativeTrend is true)
+	 * accumulative (if accumulativeTrend is true), with a series in the order
+	 * of the datasets and other with the average over random orders
 	 *
 	 * @param idSets
 	 * @param itemType
@@ -3466,62 +2986,27 @@ public class DatasetFactory {
 	 */
 	public static List<DefaultCategoryDataset> createExclusiveNumberIdentificationCategoryDataSetForPeptides(
 			List<IdentificationSet> idSets, Boolean distModPeptides, boolean accumulativeTrend) {
-		// create the dataset...
-
 		final List<DefaultCategoryDataset> datasets = new ArrayList<DefaultCategoryDataset>();
 		final DefaultCategoryDataset defaultDataSet = new DefaultCategoryDataset();
 		final DefaultCategoryDataset accumulativeDataSet = new DefaultCategoryDataset();
 
-		try {
-			final Map<String, Set<String>> peptidesPerDataset = getHashMapKeysForPeptides(idSets, distModPeptides);
-
-			VennData globalVenn = null;
-			Collection<Object> union = null;
-
+		checkCancelled();
+		final SetMemberships memberships = SetMemberships.forPeptides(idSets, distModPeptides);
+		final int[] exclusiveCounts = memberships.getExclusiveCounts();
+		for (int i = 0; i < idSets.size(); i++) {
+			defaultDataSet.setValue(exclusiveCounts[i], "# peptides", idSets.get(i).getFullName());
+		}
+		if (accumulativeTrend) {
+			final int[] accumulativeCounts = memberships.getAccumulativeCounts();
+			// the average over random orders of the datasets doesn't depend on
+			// their order
+			final double[] saturationCurve = memberships.getSaturationCurve(SetMemberships.DEFAULT_NUM_ORDERINGS, 0);
 			for (int i = 0; i < idSets.size(); i++) {
-				final IdentificationSet idSet = idSets.get(i);
-				final String idSetName = idSet.getFullName();
-				final Set<String> keys = peptidesPerDataset.get(idSetName);
-
-				if (accumulativeTrend) {
-					globalVenn = new VennDataForPeptides(keys, union, null);
-					union = globalVenn.getUnion12();
-					final int num = globalVenn.getUnion12Size();
-					accumulativeDataSet.addValue(num, "Accumulative # peptides", idSetName);
-				}
-
-				final int numExclusive = 0;
-				Collection<Object> unique = null;
-				// Look into the other datasets to see how many elements are
-				// unique/exclusive to the isSet
-				boolean moreThanOne = false;
-				for (int j = 0; j < idSets.size(); j++) {
-					if (j == i)
-						continue;
-					final IdentificationSet idSet2 = idSets.get(j);
-
-					moreThanOne = true;
-					final String idSetName2 = idSet2.getFullName();
-					log.info("Comparing " + idSet.getFullName() + " with " + idSetName2);
-					final Set<String> keys2 = peptidesPerDataset.get(idSet2.getFullName());
-					VennData venn = null;
-					if (unique == null) {
-						venn = new VennDataForPeptides(keys, keys2, null);
-					} else {
-						venn = new VennDataForPeptides(unique, keys2, null);
-					}
-					unique = venn.getUniqueTo1();
-					log.info(unique.size() + " remaining exclusive");
-
-				}
-				if (unique != null)
-					defaultDataSet.setValue(unique.size(), "# peptides", idSetName);
-				if (!moreThanOne)
-					defaultDataSet.setValue(keys.size(), "# peptides", idSetName);
+				final String idSetName = idSets.get(i).getFullName();
+				accumulativeDataSet.addValue(accumulativeCounts[i], "Accumulative # peptides", idSetName);
+				accumulativeDataSet.addValue(saturationCurve[i], "Accumulative # peptides (average of "
+						+ SetMemberships.DEFAULT_NUM_ORDERINGS + " random orders)", idSetName);
 			}
-			// }
-		} catch (final IllegalMiapeArgumentException ex) {
-
 		}
 		datasets.add(defaultDataSet);
 		if (accumulativeTrend)
@@ -3532,7 +3017,8 @@ public class DatasetFactory {
 
 	/**
 	 * Gets two datasets, the first is the normal and then second is the
-	 * accumulative (if accumulativeTrend is true)
+	 * accumulative (if accumulativeTrend is true), with a series in the order
+	 * of the datasets and other with the average over random orders
 	 *
 	 * @param idSets
 	 * @param itemType
@@ -3543,63 +3029,27 @@ public class DatasetFactory {
 	public static List<DefaultCategoryDataset> createExclusiveNumberIdentificationCategoryDataSetForProteins(
 			List<IdentificationSet> idSets, ProteinGroupComparisonType proteinGroupComparisonType,
 			boolean accumulativeTrend) {
-		// create the dataset...
-
 		final List<DefaultCategoryDataset> datasets = new ArrayList<DefaultCategoryDataset>();
 		final DefaultCategoryDataset defaultDataSet = new DefaultCategoryDataset();
 		final DefaultCategoryDataset accumulativeDataSet = new DefaultCategoryDataset();
 
-		try {
-			final Map<String, Set<Object>> mapKeys = getHashMapKeysForProteins(idSets, proteinGroupComparisonType);
-
-			VennData globalVenn = null;
-			Collection<Object> union = null;
-
+		checkCancelled();
+		final SetMemberships memberships = SetMemberships.forProteins(idSets, proteinGroupComparisonType);
+		final int[] exclusiveCounts = memberships.getExclusiveCounts();
+		for (int i = 0; i < idSets.size(); i++) {
+			defaultDataSet.setValue(exclusiveCounts[i], "# proteins", idSets.get(i).getFullName());
+		}
+		if (accumulativeTrend) {
+			final int[] accumulativeCounts = memberships.getAccumulativeCounts();
+			// the average over random orders of the datasets doesn't depend on
+			// their order
+			final double[] saturationCurve = memberships.getSaturationCurve(SetMemberships.DEFAULT_NUM_ORDERINGS, 0);
 			for (int i = 0; i < idSets.size(); i++) {
-				final IdentificationSet idSet = idSets.get(i);
-				final String idSetName = idSet.getFullName();
-				final Set<Object> keys = mapKeys.get(idSet.getFullName());
-
-				if (accumulativeTrend) {
-					globalVenn = new VennDataForProteins(keys, union, null, proteinGroupComparisonType);
-					union = globalVenn.getUnion12();
-					final int num = globalVenn.getUnion12Size();
-
-					accumulativeDataSet.addValue(num, "Accumulative # proteins", idSetName);
-				}
-
-				final int numExclusive = 0;
-				Collection<Object> unique = null;
-				// Look into the other datasets to see how many elements are
-				// unique/exclusive to the isSet
-				boolean moreThanOne = false;
-				for (int j = 0; j < idSets.size(); j++) {
-					if (j == i)
-						continue;
-					final IdentificationSet idSet2 = idSets.get(j);
-
-					moreThanOne = true;
-					final String idSetName2 = idSet2.getFullName();
-					log.info("Comparing " + idSet.getFullName() + " with " + idSetName2);
-					final Set<Object> keys2 = mapKeys.get(idSet2.getFullName());
-					VennData venn = null;
-					if (unique == null) {
-						venn = new VennDataForProteins(keys, keys2, null, proteinGroupComparisonType);
-					} else {
-						venn = new VennDataForProteins(unique, keys2, null, proteinGroupComparisonType);
-					}
-					unique = venn.getUniqueTo1();
-					log.info(unique.size() + " remaining exclusive");
-
-				}
-				if (unique != null)
-					defaultDataSet.setValue(unique.size(), "# proteins", idSetName);
-				if (!moreThanOne)
-					defaultDataSet.setValue(keys.size(), "# proteins", idSetName);
+				final String idSetName = idSets.get(i).getFullName();
+				accumulativeDataSet.addValue(accumulativeCounts[i], "Accumulative # proteins", idSetName);
+				accumulativeDataSet.addValue(saturationCurve[i], "Accumulative # proteins (average of "
+						+ SetMemberships.DEFAULT_NUM_ORDERINGS + " random orders)", idSetName);
 			}
-			// }
-		} catch (final IllegalMiapeArgumentException ex) {
-
 		}
 		datasets.add(defaultDataSet);
 		if (accumulativeTrend)
@@ -3608,45 +3058,12 @@ public class DatasetFactory {
 		return datasets;
 	}
 
-	/**
-	 * returns a map in which the key is the full name of the idSet and the
-	 * value a set of peptide sequences
-	 * 
-	 * @param idSets
-	 * @param distModPeptides
-	 * @return
-	 */
-	private static Map<String, Set<String>> getHashMapKeysForPeptides(List<IdentificationSet> idSets,
-			Boolean distModPeptides) {
-		final Map<String, Set<String>> ret = new THashMap<String, Set<String>>();
-		for (final IdentificationSet identificationSet : idSets) {
-			final Set<String> peptideKeySet = identificationSet.getPeptideOccurrenceList(distModPeptides).keySet();
-			ret.put(identificationSet.getFullName(), peptideKeySet);
-		}
-
-		return ret;
-	}
-
-	private static Map<String, Set<Object>> getHashMapKeysForProteins(List<IdentificationSet> idSets,
-			ProteinGroupComparisonType proteinGroupComparisonType) {
-		final Map<String, Set<Object>> ret = new THashMap<String, Set<Object>>();
-		for (final IdentificationSet identificationSet : idSets) {
-			final Set<Object> proteinAccSet = new THashSet<Object>();
-			for (final Object object : identificationSet.getProteinGroupOccurrenceList().values()) {
-				final ProteinGroupOccurrence pgo = (ProteinGroupOccurrence) object;
-				// if (pgo.getEvidence() != ProteinEvidence.NONCONCLUSIVE)
-				proteinAccSet.add(pgo.getKey(proteinGroupComparisonType));
-			}
-			ret.put(identificationSet.getFullName(), proteinAccSet);
-		}
-		return ret;
-	}
-
 	public static HistogramDataset createPeptideRTHistogramDataSet(List<IdentificationSet> idSets, int bins,
 			HistogramType histogramType, boolean inMinutes) {
 		final HistogramDataset dataset = new HistogramDataset();
 		boolean someValidData = false;
 		for (final IdentificationSet idSet : idSets) {
+			checkCancelled();
 			final double[] values = getPeptideRT(idSet, inMinutes);
 			if (values != null && values.length > 0) {
 				someValidData = true;
@@ -3661,28 +3078,24 @@ public class DatasetFactory {
 		return dataset;
 	}
 
-	private static double[] getPeptideRT(IdentificationSet idSet, boolean inMinutes) {
-		double[] ret = null;
+	private static double[] getPeptideRT(final IdentificationSet idSet, final boolean inMinutes) {
+		final String key = "PeptideRT|" + inMinutes;
+		return DatasetCache.get(idSet, key, new DatasetCache.PartialResult<double[]>() {
+			@Override
+			public double[] compute() {
+				return computePeptideRT(idSet, inMinutes);
+			}
+		});
+	}
 
-		final List<ExtendedIdentifiedPeptide> peptides = idSet.getIdentifiedPeptides();
+	private static double[] computePeptideRT(IdentificationSet idSet, boolean inMinutes) {
+		final double[] rtInSeconds = PSMColumns.get(idSet).getRtInSeconds();
+		final double[] ret = new double[rtInSeconds.length];
 		boolean validData = false;
-		if (peptides != null) {
-			ret = new double[peptides.size()];
-			int i = 0;
-			for (final ExtendedIdentifiedPeptide peptide : peptides) {
-				final String rtInSeconds = peptide.getRetentionTimeInSeconds();
-				if (rtInSeconds != null) {
-					try {
-						Double rtInSecondsDbl = Double.valueOf(rtInSeconds);
-						if (inMinutes)
-							rtInSecondsDbl = rtInSecondsDbl / 60.0;
-						ret[i] = rtInSecondsDbl;
-						validData = true;
-					} catch (final NumberFormatException e) {
-
-					}
-				}
-				i++;
+		for (int i = 0; i < ret.length; i++) {
+			if (!Double.isNaN(rtInSeconds[i])) {
+				ret[i] = inMinutes ? rtInSeconds[i] / 60.0 : rtInSeconds[i];
+				validData = true;
 			}
 		}
 		if (!validData) {
@@ -3801,6 +3214,7 @@ public class DatasetFactory {
 		try {
 
 			for (final IdentificationSet idSet : idSets) {
+				checkCancelled();
 				final String experimentName = idSet.getFullName();
 				for (final String originalSequence : sequences) {
 					final PeptideOccurrence peptideOccurrence = idSet.getPeptideChargeOccurrence(originalSequence,
@@ -3855,6 +3269,7 @@ public class DatasetFactory {
 
 		matrix1.add(columns);
 		for (final IdentificationSet idSet : idSets) {
+			checkCancelled();
 			final Set<Spectrometer> spectrometers = idSet.getSpectrometers();
 			final List<String> cols = new ArrayList<String>();
 			if (spectrometers.isEmpty()) {
@@ -3928,6 +3343,7 @@ public class DatasetFactory {
 
 		matrix1.add(columns);
 		for (final IdentificationSet idSet : idSets) {
+			checkCancelled();
 			final Set<InputParameter> inputParameters = idSet.getInputParameters();
 			if (inputParameters.isEmpty()) {
 				final List<String> cols = new ArrayList<String>();
@@ -0,0 +1,368 @@
+package org.proteored.pacom.analysis.gui.tasks;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.jfree.data.xy.XYSeries;
+import org.proteored.miapeapi.experiment.model.ExtendedIdentifiedPeptide;
+import org.proteored.miapeapi.experiment.model.IdentificationSet;
+import org.proteored.miapeapi.experiment.model.PeptideOccurrence;
+import org.proteored.miapeapi.experiment.model.ProteinGroupOccurrence;
+import org.proteored.miapeapi.experiment.model.filters.FDRFilter;
+import org.proteored.miapeapi.experiment.model.grouping.ProteinEvidence;
+import org.proteored.miapeapi.experiment.model.sort.SorterUtil;
+
+import gnu.trove.map.hash.THashMap;
+
+/**
+ * Local FDR of the PSMs, peptides or proteins of an {@link IdentificationSet},
+ * sorted by the score of the {@link FDRFilter}.<br>
+ * The items are sorted just once per {@link IdentificationSet},
+ * {@link FDRFilter} and level, and the scores and the FDR values are kept in
+ * primitive arrays that are cached in the {@link DatasetCache}, so that the
+ * FDR charts can be created again with a single pass over them. The series
+ * for the charts are decimated to a maximum number of points.<br>
+ * The {@link FDRFilter}s are identified by a number that is never reused, so
+ * that a curve is not taken from the cache for a different filter that gets
+ * the identity hash code of a garbage collected one.
+ *
+ * @author Salva
+ *
+ */
+public class FDRCurve {
+	private static final Logger log = Logger.getLogger("log4j.logger.org.proteored");
+	public static final int DEFAULT_MAX_POINTS = 2000;
+	private static final Map<FilterKey, Integer> filterIDs = new THashMap<FilterKey, Integer>();
+	private static final ReferenceQueue<FDRFilter> referenceQueue = new ReferenceQueue<FDRFilter>();
+	private static int lastFilterID = 0;
+
+	public enum Level {
+		PSM, PEPTIDE, PROTEIN
+	}
+
+	// in the order of the score. NaN if the item doesn't have the score
+	private final float[] scores;
+	private final float[] fdrs;
+	// FDR of the score vs FDR series. In the protein level, it is calculated
+	// just with the protein groups that have a best peptide
+	private final float[] scoreFDRs;
+
+	FDRCurve(float[] scores, float[] fdrs, float[] scoreFDRs) {
+		this.scores = scores;
+		this.fdrs = fdrs;
+		this.scoreFDRs = scoreFDRs;
+	}
+
+	/**
+	 * Gets the FDR curve of an {@link IdentificationSet}, calculating it if it
+	 * was not calculated before with the same {@link FDRFilter}.<br>
+	 * When the curve is calculated, the local FDR and the decoy flag of the
+	 * PSMs, peptides or proteins are set.
+	 *
+	 * @param idSet
+	 * @param filter
+	 * @param level
+	 * @param countNonConclusiveProteins
+	 *            only used in the protein level
+	 * @return
+	 */
+	public static FDRCurve getFDRCurve(final IdentificationSet idSet, final FDRFilter filter, final Level level,
+			final Boolean countNonConclusiveProteins) {
+		String key = "FDRCurve|" + level + "|" + getFilterID(filter) + "|"
+				+ filter.getSortingParameters().getScoreName();
+		if (level == Level.PROTEIN) {
+			key += "|" + countNonConclusiveProteins;
+		}
+		return DatasetCache.get(idSet, key, new DatasetCache.PartialResult<FDRCurve>() {
+			@Override
+			public FDRCurve compute() {
+				log.info("Calculating " + level + " FDR curve of " + idSet.getFullName());
+				switch (level) {
+				case PSM:
+					return createPSMCurve(idSet, filter);
+				case PEPTIDE:
+					return createPeptideCurve(idSet, filter);
+				default:
+					return createProteinCurve(idSet, filter, countNonConclusiveProteins);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Gets the number that identifies the {@link FDRFilter} object in the keys
+	 * of the cache
+	 */
+	private static synchronized int getFilterID(FDRFilter filter) {
+		Object reference;
+		while ((reference = referenceQueue.poll()) != null) {
+			filterIDs.remove(reference);
+		}
+		Integer filterID = filterIDs.get(new FilterKey(filter, null));
+		if (filterID == null) {
+			filterID = ++lastFilterID;
+			filterIDs.put(new FilterKey(filter, referenceQueue), filterID);
+		}
+		return filterID;
+	}
+
+	private static FDRCurve createPSMCurve(IdentificationSet idSet, FDRFilter filter) {
+		final String scoreName = filter.getSortingParameters().getScoreName();
+		final List<ExtendedIdentifiedPeptide> peptides = new ArrayList<ExtendedIdentifiedPeptide>(
+				idSet.getIdentifiedPeptides());
+		SorterUtil.sortPeptidesByPeptideScore(peptides, scoreName, true);
+		final float[] scores = new float[peptides.size()];
+		final float[] fdrs = new float[peptides.size()];
+		long numFWHits = 0; // forward hits
+		long numDCHits = 0; // decoy hits
+		int i = 0;
+		for (final ExtendedIdentifiedPeptide peptide : peptides) {
+			if (peptide.isDecoy(filter)) {
+				numDCHits++;
+				peptide.setDecoy(true);
+			} else {
+				numFWHits++;
+				peptide.setDecoy(false);
+			}
+			final float currentFDR = filter.calculateFDR(numFWHits, numDCHits);
+			peptide.setPSMLocalFDR(currentFDR);
+			scores[i] = toFloat(peptide.getScore(scoreName));
+			fdrs[i] = currentFDR;
+			i++;
+		}
+		return new FDRCurve(scores, fdrs, fdrs);
+	}
+
+	private static FDRCurve createPeptideCurve(IdentificationSet idSet, FDRFilter filter) {
+		final String scoreName = filter.getSortingParameters().getScoreName();
+		final List<PeptideOccurrence> peptideOccurrences = new ArrayList<PeptideOccurrence>(
+				idSet.getPeptideOccurrenceList(false).values());
+		SorterUtil.sortPeptideOcurrencesByPeptideScore(peptideOccurrences, scoreName);
+		final float[] scores = new float[peptideOccurrences.size()];
+		final float[] fdrs = new float[peptideOccurrences.size()];
+		long numFWHits = 0; // forward hits
+		long numDCHits = 0; // decoy hits
+		int i = 0;
+		for (final PeptideOccurrence peptideOccurrence : peptideOccurrences) {
+			if (peptideOccurrence.getBestPeptide().isDecoy(filter)) {
+				numDCHits++;
+				peptideOccurrence.setDecoy(true);
+			} else {
+				numFWHits++;
+				peptideOccurrence.setDecoy(false);
+			}
+			final float currentFDR = filter.calculateFDR(numFWHits, numDCHits);
+			peptideOccurrence.setPeptideLocalFDR(currentFDR);
+			scores[i] = toFloat(peptideOccurrence.getBestPeptideScore(scoreName));
+			fdrs[i] = currentFDR;
+			i++;
+		}
+		return new FDRCurve(scores, fdrs, fdrs);
+	}
+
+	private static FDRCurve createProteinCurve(IdentificationSet idSet, FDRFilter filter,
+			Boolean countNonConclusiveProteins) {
+		final String scoreName = filter.getSortingParameters().getScoreName();
+		final List<ProteinGroupOccurrence> proteinGroupOccurrences = new ArrayList<ProteinGroupOccurrence>();
+		for (final ProteinGroupOccurrence proteinGroupOccurrence : idSet.getProteinGroupOccurrenceList().values()) {
+			if (proteinGroupOccurrence.getEvidence() == ProteinEvidence.NONCONCLUSIVE && !countNonConclusiveProteins)
+				continue;
+			proteinGroupOccurrences.add(proteinGroupOccurrence);
+		}
+		SorterUtil.sortProteinGroupOcurrencesByPeptideScore(proteinGroupOccurrences, scoreName);
+		final float[] scores = new float[proteinGroupOccurrences.size()];
+		final float[] fdrs = new float[proteinGroupOccurrences.size()];
+		final float[] scoreFDRs = new float[proteinGroupOccurrences.size()];
+		long numFWHits = 0; // forward hits
+		long numDCHits = 0; // decoy hits
+		// the score vs FDR series doesn't count the protein groups without a
+		// best peptide for the score
+		long numScoredFWHits = 0;
+		long numScoredDCHits = 0;
+		int i = 0;
+		for (final ProteinGroupOccurrence proteinGroupOccurrence : proteinGroupOccurrences) {
+			final boolean decoy = proteinGroupOccurrence.isDecoy(filter);
+			final boolean hasBestPeptide = proteinGroupOccurrence.getBestPeptide(scoreName) != null;
+			if (decoy) {
+				numDCHits++;
+				if (hasBestPeptide)
+					numScoredDCHits++;
+			} else {
+				numFWHits++;
+				if (hasBestPeptide)
+					numScoredFWHits++;
+			}
+			final float currentFDR = filter.calculateFDR(numFWHits, numDCHits);
+			proteinGroupOccurrence.setProteinLocalFDR(currentFDR);
+			if (hasBestPeptide) {
+				scores[i] = toFloat(proteinGroupOccurrence.getBestPeptideScore(scoreName));
+				scoreFDRs[i] = filter.calculateFDR(numScoredFWHits, numScoredDCHits);
+			} else {
+				scores[i] = Float.NaN;
+				scoreFDRs[i] = i > 0 ? scoreFDRs[i - 1] : 0f;
+			}
+			fdrs[i] = currentFDR;
+			i++;
+		}
+		return new FDRCurve(scores, fdrs, scoreFDRs);
+	}
+
+	private static float toFloat(Float score) {
+		if (score == null) {
+			return Float.NaN;
+		}
+		return score;
+	}
+
+	/**
+	 *
+	 * @return the number of PSMs, peptides or proteins in the curve
+	 */
+	public int size() {
+		return fdrs.length;
+	}
+
+	/**
+	 * Gets the series of the number of items (y) at each FDR value (x). When
+	 * the FDR doesn't increase, the previous point is replaced by the new one.
+	 *
+	 * @param serieName
+	 * @param maxPoints
+	 *            maximum number of points of the series
+	 * @return
+	 */
+	public XYSeries getFDRvsNumItemsSeries(String serieName, int maxPoints) {
+		final double[] xs = new double[fdrs.length + 1];
+		final double[] ys = new double[fdrs.length + 1];
+		int numPoints = 0;
+		xs[numPoints] = 0;
+		ys[numPoints++] = 0;
+		float previousFDR = 0;
+		for (int i = 0; i < fdrs.length; i++) {
+			final float currentFDR = fdrs[i];
+			if (currentFDR <= previousFDR && previousFDR != 0.0) {
+				// replace the last point
+				numPoints--;
+			}
+			previousFDR = currentFDR;
+			xs[numPoints] = currentFDR;
+			ys[numPoints++] = i + 1;
+		}
+		return createSeries(serieName, xs, ys, numPoints, maxPoints);
+	}
+
+	/**
+	 * Gets the series of the FDR (y) at each score (x). When the FDR doesn't
+	 * increase, the previous point is replaced by the new one. Items without
+	 * score are counted, but they are not in the series. Protein groups
+	 * without a best peptide for the score are not counted.
+	 *
+	 * @param serieName
+	 * @param maxPoints
+	 *            maximum number of points of the series
+	 * @return
+	 */
+	public XYSeries getScoreVsFDRSeries(String serieName, int maxPoints) {
+		final double[] xs = new double[fdrs.length];
+		final double[] ys = new double[fdrs.length];
+		int numPoints = 0;
+		float previousFDR = 0;
+		for (int i = 0; i < scoreFDRs.length; i++) {
+			final float currentFDR = scoreFDRs[i];
+			if (Float.isNaN(scores[i])) {
+				previousFDR = currentFDR;
+				continue;
+			}
+			if (currentFDR <= previousFDR && currentFDR != 0.0 && numPoints > 0) {
+				// replace the last point
+				numPoints--;
+			}
+			previousFDR = currentFDR;
+			xs[numPoints] = scores[i];
+			ys[numPoints++] = currentFDR;
+		}
+		return createSeries(serieName, xs, ys, numPoints, maxPoints);
+	}
+
+	/**
+	 * Creates a series with the points, decimating them if there are more than
+	 * maxPoints. In that case, the points are split in buckets and the first
+	 * and last points and the ones with the minimum and maximum y of each
+	 * bucket are kept, so that the shape of the curve is preserved.
+	 */
+	private static XYSeries createSeries(String serieName, double[] xs, double[] ys, int numPoints, int maxPoints) {
+		final boolean autoSort = false;
+		final boolean allowDuplicateXValues = true;
+		final XYSeries xySeries = new XYSeries(serieName, autoSort, allowDuplicateXValues);
+		if (numPoints <= maxPoints || maxPoints < 4) {
+			for (int i = 0; i < numPoints; i++) {
+				xySeries.add(xs[i], ys[i], false);
+			}
+		} else {
+			final int numBuckets = (maxPoints - 2) / 2;
+			final double bucketSize = (double) (numPoints - 2) / numBuckets;
+			xySeries.add(xs[0], ys[0], false);
+			for (int bucket = 0; bucket < numBuckets; bucket++) {
+				final int start = 1 + (int) (bucket * bucketSize);
+				final int end = Math.min(numPoints - 1, 1 + (int) ((bucket + 1) * bucketSize));
+				if (start >= end) {
+					continue;
+				}
+				int min = start;
+				int max = start;
+				for (int i = start + 1; i < end; i++) {
+					if (ys[i] < ys[min]) {
+						min = i;
+					}
+					if (ys[i] >= ys[max]) {
+						max = i;
+					}
+				}
+				// in the original order
+				final int first = Math.min(min, max);
+				final int second = Math.max(min, max);
+				xySeries.add(xs[first], ys[first], false);
+				if (second != first) {
+					xySeries.add(xs[second], ys[second], false);
+				}
+			}
+			xySeries.add(xs[numPoints - 1], ys[numPoints - 1], false);
+		}
+		xySeries.fireSeriesChanged();
+		return xySeries;
+	}
+
+	/**
+	 * Weak reference to an {@link FDRFilter} that is equal to other only if
+	 * both refer to the same object
+	 */
+	private static class FilterKey extends WeakReference<FDRFilter> {
+		private final int hash;
+
+		private FilterKey(FDRFilter filter, ReferenceQueue<FDRFilter> queue) {
+			super(filter, queue);
+			hash = System.identityHashCode(filter);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj instanceof FilterKey) {
+				final FDRFilter filter = get();
+				return filter != null && filter == ((FilterKey) obj).get();
+			}
+			return false;
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package org.proteored.pacom.analysis.gui.tasks;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import org.apache.log4j.Logger;
+import org.proteored.miapeapi.experiment.model.Experiment;
+import org.proteored.miapeapi.experiment.model.ExperimentList;
+import org.proteored.miapeapi.experiment.model.IdentificationSet;
+import org.proteored.miapeapi.experiment.model.Replicate;
+import org.proteored.miapeapi.experiment.model.filters.Filter;
+
+/**
+ * Applies the filters to an {@link ExperimentList} and computes the filtered
+ * occurrences of its {@link IdentificationSet}s.<br>
+ * The levels are computed from the bottom up: first all the replicates at the
+ * same time, then all the experiments at the same time, and finally the
+ * experiment list, so that each level reuses the filtered data of the level
+ * below. The {@link IdentificationSet}s of a level are independent, so they
+ * are computed in the pool of the {@link ParallelSeriesComputer}, under the
+ * rules described there. The filters are set in all the levels before that,
+ * so the tasks only read them.<br>
+ * The last applied filters are kept, so that if the same filters (according
+ * to their equals method, as in the
+ * {@link org.proteored.pacom.analysis.gui.FiltersDialog}) are applied again to
+ * the same {@link ExperimentList}, the filtered data is not computed again,
+ * and only the replicates are computed if they were not computed before.
+ *
+ * @author Salva
+ *
+ */
+public class FilterEngine {
+	private static final Logger log = Logger.getLogger("log4j.logger.org.proteored");
+	private static WeakReference<ExperimentList> lastExperimentList;
+	private static List<Filter> lastFilters;
+	private static boolean lastReplicatesFiltered;
+
+	/**
+	 * Applies the filters, if they are not already applied, and computes the
+	 * occurrences of the filtered data at the experiment list and experiment
+	 * levels, and also at the replicate level if filterReplicates is true.
+	 *
+	 * @param filters
+	 * @param experimentList
+	 * @param filterReplicates
+	 * @return true if the filters were different from the ones applied before,
+	 *         so that the values computed from the previous data are not valid
+	 *         anymore
+	 * @throws CancellationException
+	 *             if the calling thread is interrupted
+	 */
+	public static synchronized boolean applyFilters(List<Filter> filters, ExperimentList experimentList,
+			boolean filterReplicates) {
+		if (filters == null || experimentList == null) {
+			return false;
+		}
+		if (isAlreadyApplied(filters, experimentList)) {
+			if (filterReplicates && !lastReplicatesFiltered) {
+				log.info("Filters not changed. Computing only the replicates");
+				computeReplicates(experimentList);
+				lastReplicatesFiltered = true;
+			} else {
+				log.info("Filters not changed. Reusing the filtered data");
+			}
+			return false;
+		}
+		// until the computation finishes, the filtered data is not complete
+		lastFilters = null;
+		lastExperimentList = new WeakReference<ExperimentList>(experimentList);
+		// the values cached for the charts are not valid anymore
+		DatasetCache.newFilterGeneration();
+		final long t1 = System.currentTimeMillis();
+		experimentList.setFilters(filters);
+		if (filterReplicates) {
+			computeReplicates(experimentList);
+		}
+		final List<IdentificationSet> experiments = new ArrayList<IdentificationSet>();
+		for (final Experiment experiment : experimentList.getExperiments()) {
+			experiments.add(experiment);
+		}
+		computeAll(experiments);
+		compute(experimentList);
+		log.info(filters.size() + " filters applied in " + (System.currentTimeMillis() - t1) + " ms");
+		lastFilters = new ArrayList<Filter>(filters);
+		lastReplicatesFiltered = filterReplicates;
+		return true;
+	}
+
+	private static boolean isAlreadyApplied(List<Filter> filters, ExperimentList experimentList) {
+		if (lastFilters == null || lastExperimentList == null || lastExperimentList.get() != experimentList) {
+			return false;
+		}
+		return lastFilters.equals(filters);
+	}
+
+	/**
+	 * An error in the replicates doesn't stop the filtering, because the
+	 * experiments can still be computed
+	 *
+	 * @param experimentList
+	 */
+	private static void computeReplicates(ExperimentList experimentList) {
+		try {
+			computeAll(getReplicates(experimentList));
+		} catch (final CancellationException e) {
+			throw e;
+		} catch (final RuntimeException e) {
+			log.warn("Error filtering the replicates: " + e.getMessage());
+		}
+	}
+
+	private static List<IdentificationSet> getReplicates(ExperimentList experimentList) {
+		final List<IdentificationSet> ret = new ArrayList<IdentificationSet>();
+		for (final Experiment experiment : experimentList.getExperiments()) {
+			for (final Replicate replicate : experiment.getNextLevelIdentificationSetList()) {
+				ret.add(replicate);
+			}
+		}
+		return ret;
+	}
+
+	private static void computeAll(List<IdentificationSet> idSets) {
+		ParallelSeriesComputer.computeAll(idSets, new ParallelSeriesComputer.SeriesFunction<Void>() {
+			@Override
+			public Void compute(IdentificationSet idSet) {
+				FilterEngine.compute(idSet);
+				return null;
+			}
+		});
+	}
+
+	private static void compute(IdentificationSet idSet) {
+		DatasetFactory.checkCancelled();
+		idSet.getPeptideOccurrenceList(true);
+		idSet.getProteinGroupOccurrenceList();
+	}
+}
@@ -5,9 +5,7 @@ import java.util.List;
 import javax.swing.SwingWorker;
 
 import org.apache.log4j.Logger;
-import org.proteored.miapeapi.experiment.model.Experiment;
 import org.proteored.miapeapi.experiment.model.ExperimentList;
-import org.proteored.miapeapi.experiment.model.Replicate;
 import org.proteored.miapeapi.experiment.model.filters.Filter;
 
 public class FilterTask extends SwingWorker<Void, Void> {
@@ -17,6 +15,7 @@ public class FilterTask extends SwingWorker<Void, Void> {
 	private final List<Filter> filters;
 	private final ExperimentList experimentList;
 	private final boolean filterReplicates;
+	private volatile boolean filtersChanged = true;
 	public static final String FILTER_DONE = "filter done";
 
 	public FilterTask(List<Filter> filters, ExperimentList experimentList,
@@ -29,32 +28,34 @@ public class FilterTask extends SwingWorker<Void, Void> {
 	@Override
 	protected Void doInBackground() throws Exception {
 		log.info("FILTER TASK STARTED!!!!");
-		if (filters != null && experimentList != null) {
-			experimentList.setFilters(filters);
-			experimentList.getPeptideOccurrenceList(true);
-			experimentList.getProteinGroupOccurrenceList();
-			for (Experiment idSet : experimentList.getExperiments()) {
-
-				idSet.getPeptideOccurrenceList(true);
-				idSet.getProteinGroupOccurrenceList();
-				try {
-					if (filterReplicates)
-						for (Replicate replicate : idSet
-								.getNextLevelIdentificationSetList()) {
-							replicate.getProteinGroupOccurrenceList();
-							replicate.getPeptideOccurrenceList(true);
-						}
-				} catch (Exception e) {
-
-				}
-			}
-		}
+		filtersChanged = applyFilters(filters, experimentList, filterReplicates);
 		return null;
 	}
 
+	/**
+	 * Sets the filters to the {@link ExperimentList} and computes the
+	 * occurrences of the filtered data, at the experiment list and experiment
+	 * levels, and also at the replicate level if filterReplicates is true.
+	 * It is also called directly when there is no GUI. See
+	 * {@link FilterEngine}.
+	 *
+	 * @param filters
+	 * @param experimentList
+	 * @param filterReplicates
+	 * @return true if the filters were different from the ones already
+	 *         applied
+	 */
+	public static boolean applyFilters(List<Filter> filters, ExperimentList experimentList, boolean filterReplicates) {
+		return FilterEngine.applyFilters(filters, experimentList, filterReplicates);
+	}
+
 	@Override
 	protected void done() {
 		super.done();
+		// discard the values computed for the charts while filtering
+		if (filtersChanged) {
+			DatasetCache.newFilterGeneration();
+		}
 		if (!isCancelled())
 			firePropertyChange(FilterTask.FILTER_DONE, null, null);
 	}
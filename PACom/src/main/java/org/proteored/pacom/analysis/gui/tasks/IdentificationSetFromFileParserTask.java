@@ -30,14 +30,12 @@ import org.proteored.miapeapi.interfaces.msi.PeptideScore;
 import org.proteored.miapeapi.text.tsv.msi.IdentifiedPeptideImplFromTSV;
 import org.proteored.miapeapi.text.tsv.msi.IdentifiedProteinImplFromTSV;
 import org.proteored.miapeapi.util.UniprotId2AccMapping;
+import org.proteored.pacom.analysis.util.FastaPeptideIndex;
+import org.proteored.pacom.analysis.util.FastaPeptideIndex.Digestion;
 import org.proteored.pacom.gui.MainFrame;
 import org.proteored.pacom.gui.tasks.OntologyLoaderTask;
 import org.springframework.core.io.ClassPathResource;
 
-import com.compomics.dbtoolkit.io.implementations.FASTADBLoader;
-import com.compomics.util.protein.Enzyme;
-import com.compomics.util.protein.Protein;
-
 import edu.scripps.yates.utilities.fasta.FastaParser;
 import gnu.trove.map.hash.THashMap;
 import gnu.trove.map.hash.TIntDoubleHashMap;
@@ -94,7 +92,7 @@ public class IdentificationSetFromFileParserTask extends SwingWorker<Void, Strin
 	private final String idSetName;
 	private SlimModCollection preferredModifications;
 	private static JFileChooser fileChooser;
-	private static FASTADBLoader fastaLoader;
+	private static FastaPeptideIndex fastaIndex;
 
 	/**
 	 * This parser reads a separated values file, in which the first line
@@ -420,14 +418,16 @@ public class IdentificationSetFromFileParserTask extends SwingWorker<Void, Strin
 				JOptionPane.WARNING_MESSAGE);
 		if (userSelection == JOptionPane.YES_OPTION) {
 			// convert peptides to Maps
-			final Map<String, IdentifiedPeptide> peptideMap = new THashMap<String, IdentifiedPeptide>();
+			final Map<String, List<IdentifiedPeptide>> peptideMap = new THashMap<String, List<IdentifiedPeptide>>();
 			for (final IdentifiedPeptide identifiedPeptide : peptides) {
-				peptideMap.put(identifiedPeptide.getSequence(), identifiedPeptide);
+				if (!peptideMap.containsKey(identifiedPeptide.getSequence())) {
+					peptideMap.put(identifiedPeptide.getSequence(), new ArrayList<IdentifiedPeptide>());
+				}
+				peptideMap.get(identifiedPeptide.getSequence()).add(identifiedPeptide);
 			}
 			int userSelection2 = Integer.MIN_VALUE;
 			boolean loadNewFastaFile = true;
-			final Enzyme trypsin = new Enzyme("Trypsin", "RK", "", "Cterm", 2);
-			if (IdentificationSetFromFileParserTask.fastaLoader != null) {
+			if (IdentificationSetFromFileParserTask.fastaIndex != null) {
 				userSelection2 = JOptionPane.showConfirmDialog(null,
 						"<html>There is already a fasta loaded.<br>Do you want to continue with this data (yes) or do you wnat to load another fasta file (no)?</html>",
 						"Fasta file already loaded", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
@@ -439,46 +439,35 @@ public class IdentificationSetFromFileParserTask extends SwingWorker<Void, Strin
 					IdentificationSetFromFileParserTask.fileChooser = new JFileChooser(MainFrame.currentFolder);
 				fileChooser.showDialog(null, "Select FASTA file");
 				final File fastaFile = fileChooser.getSelectedFile();
-				MainFrame.currentFolder = fastaFile.getParentFile();
-
-				if (fastaFile.exists()) {
+				if (fastaFile != null && fastaFile.exists()) {
+					MainFrame.currentFolder = fastaFile.getParentFile();
 					log.info("Loading fasta...");
-					IdentificationSetFromFileParserTask.fastaLoader = new FASTADBLoader();
-					fastaLoader.load(fastaFile.getAbsolutePath());
+					// the index is built only the first time that the fasta is
+					// used
+					IdentificationSetFromFileParserTask.fastaIndex = FastaPeptideIndex.getIndex(fastaFile);
 				}
 			}
-			final Map<String, List<String>> peptideToProteinsMap = new THashMap<String, List<String>>();
-			final long countNumberOfEntries = fastaLoader.countNumberOfEntries();
-			log.info("Readed " + countNumberOfEntries + " entries in the fasta file");
-			for (int i = 0; i < countNumberOfEntries; i++) {
-				final Protein nextProtein = fastaLoader.nextProtein();
-				if (nextProtein == null)
-					break;
-				final String proteinACC = nextProtein.getHeader().getAccession();
-
-				final Protein[] cleave = trypsin.cleave(nextProtein);
-				for (final Protein protein : cleave) {
-					final String seq = protein.getSequence().getSequence();
-					// skip sequence if not present in the input peptides
-					if (!peptideMap.containsKey(seq))
-						continue;
-					if (peptideToProteinsMap.containsKey(seq)) {
-						final List<String> proteinAccs = peptideToProteinsMap.get(seq);
-						if (!proteinAccs.contains(proteinACC))
-							proteinAccs.add(proteinACC);
-					} else {
-						final List<String> proteinAccs = new ArrayList<String>();
-						proteinAccs.add(proteinACC);
-						peptideToProteinsMap.put(seq, proteinAccs);
-					}
-				}
+			if (fastaIndex == null) {
+				return;
+			}
+			log.info("Using " + fastaIndex.getNumProteins() + " entries in the fasta file");
+			final Digestion[] digestions = { Digestion.TRYPSIN, Digestion.SEMI_TRYPSIN, Digestion.NON_SPECIFIC };
+			final Object selectedDigestion = JOptionPane.showInputDialog(null,
+					"Select how the proteins were digested to produce the peptides:", "Digestion",
+					JOptionPane.QUESTION_MESSAGE, null, digestions, Digestion.TRYPSIN);
+			if (selectedDigestion == null) {
+				return;
 			}
-			log.info(peptideToProteinsMap.size() + " peptides mapped");
-			for (final String peptideSeq : peptideToProteinsMap.keySet()) {
-				if (peptideMap.containsKey(peptideSeq)) {
-					final IdentifiedPeptideImplFromTSV identifiedPeptide = (IdentifiedPeptideImplFromTSV) peptideMap
-							.get(peptideSeq);
-					final List<String> proteinAccs = peptideToProteinsMap.get(peptideSeq);
+			final Digestion digestion = (Digestion) selectedDigestion;
+			int numMappedPeptides = 0;
+			for (final String peptideSeq : peptideMap.keySet()) {
+				final List<String> proteinAccs = fastaIndex.getProteinAccessions(peptideSeq, digestion);
+				if (proteinAccs.isEmpty()) {
+					continue;
+				}
+				numMappedPeptides++;
+				for (final IdentifiedPeptide peptide : peptideMap.get(peptideSeq)) {
+					final IdentifiedPeptideImplFromTSV identifiedPeptide = (IdentifiedPeptideImplFromTSV) peptide;
 					for (final String proteinAcc : proteinAccs) {
 						if (proteinMap.containsKey(proteinAcc)) {
 							final IdentifiedProteinImplFromTSV identifiedProtein = (IdentifiedProteinImplFromTSV) proteinMap
@@ -500,6 +489,7 @@ public class IdentificationSetFromFileParserTask extends SwingWorker<Void, Strin
 					}
 				}
 			}
+			log.info(numMappedPeptides + " peptides mapped");
 		}
 
 	}
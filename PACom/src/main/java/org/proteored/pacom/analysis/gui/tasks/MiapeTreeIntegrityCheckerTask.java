@@ -1,6 +1,7 @@
 package org.proteored.pacom.analysis.gui.tasks;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -22,6 +23,7 @@ import org.proteored.pacom.analysis.conf.jaxb.CPExperimentList;
 import org.proteored.pacom.analysis.conf.jaxb.CPMSI;
 import org.proteored.pacom.analysis.conf.jaxb.CPReplicate;
 import org.proteored.pacom.analysis.gui.Miape2ExperimentListDialog;
+import org.proteored.pacom.analysis.util.CuratedMiapeMSIMask;
 import org.proteored.pacom.analysis.util.FileManager;
 import org.proteored.pacom.gui.tasks.OntologyLoaderTask;
 
@@ -311,14 +313,26 @@ public class MiapeTreeIntegrityCheckerTask extends SwingWorker<String, Void> {
 	private MiapeMSIDocument getMIAPEMSIFromFile(CPMSI cpMSI, boolean curated) {
 
 		File file = null;
+		CuratedMiapeMSIMask mask = null;
 		if (cpMSI.isLocal() == null || !cpMSI.isLocal()) {
 			file = new File(FileManager.getMiapeDataPath() + cpMSI);
 		} else if (cpMSI.isLocal() != null && cpMSI.isLocal()) {
 			if (!curated) {
 				file = new File(FileManager.getMiapeMSIXMLFileLocalPathFromMiapeInformation(cpMSI));
 			} else {
-				file = new File(FileManager.getMiapeMSICuratedXMLFilePathFromMiapeInformation(
-						cpMSI.getLocalProjectName(), cpMSI.getName()));
+				file = FileManager.getMiapeMSICuratedFile(cpMSI);
+				if (file.getName().endsWith(CuratedMiapeMSIMask.MASK_EXTENSION)) {
+					try {
+						mask = CuratedMiapeMSIMask.load(file);
+						if (mask.isOriginalFileModified()) {
+							return null;
+						}
+						file = mask.getOriginalFile();
+					} catch (final IOException e) {
+						log.warn(e.getMessage());
+						return null;
+					}
+				}
 			}
 		}
 		if (file == null || !file.exists())
@@ -329,7 +343,9 @@ public class MiapeTreeIntegrityCheckerTask extends SwingWorker<String, Void> {
 		msiFile.setCvUtil(cvManager);
 		try {
 			ret = msiFile.toDocument();
-
+			if (mask != null) {
+				ret = mask.apply(ret);
+			}
 			return ret;
 		} catch (final MiapeDatabaseException e) {
 			log.warn(e.getMessage());
@@ -0,0 +1,270 @@
+package org.proteored.pacom.analysis.gui.tasks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.proteored.miapeapi.experiment.model.IdentificationSet;
+import org.proteored.miapeapi.experiment.model.PeptideOccurrence;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+/**
+ * Matrix with the occurrence of some identification items (peptides or
+ * proteins) over a list of {@link IdentificationSet}s, used to build the
+ * heatmaps.<br>
+ * The keys of the items are interned to consecutive int ids (the rows) once,
+ * and the values are stored in a single column-major int array, so that each
+ * column (replicate) is filled in a single pass over its own items, without
+ * looking up the item keys cell by cell. Only the rows that are finally
+ * selected are copied to the dataset of the chart.<br>
+ * All the rows have to be added before setting any value.
+ *
+ * @author Salva
+ *
+ */
+public class OccurrenceMatrix {
+	private final int numColumns;
+	private final List<String> rowKeys = new ArrayList<String>();
+	private final TObjectIntHashMap<String> rowIdsByKey = new TObjectIntHashMap<String>(10, 0.5f, -1);
+	// values[column * numRows + row]
+	private int[] values;
+
+	public OccurrenceMatrix(int numColumns) {
+		this.numColumns = numColumns;
+	}
+
+	/**
+	 * Adds a row for an item, if it was not already added
+	 *
+	 * @param key
+	 * @return the id of the row of the item
+	 */
+	public int addRow(String key) {
+		int row = rowIdsByKey.get(key);
+		if (row == -1) {
+			if (values != null) {
+				throw new IllegalStateException("Rows cannot be added after setting the values of the matrix");
+			}
+			row = rowKeys.size();
+			rowKeys.add(key);
+			rowIdsByKey.put(key, row);
+		}
+		return row;
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return the id of the row of the item or -1 if it is not in the matrix
+	 */
+	public int getRowId(String key) {
+		return rowIdsByKey.get(key);
+	}
+
+	public String getRowKey(int row) {
+		return rowKeys.get(row);
+	}
+
+	public int getNumRows() {
+		return rowKeys.size();
+	}
+
+	public int getNumColumns() {
+		return numColumns;
+	}
+
+	public int get(int row, int column) {
+		if (values == null) {
+			return 0;
+		}
+		return values[column * rowKeys.size() + row];
+	}
+
+	public void set(int row, int column, int value) {
+		getValues()[column * rowKeys.size() + row] = value;
+	}
+
+	private int[] getValues() {
+		if (values == null) {
+			values = new int[rowKeys.size() * numColumns];
+		}
+		return values;
+	}
+
+	/**
+	 * Sets the number of occurrences of each peptide of the
+	 * {@link IdentificationSet} in a column, iterating over the peptides of the
+	 * {@link IdentificationSet} just once. The peptides that are not in the
+	 * rows of the matrix are ignored.
+	 *
+	 * @param column
+	 * @param idSet
+	 * @param distinguishModificatedPeptides
+	 */
+	public void fillPeptideOccurrences(int column, IdentificationSet idSet, boolean distinguishModificatedPeptides) {
+		final int[] values = getValues();
+		final int offset = column * rowKeys.size();
+		for (final Map.Entry<String, PeptideOccurrence> entry : idSet
+				.getPeptideOccurrenceList(distinguishModificatedPeptides).entrySet()) {
+			final int row = rowIdsByKey.get(entry.getKey());
+			if (row != -1) {
+				values[offset + row] = entry.getValue().getItemList().size();
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return true if any of the cells of the matrix is greater than zero
+	 */
+	public boolean hasNonZeroValues() {
+		if (values != null) {
+			for (final int value : values) {
+				if (value > 0) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 *
+	 * @return the sum of the values of each row
+	 */
+	public int[] getRowTotals() {
+		final int numRows = rowKeys.size();
+		final int[] ret = new int[numRows];
+		if (values != null) {
+			for (int column = 0; column < numColumns; column++) {
+				final int offset = column * numRows;
+				for (int row = 0; row < numRows; row++) {
+					ret[row] += values[offset + row];
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 *
+	 * @return the number of columns with a value greater than zero in each row
+	 */
+	public int[] getRowPresences() {
+		final int numRows = rowKeys.size();
+		final int[] ret = new int[numRows];
+		if (values != null) {
+			for (int column = 0; column < numColumns; column++) {
+				final int offset = column * numRows;
+				for (int row = 0; row < numRows; row++) {
+					if (values[offset + row] > 0) {
+						ret[row]++;
+					}
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Gets the rows in which the score is at least the minimum, sorted from the
+	 * highest to the lowest score. Rows with the same score keep the order in
+	 * which they were added.
+	 *
+	 * @param scores
+	 *            one per row, such as the ones returned by
+	 *            {@link #getRowTotals()} or {@link #getRowPresences()}
+	 * @param minScore
+	 * @return
+	 */
+	public TIntArrayList getRowsSortedByScore(int[] scores, int minScore) {
+		// the score and the row are packed in a long, so that the rows can be
+		// sorted without boxing
+		final long[] packed = new long[scores.length];
+		int numSelected = 0;
+		for (int row = 0; row < scores.length; row++) {
+			if (scores[row] >= minScore) {
+				packed[numSelected++] = ((long) (Integer.MAX_VALUE - scores[row]) << 32) | row;
+			}
+		}
+		Arrays.sort(packed, 0, numSelected);
+		final TIntArrayList ret = new TIntArrayList(numSelected);
+		for (int i = 0; i < numSelected; i++) {
+			ret.add((int) packed[i]);
+		}
+		return ret;
+	}
+
+	/**
+	 * Gets the ids of the rows of some items
+	 *
+	 * @param keys
+	 *            the keys of the items
+	 * @param selectedRows
+	 *            if not null, the items that are not in these rows will have
+	 *            -1
+	 * @return the id of the row of each key or -1 if it is not in the matrix
+	 */
+	public TIntArrayList getRowIds(List<String> keys, TIntArrayList selectedRows) {
+		boolean[] selected = null;
+		if (selectedRows != null) {
+			selected = new boolean[rowKeys.size()];
+			for (int i = 0; i < selectedRows.size(); i++) {
+				selected[selectedRows.get(i)] = true;
+			}
+		}
+		final TIntArrayList ret = new TIntArrayList(keys.size());
+		for (final String key : keys) {
+			final int row = rowIdsByKey.get(key);
+			if (row != -1 && (selected == null || selected[row])) {
+				ret.add(row);
+			} else {
+				ret.add(-1);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Gets the keys of some rows
+	 *
+	 * @param rows
+	 * @return
+	 */
+	public List<String> getRowKeys(TIntArrayList rows) {
+		final List<String> ret = new ArrayList<String>(rows.size());
+		for (int i = 0; i < rows.size(); i++) {
+			ret.add(rowKeys.get(rows.get(i)));
+		}
+		return ret;
+	}
+
+	/**
+	 * Creates the dataset of a heatmap with some of the rows of the matrix
+	 *
+	 * @param rows
+	 *            the ids of the rows, in the order of the dataset. A row with
+	 *            -1 will be filled with zeros.
+	 * @return an array with the values of each row
+	 */
+	public double[][] toDataset(TIntArrayList rows) {
+		final int numRows = rowKeys.size();
+		final double[][] ret = new double[rows.size()][numColumns];
+		if (values != null) {
+			for (int i = 0; i < rows.size(); i++) {
+				final int row = rows.get(i);
+				if (row == -1) {
+					continue;
+				}
+				final double[] datasetRow = ret[i];
+				for (int column = 0; column < numColumns; column++) {
+					datasetRow[column] = values[column * numRows + row];
+				}
+			}
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,148 @@
+package org.proteored.pacom.analysis.gui.tasks;
+
+import java.util.List;
+import java.util.Map;
+
+import org.proteored.miapeapi.experiment.model.ExtendedIdentifiedPeptide;
+import org.proteored.miapeapi.experiment.model.IdentificationSet;
+
+import gnu.trove.map.hash.THashMap;
+
+/**
+ * Snapshot of the numeric values of the PSMs of an {@link IdentificationSet},
+ * in primitive arrays (one per value, with one position per PSM), so that the
+ * {@link DatasetFactory} doesn't have to go through the
+ * {@link ExtendedIdentifiedPeptide}s, parsing the charges and retention times
+ * or calculating the masses, each time a chart is created.<br>
+ * It is built once per {@link IdentificationSet} and filter generation, since
+ * it is kept in the {@link DatasetCache}. The columns of the scores are built
+ * the first time each score is requested.<br>
+ * The values that are not available are NaN in the decimal columns and -1 in
+ * the integer ones (0 for the charge, as the charge is not valid if it is not
+ * positive).
+ *
+ * @author Salva
+ *
+ */
+public class PSMColumns {
+	private static final String CACHE_KEY = "PSMColumns";
+	private final List<ExtendedIdentifiedPeptide> peptides;
+	private final int size;
+	private final double[] experimentalMz;
+	private final double[] theoreticMass;
+	private final int[] charge;
+	private final double[] rtInSeconds;
+	private final int[] length;
+	private final boolean[] decoy;
+	private final Map<String, double[]> scores = new THashMap<String, double[]>();
+
+	/**
+	 * Gets the columns of an {@link IdentificationSet}, building them if they
+	 * are not in the {@link DatasetCache}
+	 *
+	 * @param idSet
+	 * @return
+	 */
+	public static PSMColumns get(final IdentificationSet idSet) {
+		return DatasetCache.get(idSet, CACHE_KEY, new DatasetCache.PartialResult<PSMColumns>() {
+			@Override
+			public PSMColumns compute() {
+				return new PSMColumns(idSet.getIdentifiedPeptides());
+			}
+		});
+	}
+
+	PSMColumns(List<ExtendedIdentifiedPeptide> peptides) {
+		this.peptides = peptides;
+		size = peptides != null ? peptides.size() : 0;
+		experimentalMz = new double[size];
+		theoreticMass = new double[size];
+		charge = new int[size];
+		rtInSeconds = new double[size];
+		length = new int[size];
+		decoy = new boolean[size];
+		for (int i = 0; i < size; i++) {
+			final ExtendedIdentifiedPeptide peptide = peptides.get(i);
+			final Float mz = peptide.getExperimentalMassToCharge();
+			experimentalMz[i] = mz != null ? mz : Double.NaN;
+			try {
+				theoreticMass[i] = peptide.getTheoreticMass();
+			} catch (final IllegalArgumentException e) {
+				theoreticMass[i] = Double.NaN;
+			}
+			try {
+				charge[i] = Math.max(0, Integer.valueOf(peptide.getCharge()));
+			} catch (final NumberFormatException e) {
+				charge[i] = 0;
+			}
+			rtInSeconds[i] = Double.NaN;
+			final String rt = peptide.getRetentionTimeInSeconds();
+			if (rt != null) {
+				try {
+					rtInSeconds[i] = Double.valueOf(rt);
+				} catch (final NumberFormatException e) {
+				}
+			}
+			final String sequence = peptide.getSequence();
+			length[i] = sequence != null ? sequence.length() : -1;
+			decoy[i] = peptide.isDecoy();
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of PSMs
+	 */
+	public int size() {
+		return size;
+	}
+
+	public double[] getExperimentalMz() {
+		return experimentalMz;
+	}
+
+	public double[] getTheoreticMass() {
+		return theoreticMass;
+	}
+
+	public int[] getCharge() {
+		return charge;
+	}
+
+	public double[] getRtInSeconds() {
+		return rtInSeconds;
+	}
+
+	public int[] getLength() {
+		return length;
+	}
+
+	public boolean[] getDecoy() {
+		return decoy;
+	}
+
+	/**
+	 *
+	 * @param scoreName
+	 * @return the values of a score, NaN where the PSM doesn't have it
+	 */
+	public synchronized double[] getScore(String scoreName) {
+		double[] ret = scores.get(scoreName);
+		if (ret == null) {
+			ret = new double[size];
+			for (int i = 0; i < size; i++) {
+				ret[i] = Double.NaN;
+				try {
+					final Float score = peptides.get(i).getScore(scoreName);
+					if (score != null) {
+						ret[i] = score;
+					}
+				} catch (final Exception e) {
+					// do nothing
+				}
+			}
+			scores.put(scoreName, ret);
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,309 @@
+package org.proteored.pacom.analysis.gui.tasks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.log4j.Logger;
+import org.proteored.miapeapi.experiment.model.IdentificationSet;
+
+/**
+ * Computes the values of the series of a dataset, one per
+ * {@link IdentificationSet}, in a {@link ForkJoinPool} shared by all the
+ * charts.<br>
+ * The values are returned in the order of the {@link IdentificationSet}s, so
+ * that the {@link DatasetFactory} adds the series to the JFreeChart datasets
+ * always in the same order, regardless of which one is computed first. If
+ * several of them fail, the error of the first one (in input order) is the
+ * one reported.<br>
+ * The threads of the pool are not interrupted when the {@link ChartCreatorTask}
+ * is cancelled, so the cancellation of the calling thread is passed to them
+ * and {@link DatasetFactory#checkCancelled()} stops them. The calling thread
+ * doesn't return until all of them have stopped.<br>
+ * <br>
+ * <b>Thread safety of the {@link IdentificationSet}s</b><br>
+ * The {@link IdentificationSet}s of miape-api are not thread safe: their
+ * occurrence lists are computed lazily, the first time they are requested,
+ * from the ones of the level below, and cached without synchronization. This
+ * is the only place where they are read from several threads at the same
+ * time (the charts in {@link DatasetFactory} and the filters in
+ * {@link FilterEngine}), and it is safe because:
+ * <ul>
+ * <li>The {@link IdentificationSet}s of a computation are all of the same
+ * level (all replicates, all experiments...) and each one is computed by only
+ * one task. The ones of the same level are built from different MIAPE MSI
+ * documents, in different tasks of the
+ * {@link org.proteored.pacom.analysis.conf.ParallelAdapterLoader}, so they
+ * don't share any object. Otherwise, they are computed one by one.</li>
+ * <li>Only one computation uses them at a time: the
+ * {@link org.proteored.pacom.analysis.gui.ChartManagerFrame} creates one chart
+ * at a time and only applies the filters when no chart is being created, and
+ * the {@link org.proteored.pacom.analysis.headless.HeadlessRunner} creates
+ * the charts and the tables one by one.</li>
+ * <li>The tasks don't modify objects of the model and don't use the Uniprot
+ * retriever, that is not thread safe either. The series that do it (such as
+ * the protein masses and coverages) are computed in the calling thread.</li>
+ * </ul>
+ *
+ * @author Salva
+ *
+ */
+public class ParallelSeriesComputer {
+	private static final Logger log = Logger.getLogger("log4j.logger.org.proteored");
+	private static ForkJoinPool sharedPool;
+	// the computation that the current thread of the pool is working for
+	private static final ThreadLocal<Computation> currentComputation = new ThreadLocal<Computation>();
+
+	/**
+	 * Computes the values of a series from a single {@link IdentificationSet}.
+	 * It can be called from several threads at the same time, with different
+	 * {@link IdentificationSet}s.
+	 *
+	 * @param <T>
+	 */
+	public interface SeriesFunction<T> {
+		public T compute(IdentificationSet idSet);
+	}
+
+	/**
+	 * Computes a partial result from a single item of other type, such as a
+	 * chunk of the random orderings of a saturation curve
+	 *
+	 * @param <S>
+	 * @param <T>
+	 */
+	public interface ItemFunction<S, T> {
+		public T compute(S item);
+	}
+
+	private static synchronized ForkJoinPool getSharedPool() {
+		if (sharedPool == null) {
+			final int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+			log.info("Creating pool for the computation of chart series with " + threads + " threads");
+			sharedPool = new ForkJoinPool(threads, new ForkJoinWorkerThreadFactory() {
+				@Override
+				public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+					final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory
+							.newThread(pool);
+					thread.setName("chart-series-" + thread.getPoolIndex());
+					return thread;
+				}
+			}, null, false);
+		}
+		return sharedPool;
+	}
+
+	/**
+	 *
+	 * @return true if the current thread is computing a series for a chart
+	 *         that has been cancelled
+	 */
+	static boolean isCurrentComputationCancelled() {
+		final Computation computation = currentComputation.get();
+		return computation != null && computation.cancelled;
+	}
+
+	/**
+	 * Computes the values of all the {@link IdentificationSet}s
+	 *
+	 * @param idSets
+	 * @param function
+	 * @return the values in the same order as the {@link IdentificationSet}s
+	 * @throws CancellationException
+	 *             if the calling thread is interrupted
+	 */
+	public static <T> List<T> computeAll(List<IdentificationSet> idSets, final SeriesFunction<T> function) {
+		final ItemFunction<IdentificationSet, T> itemFunction = new ItemFunction<IdentificationSet, T>() {
+			@Override
+			public T compute(IdentificationSet idSet) {
+				return function.compute(idSet);
+			}
+		};
+		if (!areIndependent(idSets)) {
+			log.debug("Computing " + idSets.size() + " identification sets of different levels one by one");
+			final List<T> ret = new ArrayList<T>();
+			for (final IdentificationSet idSet : idSets) {
+				DatasetFactory.checkCancelled();
+				ret.add(itemFunction.compute(idSet));
+			}
+			return ret;
+		}
+		return computeAllItems(idSets, itemFunction);
+	}
+
+	/**
+	 *
+	 * @param idSets
+	 * @return true if all the {@link IdentificationSet}s are of the same level
+	 *         and none of them is repeated, so that they can be computed at
+	 *         the same time
+	 */
+	static boolean areIndependent(List<IdentificationSet> idSets) {
+		final Set<IdentificationSet> distinct = Collections
+				.newSetFromMap(new IdentityHashMap<IdentificationSet, Boolean>());
+		Class<?> level = null;
+		for (final IdentificationSet idSet : idSets) {
+			if (level == null) {
+				level = idSet.getClass();
+			} else if (level != idSet.getClass()) {
+				return false;
+			}
+			if (!distinct.add(idSet)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Computes the values of all the items
+	 *
+	 * @param items
+	 * @param function
+	 * @return the values in the same order as the items
+	 * @throws CancellationException
+	 *             if the calling thread is interrupted
+	 */
+	public static <S, T> List<T> computeAllItems(List<S> items, ItemFunction<S, T> function) {
+		final List<T> ret = new ArrayList<T>();
+		if (items.size() <= 1) {
+			// not worth it
+			for (final S item : items) {
+				DatasetFactory.checkCancelled();
+				ret.add(function.compute(item));
+			}
+			return ret;
+		}
+		DatasetFactory.checkCancelled();
+		Computation computation = currentComputation.get();
+		if (computation == null) {
+			computation = new Computation();
+		}
+		final ComputeAllTask<S, T> task = new ComputeAllTask<S, T>(computation, items, function);
+		if (ForkJoinTask.getPool() == getSharedPool()) {
+			// nested in other computation of the pool
+			task.invoke();
+		} else {
+			getSharedPool().execute(task);
+			try {
+				task.get();
+			} catch (final InterruptedException e) {
+				computation.cancelled = true;
+				// wait until the threads of the pool stop reading the data
+				task.quietlyJoin();
+				Thread.currentThread().interrupt();
+				throw new CancellationException("Dataset creation cancelled");
+			} catch (final ExecutionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new IllegalStateException(cause);
+			}
+		}
+		// the error is thrown here and not from the task, so that the
+		// ForkJoinTask doesn't wrap it
+		if (task.error != null) {
+			throw task.error;
+		}
+		return task.result;
+	}
+
+	private static class Computation {
+		private volatile boolean cancelled = false;
+	}
+
+	private static class ComputeAllTask<S, T> extends RecursiveTask<List<T>> {
+		private static final long serialVersionUID = 1L;
+		private final Computation computation;
+		private final List<S> items;
+		private final ItemFunction<S, T> function;
+		private List<T> result;
+		private RuntimeException error;
+
+		private ComputeAllTask(Computation computation, List<S> items, ItemFunction<S, T> function) {
+			this.computation = computation;
+			this.items = items;
+			this.function = function;
+		}
+
+		@Override
+		protected List<T> compute() {
+			final List<SeriesTask<S, T>> subtasks = new ArrayList<SeriesTask<S, T>>();
+			for (final S item : items) {
+				subtasks.add(new SeriesTask<S, T>(computation, item, function));
+			}
+			ForkJoinTask.invokeAll(subtasks);
+			// report the error of the first failing task, so that the error
+			// is always the same regardless of the execution order. Tasks
+			// cancelled because of that error are only reported if there is
+			// no other error
+			RuntimeException cancellation = null;
+			final List<T> ret = new ArrayList<T>();
+			for (final SeriesTask<S, T> subtask : subtasks) {
+				if (subtask.error instanceof CancellationException) {
+					if (cancellation == null) {
+						cancellation = subtask.error;
+					}
+				} else if (subtask.error != null) {
+					error = subtask.error;
+					return null;
+				}
+				ret.add(subtask.result);
+			}
+			if (cancellation != null) {
+				error = cancellation;
+				return null;
+			}
+			result = ret;
+			return ret;
+		}
+	}
+
+	private static class SeriesTask<S, T> extends RecursiveTask<T> {
+		private static final long serialVersionUID = 1L;
+		private final Computation computation;
+		private final S item;
+		private final ItemFunction<S, T> function;
+		private T result;
+		private RuntimeException error;
+
+		private SeriesTask(Computation computation, S item, ItemFunction<S, T> function) {
+			this.computation = computation;
+			this.item = item;
+			this.function = function;
+		}
+
+		@Override
+		protected T compute() {
+			final Computation previous = currentComputation.get();
+			currentComputation.set(computation);
+			try {
+				DatasetFactory.checkCancelled();
+				result = function.compute(item);
+			} catch (final CancellationException e) {
+				error = e;
+			} catch (final RuntimeException e) {
+				error = e;
+				// the rest of the series are useless, so do not start more
+				computation.cancelled = true;
+			} finally {
+				if (previous != null) {
+					currentComputation.set(previous);
+				} else {
+					currentComputation.remove();
+				}
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,254 @@
+package org.proteored.pacom.analysis.gui.tasks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import org.proteored.miapeapi.experiment.model.IdentificationSet;
+import org.proteored.miapeapi.experiment.model.ProteinGroupOccurrence;
+import org.proteored.miapeapi.experiment.model.sort.ProteinGroupComparisonType;
+import org.proteored.pacom.analysis.charts.SetOverlaps;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+/**
+ * Membership of the identification items (peptides or proteins) in any number
+ * of {@link IdentificationSet}s.<br>
+ * The keys of the items are interned once, and each set is kept as the array
+ * of the ids of its items, so that the items exclusive to each set and the
+ * accumulative number of items are counted in a single pass over all the
+ * sets, instead of comparing each pair of sets.<br>
+ * It also calculates saturation curves: the average number of different items
+ * found after adding the sets one by one, in many random orders, so that the
+ * curve doesn't depend on the order of the sets.
+ *
+ * @author Salva
+ *
+ */
+public class SetMemberships {
+	public static final int DEFAULT_NUM_ORDERINGS = 100;
+	// number of random orders computed by each parallel task. It doesn't
+	// depend on the number of threads so that the curve is always the same
+	private static final int ORDERINGS_PER_TASK = 10;
+	private final int numSets;
+	private final int numKeys;
+	// ids of the different items of each set
+	private final int[][] keyIds;
+
+	/**
+	 *
+	 * @param keySets
+	 *            the keys of the items of each set
+	 */
+	public SetMemberships(List<? extends Collection<?>> keySets) {
+		numSets = keySets.size();
+		keyIds = new int[numSets][];
+		final TObjectIntHashMap<Object> idsByKey = new TObjectIntHashMap<Object>(10, 0.5f, -1);
+		// last set in which each id has been seen, to skip repeated keys
+		final TIntArrayList lastSet = new TIntArrayList();
+		for (int set = 0; set < numSets; set++) {
+			final TIntArrayList ids = new TIntArrayList();
+			for (final Object key : keySets.get(set)) {
+				int id = idsByKey.get(key);
+				if (id == -1) {
+					id = lastSet.size();
+					idsByKey.put(key, id);
+					lastSet.add(-1);
+				}
+				if (lastSet.get(id) != set) {
+					lastSet.set(id, set);
+					ids.add(id);
+				}
+			}
+			keyIds[set] = ids.toArray();
+		}
+		numKeys = idsByKey.size();
+	}
+
+	/**
+	 * Membership of the peptides of some {@link IdentificationSet}s
+	 *
+	 * @param idSets
+	 * @param distModPeptides
+	 * @return
+	 */
+	public static SetMemberships forPeptides(List<IdentificationSet> idSets, boolean distModPeptides) {
+		return new SetMemberships(SetOverlaps.getPeptideKeys(idSets, distModPeptides));
+	}
+
+	/**
+	 * Membership of the protein groups of some {@link IdentificationSet}s. Two
+	 * protein groups are the same item if they have the same
+	 * {@link ProteinGroupOccurrence#getKey(ProteinGroupComparisonType)}
+	 *
+	 * @param idSets
+	 * @param comparisonType
+	 * @return
+	 */
+	public static SetMemberships forProteins(List<IdentificationSet> idSets,
+			ProteinGroupComparisonType comparisonType) {
+		return new SetMemberships(SetOverlaps.getProteinGroupKeys(idSets, comparisonType));
+	}
+
+	public int getNumSets() {
+		return numSets;
+	}
+
+	/**
+	 *
+	 * @return the number of different items in all the sets
+	 */
+	public int getNumKeys() {
+		return numKeys;
+	}
+
+	/**
+	 *
+	 * @return the number of items that are only in each set
+	 */
+	public int[] getExclusiveCounts() {
+		// the only set of each item, -1 if not seen yet, -2 if in several sets
+		final int[] owners = new int[numKeys];
+		for (int id = 0; id < numKeys; id++) {
+			owners[id] = -1;
+		}
+		for (int set = 0; set < numSets; set++) {
+			for (final int id : keyIds[set]) {
+				if (owners[id] == -1) {
+					owners[id] = set;
+				} else {
+					owners[id] = -2;
+				}
+			}
+		}
+		final int[] ret = new int[numSets];
+		for (final int owner : owners) {
+			if (owner >= 0) {
+				ret[owner]++;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 *
+	 * @return the number of different items after adding each set, in the
+	 *         order of the sets
+	 */
+	public int[] getAccumulativeCounts() {
+		final boolean[] seen = new boolean[numKeys];
+		final int[] ret = new int[numSets];
+		int union = 0;
+		for (int set = 0; set < numSets; set++) {
+			for (final int id : keyIds[set]) {
+				if (!seen[id]) {
+					seen[id] = true;
+					union++;
+				}
+			}
+			ret[set] = union;
+		}
+		return ret;
+	}
+
+	/**
+	 * Gets the saturation curve of the sets, computing the random orders in
+	 * parallel in the {@link ParallelSeriesComputer}
+	 *
+	 * @param numOrderings
+	 *            the number of random orders of the sets to average
+	 * @param seed
+	 *            of the random orders, so that the same curve is obtained
+	 *            each time
+	 * @return the average number of different items after adding 1, 2...
+	 *         sets
+	 */
+	public double[] getSaturationCurve(int numOrderings, final long seed) {
+		final List<int[]> tasks = new ArrayList<int[]>();
+		for (int first = 0; first < numOrderings; first += ORDERINGS_PER_TASK) {
+			tasks.add(new int[] { first, Math.min(numOrderings, first + ORDERINGS_PER_TASK) });
+		}
+		final List<long[]> partialSums = ParallelSeriesComputer.computeAllItems(tasks,
+				new ParallelSeriesComputer.ItemFunction<int[], long[]>() {
+					@Override
+					public long[] compute(int[] orderings) {
+						return sumAccumulativeCounts(orderings[0], orderings[1], seed);
+					}
+				});
+		final double[] ret = new double[numSets];
+		for (final long[] sums : partialSums) {
+			for (int i = 0; i < numSets; i++) {
+				ret[i] += sums[i];
+			}
+		}
+		for (int i = 0; i < numSets; i++) {
+			ret[i] /= numOrderings;
+		}
+		return ret;
+	}
+
+	/**
+	 * Sums the accumulative counts of some random orders of the sets
+	 *
+	 * @param firstOrdering
+	 * @param lastOrdering
+	 *            exclusive
+	 * @param seed
+	 * @return
+	 */
+	private long[] sumAccumulativeCounts(int firstOrdering, int lastOrdering, long seed) {
+		final long[] sums = new long[numSets];
+		// the ordering in which each id was last seen
+		final int[] seenIn = new int[numKeys];
+		final int[] order = new int[numSets];
+		for (int ordering = firstOrdering; ordering < lastOrdering; ordering++) {
+			DatasetFactory.checkCancelled();
+			shuffle(order, ordering, seed);
+			final int mark = ordering + 1;
+			int union = 0;
+			for (int i = 0; i < numSets; i++) {
+				for (final int id : keyIds[order[i]]) {
+					if (seenIn[id] != mark) {
+						seenIn[id] = mark;
+						union++;
+					}
+				}
+				sums[i] += union;
+			}
+		}
+		return sums;
+	}
+
+	/**
+	 * Fills the array with a random order of its indexes.<br>
+	 * Each ordering has its own {@link Random}, so that it is the same in any
+	 * task. Its seed is mixed with the SplitMix64 function, because the
+	 * {@link Random}s created with consecutive seeds give correlated first
+	 * values, and then some sets would be always in the same position.
+	 *
+	 * @param order
+	 * @param ordering
+	 *            the number of the ordering
+	 * @param seed
+	 */
+	static void shuffle(int[] order, int ordering, long seed) {
+		final Random random = new Random(mix64(seed + ordering * 0x9E3779B97F4A7C15L));
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		for (int i = order.length - 1; i > 0; i--) {
+			final int j = random.nextInt(i + 1);
+			final int tmp = order[i];
+			order[i] = order[j];
+			order[j] = tmp;
+		}
+	}
+
+	private static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
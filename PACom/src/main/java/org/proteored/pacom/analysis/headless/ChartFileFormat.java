@@ -0,0 +1,75 @@
+package org.proteored.pacom.analysis.headless;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+
+import org.jfree.chart.ChartUtils;
+import org.jfree.chart.JFreeChart;
+import org.jfree.graphics2d.svg.SVGGraphics2D;
+import org.jfree.graphics2d.svg.SVGUtils;
+
+import com.orsonpdf.PDFDocument;
+import com.orsonpdf.PDFGraphics2D;
+import com.orsonpdf.Page;
+
+/**
+ * Formats in which the {@link HeadlessRunner} writes the charts. The charts are
+ * drawn directly from the {@link JFreeChart}, so no window or screen is needed.
+ *
+ * @author Salva
+ *
+ */
+public enum ChartFileFormat {
+	PNG("png"), SVG("svg"), PDF("pdf");
+	private final String extension;
+
+	private ChartFileFormat(String extension) {
+		this.extension = extension;
+	}
+
+	public String getExtension() {
+		return extension;
+	}
+
+	public static ChartFileFormat getFromExtension(String ext) {
+		for (final ChartFileFormat format : ChartFileFormat.values()) {
+			if (format.getExtension().equalsIgnoreCase(ext)) {
+				return format;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Writes the chart into a file
+	 *
+	 * @param chart
+	 * @param file
+	 * @param width
+	 * @param height
+	 * @throws IOException
+	 */
+	public void write(JFreeChart chart, File file, int width, int height) throws IOException {
+		switch (this) {
+		case PNG:
+			ChartUtils.saveChartAsPNG(file, chart, width, height);
+			break;
+		case SVG:
+			final SVGGraphics2D svg = new SVGGraphics2D(width, height);
+			chart.draw(svg, new Rectangle(0, 0, width, height));
+			SVGUtils.writeToSVG(file, svg.getSVGElement());
+			break;
+		case PDF:
+			final PDFDocument pdf = new PDFDocument();
+			pdf.setTitle(chart.getTitle() != null ? chart.getTitle().getText() : file.getName());
+			final Page page = pdf.createPage(new Rectangle(width, height));
+			final PDFGraphics2D graphics = page.getGraphics2D();
+			chart.draw(graphics, new Rectangle(0, 0, width, height));
+			pdf.writeToFile(file);
+			break;
+		default:
+			break;
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package org.proteored.pacom.analysis.headless;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.data.category.CategoryDataset;
+import org.jfree.data.category.DefaultCategoryDataset;
+import org.jfree.data.statistics.HistogramDataset;
+import org.proteored.miapeapi.exceptions.IllegalMiapeArgumentException;
+import org.proteored.miapeapi.experiment.model.Experiment;
+import org.proteored.miapeapi.experiment.model.ExperimentList;
+import org.proteored.miapeapi.experiment.model.IdentificationItemEnum;
+import org.proteored.miapeapi.experiment.model.IdentificationSet;
+import org.proteored.miapeapi.experiment.model.Replicate;
+import org.proteored.pacom.analysis.charts.BarChart;
+import org.proteored.pacom.analysis.charts.CombinedChart;
+import org.proteored.pacom.analysis.charts.HistogramChart;
+import org.proteored.pacom.analysis.gui.ChartManagerFrame;
+import org.proteored.pacom.analysis.gui.ChartType;
+import org.proteored.pacom.analysis.gui.tasks.DatasetFactory;
+import org.proteored.pacom.analysis.util.DataLevel;
+
+/**
+ * Creates the charts of the {@link HeadlessRunner} from the
+ * {@link DatasetFactory} datasets, as the
+ * {@link org.proteored.pacom.analysis.gui.tasks.ChartCreatorTask} does, but
+ * taking the options from the {@link HeadlessOptions} instead of from the
+ * {@link ChartManagerFrame}.<br>
+ * It only creates the {@link JFreeChart}s, which are not shown, so it can be
+ * used from any thread and with no screen.
+ *
+ * @author Salva
+ *
+ */
+public class HeadlessChartFactory {
+	public static final List<ChartType> SUPPORTED_CHART_TYPES = Collections.unmodifiableList(Arrays.asList(
+			ChartType.PROTEIN_NUMBER_HISTOGRAM, ChartType.PEPTIDE_NUMBER_HISTOGRAM,
+			ChartType.PROTEIN_SCORE_DISTRIBUTION, ChartType.PEPTIDE_SCORE_DISTRIBUTION,
+			ChartType.PEPTIDE_MASS_DISTRIBUTION, ChartType.PEPTIDE_LENGTH_DISTRIBUTION,
+			ChartType.PEPTIDE_CHARGE_HISTOGRAM, ChartType.PEPTIDE_RT, ChartType.MISSEDCLEAVAGE_DISTRIBUTION,
+			ChartType.PROTEIN_GROUP_TYPES, ChartType.EXCLUSIVE_PROTEIN_NUMBER, ChartType.EXCLUSIVE_PEPTIDE_NUMBER));
+	private final ExperimentList experimentList;
+	private final HeadlessOptions options;
+	private final boolean countNonConclusiveProteins = true;
+
+	public HeadlessChartFactory(ExperimentList experimentList, HeadlessOptions options) {
+		this.experimentList = experimentList;
+		this.options = options;
+	}
+
+	/**
+	 * The {@link IdentificationSet}s that are the series of the charts, at the
+	 * level of the options
+	 *
+	 * @return
+	 */
+	public List<IdentificationSet> getIdentificationSets() {
+		final List<IdentificationSet> idSets = new ArrayList<IdentificationSet>();
+		if (DataLevel.LEVEL0 == options.getDataLevel()) {
+			idSets.add(experimentList);
+		} else {
+			for (final Experiment experiment : experimentList.getExperiments()) {
+				if (DataLevel.LEVEL1 == options.getDataLevel()) {
+					idSets.add(experiment);
+				} else {
+					for (final Replicate replicate : experiment.getNextLevelIdentificationSetList()) {
+						idSets.add(replicate);
+					}
+				}
+			}
+		}
+		return idSets;
+	}
+
+	/**
+	 * The equivalent option of the {@link ChartManagerFrame}, shown as subtitle
+	 *
+	 * @return
+	 */
+	private String getSubtitle() {
+		switch (options.getDataLevel()) {
+		case LEVEL0:
+			return ChartManagerFrame.ONE_SERIES_PER_EXPERIMENT_LIST;
+		case LEVEL2:
+			return ChartManagerFrame.ONE_SERIES_PER_REPLICATE;
+		default:
+			return ChartManagerFrame.ONE_SERIES_PER_EXPERIMENT;
+		}
+	}
+
+	private String getXAxisLabel() {
+		switch (options.getDataLevel()) {
+		case LEVEL0:
+			return "experiment list";
+		case LEVEL2:
+			return "level 2";
+		default:
+			return "experiment";
+		}
+	}
+
+	/**
+	 *
+	 * @param chartType
+	 * @return
+	 * @throws IllegalMiapeArgumentException
+	 *             if the chart cannot be created with the data and the options
+	 */
+	public JFreeChart createChart(ChartType chartType) {
+		final List<IdentificationSet> idSets = getIdentificationSets();
+		final String title = chartType.getName();
+		final String subtitle = getSubtitle();
+		final PlotOrientation plotOrientation = PlotOrientation.VERTICAL;
+		switch (chartType) {
+		case PROTEIN_NUMBER_HISTOGRAM:
+		case PEPTIDE_NUMBER_HISTOGRAM: {
+			final boolean isPeptide = ChartType.PEPTIDE_NUMBER_HISTOGRAM == chartType;
+			final IdentificationItemEnum plotItem = isPeptide ? IdentificationItemEnum.PEPTIDE
+					: IdentificationItemEnum.PROTEIN;
+			final CategoryDataset dataset = DatasetFactory.createNumberIdentificationCategoryDataSet(idSets,
+					plotItem, options.isDistinguishModifiedPeptides(), false, true, countNonConclusiveProteins);
+			return new BarChart(isPeptide ? "Number of peptides" : "Number of proteins", subtitle,
+					getXAxisLabel(), isPeptide ? "# different peptides" : "# different proteins", dataset,
+					plotOrientation).getChart();
+		}
+		case PROTEIN_SCORE_DISTRIBUTION:
+		case PEPTIDE_SCORE_DISTRIBUTION: {
+			final boolean isPeptide = ChartType.PEPTIDE_SCORE_DISTRIBUTION == chartType;
+			final IdentificationItemEnum plotItem = isPeptide ? IdentificationItemEnum.PEPTIDE
+					: IdentificationItemEnum.PROTEIN;
+			final String scoreName = getScoreName(isPeptide);
+			final HistogramDataset dataset = DatasetFactory.createScoreHistogramDataSet(idSets, scoreName,
+					plotItem, options.getBins(), false, options.getHistogramType(), false, false,
+					countNonConclusiveProteins);
+			return new HistogramChart(title, subtitle, dataset, scoreName, isPeptide ? "peptides" : "protein")
+					.getChart();
+		}
+		case PEPTIDE_MASS_DISTRIBUTION: {
+			final HistogramDataset dataset = DatasetFactory.createPeptideMassHistogramDataSet(idSets,
+					options.getBins(), options.getHistogramType(), false);
+			return new HistogramChart(title, subtitle, dataset, "Da", "PSMs").getChart();
+		}
+		case PEPTIDE_LENGTH_DISTRIBUTION: {
+			final CategoryDataset dataset = DatasetFactory.createPeptideLengthHistogramDataSet(idSets,
+					options.getMinimumOccurrence(), options.getMaximumOccurrence());
+			return new BarChart(title, subtitle, "Peptide length", "# PSMs", dataset, plotOrientation).getChart();
+		}
+		case PEPTIDE_CHARGE_HISTOGRAM: {
+			final CategoryDataset dataset = DatasetFactory.createPeptideChargeHistogramDataSet(idSets);
+			return new BarChart(title, subtitle, getXAxisLabel(), "# PSMs", dataset, plotOrientation).getChart();
+		}
+		case PEPTIDE_RT: {
+			final HistogramDataset dataset = DatasetFactory.createPeptideRTHistogramDataSet(idSets,
+					options.getBins(), options.getHistogramType(), true);
+			return new HistogramChart(title, subtitle, dataset, "RT (min)", "PSMs").getChart();
+		}
+		case MISSEDCLEAVAGE_DISTRIBUTION: {
+			final CategoryDataset dataset = DatasetFactory.createMissedCleavagesDistributionCategoryDataSet(idSets,
+					options.getCleavageAminoacids(), options.getMaximumOccurrence());
+			return new BarChart(title, subtitle, "# missedcleavages sites", "# PSMs", dataset, plotOrientation)
+					.getChart();
+		}
+		case PROTEIN_GROUP_TYPES: {
+			final CategoryDataset dataset = DatasetFactory.createProteinGroupTypesDistributionCategoryDataSet(idSets);
+			return new BarChart(title, subtitle, "Protein Group Type", "# proteinGroups", dataset, plotOrientation)
+					.getChart();
+		}
+		case EXCLUSIVE_PROTEIN_NUMBER:
+		case EXCLUSIVE_PEPTIDE_NUMBER: {
+			final boolean isPeptide = ChartType.EXCLUSIVE_PEPTIDE_NUMBER == chartType;
+			List<DefaultCategoryDataset> datasets = null;
+			if (isPeptide) {
+				datasets = DatasetFactory.createExclusiveNumberIdentificationCategoryDataSetForPeptides(idSets,
+						options.isDistinguishModifiedPeptides(), true);
+			} else {
+				datasets = DatasetFactory.createExclusiveNumberIdentificationCategoryDataSetForProteins(idSets,
+						options.getComparisonType(), true);
+			}
+			final String item = isPeptide ? "peptides" : "proteins";
+			return new CombinedChart(title, subtitle, "", "# " + item, "Accumulative # " + item, datasets.get(0),
+					datasets.get(1)).getChart();
+		}
+		default:
+			throw new IllegalMiapeArgumentException(
+					"Chart type '" + chartType.getName() + "' is not supported without GUI");
+		}
+	}
+
+	/**
+	 * Gets the score of the options or, if not provided, the first score of
+	 * the data
+	 *
+	 * @param isPeptide
+	 * @return
+	 */
+	private String getScoreName(boolean isPeptide) {
+		String scoreName = isPeptide ? options.getPeptideScoreName() : options.getProteinScoreName();
+		if (scoreName == null) {
+			final List<String> scoreNames = isPeptide ? experimentList.getPeptideScoreNames()
+					: experimentList.getProteinScoreNames();
+			if (scoreNames != null && !scoreNames.isEmpty()) {
+				scoreName = scoreNames.get(0);
+			}
+		}
+		if (scoreName == null) {
+			throw new IllegalMiapeArgumentException(
+					"There is not a " + (isPeptide ? "peptide" : "protein") + " score available");
+		}
+		return scoreName;
+	}
+}
@@ -0,0 +1,443 @@
+package org.proteored.pacom.analysis.headless;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jfree.data.statistics.HistogramType;
+import org.proteored.miapeapi.exceptions.IllegalMiapeArgumentException;
+import org.proteored.miapeapi.experiment.model.IdentificationItemEnum;
+import org.proteored.miapeapi.experiment.model.sort.ProteinGroupComparisonType;
+import org.proteored.pacom.analysis.charts.ChartProperties;
+import org.proteored.pacom.analysis.gui.ChartType;
+import org.proteored.pacom.analysis.util.DataLevel;
+import org.proteored.pacom.analysis.util.FileManager;
+
+/**
+ * Options of the {@link HeadlessRunner}, parsed from the command line.<br>
+ * The arguments are pairs like <code>-name value</code>, where the lists of
+ * values are separated by commas, and flags like <code>-name</code>. See
+ * {@link #getUsage()}.
+ *
+ * @author Salva
+ *
+ */
+public class HeadlessOptions {
+	private final List<File> projectFiles = new ArrayList<File>();
+	private File outputFolder = new File(".");
+	private final List<ChartType> chartTypes = new ArrayList<ChartType>();
+	private final List<ChartFileFormat> formats = new ArrayList<ChartFileFormat>();
+	private final List<IdentificationItemEnum> tables = new ArrayList<IdentificationItemEnum>();
+	private DataLevel dataLevel = DataLevel.LEVEL1;
+	private int width = ChartProperties.DEFAULT_CHART_WIDTH;
+	private int height = ChartProperties.DEFAULT_CHART_HEIGHT;
+	// data loading
+	private Integer minPeptideLength;
+	private boolean groupingAtExperimentListLevel = false;
+	private boolean annotateProteinsInUniprot = false;
+	private boolean doNotGroupNonConclusiveProteins = false;
+	private boolean separateNonConclusiveProteins = false;
+	// filters
+	private Float fdrThreshold;
+	private String fdrScoreName;
+	private String decoyPrefix;
+	private boolean concatenatedDecoyDB = false;
+	private IdentificationItemEnum fdrItem = IdentificationItemEnum.PEPTIDE;
+	private Integer minLength;
+	private Integer maxLength;
+	private Integer minPeptidesPerProtein;
+	// charts
+	private boolean distinguishModifiedPeptides = false;
+	private boolean includeDecoyHits = false;
+	private ProteinGroupComparisonType comparisonType = ProteinGroupComparisonType.BEST_PROTEIN;
+	private String peptideScoreName;
+	private String proteinScoreName;
+	private int bins = 30;
+	private HistogramType histogramType = HistogramType.FREQUENCY;
+	private int minimumOccurrence = 6;
+	private int maximumOccurrence = 30;
+	private String cleavageAminoacids = "KR";
+
+	public static String getUsage() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("Usage: HeadlessRunner -project name_or_xml[,name_or_xml...] [options]\n");
+		sb.append("  -project      comparison projects: names in the projects folder or paths to their XML files\n");
+		sb.append("  -out          output folder (default: current folder)\n");
+		sb.append("  -charts       chart types: " + getChartTypeNames() + "\n");
+		sb.append("  -formats      chart formats: png,svg,pdf (default: png)\n");
+		sb.append("  -tables       TSV tables: protein,peptide\n");
+		sb.append("  -level        LEVEL0 (one series), LEVEL1 (per level 1, default) or LEVEL2 (per level 2)\n");
+		sb.append("  -width, -height  size of the charts\n");
+		sb.append("  -minPeptideLength n, -groupAtExperimentListLevel, -annotateProteins,\n");
+		sb.append("  -doNotGroupNonConclusiveProteins, -separateNonConclusiveProteins\n");
+		sb.append("  -fdr threshold -fdrScore score -decoyPrefix prefix [-fdrLevel PSM|PEPTIDE|PROTEIN]");
+		sb.append(" [-concatenatedDecoyDB]\n");
+		sb.append("  -peptideLength min-max, -minPeptidesPerProtein n\n");
+		sb.append("  -distinguishModifiedPeptides, -includeDecoyHits, -comparisonType " + getComparisonTypeNames()
+				+ "\n");
+		sb.append("  -peptideScore score, -proteinScore score, -bins n,");
+		sb.append(" -histogramType FREQUENCY|RELATIVE_FREQUENCY|SCALE_AREA_TO_1\n");
+		sb.append("  -minimum n, -maximum n (peptide lengths, missed cleavages), -cleavageAminoacids KR\n");
+		return sb.toString();
+	}
+
+	private static String getChartTypeNames() {
+		final StringBuilder sb = new StringBuilder();
+		for (final ChartType chartType : HeadlessChartFactory.SUPPORTED_CHART_TYPES) {
+			if (sb.length() > 0) {
+				sb.append(",");
+			}
+			sb.append(chartType.name());
+		}
+		return sb.toString();
+	}
+
+	private static String getComparisonTypeNames() {
+		final StringBuilder sb = new StringBuilder();
+		for (final ProteinGroupComparisonType type : ProteinGroupComparisonType.values()) {
+			if (sb.length() > 0) {
+				sb.append("|");
+			}
+			sb.append(type.name());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 *
+	 * @param args
+	 * @return
+	 * @throws IllegalMiapeArgumentException
+	 *             if some argument is not valid
+	 */
+	public static HeadlessOptions parse(String[] args) {
+		final HeadlessOptions ret = new HeadlessOptions();
+		int i = 0;
+		while (i < args.length) {
+			final String name = args[i++];
+			if (!name.startsWith("-")) {
+				throw new IllegalMiapeArgumentException("Argument '" + name + "' is not an option");
+			}
+			// flags
+			if ("-groupAtExperimentListLevel".equals(name)) {
+				ret.groupingAtExperimentListLevel = true;
+			} else if ("-annotateProteins".equals(name)) {
+				ret.annotateProteinsInUniprot = true;
+			} else if ("-doNotGroupNonConclusiveProteins".equals(name)) {
+				ret.doNotGroupNonConclusiveProteins = true;
+			} else if ("-separateNonConclusiveProteins".equals(name)) {
+				ret.separateNonConclusiveProteins = true;
+			} else if ("-concatenatedDecoyDB".equals(name)) {
+				ret.concatenatedDecoyDB = true;
+			} else if ("-distinguishModifiedPeptides".equals(name)) {
+				ret.distinguishModifiedPeptides = true;
+			} else if ("-includeDecoyHits".equals(name)) {
+				ret.includeDecoyHits = true;
+			} else {
+				// options with value
+				if (i == args.length) {
+					throw new IllegalMiapeArgumentException("Option '" + name + "' requires a value");
+				}
+				ret.setOption(name, args[i++]);
+			}
+		}
+		ret.validate();
+		return ret;
+	}
+
+	private void setOption(String name, String value) {
+		if ("-project".equals(name)) {
+			for (final String project : split(value)) {
+				projectFiles.add(getProjectFile(project));
+			}
+		} else if ("-out".equals(name)) {
+			outputFolder = new File(value);
+		} else if ("-charts".equals(name)) {
+			for (final String chartTypeName : split(value)) {
+				final ChartType chartType = getEnumValue(ChartType.class, chartTypeName, name);
+				if (!HeadlessChartFactory.SUPPORTED_CHART_TYPES.contains(chartType)) {
+					throw new IllegalMiapeArgumentException(
+							"Chart type '" + chartTypeName + "' is not supported without GUI");
+				}
+				chartTypes.add(chartType);
+			}
+		} else if ("-formats".equals(name)) {
+			for (final String ext : split(value)) {
+				final ChartFileFormat format = ChartFileFormat.getFromExtension(ext);
+				if (format == null) {
+					throw new IllegalMiapeArgumentException("Chart format '" + ext + "' is not supported");
+				}
+				formats.add(format);
+			}
+		} else if ("-tables".equals(name)) {
+			for (final String item : split(value)) {
+				final IdentificationItemEnum table = getEnumValue(IdentificationItemEnum.class, item, name);
+				if (table != IdentificationItemEnum.PROTEIN && table != IdentificationItemEnum.PEPTIDE) {
+					throw new IllegalMiapeArgumentException("Only protein and peptide tables can be exported");
+				}
+				tables.add(table);
+			}
+		} else if ("-level".equals(name)) {
+			dataLevel = getEnumValue(DataLevel.class, value, name);
+		} else if ("-width".equals(name)) {
+			width = getPositiveInteger(value, name);
+		} else if ("-height".equals(name)) {
+			height = getPositiveInteger(value, name);
+		} else if ("-threads".equals(name)) {
+			// the charts and tables share the IdentificationSets, so only one
+			// of them can be computed at a time (see ParallelSeriesComputer)
+			if (getPositiveInteger(value, name) > 1) {
+				throw new IllegalMiapeArgumentException("Option '" + name
+						+ "' is not supported: the charts and tables are created one by one, and the series of each chart are computed in parallel");
+			}
+		} else if ("-minPeptideLength".equals(name)) {
+			minPeptideLength = getPositiveInteger(value, name);
+		} else if ("-fdr".equals(name)) {
+			try {
+				fdrThreshold = Float.valueOf(value);
+			} catch (final NumberFormatException e) {
+				throw new IllegalMiapeArgumentException("Threshold value '" + value + "' is not a number");
+			}
+			if (fdrThreshold < 0 || fdrThreshold > 100) {
+				throw new IllegalMiapeArgumentException(
+						"Threshold value '" + value + "' is not valid. It has to be a number between 0.0 and 100");
+			}
+		} else if ("-fdrScore".equals(name)) {
+			fdrScoreName = value;
+		} else if ("-decoyPrefix".equals(name)) {
+			decoyPrefix = value;
+		} else if ("-fdrLevel".equals(name)) {
+			fdrItem = getEnumValue(IdentificationItemEnum.class, value, name);
+		} else if ("-peptideLength".equals(name)) {
+			final String[] split = value.split("-");
+			if (split.length != 2) {
+				throw new IllegalMiapeArgumentException("Peptide length range '" + value + "' is not like min-max");
+			}
+			minLength = getPositiveInteger(split[0], name);
+			maxLength = getPositiveInteger(split[1], name);
+			if (minLength > maxLength) {
+				throw new IllegalMiapeArgumentException("The minimum length cannot be higher than the maximum");
+			}
+		} else if ("-minPeptidesPerProtein".equals(name)) {
+			minPeptidesPerProtein = getPositiveInteger(value, name);
+		} else if ("-comparisonType".equals(name)) {
+			comparisonType = getEnumValue(ProteinGroupComparisonType.class, value, name);
+		} else if ("-peptideScore".equals(name)) {
+			peptideScoreName = value;
+		} else if ("-proteinScore".equals(name)) {
+			proteinScoreName = value;
+		} else if ("-bins".equals(name)) {
+			bins = getPositiveInteger(value, name);
+		} else if ("-histogramType".equals(name)) {
+			if ("FREQUENCY".equalsIgnoreCase(value)) {
+				histogramType = HistogramType.FREQUENCY;
+			} else if ("RELATIVE_FREQUENCY".equalsIgnoreCase(value)) {
+				histogramType = HistogramType.RELATIVE_FREQUENCY;
+			} else if ("SCALE_AREA_TO_1".equalsIgnoreCase(value)) {
+				histogramType = HistogramType.SCALE_AREA_TO_1;
+			} else {
+				throw new IllegalMiapeArgumentException("Histogram type '" + value + "' is not valid");
+			}
+		} else if ("-minimum".equals(name)) {
+			minimumOccurrence = getPositiveInteger(value, name);
+		} else if ("-maximum".equals(name)) {
+			maximumOccurrence = getPositiveInteger(value, name);
+		} else if ("-cleavageAminoacids".equals(name)) {
+			cleavageAminoacids = value;
+		} else {
+			throw new IllegalMiapeArgumentException("Option '" + name + "' is not valid");
+		}
+	}
+
+	private void validate() {
+		if (projectFiles.isEmpty()) {
+			throw new IllegalMiapeArgumentException("At least one project is required");
+		}
+		if (chartTypes.isEmpty() && tables.isEmpty()) {
+			throw new IllegalMiapeArgumentException("Nothing to do: no charts and no tables were requested");
+		}
+		if (formats.isEmpty()) {
+			formats.add(ChartFileFormat.PNG);
+		}
+		if (fdrThreshold != null && (fdrScoreName == null || decoyPrefix == null)) {
+			throw new IllegalMiapeArgumentException(
+					"The FDR filter requires the score to sort the items (-fdrScore) and the decoy prefix (-decoyPrefix)");
+		}
+		if (minimumOccurrence > maximumOccurrence) {
+			throw new IllegalMiapeArgumentException("The minimum cannot be higher than the maximum");
+		}
+	}
+
+	/**
+	 * Gets the XML file of a project, that can be the path to the file or the
+	 * name of a project in the projects folder
+	 *
+	 * @param project
+	 * @return
+	 */
+	private static File getProjectFile(String project) {
+		File file = new File(project);
+		if (!file.isFile()) {
+			file = new File(FileManager.getProjectXMLFilePath(project));
+		}
+		if (!file.isFile()) {
+			throw new IllegalMiapeArgumentException("Project '" + project + "' not found");
+		}
+		return file;
+	}
+
+	private static List<String> split(String value) {
+		final List<String> ret = new ArrayList<String>();
+		for (final String token : value.split(",")) {
+			if (!"".equals(token.trim())) {
+				ret.add(token.trim());
+			}
+		}
+		return ret;
+	}
+
+	private static int getPositiveInteger(String value, String name) {
+		try {
+			final int ret = Integer.valueOf(value.trim());
+			if (ret > 0) {
+				return ret;
+			}
+		} catch (final NumberFormatException e) {
+		}
+		throw new IllegalMiapeArgumentException("Value '" + value + "' of option '" + name
+				+ "' is not a positive integer");
+	}
+
+	private static <E extends Enum<E>> E getEnumValue(Class<E> enumClass, String value, String name) {
+		for (final E enumValue : enumClass.getEnumConstants()) {
+			if (enumValue.name().equalsIgnoreCase(value)) {
+				return enumValue;
+			}
+		}
+		throw new IllegalMiapeArgumentException("Value '" + value + "' of option '" + name + "' is not valid");
+	}
+
+	public List<File> getProjectFiles() {
+		return projectFiles;
+	}
+
+	public File getOutputFolder() {
+		return outputFolder;
+	}
+
+	public List<ChartType> getChartTypes() {
+		return chartTypes;
+	}
+
+	public List<ChartFileFormat> getFormats() {
+		return formats;
+	}
+
+	public List<IdentificationItemEnum> getTables() {
+		return tables;
+	}
+
+	public DataLevel getDataLevel() {
+		return dataLevel;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public Integer getMinPeptideLength() {
+		return minPeptideLength;
+	}
+
+	public boolean isGroupingAtExperimentListLevel() {
+		return groupingAtExperimentListLevel;
+	}
+
+	public boolean isAnnotateProteinsInUniprot() {
+		return annotateProteinsInUniprot;
+	}
+
+	public boolean isDoNotGroupNonConclusiveProteins() {
+		return doNotGroupNonConclusiveProteins;
+	}
+
+	public boolean isSeparateNonConclusiveProteins() {
+		return separateNonConclusiveProteins;
+	}
+
+	public Float getFdrThreshold() {
+		return fdrThreshold;
+	}
+
+	public String getFdrScoreName() {
+		return fdrScoreName;
+	}
+
+	public String getDecoyPrefix() {
+		return decoyPrefix;
+	}
+
+	public boolean isConcatenatedDecoyDB() {
+		return concatenatedDecoyDB;
+	}
+
+	public IdentificationItemEnum getFdrItem() {
+		return fdrItem;
+	}
+
+	public Integer getMinLength() {
+		return minLength;
+	}
+
+	public Integer getMaxLength() {
+		return maxLength;
+	}
+
+	public Integer getMinPeptidesPerProtein() {
+		return minPeptidesPerProtein;
+	}
+
+	public boolean isDistinguishModifiedPeptides() {
+		return distinguishModifiedPeptides;
+	}
+
+	public boolean isIncludeDecoyHits() {
+		return includeDecoyHits;
+	}
+
+	public ProteinGroupComparisonType getComparisonType() {
+		return comparisonType;
+	}
+
+	public String getPeptideScoreName() {
+		return peptideScoreName;
+	}
+
+	public String getProteinScoreName() {
+		return proteinScoreName;
+	}
+
+	public int getBins() {
+		return bins;
+	}
+
+	public HistogramType getHistogramType() {
+		return histogramType;
+	}
+
+	public int getMinimumOccurrence() {
+		return minimumOccurrence;
+	}
+
+	public int getMaximumOccurrence() {
+		return maximumOccurrence;
+	}
+
+	public String getCleavageAminoacids() {
+		return cleavageAminoacids;
+	}
+}
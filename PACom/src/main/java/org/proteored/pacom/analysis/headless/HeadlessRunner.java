@@ -0,0 +1,283 @@
+package org.proteored.pacom.analysis.headless;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.log4j.Logger;
+import org.jfree.chart.JFreeChart;
+import org.proteored.miapeapi.exceptions.IllegalMiapeArgumentException;
+import org.proteored.miapeapi.experiment.model.Experiment;
+import org.proteored.miapeapi.experiment.model.ExperimentList;
+import org.proteored.miapeapi.experiment.model.IdentificationItemEnum;
+import org.proteored.miapeapi.experiment.model.IdentificationSet;
+import org.proteored.miapeapi.experiment.model.Replicate;
+import org.proteored.miapeapi.experiment.model.datamanager.DataManager;
+import org.proteored.miapeapi.experiment.model.filters.FDRFilter;
+import org.proteored.miapeapi.experiment.model.filters.Filter;
+import org.proteored.miapeapi.experiment.model.filters.PeptideLengthFilter;
+import org.proteored.miapeapi.experiment.model.filters.PeptideNumberFilter;
+import org.proteored.miapeapi.experiment.model.sort.ProteinGroupComparisonType;
+import org.proteored.miapeapi.experiment.model.sort.SortingManager;
+import org.proteored.miapeapi.experiment.model.sort.SortingParameters;
+import org.proteored.pacom.analysis.conf.ExperimentListAdapter;
+import org.proteored.pacom.analysis.exporters.ExporterManager;
+import org.proteored.pacom.analysis.exporters.tasks.TSVExporter;
+import org.proteored.pacom.analysis.gui.ChartType;
+import org.proteored.pacom.analysis.gui.tasks.FilterTask;
+import org.proteored.pacom.analysis.util.DataLevel;
+import org.proteored.pacom.analysis.util.ProteinAnnotationService;
+import org.proteored.pacom.gui.tasks.OntologyLoaderTask;
+import org.proteored.pacom.utils.PACOMSoftware;
+
+/**
+ * Creates the charts and the TSV tables of comparison projects from the
+ * command line, with no GUI, so that they can be generated in batch in servers
+ * without screen.<br>
+ * For each project, the data is loaded and filtered as in the
+ * {@link org.proteored.pacom.analysis.gui.ChartManagerFrame}, and then the
+ * charts and the tables are created one by one, because they share the same
+ * {@link IdentificationSet}s. The series of each chart are computed in
+ * parallel by the {@link org.proteored.pacom.analysis.gui.tasks.DatasetFactory},
+ * under the rules of the
+ * {@link org.proteored.pacom.analysis.gui.tasks.ParallelSeriesComputer}. The charts
+ * are written in PNG, SVG or PDF, and the tables by the {@link TSVExporter},
+ * in a folder per project.<br>
+ * An error in a chart or in a table is logged and doesn't stop the rest.
+ *
+ * @author Salva
+ *
+ */
+public class HeadlessRunner {
+	private static final Logger log = Logger.getLogger("log4j.logger.org.proteored");
+	private final HeadlessOptions options;
+
+	public HeadlessRunner(HeadlessOptions options) {
+		this.options = options;
+	}
+
+	public static void main(String[] args) {
+		// so that no window is ever created
+		System.setProperty("java.awt.headless", "true");
+		HeadlessOptions options = null;
+		try {
+			options = HeadlessOptions.parse(args);
+		} catch (final IllegalMiapeArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(HeadlessOptions.getUsage());
+			System.exit(1);
+		}
+		final int errors = new HeadlessRunner(options).run();
+		System.exit(errors == 0 ? 0 : 2);
+	}
+
+	/**
+	 * Processes all the projects of the options
+	 *
+	 * @return the number of charts, tables or projects that failed
+	 */
+	public int run() {
+		int errors = 0;
+		for (final File projectFile : options.getProjectFiles()) {
+			try {
+				errors += runProject(projectFile);
+			} catch (final Exception e) {
+				e.printStackTrace();
+				log.error("Error processing project " + projectFile.getAbsolutePath() + ": " + e.getMessage());
+				errors++;
+			}
+		}
+		log.info("Headless run finished with " + errors + " errors");
+		return errors;
+	}
+
+	private int runProject(File projectFile) {
+		final String projectName = FilenameUtils.getBaseName(projectFile.getName());
+		final long t1 = System.currentTimeMillis();
+		log.info("Loading project " + projectName + " from " + projectFile.getAbsolutePath());
+		DataManager.clearStaticInfo();
+		final ExperimentList experimentList = new ExperimentListAdapter(projectFile, options.getMinPeptideLength(),
+				options.isGroupingAtExperimentListLevel(), null, true, options.isAnnotateProteinsInUniprot(),
+				options.isDoNotGroupNonConclusiveProteins(), options.isSeparateNonConclusiveProteins()).adapt();
+		if (options.isAnnotateProteinsInUniprot()) {
+			ProteinAnnotationService.getInstance().getAnnotations(
+					ProteinAnnotationService.getUniprotAccessions(Collections.singletonList(experimentList)));
+		}
+		final List<Filter> filters = getFilters(experimentList);
+		if (!filters.isEmpty()) {
+			log.info("Applying " + filters.size() + " filters");
+			FilterTask.applyFilters(filters, experimentList, DataLevel.LEVEL2 == options.getDataLevel());
+		}
+		final File outputFolder = new File(options.getOutputFolder(), projectName);
+		if (!outputFolder.isDirectory() && !outputFolder.mkdirs()) {
+			throw new IllegalMiapeArgumentException("Output folder " + outputFolder.getAbsolutePath()
+					+ " cannot be created");
+		}
+
+		final HeadlessChartFactory chartFactory = new HeadlessChartFactory(experimentList, options);
+		final List<Callable<String>> tasks = new ArrayList<Callable<String>>();
+		for (final ChartType chartType : options.getChartTypes()) {
+			tasks.add(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return writeChart(chartFactory.createChart(chartType), outputFolder,
+							projectName + "_" + chartType.name());
+				}
+			});
+		}
+		for (final IdentificationItemEnum table : options.getTables()) {
+			tasks.add(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return writeTable(table, chartFactory.getIdentificationSets(), new File(outputFolder,
+							projectName + "_" + table.name().toLowerCase() + "s.tsv"));
+				}
+			});
+		}
+
+		int errors = 0;
+		for (final Callable<String> task : tasks) {
+			try {
+				log.info(task.call());
+			} catch (final Exception e) {
+				e.printStackTrace();
+				log.error("Error in project " + projectName + ": " + e.getMessage());
+				errors++;
+			}
+		}
+		log.info("Project " + projectName + " processed in " + (System.currentTimeMillis() - t1) + " ms");
+		return errors;
+	}
+
+	/**
+	 * Writes the chart in all the formats of the options
+	 *
+	 * @param chart
+	 * @param outputFolder
+	 * @param fileName
+	 *            without extension
+	 * @return a message with the written files
+	 * @throws IOException
+	 */
+	private String writeChart(JFreeChart chart, File outputFolder, String fileName) throws IOException {
+		final StringBuilder sb = new StringBuilder("Chart written in:");
+		for (final ChartFileFormat format : options.getFormats()) {
+			final File file = new File(outputFolder, fileName + "." + format.getExtension());
+			format.write(chart, file, options.getWidth(), options.getHeight());
+			sb.append(" " + file.getAbsolutePath());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Exports the proteins or the peptides of the {@link IdentificationSet}s
+	 * with the {@link TSVExporter}, in the current thread
+	 *
+	 * @param table
+	 * @param idSets
+	 * @param file
+	 * @return a message with the written file
+	 */
+	private String writeTable(final IdentificationItemEnum table, List<IdentificationSet> idSets, File file) {
+		final ExporterManager exporterManager = new ExporterManager() {
+
+			@Override
+			public boolean isDecoyHitsIncluded() {
+				return options.isIncludeDecoyHits();
+			}
+
+			@Override
+			public boolean isFDRApplied() {
+				return options.getFdrThreshold() != null;
+			}
+
+			@Override
+			public boolean showPeptides() {
+				return IdentificationItemEnum.PEPTIDE == table;
+			}
+
+			@Override
+			public boolean showBestPeptides() {
+				return true;
+			}
+
+			@Override
+			public boolean showBestProteins() {
+				return true;
+			}
+
+			@Override
+			public boolean retrieveFromUniprotKB() {
+				return options.isAnnotateProteinsInUniprot();
+			}
+
+			@Override
+			public boolean showGeneInfo() {
+				return options.isAnnotateProteinsInUniprot();
+			}
+
+			@Override
+			public boolean isDistinguishModifiedPeptides() {
+				return options.isDistinguishModifiedPeptides();
+			}
+
+			@Override
+			public ProteinGroupComparisonType getComparisonType() {
+				return options.getComparisonType();
+			}
+
+			@Override
+			public DataLevel getDataLevel() {
+				return options.getDataLevel();
+			}
+		};
+		final TSVExporter exporter = new TSVExporter(exporterManager, idSets, file, null);
+		exporter.setDistinguisModificatedPeptides(options.isDistinguishModifiedPeptides());
+		exporter.export();
+		if (exporter.getError() != null) {
+			throw new IllegalMiapeArgumentException("Error exporting " + file.getName() + ": " + exporter.getError());
+		}
+		return "Table written in: " + file.getAbsolutePath();
+	}
+
+	/**
+	 * Creates the filters of the options, with an FDR filter per replicate as
+	 * the {@link org.proteored.pacom.analysis.gui.FiltersDialog}
+	 *
+	 * @param experimentList
+	 * @return
+	 */
+	private List<Filter> getFilters(ExperimentList experimentList) {
+		final List<Filter> ret = new ArrayList<Filter>();
+		if (options.getFdrThreshold() != null) {
+			final SortingParameters sortingParameters = SortingManager.getInstance(OntologyLoaderTask.getCvManager())
+					.getSortingParameters(options.getFdrScoreName());
+			if (sortingParameters == null) {
+				throw new IllegalMiapeArgumentException(
+						"There is not a definition of sorting parameters for the score " + options.getFdrScoreName());
+			}
+			for (final Experiment experiment : experimentList.getExperiments()) {
+				for (final Replicate replicate : experiment.getNextLevelIdentificationSetList()) {
+					ret.add(new FDRFilter(options.getFdrThreshold(), options.getDecoyPrefix(),
+							options.isConcatenatedDecoyDB(), sortingParameters, options.getFdrItem(),
+							experiment.getName(), replicate.getName(), options.isDoNotGroupNonConclusiveProteins(),
+							options.isSeparateNonConclusiveProteins(), PACOMSoftware.getInstance()));
+				}
+			}
+		}
+		if (options.getMinLength() != null) {
+			ret.add(new PeptideLengthFilter(options.getMinLength(), options.getMaxLength(),
+					options.isDoNotGroupNonConclusiveProteins(), options.isSeparateNonConclusiveProteins(),
+					PACOMSoftware.getInstance()));
+		}
+		if (options.getMinPeptidesPerProtein() != null) {
+			ret.add(new PeptideNumberFilter(options.getMinPeptidesPerProtein(),
+					options.isDistinguishModifiedPeptides(), PACOMSoftware.getInstance()));
+		}
+		return ret;
+	}
+}
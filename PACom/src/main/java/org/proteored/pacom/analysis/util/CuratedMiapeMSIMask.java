@@ -0,0 +1,514 @@
+package org.proteored.pacom.analysis.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.proteored.miapeapi.interfaces.msi.IdentifiedPeptide;
+import org.proteored.miapeapi.interfaces.msi.IdentifiedProtein;
+import org.proteored.miapeapi.interfaces.msi.IdentifiedProteinSet;
+import org.proteored.miapeapi.interfaces.msi.MiapeMSIDocument;
+
+import edu.scripps.yates.utilities.files.FileUtils;
+import gnu.trove.map.hash.THashMap;
+import gnu.trove.set.hash.THashSet;
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * Compact version of a curated MIAPE MSI document. Instead of writing the
+ * whole filtered document in a new XML file, only the reference to the
+ * original MIAPE MSI XML file and the identifiers of the proteins and peptides
+ * that passed the filters are stored in the file
+ * APP_FOLDER/user_data/curated_exps/curated_exp_name/fileName.mask.<br>
+ * When the curated experiment is loaded, the original document is read (from
+ * its snapshot if available) and the mask is applied over it, returning a
+ * view of the document in which only the proteins and peptides of the mask
+ * are present, also in the relations between them. The view is built the
+ * first time its proteins or peptides are requested.<br>
+ * The path of the original file is stored relative to the user data folder
+ * (APP_FOLDER/user_data/), so that the mask is still valid when the
+ * application folder is moved, and it is resolved again against the current
+ * user data folder when the mask is loaded.<br>
+ * The mask is only valid while the original file is not modified, so the size
+ * and the last modification time of the original file are stored in the mask
+ * to detect it.
+ *
+ * @author Salva
+ *
+ */
+public class CuratedMiapeMSIMask {
+	private static final Logger log = Logger.getLogger("log4j.logger.org.proteored");
+	public static final String MASK_EXTENSION = ".mask";
+	private static final int MAGIC_NUMBER = 0x4D534B31; // "MSK1"
+	private static final int FORMAT_VERSION = 2;
+	// version 1 stored the absolute path of the original file and its length
+	private static final int FORMAT_VERSION_1 = 1;
+	private final File originalFile;
+	private final long originalFileLength;
+	private final long originalFileLastModified;
+	private final TIntHashSet proteinIds;
+	private final TIntHashSet peptideIds;
+
+	private CuratedMiapeMSIMask(File originalFile, long originalFileLength, long originalFileLastModified,
+			TIntHashSet proteinIds, TIntHashSet peptideIds) {
+		this.originalFile = originalFile;
+		this.originalFileLength = originalFileLength;
+		this.originalFileLastModified = originalFileLastModified;
+		this.proteinIds = proteinIds;
+		this.peptideIds = peptideIds;
+	}
+
+	/**
+	 * Saves the mask of a filtered MIAPE MSI document, with the identifiers of
+	 * its proteins and peptides, that have to be the same than in the
+	 * original document stored in the original file.
+	 *
+	 * @param maskFile
+	 * @param originalFile
+	 *            the MIAPE MSI XML file from which the filtered document has
+	 *            been created
+	 * @param filteredMiapeMSI
+	 * @return false if the mask cannot represent the filtered document
+	 *         (because the proteins or the peptides have not unique
+	 *         identifiers) or if there is any error writing it
+	 */
+	public static boolean save(File maskFile, File originalFile, MiapeMSIDocument filteredMiapeMSI) {
+		return save(maskFile, originalFile, filteredMiapeMSI, getUserDataFolder());
+	}
+
+	/**
+	 * Saves the mask of a filtered MIAPE MSI document, storing the path of the
+	 * original file relative to a base folder if it is inside of it, or its
+	 * absolute path otherwise
+	 *
+	 * @param maskFile
+	 * @param originalFile
+	 * @param filteredMiapeMSI
+	 * @param baseFolder
+	 * @return
+	 */
+	static boolean save(File maskFile, File originalFile, MiapeMSIDocument filteredMiapeMSI, File baseFolder) {
+		if (filteredMiapeMSI == null || !originalFile.exists()) {
+			return false;
+		}
+		final int[] proteinIds = getProteinIds(filteredMiapeMSI);
+		final int[] peptideIds = getPeptideIds(filteredMiapeMSI);
+		if (proteinIds == null || peptideIds == null) {
+			log.info("Mask of " + filteredMiapeMSI.getName()
+					+ " not supported: the identifiers of the proteins or peptides are not unique");
+			return false;
+		}
+		final File folder = maskFile.getAbsoluteFile().getParentFile();
+		if (!folder.exists() && !folder.mkdirs()) {
+			return false;
+		}
+		final File tmpFile = new File(folder, maskFile.getName() + ".tmp");
+		DataOutputStream dos = null;
+		boolean written = false;
+		try {
+			dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+			dos.writeInt(MAGIC_NUMBER);
+			dos.writeInt(FORMAT_VERSION);
+			final String relativePath = getRelativePath(originalFile, baseFolder);
+			dos.writeBoolean(relativePath != null);
+			dos.writeUTF(relativePath != null ? relativePath : originalFile.getAbsolutePath());
+			dos.writeLong(originalFile.length());
+			dos.writeLong(originalFile.lastModified());
+			writeIds(dos, proteinIds);
+			writeIds(dos, peptideIds);
+			written = true;
+		} catch (final IOException e) {
+			log.warn("Error writing mask " + maskFile.getAbsolutePath() + ": " + e.getMessage());
+		} finally {
+			if (dos != null) {
+				try {
+					dos.close();
+				} catch (final IOException e) {
+					written = false;
+				}
+			}
+		}
+		if (!written) {
+			tmpFile.delete();
+			return false;
+		}
+		if (maskFile.exists()) {
+			maskFile.delete();
+		}
+		if (!tmpFile.renameTo(maskFile)) {
+			tmpFile.delete();
+			return false;
+		}
+		log.info("Mask of " + originalFile.getAbsolutePath() + " with " + proteinIds.length + " proteins and "
+				+ peptideIds.length + " peptides saved at " + maskFile.getAbsolutePath() + " ("
+				+ FileUtils.getDescriptiveSizeFromBytes(maskFile.length()) + ")");
+		return true;
+	}
+
+	/**
+	 * Reads a mask file
+	 *
+	 * @param maskFile
+	 * @return
+	 * @throws IOException
+	 *             if the file cannot be read or it is not a valid mask file
+	 */
+	public static CuratedMiapeMSIMask load(File maskFile) throws IOException {
+		return load(maskFile, getUserDataFolder());
+	}
+
+	/**
+	 * Reads a mask file, resolving the relative path of the original file
+	 * against a base folder
+	 *
+	 * @param maskFile
+	 * @param baseFolder
+	 * @return
+	 * @throws IOException
+	 */
+	static CuratedMiapeMSIMask load(File maskFile, File baseFolder) throws IOException {
+		final DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(maskFile)));
+		try {
+			if (dis.readInt() != MAGIC_NUMBER) {
+				throw new IOException("Not valid mask file: " + maskFile.getAbsolutePath());
+			}
+			final int version = dis.readInt();
+			if (version != FORMAT_VERSION && version != FORMAT_VERSION_1) {
+				throw new IOException("Not valid mask file: " + maskFile.getAbsolutePath());
+			}
+			final boolean relative = version != FORMAT_VERSION_1 && dis.readBoolean();
+			final String path = dis.readUTF();
+			final File originalFile;
+			if (relative) {
+				if (baseFolder == null) {
+					throw new IOException("Error resolving the original file of mask " + maskFile.getAbsolutePath()
+							+ ": the user data folder is not available");
+				}
+				originalFile = new File(baseFolder, path);
+			} else {
+				originalFile = new File(path);
+			}
+			final long originalFileLength = dis.readLong();
+			// not available in version 1
+			final long originalFileLastModified = version != FORMAT_VERSION_1 ? dis.readLong() : -1;
+			final TIntHashSet proteinIds = readIds(dis);
+			final TIntHashSet peptideIds = readIds(dis);
+			return new CuratedMiapeMSIMask(originalFile, originalFileLength, originalFileLastModified, proteinIds,
+					peptideIds);
+		} finally {
+			dis.close();
+		}
+	}
+
+	private static File getUserDataFolder() {
+		final String userDataPath = FileManager.getUserDataPath();
+		if (userDataPath == null) {
+			return null;
+		}
+		return new File(userDataPath);
+	}
+
+	/**
+	 *
+	 * @param file
+	 * @param baseFolder
+	 * @return the path of the file relative to the base folder, with '/' as
+	 *         separator, or null if the file is not inside of the base folder
+	 */
+	private static String getRelativePath(File file, File baseFolder) {
+		if (baseFolder == null) {
+			return null;
+		}
+		final Path path = file.getAbsoluteFile().toPath().normalize();
+		final Path basePath = baseFolder.getAbsoluteFile().toPath().normalize();
+		if (!path.startsWith(basePath) || path.equals(basePath)) {
+			return null;
+		}
+		return basePath.relativize(path).toString().replace(File.separatorChar, '/');
+	}
+
+	/**
+	 *
+	 * @return the original MIAPE MSI XML file over which the mask is applied
+	 */
+	public File getOriginalFile() {
+		return originalFile;
+	}
+
+	/**
+	 *
+	 * @return true if the original file doesn't exist or it has changed since
+	 *         the mask was created, so that the mask cannot be applied to it
+	 */
+	public boolean isOriginalFileModified() {
+		if (!originalFile.exists() || originalFile.length() != originalFileLength) {
+			return true;
+		}
+		return originalFileLastModified != -1 && originalFile.lastModified() != originalFileLastModified;
+	}
+
+	public int getNumProteins() {
+		return proteinIds.size();
+	}
+
+	public int getNumPeptides() {
+		return peptideIds.size();
+	}
+
+	/**
+	 * Applies the mask over the original document, read from the original
+	 * file.
+	 *
+	 * @param originalMiapeMSI
+	 * @return a view of the original document with only the proteins and
+	 *         peptides of the mask
+	 */
+	public MiapeMSIDocument apply(MiapeMSIDocument originalMiapeMSI) {
+		return new MaskedView(originalMiapeMSI).getDocument();
+	}
+
+	private static int[] getProteinIds(MiapeMSIDocument miapeMSI) {
+		final TIntHashSet ids = new TIntHashSet();
+		final Set<IdentifiedProtein> proteins = new THashSet<IdentifiedProtein>();
+		final Set<IdentifiedProteinSet> proteinSets = miapeMSI.getIdentifiedProteinSets();
+		if (proteinSets != null) {
+			for (final IdentifiedProteinSet proteinSet : proteinSets) {
+				final Map<String, IdentifiedProtein> proteinMap = proteinSet.getIdentifiedProteins();
+				if (proteinMap != null) {
+					for (final IdentifiedProtein protein : proteinMap.values()) {
+						if (proteins.add(protein)) {
+							ids.add(protein.getId());
+						}
+					}
+				}
+			}
+		}
+		if (ids.size() != proteins.size()) {
+			return null;
+		}
+		return ids.toArray();
+	}
+
+	private static int[] getPeptideIds(MiapeMSIDocument miapeMSI) {
+		final TIntHashSet ids = new TIntHashSet();
+		final List<IdentifiedPeptide> peptides = miapeMSI.getIdentifiedPeptides();
+		if (peptides != null) {
+			for (final IdentifiedPeptide peptide : peptides) {
+				if (!ids.add(peptide.getId())) {
+					return null;
+				}
+			}
+		}
+		return ids.toArray();
+	}
+
+	private static void writeIds(DataOutputStream dos, int[] ids) throws IOException {
+		// sorted, so that the same mask always produces the same file
+		Arrays.sort(ids);
+		dos.writeInt(ids.length);
+		for (final int id : ids) {
+			dos.writeInt(id);
+		}
+	}
+
+	private static TIntHashSet readIds(DataInputStream dis) throws IOException {
+		final int size = dis.readInt();
+		final TIntHashSet ret = new TIntHashSet(size);
+		for (int i = 0; i < size; i++) {
+			ret.add(dis.readInt());
+		}
+		return ret;
+	}
+
+	/**
+	 * Wraps an object of the original document in a proxy that implements the
+	 * same interfaces, so that all the calls are forwarded to the original
+	 * object except the ones that return proteins or peptides, that are
+	 * masked.
+	 *
+	 * @param original
+	 * @param view
+	 * @return
+	 */
+	private static Object createProxy(Object original, MaskedView view) {
+		final Set<Class<?>> interfaces = new THashSet<Class<?>>();
+		Class<?> clazz = original.getClass();
+		while (clazz != null) {
+			interfaces.addAll(Arrays.asList(clazz.getInterfaces()));
+			clazz = clazz.getSuperclass();
+		}
+		return Proxy.newProxyInstance(original.getClass().getClassLoader(),
+				interfaces.toArray(new Class<?>[interfaces.size()]), new MaskedObjectHandler(original, view));
+	}
+
+	private class MaskedView {
+		private final MiapeMSIDocument originalMiapeMSI;
+		private final MiapeMSIDocument document;
+		// original objects to their masked versions
+		private Map<IdentifiedProtein, IdentifiedProtein> proteins;
+		private Map<IdentifiedPeptide, IdentifiedPeptide> peptides;
+		private List<IdentifiedPeptide> peptideList;
+		private Set<IdentifiedProteinSet> proteinSets;
+
+		private MaskedView(MiapeMSIDocument originalMiapeMSI) {
+			this.originalMiapeMSI = originalMiapeMSI;
+			document = (MiapeMSIDocument) createProxy(originalMiapeMSI, this);
+		}
+
+		private MiapeMSIDocument getDocument() {
+			return document;
+		}
+
+		private synchronized void build() {
+			if (peptides != null) {
+				return;
+			}
+			final long t1 = System.currentTimeMillis();
+			final Map<IdentifiedProtein, IdentifiedProtein> maskedProteins = new THashMap<IdentifiedProtein, IdentifiedProtein>();
+			final Set<IdentifiedProteinSet> maskedProteinSets = new THashSet<IdentifiedProteinSet>();
+			final Set<IdentifiedProteinSet> originalProteinSets = originalMiapeMSI.getIdentifiedProteinSets();
+			if (originalProteinSets != null) {
+				for (final IdentifiedProteinSet proteinSet : originalProteinSets) {
+					final Map<String, IdentifiedProtein> proteinMap = proteinSet.getIdentifiedProteins();
+					if (proteinMap != null) {
+						for (final IdentifiedProtein protein : proteinMap.values()) {
+							if (proteinIds.contains(protein.getId()) && !maskedProteins.containsKey(protein)) {
+								maskedProteins.put(protein, (IdentifiedProtein) createProxy(protein, this));
+							}
+						}
+					}
+					maskedProteinSets.add((IdentifiedProteinSet) createProxy(proteinSet, this));
+				}
+			}
+			final Map<IdentifiedPeptide, IdentifiedPeptide> maskedPeptides = new THashMap<IdentifiedPeptide, IdentifiedPeptide>();
+			final List<IdentifiedPeptide> maskedPeptideList = new ArrayList<IdentifiedPeptide>();
+			final List<IdentifiedPeptide> originalPeptides = originalMiapeMSI.getIdentifiedPeptides();
+			if (originalPeptides != null) {
+				for (final IdentifiedPeptide peptide : originalPeptides) {
+					if (peptideIds.contains(peptide.getId())) {
+						final IdentifiedPeptide maskedPeptide = (IdentifiedPeptide) createProxy(peptide, this);
+						maskedPeptides.put(peptide, maskedPeptide);
+						maskedPeptideList.add(maskedPeptide);
+					}
+				}
+			}
+			proteins = maskedProteins;
+			proteinSets = maskedProteinSets;
+			peptideList = maskedPeptideList;
+			peptides = maskedPeptides;
+			log.info("Mask applied to " + originalMiapeMSI.getName() + " in " + (System.currentTimeMillis() - t1)
+					+ " ms: " + maskedProteins.size() + " proteins and " + maskedPeptideList.size() + " peptides");
+		}
+
+		private List<IdentifiedPeptide> getPeptides() {
+			build();
+			return peptideList;
+		}
+
+		private Set<IdentifiedProteinSet> getProteinSets() {
+			build();
+			return proteinSets;
+		}
+
+		private Map<String, IdentifiedProtein> getProteins(IdentifiedProteinSet originalProteinSet) {
+			build();
+			final Map<String, IdentifiedProtein> ret = new THashMap<String, IdentifiedProtein>();
+			final Map<String, IdentifiedProtein> proteinMap = originalProteinSet.getIdentifiedProteins();
+			if (proteinMap != null) {
+				for (final Map.Entry<String, IdentifiedProtein> entry : proteinMap.entrySet()) {
+					final IdentifiedProtein maskedProtein = proteins.get(entry.getValue());
+					if (maskedProtein != null) {
+						ret.put(entry.getKey(), maskedProtein);
+					}
+				}
+			}
+			return ret;
+		}
+
+		private List<IdentifiedPeptide> getPeptides(IdentifiedProtein originalProtein) {
+			build();
+			return getMasked(originalProtein.getIdentifiedPeptides(), peptides);
+		}
+
+		private List<IdentifiedProtein> getProteins(IdentifiedPeptide originalPeptide) {
+			build();
+			return getMasked(originalPeptide.getIdentifiedProteins(), proteins);
+		}
+
+		private <T> List<T> getMasked(Collection<T> originals, Map<T, T> masked) {
+			final List<T> ret = new ArrayList<T>();
+			if (originals != null) {
+				for (final T original : originals) {
+					final T maskedObject = masked.get(original);
+					if (maskedObject != null) {
+						ret.add(maskedObject);
+					}
+				}
+			}
+			return ret;
+		}
+	}
+
+	private static class MaskedObjectHandler implements InvocationHandler {
+		private final Object original;
+		private final MaskedView view;
+
+		private MaskedObjectHandler(Object original, MaskedView view) {
+			this.original = original;
+			this.view = view;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			final String methodName = method.getName();
+			if (args == null || args.length == 0) {
+				if ("hashCode".equals(methodName)) {
+					return System.identityHashCode(proxy);
+				}
+				if ("getIdentifiedPeptides".equals(methodName)) {
+					if (original instanceof MiapeMSIDocument) {
+						return view.getPeptides();
+					}
+					if (original instanceof IdentifiedProtein) {
+						return view.getPeptides((IdentifiedProtein) original);
+					}
+				}
+				if ("getIdentifiedProteins".equals(methodName)) {
+					if (original instanceof IdentifiedProteinSet) {
+						return view.getProteins((IdentifiedProteinSet) original);
+					}
+					if (original instanceof IdentifiedPeptide) {
+						return view.getProteins((IdentifiedPeptide) original);
+					}
+				}
+				if ("getIdentifiedProteinSets".equals(methodName) && original instanceof MiapeMSIDocument) {
+					return view.getProteinSets();
+				}
+			} else if (args.length == 1 && "equals".equals(methodName)) {
+				return proxy == args[0];
+			}
+			try {
+				return method.invoke(original, args);
+			} catch (final InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
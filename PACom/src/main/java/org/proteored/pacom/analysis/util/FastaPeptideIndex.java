@@ -0,0 +1,547 @@
+package org.proteored.pacom.analysis.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.log4j.Logger;
+import org.proteored.miapeapi.exceptions.IllegalMiapeArgumentException;
+
+import com.compomics.dbtoolkit.io.implementations.FASTADBLoader;
+import com.compomics.util.protein.Protein;
+
+import gnu.trove.list.array.TByteArrayList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * Index of the protein sequences of a FASTA file to find the proteins
+ * containing a peptide.<br>
+ * The sequences are concatenated and a suffix array over them is built once
+ * per FASTA file and saved in APP_FOLDER/user_data/fasta_indexes/, where it is
+ * memory-mapped the next times the FASTA file is used. The index is only valid
+ * while the size and the last modification time of the FASTA file are the
+ * same as when the index was created.<br>
+ * The index doesn't depend on the digestion: all the occurrences of a peptide
+ * are found with a binary search over the suffix array, and then the ones that
+ * don't follow the {@link Digestion} (specificity and missed cleavages) are
+ * discarded.
+ *
+ * @author Salva
+ *
+ */
+public class FastaPeptideIndex {
+	private static final Logger log = Logger.getLogger("log4j.logger.org.proteored");
+	private static final String INDEX_EXTENSION = ".pidx";
+	private static final int MAGIC_NUMBER = 0x50494458; // "PIDX"
+	private static final int FORMAT_VERSION = 1;
+	// magic number, version, FASTA size and date, number of residues and
+	// proteins
+	private static final int HEADER_SIZE = 32;
+	// between the sequences of two proteins
+	private static final byte SEPARATOR = '*';
+
+	private final File fastaFile;
+	private final List<String> accessions;
+	// position of the first residue of each protein, plus the end of the last
+	// protein
+	private final int[] proteinStarts;
+	private final ByteBuffer residues;
+	private final IntBuffer suffixArray;
+
+	/**
+	 * How a protein is digested
+	 *
+	 * @author Salva
+	 *
+	 */
+	public static class Digestion {
+		public static final Digestion TRYPSIN = new Digestion("Fully tryptic", "KR", "", true, true, 2);
+		public static final Digestion SEMI_TRYPSIN = new Digestion("Semi tryptic", "KR", "", true, false, 2);
+		public static final Digestion NON_SPECIFIC = new Digestion("Non specific", "", "", true, false,
+				Integer.MAX_VALUE);
+		private final String name;
+		private final boolean[] cleavages = new boolean[256];
+		private final boolean[] restrictors = new boolean[256];
+		private final boolean specific;
+		private final boolean cTerm;
+		private final boolean fullySpecific;
+		private final int maxMissedCleavages;
+
+		/**
+		 *
+		 * @param name
+		 * @param cleavageResidues
+		 *            the residues where the enzyme cuts
+		 * @param restrictionResidues
+		 *            the residues that prevent the cut when they are on the
+		 *            other side of the cleavage site
+		 * @param cTerm
+		 *            true if the enzyme cuts after the cleavage residues,
+		 *            false if it cuts before them
+		 * @param fullySpecific
+		 *            true if both ends of the peptide have to be cleavage
+		 *            sites, false if only one of them (semi-specific). A
+		 *            digestion without cleavage residues is non-specific.
+		 * @param maxMissedCleavages
+		 */
+		public Digestion(String name, String cleavageResidues, String restrictionResidues, boolean cTerm,
+				boolean fullySpecific, int maxMissedCleavages) {
+			this.name = name;
+			specific = !"".equals(cleavageResidues);
+			for (final char c : cleavageResidues.toUpperCase(Locale.ENGLISH).toCharArray()) {
+				cleavages[c & 0xff] = true;
+			}
+			for (final char c : restrictionResidues.toUpperCase(Locale.ENGLISH).toCharArray()) {
+				restrictors[c & 0xff] = true;
+			}
+			this.cTerm = cTerm;
+			this.fullySpecific = fullySpecific;
+			this.maxMissedCleavages = maxMissedCleavages;
+		}
+
+		/**
+		 * @param before
+		 *            the residue before the cut
+		 * @param after
+		 *            the residue after the cut
+		 * @return true if the enzyme cuts between them
+		 */
+		private boolean cuts(byte before, byte after) {
+			if (cTerm) {
+				return cleavages[before & 0xff] && !restrictors[after & 0xff];
+			}
+			return cleavages[after & 0xff] && !restrictors[before & 0xff];
+		}
+
+		@Override
+		public String toString() {
+			if (!specific) {
+				return name;
+			}
+			return name + " (up to " + maxMissedCleavages + " missed cleavages)";
+		}
+	}
+
+	private FastaPeptideIndex(File fastaFile, List<String> accessions, int[] proteinStarts, ByteBuffer residues,
+			IntBuffer suffixArray) {
+		this.fastaFile = fastaFile;
+		this.accessions = accessions;
+		this.proteinStarts = proteinStarts;
+		this.residues = residues;
+		this.suffixArray = suffixArray;
+	}
+
+	/**
+	 * Gets the index of a FASTA file, building it if there is not a valid
+	 * index of the current version of the file
+	 *
+	 * @param fastaFile
+	 * @return
+	 * @throws IOException
+	 */
+	public static FastaPeptideIndex getIndex(File fastaFile) throws IOException {
+		final File indexFile = getIndexFile(fastaFile);
+		if (indexFile != null && indexFile.exists()) {
+			final FastaPeptideIndex index = load(fastaFile, indexFile);
+			if (index != null) {
+				log.info("FASTA index read from " + indexFile.getAbsolutePath());
+				return index;
+			}
+			log.info("FASTA index " + indexFile.getAbsolutePath() + " is outdated. Deleting it.");
+			indexFile.delete();
+		}
+		return build(fastaFile, indexFile);
+	}
+
+	private static File getIndexFile(File fastaFile) {
+		final File folder = FileManager.getFastaIndexesFolder();
+		if (folder == null) {
+			return null;
+		}
+		final String path = fastaFile.getAbsolutePath();
+		return new File(folder,
+				FilenameUtils.getBaseName(path) + "_" + Integer.toHexString(path.hashCode()) + INDEX_EXTENSION);
+	}
+
+	private static FastaPeptideIndex load(File fastaFile, File indexFile) {
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(indexFile, "r");
+			final FileChannel channel = raf.getChannel();
+			// the header is read, not mapped, so that an outdated index is not
+			// kept mapped and it can be deleted (in Windows, a mapped file
+			// cannot be deleted or replaced)
+			final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			while (header.hasRemaining() && channel.read(header) >= 0) {
+			}
+			header.flip();
+			if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC_NUMBER || header.getInt() != FORMAT_VERSION
+					|| header.getLong() != fastaFile.length() || header.getLong() != fastaFile.lastModified()) {
+				return null;
+			}
+			final int numResidues = header.getInt();
+			final int numProteins = header.getInt();
+			long offset = HEADER_SIZE;
+			final ByteBuffer residues = channel.map(MapMode.READ_ONLY, offset, numResidues);
+			offset += numResidues;
+			final IntBuffer suffixArray = channel.map(MapMode.READ_ONLY, offset, 4L * numResidues).asIntBuffer();
+			offset += 4L * numResidues;
+			final IntBuffer starts = channel.map(MapMode.READ_ONLY, offset, 4L * (numProteins + 1)).asIntBuffer();
+			offset += 4L * (numProteins + 1);
+			final int[] proteinStarts = new int[numProteins + 1];
+			starts.get(proteinStarts);
+			channel.position(offset);
+			final DataInputStream dis = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+			final List<String> accessions = new ArrayList<String>(numProteins);
+			for (int i = 0; i < numProteins; i++) {
+				accessions.add(dis.readUTF());
+			}
+			// the mapped buffers remain valid after closing the file
+			return new FastaPeptideIndex(fastaFile, accessions, proteinStarts, residues, suffixArray);
+		} catch (final IOException e) {
+			log.warn("Error reading FASTA index " + indexFile.getAbsolutePath() + ": " + e.getMessage());
+			return null;
+		} finally {
+			if (raf != null) {
+				try {
+					raf.close();
+				} catch (final IOException e) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * Builds the index of a FASTA file
+	 *
+	 * @param fastaFile
+	 * @param indexFile
+	 *            where the index is saved, or null to keep it just in memory
+	 * @return
+	 * @throws IOException
+	 */
+	static FastaPeptideIndex build(File fastaFile, File indexFile) throws IOException {
+		log.info("Building index of FASTA file " + fastaFile.getAbsolutePath());
+		final List<String> accessions = new ArrayList<String>();
+		final TIntArrayList starts = new TIntArrayList();
+		final TByteArrayList sequences = new TByteArrayList(1024 * 1024);
+		final FASTADBLoader fastaLoader = new FASTADBLoader();
+		try {
+			fastaLoader.load(fastaFile.getAbsolutePath());
+			Protein protein;
+			while ((protein = fastaLoader.nextProtein()) != null) {
+				final String sequence = protein.getSequence().getSequence().toUpperCase(Locale.ENGLISH);
+				if ((long) sequences.size() + sequence.length() + 1 > Integer.MAX_VALUE / 4) {
+					throw new IllegalMiapeArgumentException(
+							"The FASTA file " + fastaFile.getName() + " is too large to be indexed");
+				}
+				accessions.add(protein.getHeader().getAccession());
+				starts.add(sequences.size());
+				for (int i = 0; i < sequence.length(); i++) {
+					sequences.add((byte) sequence.charAt(i));
+				}
+				sequences.add(SEPARATOR);
+			}
+		} finally {
+			fastaLoader.close();
+		}
+		starts.add(sequences.size());
+		final byte[] residues = sequences.toArray();
+		final int[] proteinStarts = starts.toArray();
+		final int[] suffixArray = buildSuffixArray(residues);
+		log.info("FASTA index built: " + accessions.size() + " proteins and " + residues.length + " residues");
+		if (indexFile != null && save(fastaFile, indexFile, accessions, proteinStarts, residues, suffixArray)) {
+			final FastaPeptideIndex index = load(fastaFile, indexFile);
+			if (index != null) {
+				return index;
+			}
+		}
+		// keep it just in memory
+		return new FastaPeptideIndex(fastaFile, accessions, proteinStarts, ByteBuffer.wrap(residues),
+				IntBuffer.wrap(suffixArray));
+	}
+
+	/**
+	 * Saves the index in a temporal file that is renamed at the end, so that a
+	 * failed save never leaves a corrupted index. The temporal file is unique,
+	 * so that two indexes of the same FASTA file can be built at the same time.
+	 *
+	 * @return true if the index file is there, saved by this or by other build
+	 */
+	private static boolean save(File fastaFile, File indexFile, List<String> accessions, int[] proteinStarts,
+			byte[] residues, int[] suffixArray) {
+		File tmpFile = null;
+		DataOutputStream dos = null;
+		try {
+			tmpFile = File.createTempFile(indexFile.getName(), ".tmp", indexFile.getParentFile());
+			dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 1024 * 1024));
+			dos.writeInt(MAGIC_NUMBER);
+			dos.writeInt(FORMAT_VERSION);
+			dos.writeLong(fastaFile.length());
+			dos.writeLong(fastaFile.lastModified());
+			dos.writeInt(residues.length);
+			dos.writeInt(accessions.size());
+			dos.write(residues);
+			for (final int position : suffixArray) {
+				dos.writeInt(position);
+			}
+			for (final int start : proteinStarts) {
+				dos.writeInt(start);
+			}
+			for (final String accession : accessions) {
+				dos.writeUTF(accession);
+			}
+			// closed before renaming it, since in Windows an open file cannot
+			// be renamed
+			dos.close();
+			dos = null;
+			if (!tmpFile.renameTo(indexFile)) {
+				tmpFile.delete();
+				if (indexFile.exists()) {
+					// saved by other build of the same FASTA file, and it will
+					// be validated when loaded
+					log.info("FASTA index already saved at " + indexFile.getAbsolutePath());
+					return true;
+				}
+				log.warn("FASTA index could not be saved at " + indexFile.getAbsolutePath());
+				return false;
+			}
+			log.info("FASTA index saved at " + indexFile.getAbsolutePath());
+			return true;
+		} catch (final IOException e) {
+			log.warn("Error saving FASTA index " + indexFile.getAbsolutePath() + ": " + e.getMessage());
+			if (dos != null) {
+				try {
+					dos.close();
+				} catch (final IOException e2) {
+				}
+			}
+			if (tmpFile != null) {
+				tmpFile.delete();
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Sorts all the suffixes of the sequences by prefix doubling: in each
+	 * round the suffixes are sorted by the ranks of their first k and their
+	 * next k residues with two stable counting sorts, until all the ranks are
+	 * different.
+	 */
+	static int[] buildSuffixArray(byte[] s) {
+		final int n = s.length;
+		int[] sa = new int[n];
+		int[] rank = new int[n];
+		int[] tmp = new int[n];
+		if (n == 0) {
+			return sa;
+		}
+		// first round: sort by the first residue
+		int[] counts = new int[257];
+		for (int i = 0; i < n; i++) {
+			counts[(s[i] & 0xff) + 1]++;
+		}
+		for (int c = 1; c < counts.length; c++) {
+			counts[c] += counts[c - 1];
+		}
+		for (int i = 0; i < n; i++) {
+			sa[counts[s[i] & 0xff]++] = i;
+		}
+		rank[sa[0]] = 0;
+		int numRanks = 1;
+		for (int j = 1; j < n; j++) {
+			if (s[sa[j]] != s[sa[j - 1]]) {
+				numRanks++;
+			}
+			rank[sa[j]] = numRanks - 1;
+		}
+		counts = new int[n + 1];
+		for (int k = 1; numRanks < n; k <<= 1) {
+			// order by the second half: the suffixes without second half go
+			// first, and then the rest in the order of their second half
+			int p = 0;
+			for (int i = n - k; i < n; i++) {
+				tmp[p++] = i;
+			}
+			for (int j = 0; j < n; j++) {
+				if (sa[j] >= k) {
+					tmp[p++] = sa[j] - k;
+				}
+			}
+			// stable sort by the first half
+			Arrays.fill(counts, 0, numRanks + 1, 0);
+			for (int i = 0; i < n; i++) {
+				counts[rank[i] + 1]++;
+			}
+			for (int r = 1; r <= numRanks; r++) {
+				counts[r] += counts[r - 1];
+			}
+			for (int j = 0; j < n; j++) {
+				final int i = tmp[j];
+				sa[counts[rank[i]]++] = i;
+			}
+			// new ranks
+			tmp[sa[0]] = 0;
+			numRanks = 1;
+			for (int j = 1; j < n; j++) {
+				final int i = sa[j];
+				final int prev = sa[j - 1];
+				if (rank[i] != rank[prev] || secondRank(rank, i, k, n) != secondRank(rank, prev, k, n)) {
+					numRanks++;
+				}
+				tmp[i] = numRanks - 1;
+			}
+			final int[] swap = rank;
+			rank = tmp;
+			tmp = swap;
+		}
+		return sa;
+	}
+
+	private static int secondRank(int[] rank, int i, int k, int n) {
+		return i + k < n ? rank[i + k] : -1;
+	}
+
+	public File getFastaFile() {
+		return fastaFile;
+	}
+
+	public int getNumProteins() {
+		return accessions.size();
+	}
+
+	/**
+	 * Gets the accessions of the proteins that would produce a peptide with a
+	 * digestion
+	 *
+	 * @param peptideSequence
+	 * @param digestion
+	 * @return the accessions in the order of the FASTA file, without
+	 *         duplicates
+	 */
+	public List<String> getProteinAccessions(String peptideSequence, Digestion digestion) {
+		final List<String> ret = new ArrayList<String>();
+		final byte[] peptide = peptideSequence.toUpperCase(Locale.ENGLISH).getBytes();
+		if (peptide.length == 0) {
+			return ret;
+		}
+		final int first = lowerBound(peptide, false);
+		final int last = lowerBound(peptide, true);
+		final TIntHashSet proteins = new TIntHashSet();
+		final TIntArrayList sortedProteins = new TIntArrayList();
+		for (int j = first; j < last; j++) {
+			final int position = suffixArray.get(j);
+			final int protein = getProtein(position);
+			if (!proteins.contains(protein) && isDigestionProduct(protein, position, peptide.length, digestion)) {
+				proteins.add(protein);
+				sortedProteins.add(protein);
+			}
+		}
+		sortedProteins.sort();
+		for (int i = 0; i < sortedProteins.size(); i++) {
+			ret.add(accessions.get(sortedProteins.get(i)));
+		}
+		return ret;
+	}
+
+	/**
+	 * @param upper
+	 *            if false, the first suffix that is not lower than the
+	 *            peptide. If true, the first suffix that starts by something
+	 *            greater than the peptide
+	 * @return the position in the suffix array
+	 */
+	private int lowerBound(byte[] peptide, boolean upper) {
+		int low = 0;
+		int high = suffixArray.limit();
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			final int cmp = compare(suffixArray.get(mid), peptide);
+			if (cmp < 0 || upper && cmp == 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Compares the start of a suffix with a peptide
+	 */
+	private int compare(int position, byte[] peptide) {
+		final int n = residues.limit();
+		for (int i = 0; i < peptide.length; i++) {
+			if (position + i >= n) {
+				return -1;
+			}
+			final int diff = (residues.get(position + i) & 0xff) - (peptide[i] & 0xff);
+			if (diff != 0) {
+				return diff;
+			}
+		}
+		return 0;
+	}
+
+	private int getProtein(int position) {
+		int low = 0;
+		int high = proteinStarts.length - 2;
+		while (low < high) {
+			final int mid = (low + high + 1) >>> 1;
+			if (proteinStarts[mid] <= position) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+
+	private boolean isDigestionProduct(int protein, int start, int length, Digestion digestion) {
+		if (!digestion.specific) {
+			return true;
+		}
+		final int proteinStart = proteinStarts[protein];
+		// without the separator
+		final int proteinEnd = proteinStarts[protein + 1] - 1;
+		final int end = start + length;
+		final boolean specificStart = start == proteinStart || isCleavageSite(start, digestion)
+		// initiator methionine removal
+				|| start == proteinStart + 1 && residues.get(proteinStart) == 'M';
+		final boolean specificEnd = end == proteinEnd || isCleavageSite(end, digestion);
+		if (digestion.fullySpecific ? !specificStart || !specificEnd : !specificStart && !specificEnd) {
+			return false;
+		}
+		int missedCleavages = 0;
+		for (int position = start + 1; position < end; position++) {
+			if (isCleavageSite(position, digestion) && ++missedCleavages > digestion.maxMissedCleavages) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the enzyme cuts just before the residue of the position
+	 */
+	private boolean isCleavageSite(int position, Digestion digestion) {
+		return digestion.cuts(residues.get(position - 1), residues.get(position));
+	}
+}
@@ -56,6 +56,8 @@ public class FileManager {
 
 	private static final String UNIPROT_FOLDER = "uniprot";
 
+	private static final String FASTA_INDEXES_FOLDER = "fasta_indexes";
+
 	private static UniprotProteinLocalRetriever upr;
 
 	private static List<String> cachedMetadataTemplates = new ArrayList<String>();
@@ -331,6 +333,38 @@ public class FileManager {
 
 	}
 
+	/**
+	 * Gets the full file path
+	 * APP_FOLDER/user_data/curated_exps/curated_exp_name/fileName.mask of the
+	 * {@link CuratedMiapeMSIMask} of a curated MIAPE MSI
+	 *
+	 * @param cpMsi
+	 * @return
+	 */
+	public static String getMiapeMSICuratedMaskFilePathFromMiapeInformation(CPMSI cpMsi) {
+		return getMiapeMSICuratedMaskFilePathFromMiapeInformation(cpMsi.getLocalProjectName(), cpMsi.getName());
+	}
+
+	public static String getMiapeMSICuratedMaskFilePathFromMiapeInformation(String projectName, String fileName) {
+		String path = FileManager.getCuratedExperimentFolderPath(projectName);
+		return path + FilenameUtils.getBaseName(fileName) + CuratedMiapeMSIMask.MASK_EXTENSION;
+	}
+
+	/**
+	 * Gets the file of a curated MIAPE MSI, that is its
+	 * {@link CuratedMiapeMSIMask} if exists or its XML file otherwise
+	 *
+	 * @param cpMsi
+	 * @return
+	 */
+	public static File getMiapeMSICuratedFile(CPMSI cpMsi) {
+		File maskFile = new File(getMiapeMSICuratedMaskFilePathFromMiapeInformation(cpMsi));
+		if (maskFile.exists()) {
+			return maskFile;
+		}
+		return new File(getMiapeMSICuratedXMLFilePathFromMiapeInformation(cpMsi));
+	}
+
 	// /**
 	// * Gets the full file path APP_FOLDER/user_data/miape_data/MIAPE_MS_??.XML
 	// *
@@ -856,6 +890,8 @@ public class FileManager {
 		// String name = getMiapeMSILocalFileName(miapeID, dataName);
 		// String path = FileManager.getMiapeLocalDataPath(projectName);
 		// final String finalFileName = path + name;
+		// the snapshot of a previous version of the file is not valid anymore
+		MiapeMSISnapshotCache.delete(new File(finalFileName));
 		return miapeXML.saveAs(finalFileName);
 
 	}
@@ -968,7 +1004,34 @@ public class FileManager {
 		return ret;
 	}
 
-	public static UniprotProteinLocalRetriever getUniprotProteinLocalRetriever() {
+	/**
+	 * Gets the folder (creating it if doesn't exist)
+	 * APP_FOLDER/user_data/fasta_indexes/
+	 *
+	 */
+	public static File getFastaIndexesFolder() {
+		String dir = System.getProperty("user.dir");
+
+		File ret = new File(dir + PATH_SEPARATOR + FileManager.USER_DATA_FOLDER_NAME + PATH_SEPARATOR
+				+ FileManager.FASTA_INDEXES_FOLDER);
+		// if it doesn't exist, create folder: APP_PATH\USER_DATA_FOLDER_NAME
+		if (!ret.exists()) {
+			boolean created = ret.mkdirs();
+			if (!created)
+				return null;
+		}
+		return ret;
+	}
+
+	/**
+	 * Gets the {@link UniprotProteinLocalRetriever} of the application. It is
+	 * not thread safe, so the code that can run in other threads than the one
+	 * of the caller (for example, when rendering rows or chart series in
+	 * parallel) has to use it synchronized on the returned instance.
+	 *
+	 * @return
+	 */
+	public static synchronized UniprotProteinLocalRetriever getUniprotProteinLocalRetriever() {
 		if (upr == null) {
 			File uniprotReleasesFolder = FileManager.getUniprotFolder();
 			upr = new UniprotProteinLocalRetriever(uniprotReleasesFolder, true);
@@ -19,7 +19,10 @@ import gnu.trove.set.hash.THashSet;
  * This class represents a file containing an index of the files stored locally.
  * <br>
  * The index indexes the files with the identifier of the MIAPE and the values
- * are the absolute paths separated by commas.
+ * are the absolute paths separated by commas.<br>
+ * Several MIAPEs can be extracted at the same time, so all the access to the
+ * index is synchronized, and the identifiers are reserved with
+ * {@link #reserveIndex(File)} before the MIAPE files are written.
  * 
  * @author Salva
  * 
@@ -38,7 +41,7 @@ public class LocalFilesIndex {
 	private static LocalFilesIndex instance;
 	private final static Logger log = Logger.getLogger(LocalFilesIndex.class);
 
-	public static LocalFilesIndex getInstance() throws IOException {
+	public static synchronized LocalFilesIndex getInstance() throws IOException {
 		if (instance == null)
 			instance = new LocalFilesIndex();
 		return instance;
@@ -159,33 +162,54 @@ public class LocalFilesIndex {
 		}
 	}
 
-	public Set<File> getFilesFromMIAPEID(int index) {
+	public synchronized Set<File> getFilesFromMIAPEID(int index) {
 		if (LocalFilesIndex.indexByMiapeID.containsKey(index)) {
 			Set<File> files = LocalFilesIndex.indexByMiapeID.get(index);
-			return files;
+			return new THashSet<File>(files);
 		}
 		return null;
 	}
 
-	public Set<File> getFilesFromProject(String projectName) {
+	public synchronized Set<File> getFilesFromProject(String projectName) {
 		if (LocalFilesIndex.indexByProject.containsKey(projectName)) {
 			Set<File> files = LocalFilesIndex.indexByProject.get(projectName);
-			return files;
+			return new THashSet<File>(files);
 		}
 		return null;
 	}
 
-	public int getFreeIndex() {
+	/**
+	 * Gets a new MIAPE identifier and indexes the file with it, in the same
+	 * operation, so that two MIAPEs extracted at the same time never get the
+	 * same identifier. It has to be called before writing the MIAPE files
+	 * named with the identifier.
+	 *
+	 * @param file
+	 *            the file from which the MIAPE is extracted. If null, the
+	 *            identifier is just reserved
+	 * @return the identifier
+	 * @throws IOException
+	 */
+	public synchronized int reserveIndex(File file) throws IOException {
 		int index = 0;
 		final int[] keySet = LocalFilesIndex.indexByMiapeID.keys();
 		for (int integer : keySet) {
 			if (integer > index)
 				index = integer;
 		}
-		return index + 1;
+		index++;
+		final Set<File> set = new THashSet<File>();
+		if (file != null) {
+			set.add(file);
+		}
+		LocalFilesIndex.indexByMiapeID.put(index, set);
+		if (file != null) {
+			writeIndex();
+		}
+		return index;
 	}
 
-	public void indexFileByProjectName(String projectName, File file) throws IOException {
+	public synchronized void indexFileByProjectName(String projectName, File file) throws IOException {
 		log.info("Indexing file " + file.getAbsolutePath() + " by project name: " + projectName);
 		if (LocalFilesIndex.indexByProject.containsKey(projectName)) {
 			LocalFilesIndex.indexByProject.get(projectName).add(file);
@@ -197,11 +221,11 @@ public class LocalFilesIndex {
 		writeIndex();
 	}
 
-	public void indexFileByProjectName(String projectName, String fileName) throws IOException {
+	public synchronized void indexFileByProjectName(String projectName, String fileName) throws IOException {
 		indexFileByProjectName(projectName, new File(fileName));
 	}
 
-	public void indexFileByMiapeID(int index, File file) throws IOException {
+	public synchronized void indexFileByMiapeID(int index, File file) throws IOException {
 		if (LocalFilesIndex.indexByMiapeID.containsKey(index)) {
 			LocalFilesIndex.indexByMiapeID.get(index).add(file);
 		} else {
@@ -0,0 +1,311 @@
+package org.proteored.pacom.analysis.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.OutputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.log4j.Logger;
+import org.proteored.miapeapi.interfaces.msi.MiapeMSIDocument;
+
+import edu.scripps.yates.utilities.files.FileUtils;
+
+/**
+ * Binary snapshots of the already parsed MIAPE MSI documents, so that the XML
+ * files don't have to be parsed again each time a project is loaded.<br>
+ * The snapshot of a file APP_FOLDER/user_data/local_datasets/project_Name/
+ * Dataset_MSI_id.xml is stored in
+ * APP_FOLDER/user_data/local_datasets/project_Name/snapshots/Dataset_MSI_id.
+ * snapshot and it is only valid while the path, the size and the last
+ * modification time of the XML file are the same as when the snapshot was
+ * created. Otherwise, it is discarded and it will be rebuilt the next time
+ * the XML file is parsed.
+ * Only classes of the JDK and of the libraries used by the MIAPE MSI
+ * documents are accepted when reading a snapshot, so that a manipulated file in
+ * the user data folder cannot instantiate other classes.<br>
+ * Whether the documents of a class can be stored in a snapshot is checked
+ * once, with the first document of that class, and the result is logged.
+ *
+ * @author Salva
+ *
+ */
+public class MiapeMSISnapshotCache {
+	private static final Logger log = Logger.getLogger("log4j.logger.org.proteored");
+	private static final String SNAPSHOTS_FOLDER_NAME = "snapshots";
+	private static final String SNAPSHOT_EXTENSION = ".snapshot";
+	private static final int MAGIC_NUMBER = 0x4D534931; // "MSI1"
+	private static final int FORMAT_VERSION = 1;
+	private static final Map<Class<?>, Boolean> serializableClasses = new ConcurrentHashMap<Class<?>, Boolean>();
+
+	/**
+	 * Gets the snapshot file corresponding to a MIAPE MSI XML file
+	 *
+	 * @param xmlFile
+	 * @return
+	 */
+	public static File getSnapshotFile(File xmlFile) {
+		final File folder = new File(xmlFile.getAbsoluteFile().getParentFile(), SNAPSHOTS_FOLDER_NAME);
+		final String baseName = FilenameUtils.getBaseName(xmlFile.getName());
+		return new File(folder, baseName + SNAPSHOT_EXTENSION);
+	}
+
+	/**
+	 * Loads the snapshot of a MIAPE MSI XML file.
+	 *
+	 * @param xmlFile
+	 * @return the document or null if there is not a valid snapshot for the
+	 *         current version of the file
+	 */
+	public static MiapeMSIDocument load(File xmlFile) {
+		final Object object = read(xmlFile);
+		if (object instanceof MiapeMSIDocument) {
+			return (MiapeMSIDocument) object;
+		}
+		if (object != null) {
+			delete(xmlFile);
+		}
+		return null;
+	}
+
+	/**
+	 * Reads the object stored in the snapshot of a file. The snapshot is
+	 * deleted if it is not valid for the current version of the file.
+	 *
+	 * @param xmlFile
+	 * @return the object or null if there is not a valid snapshot
+	 */
+	static Object read(File xmlFile) {
+		final File snapshotFile = getSnapshotFile(xmlFile);
+		if (!snapshotFile.exists()) {
+			return null;
+		}
+		InputStream in = null;
+		try {
+			final DataInputStream dis = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(snapshotFile), 1024 * 1024));
+			in = dis;
+			if (!isValidHeader(dis, xmlFile)) {
+				log.info("Snapshot " + snapshotFile.getAbsolutePath() + " is outdated. Deleting it.");
+			} else {
+				final ObjectInputStream ois = new SnapshotObjectInputStream(dis);
+				in = ois;
+				final Object object = ois.readObject();
+				log.info("Dataset read from snapshot " + snapshotFile.getAbsolutePath());
+				return object;
+			}
+		} catch (final IOException e) {
+			log.warn("Error reading snapshot " + snapshotFile.getAbsolutePath() + ": " + e.getMessage());
+		} catch (final ClassNotFoundException e) {
+			// created by another version of the software
+			log.warn("Error reading snapshot " + snapshotFile.getAbsolutePath() + ": " + e.getMessage());
+		} catch (final Throwable e) {
+			// for example, a StackOverflowError in a deeply linked document.
+			// The XML file is parsed instead
+			log.warn("Error reading snapshot " + snapshotFile.getAbsolutePath() + ": " + e);
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (final IOException e) {
+				}
+			}
+		}
+		delete(xmlFile);
+		return null;
+	}
+
+	/**
+	 * Saves the snapshot of the document parsed from a MIAPE MSI XML file. The
+	 * snapshot is written in a temporal file that is renamed at the end, so
+	 * that a cancelled or failed save never leaves a corrupted snapshot.
+	 *
+	 * @param xmlFile
+	 * @param miapeMSI
+	 * @return true if the snapshot has been created
+	 */
+	public static boolean save(File xmlFile, MiapeMSIDocument miapeMSI) {
+		return write(xmlFile, miapeMSI);
+	}
+
+	/**
+	 * Writes the snapshot of an object parsed from a file
+	 *
+	 * @param xmlFile
+	 * @param object
+	 * @return true if the snapshot has been created
+	 */
+	static boolean write(File xmlFile, Object object) {
+		if (object == null || !xmlFile.exists() || !isSerializable(object.getClass())) {
+			return false;
+		}
+		final File snapshotFile = getSnapshotFile(xmlFile);
+		final File folder = snapshotFile.getParentFile();
+		if (!folder.exists() && !folder.mkdirs()) {
+			return false;
+		}
+		// unique temporal file, in case the same file is loaded twice at the
+		// same time
+		File tmpFile = null;
+		OutputStream out = null;
+		boolean written = false;
+		try {
+			tmpFile = File.createTempFile(snapshotFile.getName(), ".tmp", folder);
+			final DataOutputStream dos = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tmpFile), 1024 * 1024));
+			out = dos;
+			writeHeader(dos, xmlFile);
+			final ObjectOutputStream oos = new ObjectOutputStream(dos);
+			out = oos;
+			oos.writeObject(object);
+			oos.flush();
+			written = true;
+			setSerializable(object.getClass(), true, null);
+		} catch (final NotSerializableException e) {
+			// one of the objects of the document is not serializable
+			setSerializable(object.getClass(), false, e.getMessage() + " is not serializable");
+		} catch (final IOException e) {
+			log.warn("Error writing snapshot of " + xmlFile.getAbsolutePath() + ": " + e.getMessage());
+		} catch (final Throwable e) {
+			// for example, a StackOverflowError in a deeply linked document
+			log.warn("Error writing snapshot of " + xmlFile.getAbsolutePath() + ": " + e);
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (final IOException e) {
+					written = false;
+				}
+			}
+		}
+		if (!written) {
+			if (tmpFile != null) {
+				tmpFile.delete();
+			}
+			return false;
+		}
+		if (snapshotFile.exists()) {
+			snapshotFile.delete();
+		}
+		if (!tmpFile.renameTo(snapshotFile)) {
+			tmpFile.delete();
+			return false;
+		}
+		log.info("Snapshot of " + xmlFile.getAbsolutePath() + " created at " + snapshotFile.getAbsolutePath() + " ("
+				+ FileUtils.getDescriptiveSizeFromBytes(snapshotFile.length()) + ")");
+		return true;
+	}
+
+	/**
+	 * Checks whether the objects of a class can be stored in a snapshot. A
+	 * class is checked only once: it is not serializable if it doesn't
+	 * implement {@link Serializable} or if its first object contains objects
+	 * that are not serializable.
+	 *
+	 * @param objectClass
+	 * @return
+	 */
+	static boolean isSerializable(Class<?> objectClass) {
+		final Boolean serializable = serializableClasses.get(objectClass);
+		if (serializable != null) {
+			return serializable;
+		}
+		if (!Serializable.class.isAssignableFrom(objectClass)) {
+			setSerializable(objectClass, false, objectClass.getName() + " is not serializable");
+			return false;
+		}
+		return true;
+	}
+
+	private static void setSerializable(Class<?> objectClass, boolean serializable, String reason) {
+		if (serializableClasses.putIfAbsent(objectClass, serializable) == null) {
+			if (serializable) {
+				log.info("Snapshots of " + objectClass.getName() + " are supported");
+			} else {
+				log.info("Snapshots of " + objectClass.getName() + " are not supported: " + reason);
+			}
+		}
+	}
+
+	/**
+	 * Deletes the snapshot of a MIAPE MSI XML file, if exists
+	 *
+	 * @param xmlFile
+	 * @return
+	 */
+	public static boolean delete(File xmlFile) {
+		final File snapshotFile = getSnapshotFile(xmlFile);
+		if (snapshotFile.exists()) {
+			return snapshotFile.delete();
+		}
+		return false;
+	}
+
+	/**
+	 * Only resolves the classes of the packages that can be in a MIAPE MSI
+	 * document
+	 */
+	private static class SnapshotObjectInputStream extends ObjectInputStream {
+		private static final String[] ALLOWED_PACKAGES = { "java.", "org.proteored.", "gnu.trove.",
+				"edu.scripps.yates.", "javax.xml.", "com.sun.org.apache.xerces.internal.jaxp.datatype." };
+
+		private SnapshotObjectInputStream(InputStream in) throws IOException {
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			String className = desc.getName();
+			// arrays
+			while (className.startsWith("[")) {
+				className = className.substring(1);
+			}
+			if (className.length() == 1) {
+				// array of primitive types
+				return super.resolveClass(desc);
+			}
+			if (className.startsWith("L") && className.endsWith(";")) {
+				className = className.substring(1, className.length() - 1);
+			}
+			for (final String allowedPackage : ALLOWED_PACKAGES) {
+				if (className.startsWith(allowedPackage)) {
+					return super.resolveClass(desc);
+				}
+			}
+			throw new InvalidClassException(className, "Class not allowed in a snapshot");
+		}
+
+		@Override
+		protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException {
+			throw new InvalidClassException("Proxy classes not allowed in a snapshot");
+		}
+	}
+
+	private static void writeHeader(DataOutputStream dos, File xmlFile) throws IOException {
+		dos.writeInt(MAGIC_NUMBER);
+		dos.writeInt(FORMAT_VERSION);
+		dos.writeUTF(xmlFile.getAbsolutePath());
+		dos.writeLong(xmlFile.length());
+		dos.writeLong(xmlFile.lastModified());
+	}
+
+	private static boolean isValidHeader(DataInputStream dis, File xmlFile) throws IOException {
+		return dis.readInt() == MAGIC_NUMBER && dis.readInt() == FORMAT_VERSION
+				&& xmlFile.getAbsolutePath().equals(dis.readUTF()) && dis.readLong() == xmlFile.length()
+				&& dis.readLong() == xmlFile.lastModified();
+	}
+}
@@ -0,0 +1,82 @@
+package org.proteored.pacom.analysis.util;
+
+/**
+ * The annotations of a protein in UniprotKB that are used by PACom, so that
+ * they can be kept in the {@link ProteinAnnotationStore} without the whole
+ * Uniprot entry.
+ *
+ * @author Salva
+ *
+ */
+public class ProteinAnnotation {
+	private final String accession;
+	private final Double mass;
+	private final String sequence;
+	private final String description;
+	private final String geneName;
+	private final String ensgID;
+	private final String chromosomeName;
+	private final String evidence;
+
+	/**
+	 *
+	 * @param accession
+	 * @param mass
+	 *            in Daltons
+	 * @param sequence
+	 * @param description
+	 * @param geneName
+	 *            the primary gene name
+	 * @param ensgID
+	 * @param chromosomeName
+	 * @param evidence
+	 *            the Uniprot protein existence evidence
+	 */
+	public ProteinAnnotation(String accession, Double mass, String sequence, String description, String geneName,
+			String ensgID, String chromosomeName, String evidence) {
+		this.accession = accession;
+		this.mass = mass;
+		this.sequence = sequence;
+		this.description = description;
+		this.geneName = geneName;
+		this.ensgID = ensgID;
+		this.chromosomeName = chromosomeName;
+		this.evidence = evidence;
+	}
+
+	public String getAccession() {
+		return accession;
+	}
+
+	/**
+	 *
+	 * @return the mass in Daltons, or null if not available
+	 */
+	public Double getMass() {
+		return mass;
+	}
+
+	public String getSequence() {
+		return sequence;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	public String getGeneName() {
+		return geneName;
+	}
+
+	public String getENSGID() {
+		return ensgID;
+	}
+
+	public String getChromosomeName() {
+		return chromosomeName;
+	}
+
+	public String getEvidence() {
+		return evidence;
+	}
+}
@@ -0,0 +1,338 @@
+package org.proteored.pacom.analysis.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.log4j.Logger;
+import org.proteored.miapeapi.experiment.model.IdentificationSet;
+import org.proteored.miapeapi.experiment.model.ProteinGroupOccurrence;
+import org.proteored.miapeapi.util.ProteinSequenceRetrieval;
+
+import com.compomics.util.protein.AASequenceImpl;
+import com.compomics.util.protein.Protein;
+
+import edu.scripps.yates.annotations.uniprot.UniprotProteinLocalRetriever;
+import edu.scripps.yates.annotations.uniprot.xml.Entry;
+import edu.scripps.yates.annotations.util.UniprotEntryUtil;
+import edu.scripps.yates.utilities.fasta.FastaParser;
+import gnu.trove.map.hash.THashMap;
+import gnu.trove.set.hash.THashSet;
+
+/**
+ * Central point to get the Uniprot annotations of the proteins.<br>
+ * The annotations are served from a local {@link ProteinAnnotationStore}, and
+ * only the ones that are not there are retrieved, all at once, from the
+ * {@link AnnotationSource} (UniprotKB by default) and saved in the store.<br>
+ * When several tasks ask for the same accessions at the same time, each
+ * accession is retrieved only by the first of them, and the rest wait for it.
+ *
+ * @author Salva
+ *
+ */
+public class ProteinAnnotationService {
+	private static final Logger log = Logger.getLogger("log4j.logger.org.proteored");
+	private static final String STORE_FILE_NAME = "protein_annotations.store";
+	// the accessions that are not found are not requested again during this
+	// time, since the source could have failed just temporarily
+	public static final long DEFAULT_NOT_FOUND_EXPIRATION = 10 * 60 * 1000L;
+	private static ProteinAnnotationService instance;
+	private final ProteinAnnotationStore store;
+	private final AnnotationSource source;
+	// the accessions being retrieved, with the signal of the end of their
+	// retrieval
+	private final Map<String, CountDownLatch> pendingRequests = new ConcurrentHashMap<String, CountDownLatch>();
+	// the accessions that were not found in the source, with the time in which
+	// they were requested
+	private final Map<String, Long> notFound = new ConcurrentHashMap<String, Long>();
+	private final long notFoundExpiration;
+	private ExecutorService prefetchExecutor;
+
+	/**
+	 * Where the annotations that are not in the local store are retrieved from
+	 *
+	 * @author Salva
+	 *
+	 */
+	public interface AnnotationSource {
+		/**
+		 *
+		 * @param uniprotAccs
+		 * @return the annotations of the accessions that were found, by
+		 *         accession
+		 */
+		public Map<String, ProteinAnnotation> getAnnotations(Collection<String> uniprotAccs);
+	}
+
+	/**
+	 * Gets the annotations from UniprotKB through the
+	 * {@link UniprotProteinLocalRetriever} of the application
+	 */
+	private static class UniprotAnnotationSource implements AnnotationSource {
+
+		@Override
+		public Map<String, ProteinAnnotation> getAnnotations(Collection<String> uniprotAccs) {
+			final Map<String, ProteinAnnotation> ret = new THashMap<String, ProteinAnnotation>();
+			final UniprotProteinLocalRetriever upr = FileManager.getUniprotProteinLocalRetriever();
+			final Set<String> accs = new THashSet<String>(uniprotAccs);
+			final Map<String, Entry> entries;
+			final Map<String, String> sequences = new THashMap<String, String>();
+			synchronized (upr) {
+				upr.setCacheEnabled(true);
+				entries = upr.getAnnotatedProteins(null, accs);
+				for (final String acc : accs) {
+					if (entries.containsKey(acc)) {
+						sequences.put(acc, ProteinSequenceRetrieval.getProteinSequence(acc, true, upr));
+					}
+				}
+			}
+			for (final String acc : accs) {
+				final Entry entry = entries.get(acc);
+				if (entry == null) {
+					continue;
+				}
+				final String sequence = sequences.get(acc);
+				Double mass = UniprotEntryUtil.getMolecularWeightInDalton(entry);
+				if (mass == null && sequence != null) {
+					mass = new Protein(new AASequenceImpl(sequence)).getMass();
+				}
+				String geneName = null;
+				final List<String> geneNames = UniprotEntryUtil.getGeneName(entry, true, true);
+				if (geneNames != null && !geneNames.isEmpty()) {
+					geneName = geneNames.get(0);
+				}
+				ret.put(acc,
+						new ProteinAnnotation(acc, mass, sequence, UniprotEntryUtil.getProteinDescription(entry),
+								geneName, UniprotEntryUtil.getENSGID(entry), UniprotEntryUtil.getChromosomeName(entry),
+								UniprotEntryUtil.getUniprotEvidence(entry)));
+			}
+			return ret;
+		}
+	}
+
+	/**
+	 *
+	 * @param store
+	 * @param source
+	 *            where to get the annotations that are not in the store. It
+	 *            can be a local stub instead of UniprotKB.
+	 */
+	public ProteinAnnotationService(ProteinAnnotationStore store, AnnotationSource source) {
+		this(store, source, DEFAULT_NOT_FOUND_EXPIRATION);
+	}
+
+	/**
+	 *
+	 * @param store
+	 * @param source
+	 *            where to get the annotations that are not in the store. It
+	 *            can be a local stub instead of UniprotKB.
+	 * @param notFoundExpiration
+	 *            milliseconds during which an accession that was not found in
+	 *            the source is not requested again
+	 */
+	public ProteinAnnotationService(ProteinAnnotationStore store, AnnotationSource source,
+			long notFoundExpiration) {
+		this.store = store;
+		this.source = source;
+		this.notFoundExpiration = notFoundExpiration;
+	}
+
+	/**
+	 * Gets the service of the application, with the store at
+	 * APP_FOLDER/user_data/uniprot/ and UniprotKB as source
+	 *
+	 * @return
+	 */
+	public static synchronized ProteinAnnotationService getInstance() {
+		if (instance == null) {
+			instance = new ProteinAnnotationService(
+					new ProteinAnnotationStore(new File(FileManager.getUniprotFolder(), STORE_FILE_NAME)),
+					new UniprotAnnotationSource());
+		}
+		return instance;
+	}
+
+	/**
+	 * Replaces the service of the application, for instance by one with a
+	 * local source
+	 *
+	 * @param service
+	 */
+	public static synchronized void setInstance(ProteinAnnotationService service) {
+		instance = service;
+	}
+
+	/**
+	 *
+	 * @param uniprotAcc
+	 * @return the annotation or null if it is not available
+	 */
+	public ProteinAnnotation getAnnotation(String uniprotAcc) {
+		return getAnnotations(Collections.singleton(uniprotAcc)).get(uniprotAcc);
+	}
+
+	/**
+	 * Gets the annotations of some proteins, retrieving the ones that are not
+	 * in the local store
+	 *
+	 * @param uniprotAccs
+	 * @return the annotations that are available, by accession
+	 */
+	public Map<String, ProteinAnnotation> getAnnotations(Collection<String> uniprotAccs) {
+		final Map<String, ProteinAnnotation> ret = new THashMap<String, ProteinAnnotation>();
+		final List<String> toRetrieve = new ArrayList<String>();
+		final Map<String, CountDownLatch> toWait = new THashMap<String, CountDownLatch>();
+		final CountDownLatch retrieved = new CountDownLatch(1);
+		try {
+			for (final String acc : uniprotAccs) {
+				if (ret.containsKey(acc) || toWait.containsKey(acc) || isNotFound(acc)) {
+					continue;
+				}
+				ProteinAnnotation annotation = store.get(acc);
+				if (annotation == null) {
+					final CountDownLatch otherRequest = pendingRequests.putIfAbsent(acc, retrieved);
+					if (otherRequest != null) {
+						if (otherRequest != retrieved) {
+							toWait.put(acc, otherRequest);
+						}
+						continue;
+					}
+					// it could have been stored just before
+					annotation = store.get(acc);
+					if (annotation == null) {
+						toRetrieve.add(acc);
+						continue;
+					}
+					pendingRequests.remove(acc);
+				}
+				ret.put(acc, annotation);
+			}
+			if (!toRetrieve.isEmpty()) {
+				log.info("Retrieving annotations of " + toRetrieve.size() + " proteins");
+				final Map<String, ProteinAnnotation> annotations = source.getAnnotations(toRetrieve);
+				store.addAll(annotations.values());
+				final Long now = System.currentTimeMillis();
+				for (final String acc : toRetrieve) {
+					if (annotations.containsKey(acc)) {
+						ret.put(acc, annotations.get(acc));
+					} else {
+						notFound.put(acc, now);
+					}
+				}
+			}
+		} finally {
+			for (final String acc : toRetrieve) {
+				pendingRequests.remove(acc, retrieved);
+			}
+			retrieved.countDown();
+		}
+		// the ones being retrieved by other tasks
+		for (final String acc : toWait.keySet()) {
+			try {
+				toWait.get(acc).await();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			final ProteinAnnotation annotation = store.get(acc);
+			if (annotation != null) {
+				ret.put(acc, annotation);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Retrieves in the background the annotations of some proteins that are
+	 * not in the local store yet, so that they are available when needed
+	 *
+	 * @param uniprotAccs
+	 */
+	public void prefetch(Collection<String> uniprotAccs) {
+		final List<String> toRetrieve = new ArrayList<String>();
+		for (final String acc : uniprotAccs) {
+			if (!store.contains(acc) && !isNotFound(acc)) {
+				toRetrieve.add(acc);
+			}
+		}
+		if (toRetrieve.isEmpty()) {
+			return;
+		}
+		getPrefetchExecutor().submit(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					log.info("Prefetching annotations of " + toRetrieve.size() + " proteins");
+					getAnnotations(toRetrieve);
+				} catch (final Exception e) {
+					log.warn("Error prefetching protein annotations: " + e.getMessage());
+				}
+			}
+		});
+	}
+
+	/**
+	 *
+	 * @param acc
+	 * @return true if the accession was not found in the source recently, so
+	 *         that it doesn't have to be requested again yet
+	 */
+	private boolean isNotFound(String acc) {
+		final Long time = notFound.get(acc);
+		if (time == null) {
+			return false;
+		}
+		if (System.currentTimeMillis() - time >= notFoundExpiration) {
+			notFound.remove(acc, time);
+			return false;
+		}
+		return true;
+	}
+
+	private synchronized ExecutorService getPrefetchExecutor() {
+		if (prefetchExecutor == null) {
+			prefetchExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					final Thread thread = new Thread(r, "protein-annotations-prefetch");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return prefetchExecutor;
+	}
+
+	/**
+	 * Gets the Uniprot accessions of the proteins of some
+	 * {@link IdentificationSet}s
+	 *
+	 * @param idSets
+	 * @return
+	 */
+	public static Set<String> getUniprotAccessions(Collection<? extends IdentificationSet> idSets) {
+		final Set<String> ret = new THashSet<String>();
+		for (final IdentificationSet idSet : idSets) {
+			for (final ProteinGroupOccurrence proteinGroupOccurrence : idSet.getProteinGroupOccurrenceList()
+					.values()) {
+				for (final String acc : proteinGroupOccurrence.getAccessions()) {
+					final String uniprotACC = FastaParser.getUniProtACC(acc);
+					if (uniprotACC != null) {
+						ret.add(uniprotACC);
+					}
+				}
+			}
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,234 @@
+package org.proteored.pacom.analysis.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+/**
+ * Local persistent store of {@link ProteinAnnotation}s, indexed by accession.
+ * <br>
+ * The annotations are appended as records to a single file. When the store is
+ * opened, the file is indexed (accession to the offset of its record) and
+ * memory-mapped, so that an annotation is read from the mapped file only when
+ * it is requested. The annotations added after opening the store are kept in
+ * memory until the next time it is opened.<br>
+ * An incomplete record at the end of the file, from a write that was
+ * interrupted, is discarded when the store is opened.
+ *
+ * @author Salva
+ *
+ */
+public class ProteinAnnotationStore {
+	private static final Logger log = Logger.getLogger("log4j.logger.org.proteored");
+	private static final int MAGIC_NUMBER = 0x50414E4E; // "PANN"
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 8;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private final File file;
+	// offset of the record of each accession in the mapped file
+	private final TObjectIntHashMap<String> offsets = new TObjectIntHashMap<String>(10, 0.5f, -1);
+	private ByteBuffer mappedFile;
+	private final Map<String, ProteinAnnotation> newAnnotations = new ConcurrentHashMap<String, ProteinAnnotation>();
+
+	public ProteinAnnotationStore(File file) {
+		this.file = file;
+		try {
+			open();
+		} catch (final IOException e) {
+			log.warn("Error reading the protein annotations at " + file.getAbsolutePath() + ": " + e.getMessage()
+					+ ". A new store will be created.");
+			offsets.clear();
+			mappedFile = null;
+			file.delete();
+		}
+	}
+
+	private void open() throws IOException {
+		if (!file.exists()) {
+			return;
+		}
+		if (file.length() > Integer.MAX_VALUE) {
+			throw new IOException("The file is too large");
+		}
+		// index the records
+		long validLength = HEADER_SIZE;
+		final DataInputStream dis = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file), 1024 * 1024));
+		try {
+			if (dis.readInt() != MAGIC_NUMBER || dis.readInt() != FORMAT_VERSION) {
+				throw new IOException("Unknown format");
+			}
+			while (true) {
+				final int length;
+				try {
+					length = dis.readInt();
+				} catch (final EOFException e) {
+					break;
+				}
+				if (length < 12 || validLength + 4 + length > file.length()) {
+					break;
+				}
+				final int accessionLength = dis.readInt();
+				// the record also has the length of the accession and the
+				// mass
+				if (accessionLength < 0 || accessionLength > length - 12) {
+					throw new IOException("Corrupted protein annotation at byte " + validLength);
+				}
+				final byte[] accession = new byte[accessionLength];
+				dis.readFully(accession);
+				skipFully(dis, length - 4 - accessionLength);
+				offsets.put(new String(accession, UTF8), (int) validLength + 4);
+				validLength += 4 + length;
+			}
+		} finally {
+			dis.close();
+		}
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			if (validLength < file.length()) {
+				log.info("Discarding an incomplete protein annotation at the end of " + file.getAbsolutePath());
+				raf.setLength(validLength);
+			}
+			// the mapped buffer remains valid after closing the file
+			mappedFile = raf.getChannel().map(MapMode.READ_ONLY, 0, validLength);
+		} finally {
+			raf.close();
+		}
+		log.info(offsets.size() + " protein annotations available at " + file.getAbsolutePath());
+	}
+
+	private static void skipFully(DataInputStream dis, int bytes) throws IOException {
+		int remaining = bytes;
+		while (remaining > 0) {
+			final int skipped = dis.skipBytes(remaining);
+			if (skipped <= 0) {
+				throw new EOFException();
+			}
+			remaining -= skipped;
+		}
+	}
+
+	/**
+	 *
+	 * @param accession
+	 * @return the annotation or null if it is not in the store
+	 */
+	public ProteinAnnotation get(String accession) {
+		final ProteinAnnotation annotation = newAnnotations.get(accession);
+		if (annotation != null) {
+			return annotation;
+		}
+		final int offset = offsets.get(accession);
+		if (offset == -1) {
+			return null;
+		}
+		// a view of the file for this thread
+		final ByteBuffer buffer = mappedFile.duplicate();
+		buffer.position(offset);
+		final String acc = readString(buffer);
+		final double mass = buffer.getDouble();
+		return new ProteinAnnotation(acc, Double.isNaN(mass) ? null : mass, readString(buffer), readString(buffer),
+				readString(buffer), readString(buffer), readString(buffer), readString(buffer));
+	}
+
+	public boolean contains(String accession) {
+		return newAnnotations.containsKey(accession) || offsets.containsKey(accession);
+	}
+
+	/**
+	 * Adds some annotations to the store, writing them at the end of the file
+	 *
+	 * @param annotations
+	 */
+	public synchronized void addAll(Collection<ProteinAnnotation> annotations) {
+		if (annotations.isEmpty()) {
+			return;
+		}
+		DataOutputStream dos = null;
+		try {
+			final boolean newFile = !file.exists();
+			dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+			if (newFile) {
+				dos.writeInt(MAGIC_NUMBER);
+				dos.writeInt(FORMAT_VERSION);
+			}
+			for (final ProteinAnnotation annotation : annotations) {
+				if (contains(annotation.getAccession())) {
+					continue;
+				}
+				writeRecord(dos, annotation);
+				newAnnotations.put(annotation.getAccession(), annotation);
+			}
+		} catch (final IOException e) {
+			log.warn("Error saving protein annotations at " + file.getAbsolutePath() + ": " + e.getMessage());
+			// keep them in memory anyway
+			for (final ProteinAnnotation annotation : annotations) {
+				newAnnotations.put(annotation.getAccession(), annotation);
+			}
+		} finally {
+			if (dos != null) {
+				try {
+					dos.close();
+				} catch (final IOException e) {
+				}
+			}
+		}
+	}
+
+	private void writeRecord(DataOutputStream dos, ProteinAnnotation annotation) throws IOException {
+		final byte[][] strings = { getBytes(annotation.getAccession()), getBytes(annotation.getSequence()),
+				getBytes(annotation.getDescription()), getBytes(annotation.getGeneName()),
+				getBytes(annotation.getENSGID()), getBytes(annotation.getChromosomeName()),
+				getBytes(annotation.getEvidence()) };
+		int length = 8;
+		for (final byte[] string : strings) {
+			length += 4 + (string != null ? string.length : 0);
+		}
+		dos.writeInt(length);
+		writeString(dos, strings[0]);
+		dos.writeDouble(annotation.getMass() != null ? annotation.getMass() : Double.NaN);
+		for (int i = 1; i < strings.length; i++) {
+			writeString(dos, strings[i]);
+		}
+	}
+
+	private static byte[] getBytes(String string) {
+		return string != null ? string.getBytes(UTF8) : null;
+	}
+
+	private static void writeString(DataOutputStream dos, byte[] string) throws IOException {
+		if (string == null) {
+			dos.writeInt(-1);
+		} else {
+			dos.writeInt(string.length);
+			dos.write(string);
+		}
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		final int length = buffer.getInt();
+		if (length == -1) {
+			return null;
+		}
+		final byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, UTF8);
+	}
+}
@@ -38,8 +38,10 @@ import javax.swing.JButton;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JSpinner;
 import javax.swing.JTextField;
 import javax.swing.LayoutStyle.ComponentPlacement;
+import javax.swing.SpinnerNumberModel;
 import javax.swing.SwingWorker.StateValue;
 import javax.swing.UIManager;
 import javax.swing.border.TitledBorder;
@@ -255,6 +257,18 @@ public class MiapeExtractionFrame extends AbstractJFrameWithAttachedHelpDialog i
 		});
 		panel_2.add(panel_3);
 		panel_2.add(panel_4);
+
+		panel_5 = new JPanel();
+		panel_5.setBorder(new TitledBorder(null, "Simultaneous import tasks", TitledBorder.LEADING, TitledBorder.TOP,
+				null, null));
+		panel_5.setLayout(new GridLayout(0, 1, 0, 0));
+		jSpinnerConcurrentImports = new JSpinner(new SpinnerNumberModel(
+				MiapeExtractionBatchManager.getDefaultMaxConcurrentExtractions(), 1,
+				Math.max(1, Runtime.getRuntime().availableProcessors()), 1));
+		jSpinnerConcurrentImports.setToolTipText(
+				"<html>Maximum number of import tasks running at the same time.<br>Big input files may be imported alone if there is not enough memory.</html>");
+		panel_5.add(jSpinnerConcurrentImports);
+		panel_2.add(panel_5);
 		// the problem is that the metadata templates takes time, because it is
 		// parsing all files in the folder
 		scrollableImportTaskTable = new ScrollableImportTaskJPanel();
@@ -1185,6 +1199,8 @@ public class MiapeExtractionFrame extends AbstractJFrameWithAttachedHelpDialog i
 		setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
 		jProgressBar.setIndeterminate(true);
 		miapeExtractorBatchManager = createMiapeExtractorBatchManagerFromTable();
+		miapeExtractorBatchManager
+				.setMaxConcurrentExtractions((Integer) jSpinnerConcurrentImports.getValue());
 		miapeExtractorBatchManager.startMiapeExtractionNextInQueue();
 	}
 
@@ -1234,6 +1250,8 @@ public class MiapeExtractionFrame extends AbstractJFrameWithAttachedHelpDialog i
 	private JPanel panel_1;
 	private JPanel panel_3;
 	private JPanel panel_4;
+	private JPanel panel_5;
+	private JSpinner jSpinnerConcurrentImports;
 
 	// public int selectedInstrumentNumber;
 
@@ -1291,6 +1309,14 @@ public class MiapeExtractionFrame extends AbstractJFrameWithAttachedHelpDialog i
 			final ImportTaskDataModel model = scrollableImportTaskTable.getTable().getImportTaskTableModel();
 			final int row = model.indexOf(model.getTaskByID(extractionResult.getMiapeExtractionTaskIdentifier()));
 			model.fireTableRowsUpdated(row, row);
+		} else if (MiapeExtractionBatchManager.IMPORT_TASK_REPLACED.equals(evt.getPropertyName())) {
+			// the task is going to be started again
+			final MiapeExtractionTask oldTask = (MiapeExtractionTask) evt.getOldValue();
+			final MiapeExtractionTask newTask = (MiapeExtractionTask) evt.getNewValue();
+			final ImportTaskDataModel model = scrollableImportTaskTable.getTable().getImportTaskTableModel();
+			if (model.indexOf(oldTask) >= 0) {
+				model.replaceImportTask(oldTask, newTask);
+			}
 		} else if (MiapeExtractionBatchManager.MIAPE_BATCH_DONE.equals(evt.getPropertyName())) {
 			final String statisticsString = (String) evt.getNewValue();
 			enableStateKeeper.setToPreviousState(this);
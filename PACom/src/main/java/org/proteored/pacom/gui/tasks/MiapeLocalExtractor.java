@@ -142,8 +142,7 @@ public class MiapeLocalExtractor {
 			log.info("Converting document to xml");
 			final MiapeXmlFile<MiapeMSDocument> msDocumentXML = msDocument.toXml();
 
-			id_ms = LocalFilesIndex.getInstance().getFreeIndex();
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_ms, inputFile);
+			id_ms = LocalFilesIndex.getInstance().reserveIndex(inputFile);
 			return saveMSLocally(id_ms, msDocumentXML, projectName);
 			// index by miape ID
 
@@ -215,8 +214,7 @@ public class MiapeLocalExtractor {
 			log.info("Converting document to xml");
 			final MiapeXmlFile<MiapeMSDocument> msDocumentXML = miapeMSMerged.toXml();
 
-			id_ms = LocalFilesIndex.getInstance().getFreeIndex();
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_ms, inputFile);
+			id_ms = LocalFilesIndex.getInstance().reserveIndex(inputFile);
 			return saveMSLocally(id_ms, msDocumentXML, projectName);
 
 		} catch (final Exception e) {
@@ -274,10 +272,9 @@ public class MiapeLocalExtractor {
 
 			log.info("Storing document MSI");
 			log.info("Converting document to xml");
-			id_msi = LocalFilesIndex.getInstance().getFreeIndex();
+			id_msi = LocalFilesIndex.getInstance().reserveIndex(inputFile);
 			msiDocument.setId(id_msi);
 			final MiapeXmlFile<MiapeMSIDocument> msiDocumentXML = msiDocument.toXml();
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_msi, inputFile);
 			return saveMSILocally(id_msi, msiDocumentXML, projectName, FilenameUtils.getBaseName(prideURL));
 
 		} catch (final Exception e) {
@@ -350,20 +347,18 @@ public class MiapeLocalExtractor {
 			log.info("Storing document MS");
 			log.info("Converting document to xml");
 			final MiapeXmlFile<MiapeMSDocument> msDocumentXML = msDocument.toXml();
-			id_ms = LocalFilesIndex.getInstance().getFreeIndex();
+			id_ms = LocalFilesIndex.getInstance().reserveIndex(inputFile);
 			identifiers[0] = saveMSLocally(id_ms, msDocumentXML, projectName);
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_ms, inputFile);
 
 			log.info("Storing document MSI");
 			log.info("Converting document to xml");
 
 			// System.out.println(msiDocumentXML);
 
-			id_msi = LocalFilesIndex.getInstance().getFreeIndex();
+			id_msi = LocalFilesIndex.getInstance().reserveIndex(inputFile);
 			msiDocument.setId(id_msi);
 			final MiapeXmlFile<MiapeMSIDocument> msiDocumentXML = msiDocument.toXml();
 			identifiers[1] = saveMSILocally(id_msi, msiDocumentXML, projectName, FilenameUtils.getBaseName(prideURL));
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_msi, inputFile);
 
 			return identifiers;
 
@@ -427,19 +422,17 @@ public class MiapeLocalExtractor {
 			log.info("Converting document to xml");
 			final MiapeXmlFile<MiapeMSDocument> msDocumentXML = miapeMSMerged.toXml();
 
-			id_ms = LocalFilesIndex.getInstance().getFreeIndex();
+			id_ms = LocalFilesIndex.getInstance().reserveIndex(inputFile);
 			identifiers[0] = saveMSLocally(id_ms, msDocumentXML, projectName);
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_ms, inputFile);
 
 			log.info("Storing document MSI");
 			log.info("Converting document to xml");
 			// System.out.println(msiDocumentXML);
 
-			id_msi = LocalFilesIndex.getInstance().getFreeIndex();
+			id_msi = LocalFilesIndex.getInstance().reserveIndex(inputFile);
 			msiDocument.setId(id_msi);
 			final MiapeXmlFile<MiapeMSIDocument> msiDocumentXML = msiDocument.toXml();
 			identifiers[1] = saveMSILocally(id_msi, msiDocumentXML, projectName, FilenameUtils.getBaseName(prideURL));
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_msi, inputFile);
 
 			return identifiers;
 		} catch (final Exception e) {
@@ -521,8 +514,7 @@ public class MiapeLocalExtractor {
 			log.info("Storing document MS");
 			log.info("Converting document to xml");
 			final MiapeXmlFile<MiapeMSDocument> msDocumentXML = msDocument.toXml();
-			id_ms = LocalFilesIndex.getInstance().getFreeIndex();
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_ms, inputFile);
+			id_ms = LocalFilesIndex.getInstance().reserveIndex(inputFile);
 			return saveMSLocally(id_ms, msDocumentXML, projectName);
 
 		} catch (final Exception e) {
@@ -617,8 +609,7 @@ public class MiapeLocalExtractor {
 			log.info("Storing document MS");
 			log.info("Converting document to xml");
 			final MiapeXmlFile<MiapeMSDocument> msDocumentXML = miapeMSMerged.toXml();
-			id_ms = LocalFilesIndex.getInstance().getFreeIndex();
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_ms, inputFile);
+			id_ms = LocalFilesIndex.getInstance().reserveIndex(inputFile);
 			return saveMSLocally(id_ms, msDocumentXML, projectName);
 
 		} catch (final Exception e) {
@@ -703,9 +694,8 @@ public class MiapeLocalExtractor {
 			log.info("Storing document MS");
 			log.info("Converting document to xml");
 			final MiapeXmlFile<MiapeMSDocument> msDocumentXML = msDocument.toXml();
-			id_ms = LocalFilesIndex.getInstance().getFreeIndex();
+			id_ms = LocalFilesIndex.getInstance().reserveIndex(inputmzMLFile);
 			identifiers[0] = saveMSLocally(id_ms, msDocumentXML, projectName);
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_ms, inputmzMLFile);
 
 			// ////////////////////////////////////
 			log.info("createFile");
@@ -735,13 +725,12 @@ public class MiapeLocalExtractor {
 			log.info("Storing document MSI");
 			log.info("Converting document to xml");
 
-			id_msi = LocalFilesIndex.getInstance().getFreeIndex();
+			id_msi = LocalFilesIndex.getInstance().reserveIndex(inputmzIdentMLFile);
 			msiDocument.setId(id_msi);
 			final MiapeXmlFile<MiapeMSIDocument> msiDocumentXML = msiDocument.toXml();
 
 			identifiers[1] = saveMSILocally(id_msi, msiDocumentXML, projectName,
 					FilenameUtils.getBaseName(mzIdentMLURL));
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_msi, inputmzIdentMLFile);
 
 			return identifiers;
 		} catch (final Exception e) {
@@ -833,9 +822,8 @@ public class MiapeLocalExtractor {
 			log.info("Converting document to xml");
 			final MiapeXmlFile<MiapeMSDocument> msDocumentXML = miapeMSMerged.toXml();
 
-			id_ms = LocalFilesIndex.getInstance().getFreeIndex();
+			id_ms = LocalFilesIndex.getInstance().reserveIndex(inputMzMLFile);
 			identifiers[0] = saveMSLocally(id_ms, msDocumentXML, projectName);
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_ms, inputMzMLFile);
 
 			// ////////////////////////////////////
 			log.info("createFile");
@@ -864,12 +852,11 @@ public class MiapeLocalExtractor {
 			log.info("MIAPE MSI created");
 			log.info("Storing document MSI");
 			log.info("Converting document to xml");
-			id_msi = LocalFilesIndex.getInstance().getFreeIndex();
+			id_msi = LocalFilesIndex.getInstance().reserveIndex(inputMzIdentMLFile);
 			msiDocument.setId(id_msi);
 			final MiapeXmlFile<MiapeMSIDocument> msiDocumentXML = msiDocument.toXml();
 			identifiers[1] = saveMSILocally(id_msi, msiDocumentXML, projectName,
 					FilenameUtils.getBaseName(mzIdentMLURL));
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_msi, inputMzIdentMLFile);
 
 			return identifiers;
 
@@ -967,9 +954,8 @@ public class MiapeLocalExtractor {
 			swingWorker.firePropertyChange(MiapeExtractionTask.NOTIFICATION, null, "Waiting for server response...\n");
 			final MiapeXmlFile<MiapeMSDocument> msDocumentXML = msDocument.toXml();
 
-			id_ms = LocalFilesIndex.getInstance().getFreeIndex();
+			id_ms = LocalFilesIndex.getInstance().reserveIndex(inputMzMLFile);
 			identifiers[0] = saveMSLocally(id_ms, msDocumentXML, projectName);
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_ms, inputMzMLFile);
 
 			if (miapeMSIXML != null) {
 
@@ -985,7 +971,7 @@ public class MiapeLocalExtractor {
 					log.info("MIAPE created");
 					log.info("Storing document MS");
 					log.info("Converting document to xml");
-					id_msi = LocalFilesIndex.getInstance().getFreeIndex();
+					id_msi = LocalFilesIndex.getInstance().reserveIndex(null);
 					miapeMSIDocument.setId(id_msi);
 					final MiapeXmlFile<MiapeMSIDocument> msiDocumentXML = miapeMSIDocument.toXml();
 					identifiers[1] = saveMSILocally(id_msi, msiDocumentXML, projectName, miapeMSIDocument.getName());
@@ -993,7 +979,7 @@ public class MiapeLocalExtractor {
 				} else {
 
 					final MIAPEMSIXmlFile msiDocumentXML = xmlFile;
-					id_msi = LocalFilesIndex.getInstance().getFreeIndex();
+					id_msi = LocalFilesIndex.getInstance().reserveIndex(null);
 					identifiers[1] = saveMSILocally(id_ms, msiDocumentXML, projectName, miapeMSIDocument.getName());
 
 				}
@@ -1092,9 +1078,8 @@ public class MiapeLocalExtractor {
 			log.info("MIAPE MS document created in memory");
 			log.info("Storing that MIAPE MS");
 			final MiapeXmlFile<MiapeMSDocument> msDocumentXML = miapeMSMerged.toXml();
-			id_ms = LocalFilesIndex.getInstance().getFreeIndex();
+			id_ms = LocalFilesIndex.getInstance().reserveIndex(inputMzMLFile);
 			identifiers[0] = saveMSLocally(id_ms, msDocumentXML, projectName);
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_ms, inputMzMLFile);
 
 			if (miapeMSIXML != null) {
 				log.info("Storing MIAPE MSI document from received MIAPE MSI XML file");
@@ -1110,12 +1095,12 @@ public class MiapeLocalExtractor {
 					log.info("MIAPE created");
 					log.info("Storing document MS");
 					log.info("Converting document to xml");
-					id_msi = LocalFilesIndex.getInstance().getFreeIndex();
+					id_msi = LocalFilesIndex.getInstance().reserveIndex(null);
 					miapeMSIDocument.setId(id_msi);
 					identifiers[1] = saveMSILocally(id_msi, msiDocumentXML, projectName, miapeMSIDocument.getName());
 
 				} else {
-					id_msi = LocalFilesIndex.getInstance().getFreeIndex();
+					id_msi = LocalFilesIndex.getInstance().reserveIndex(null);
 
 					// save again
 					identifiers[1] = saveMSILocally(id_msi, msiDocumentXML, projectName, miapeMSIDocument.getName());
@@ -1224,12 +1209,11 @@ public class MiapeLocalExtractor {
 			if (idMiapeMS > 0) {
 				identifiers[0] = new File(FileManager.getMiapeMSXMLFileLocalPath(idMiapeMS, projectName));
 			}
-			id_msi = LocalFilesIndex.getInstance().getFreeIndex();
+			id_msi = LocalFilesIndex.getInstance().reserveIndex(inputMzIdentMLFile);
 			msiDocument.setId(id_msi);
 			final MiapeXmlFile<MiapeMSIDocument> msiDocumentXML = msiDocument.toXml();
 			identifiers[1] = saveMSILocally(id_msi, msiDocumentXML, projectName,
 					FilenameUtils.getBaseName(mzIdentMLURL));
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_msi, inputMzIdentMLFile);
 			return identifiers;
 
 		} catch (final Exception e) {
@@ -1273,7 +1257,7 @@ public class MiapeLocalExtractor {
 		try {
 			if (miapeMSXMLBytes != null) {
 				final MiapeXmlFile<MiapeMSDocument> msDocumentXML = new MIAPEMSXmlFile(miapeMSXMLBytes);
-				id_ms = LocalFilesIndex.getInstance().getFreeIndex();
+				id_ms = LocalFilesIndex.getInstance().reserveIndex(null);
 				identifiers[0] = saveMSLocally(id_ms, msDocumentXML, projectName);
 			}
 
@@ -1330,12 +1314,11 @@ public class MiapeLocalExtractor {
 			log.info("MIAPE created");
 			log.info("Storing document MSI");
 			log.info("Converting document to xml");
-			id_msi = LocalFilesIndex.getInstance().getFreeIndex();
+			id_msi = LocalFilesIndex.getInstance().reserveIndex(inputMzIdentMLFile);
 			msiDocument.setId(id_msi);
 			final MiapeXmlFile<MiapeMSIDocument> msiDocumentXML = msiDocument.toXml();
 			identifiers[1] = saveMSILocally(id_msi, msiDocumentXML, projectName,
 					FilenameUtils.getBaseName(mzIdentFileURL));
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_msi, inputMzIdentMLFile);
 
 			return identifiers;
 		} catch (
@@ -1411,12 +1394,11 @@ public class MiapeLocalExtractor {
 			if (idMiapeMS > 0) {
 				identifiers[0] = new File(FileManager.getMiapeMSXMLFileLocalPath(idMiapeMS, projectName));
 			}
-			id_msi = LocalFilesIndex.getInstance().getFreeIndex();
+			id_msi = LocalFilesIndex.getInstance().reserveIndex(inputXTandemXMLFile);
 			msiDocument.setId(id_msi);
 			final MiapeXmlFile<MiapeMSIDocument> msiDocumentXML = msiDocument.toXml();
 			identifiers[1] = saveMSILocally(id_msi, msiDocumentXML, projectName,
 					FilenameUtils.getBaseName(xTandemXMLURI));
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_msi, inputXTandemXMLFile);
 			return identifiers;
 
 		} catch (final Exception e) {
@@ -1491,11 +1473,10 @@ public class MiapeLocalExtractor {
 			if (idMiapeMS > 0) {
 				identifiers[0] = new File(FileManager.getMiapeMSXMLFileLocalPath(idMiapeMS, projectName));
 			}
-			id_msi = LocalFilesIndex.getInstance().getFreeIndex();
+			id_msi = LocalFilesIndex.getInstance().reserveIndex(inputTSVFile);
 			msiDocument.setId(id_msi);
 			final MiapeXmlFile<MiapeMSIDocument> msiDocumentXML = msiDocument.toXml();
 			identifiers[1] = saveMSILocally(id_msi, msiDocumentXML, projectName, FilenameUtils.getBaseName(tsvURI));
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_msi, inputTSVFile);
 			return identifiers;
 
 		} catch (final Exception e) {
@@ -1569,12 +1550,11 @@ public class MiapeLocalExtractor {
 			if (idMiapeMS > 0) {
 				identifiers[0] = new File(FileManager.getMiapeMSXMLFileLocalPath(idMiapeMS, projectName));
 			}
-			id_msi = LocalFilesIndex.getInstance().getFreeIndex();
+			id_msi = LocalFilesIndex.getInstance().reserveIndex(proteinPilotPeptideFile);
 			msiDocument.setId(id_msi);
 			final MiapeXmlFile<MiapeMSIDocument> msiDocumentXML = msiDocument.toXml();
 			identifiers[1] = saveMSILocally(id_msi, msiDocumentXML, projectName,
 					FilenameUtils.getBaseName(proteinPilotPeptideFileURI));
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_msi, proteinPilotPeptideFile);
 			return identifiers;
 
 		} catch (final Exception e) {
@@ -1618,7 +1598,7 @@ public class MiapeLocalExtractor {
 		try {
 			if (miapeMSXMLBytes != null) {
 				final MiapeXmlFile<MiapeMSDocument> msDocumentXML = new MIAPEMSXmlFile(miapeMSXMLBytes);
-				id_ms = LocalFilesIndex.getInstance().getFreeIndex();
+				id_ms = LocalFilesIndex.getInstance().reserveIndex(null);
 				identifiers[0] = saveMSLocally(id_ms, msDocumentXML, projectName);
 
 			}
@@ -1650,12 +1630,11 @@ public class MiapeLocalExtractor {
 			log.info("Storing document MSI");
 			log.info("Converting document to xml");
 
-			id_msi = LocalFilesIndex.getInstance().getFreeIndex();
+			id_msi = LocalFilesIndex.getInstance().reserveIndex(inputXTandemXMLFile);
 			msiDocument.setId(id_msi);
 			final MiapeXmlFile<MiapeMSIDocument> msiDocumentXML = msiDocument.toXml();
 			identifiers[1] = saveMSILocally(id_msi, msiDocumentXML, projectName,
 					FilenameUtils.getBaseName(xTandemXMLFileURL));
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_msi, inputXTandemXMLFile);
 
 			return identifiers;
 		} catch (final Exception e) {
@@ -1693,7 +1672,7 @@ public class MiapeLocalExtractor {
 		log.info("Converting document to xml");
 		final MiapeXmlFile<MiapeMSDocument> msDocumentXML = msDocument.toXml();
 
-		final int id = LocalFilesIndex.getInstance().getFreeIndex();
+		final int id = LocalFilesIndex.getInstance().reserveIndex(null);
 		return saveMSLocally(id, msDocumentXML, projectName);
 
 	}
@@ -1740,13 +1719,12 @@ public class MiapeLocalExtractor {
 			if (idMiapeMS > 0) {
 				identifiers[0] = new File(FileManager.getMiapeMSXMLFileLocalPath(idMiapeMS, projectName));
 			}
-			id_msi = LocalFilesIndex.getInstance().getFreeIndex();
+			id_msi = LocalFilesIndex.getInstance().reserveIndex(dtaSelectFile);
 			msiDocument.setId(id_msi);
 			final MiapeXmlFile<MiapeMSIDocument> msiDocumentXML = msiDocument.toXml();
 
 			identifiers[1] = saveMSILocally(id_msi, msiDocumentXML, projectName,
 					FilenameUtils.getBaseName(dtaSelectFileURI));
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_msi, dtaSelectFile);
 			return identifiers;
 
 		} catch (final Exception e) {
@@ -1800,13 +1778,12 @@ public class MiapeLocalExtractor {
 			if (idMiapeMS > 0) {
 				identifiers[0] = new File(FileManager.getMiapeMSXMLFileLocalPath(idMiapeMS, projectName));
 			}
-			id_msi = LocalFilesIndex.getInstance().getFreeIndex();
+			id_msi = LocalFilesIndex.getInstance().reserveIndex(pepXMLFile);
 			msiDocument.setId(id_msi);
 			final MiapeXmlFile<MiapeMSIDocument> msiDocumentXML = msiDocument.toXml();
 
 			identifiers[1] = saveMSILocally(id_msi, msiDocumentXML, projectName,
 					FilenameUtils.getBaseName(pepXMLFileURI));
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_msi, pepXMLFile);
 			return identifiers;
 
 		} catch (final Exception e) {
@@ -1830,7 +1807,7 @@ public class MiapeLocalExtractor {
 			if (miapeMSXMLBytes != null) {
 
 				final MiapeXmlFile<MiapeMSDocument> msDocumentXML = new MIAPEMSXmlFile(miapeMSXMLBytes);
-				id_ms = LocalFilesIndex.getInstance().getFreeIndex();
+				id_ms = LocalFilesIndex.getInstance().reserveIndex(null);
 				identifiers[0] = saveMSLocally(id_ms, msDocumentXML, projectName);
 
 			}
@@ -1860,12 +1837,11 @@ public class MiapeLocalExtractor {
 			log.info("Storing document MSI");
 			log.info("Converting document to xml");
 
-			id_msi = LocalFilesIndex.getInstance().getFreeIndex();
+			id_msi = LocalFilesIndex.getInstance().reserveIndex(dtaSelectFile);
 			msiDocument.setId(id_msi);
 			final MiapeXmlFile<MiapeMSIDocument> msiDocumentXML = msiDocument.toXml();
 			identifiers[1] = saveMSILocally(id_msi, msiDocumentXML, projectName,
 					FilenameUtils.getBaseName(dtaSelectFileURL));
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_msi, dtaSelectFile);
 
 			return identifiers;
 		} catch (final Exception e) {
@@ -1889,7 +1865,7 @@ public class MiapeLocalExtractor {
 			if (miapeMSXMLBytes != null) {
 
 				final MiapeXmlFile<MiapeMSDocument> msDocumentXML = new MIAPEMSXmlFile(miapeMSXMLBytes);
-				id_ms = LocalFilesIndex.getInstance().getFreeIndex();
+				id_ms = LocalFilesIndex.getInstance().reserveIndex(null);
 				identifiers[0] = saveMSLocally(id_ms, msDocumentXML, projectName);
 
 			}
@@ -1921,12 +1897,11 @@ public class MiapeLocalExtractor {
 			log.info("Storing document MSI");
 			log.info("Converting document to xml");
 
-			id_msi = LocalFilesIndex.getInstance().getFreeIndex();
+			id_msi = LocalFilesIndex.getInstance().reserveIndex(pepXMLFile);
 			msiDocument.setId(id_msi);
 			final MiapeXmlFile<MiapeMSIDocument> msiDocumentXML = msiDocument.toXml();
 			identifiers[1] = saveMSILocally(id_msi, msiDocumentXML, projectName,
 					FilenameUtils.getBaseName(pepXMLFileURL));
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_msi, pepXMLFile);
 
 			return identifiers;
 		} catch (final Exception e) {
@@ -1951,7 +1926,7 @@ public class MiapeLocalExtractor {
 			if (miapeMSXMLBytes != null) {
 
 				final MiapeXmlFile<MiapeMSDocument> msDocumentXML = new MIAPEMSXmlFile(miapeMSXMLBytes);
-				id_ms = LocalFilesIndex.getInstance().getFreeIndex();
+				id_ms = LocalFilesIndex.getInstance().reserveIndex(null);
 				identifiers[0] = saveMSLocally(id_ms, msDocumentXML, projectName);
 
 			}
@@ -1983,11 +1958,10 @@ public class MiapeLocalExtractor {
 			log.info("Storing document MSI");
 			log.info("Converting document to xml");
 
-			id_msi = LocalFilesIndex.getInstance().getFreeIndex();
+			id_msi = LocalFilesIndex.getInstance().reserveIndex(tsvFile);
 			msiDocument.setId(id_msi);
 			final MiapeXmlFile<MiapeMSIDocument> msiDocumentXML = msiDocument.toXml();
 			identifiers[1] = saveMSILocally(id_msi, msiDocumentXML, projectName, FilenameUtils.getBaseName(tsvFileURL));
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_msi, tsvFile);
 
 			return identifiers;
 		} catch (final Exception e) {
@@ -2012,7 +1986,7 @@ public class MiapeLocalExtractor {
 			if (miapeMSXMLBytes != null) {
 
 				final MiapeXmlFile<MiapeMSDocument> msDocumentXML = new MIAPEMSXmlFile(miapeMSXMLBytes);
-				id_ms = LocalFilesIndex.getInstance().getFreeIndex();
+				id_ms = LocalFilesIndex.getInstance().reserveIndex(null);
 				identifiers[0] = saveMSLocally(id_ms, msDocumentXML, projectName);
 
 			}
@@ -2044,12 +2018,11 @@ public class MiapeLocalExtractor {
 			log.info("Storing document MSI");
 			log.info("Converting document to xml");
 
-			id_msi = LocalFilesIndex.getInstance().getFreeIndex();
+			id_msi = LocalFilesIndex.getInstance().reserveIndex(proteinPilotPeptideFile);
 			msiDocument.setId(id_msi);
 			final MiapeXmlFile<MiapeMSIDocument> msiDocumentXML = msiDocument.toXml();
 			identifiers[1] = saveMSILocally(id_msi, msiDocumentXML, projectName,
 					FilenameUtils.getBaseName(proteinPilotPeptideFileURL));
-			LocalFilesIndex.getInstance().indexFileByMiapeID(id_msi, proteinPilotPeptideFile);
 
 			return identifiers;
 		} catch (final Exception e) {
@@ -19,6 +19,8 @@ import javax.swing.KeyStroke;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 
+import gnu.trove.map.hash.TObjectIntHashMap;
+
 public class AutoSuggestor {
 
 	private final JTextField textField;
@@ -26,7 +28,11 @@ public class AutoSuggestor {
 	private JPanel suggestionsPanel;
 	private JWindow autoSuggestionPopUpWindow;
 	private String typedWord;
-	private final List<String> dictionary = new ArrayList<String>();
+	// number of occurrences of each word of the dictionary
+	private final TObjectIntHashMap<String> dictionary = new TObjectIntHashMap<String>();
+	// built from the dictionary when needed
+	private PrefixIndex prefixIndex;
+	private int maxSuggestions = 10;
 	private int currentIndexOfSpace, tW, tH;
 	private DocumentListener documentListener = new DocumentListener() {
 		@Override
@@ -249,13 +255,40 @@ public class AutoSuggestor {
 
 	public void setDictionary(List<String> words) {
 		dictionary.clear();
+		prefixIndex = null;
 		if (words == null) {
 			return;// so we can call constructor with null value for dictionary
 					// without exception thrown
 		}
 		for (String word : words) {
-			dictionary.add(word);
+			dictionary.adjustOrPutValue(word, 1, 1);
 		}
+		// built now rather than on the first key typed
+		prefixIndex = new PrefixIndex(dictionary);
+	}
+
+	/**
+	 * Sets the words of the dictionary with their number of occurrences, so
+	 * that the words with more occurrences are suggested first
+	 *
+	 * @param occurrences
+	 */
+	public void setDictionary(TObjectIntHashMap<String> occurrences) {
+		dictionary.clear();
+		prefixIndex = null;
+		if (occurrences != null) {
+			dictionary.putAll(occurrences);
+		}
+		prefixIndex = new PrefixIndex(dictionary);
+	}
+
+	/**
+	 *
+	 * @param maxSuggestions
+	 *            the maximum number of words shown in the pop up window
+	 */
+	public void setMaxSuggestions(int maxSuggestions) {
+		this.maxSuggestions = maxSuggestions;
 	}
 
 	public JWindow getAutoSuggestionPopUpWindow() {
@@ -271,7 +304,15 @@ public class AutoSuggestor {
 	}
 
 	public void addToDictionary(String word) {
-		dictionary.add(word);
+		dictionary.adjustOrPutValue(word, 1, 1);
+		prefixIndex = null;
+	}
+
+	private PrefixIndex getPrefixIndex() {
+		if (prefixIndex == null) {
+			prefixIndex = new PrefixIndex(dictionary);
+		}
+		return prefixIndex;
 	}
 
 	boolean wordTyped(String typedWord) {
@@ -283,22 +324,11 @@ public class AutoSuggestor {
 
 		boolean suggestionAdded = false;
 
-		for (String word : dictionary) {// get words in the dictionary which we
-										// added
-			boolean fullymatches = true;
-			for (int i = 0; i < typedWord.length(); i++) {// each string in the
-															// word
-				if (!typedWord.toLowerCase().startsWith(String.valueOf(word.toLowerCase().charAt(i)), i)) {// check
-																											// for
-																											// match
-					fullymatches = false;
-					break;
-				}
-			}
-			if (fullymatches) {
-				addWordToSuggestions(word);
-				suggestionAdded = true;
-			}
+		// words in the dictionary starting with the typed word, the most
+		// frequent first
+		for (String word : getPrefixIndex().getSuggestions(typedWord, maxSuggestions)) {
+			addWordToSuggestions(word);
+			suggestionAdded = true;
 		}
 		return suggestionAdded;
 	}
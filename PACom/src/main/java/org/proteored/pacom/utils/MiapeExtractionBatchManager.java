@@ -10,6 +10,11 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.SwingWorker.StateValue;
 
@@ -27,8 +32,9 @@ import org.proteored.pacom.gui.importjobs.InputFileType;
 import org.proteored.pacom.gui.tasks.MiapeExtractionTask;
 
 import edu.scripps.yates.utilities.dates.DatesUtil;
-import gnu.trove.iterator.TIntIterator;
+import edu.scripps.yates.utilities.files.FileUtils;
 import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntLongHashMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
 import gnu.trove.set.hash.TIntHashSet;
 
@@ -47,12 +53,23 @@ public class MiapeExtractionBatchManager implements PropertyChangeListener {
 	public static final String METADATA = "METADATA";
 	public static final String MIAPE_PROJECT = "PROJECT";
 	public static final String MS_JOB_REF = "MS_JOB_REF";
-	private static final Integer NUM_RETRIES = 1; // 1 means no retries
+	public static final String CONCURRENT_JOBS = "CONCURRENT_JOBS";
+	public static final String RETRIES = "RETRIES";
 	public static final String MIAPE_BATCH_DONE = "Miape batch done";
+	public static final String IMPORT_TASK_REPLACED = "Import task replaced";
+	private static final int MAX_DEFAULT_CONCURRENT_EXTRACTIONS = 8;
+	// times the size of the input file that a parser is estimated to need
+	private static final int XML_PARSER_MEMORY_FACTOR = 4;
+	private static final int TEXT_PARSER_MEMORY_FACTOR = 2;
+	// fraction of the maximum heap that the running tasks can use
+	private static final double DEFAULT_MEMORY_BUDGET_FRACTION = 0.6;
 
 	private final TIntArrayList miapeExtractionQueueOrder = new TIntArrayList();
 	private final TIntObjectHashMap<MiapeExtractionTask> miapeExtractionTasks = new TIntObjectHashMap<MiapeExtractionTask>();
-	private static int CONCURRENT_MIAPE_EXTRACTIONS = 1;
+	private int maxConcurrentExtractions = getDefaultMaxConcurrentExtractions();
+	private int numRetries = 0;
+	private long memoryBudget = (long) (Runtime.getRuntime().maxMemory() * DEFAULT_MEMORY_BUDGET_FRACTION);
+	private ThreadPoolExecutor executor;
 	private final File inputBatchFile;
 	private final MiapeExtractionFrame listener;
 
@@ -62,10 +79,12 @@ public class MiapeExtractionBatchManager implements PropertyChangeListener {
 	 */
 	private final TIntObjectHashMap<Integer> numStartsMap = new TIntObjectHashMap<Integer>();
 	private final TIntHashSet completedJobs = new TIntHashSet();
-	private int numTaskRunning;
 	private final TIntHashSet failedJobs = new TIntHashSet();
 	private final TIntHashSet runningJobs = new TIntHashSet();
+	private final TIntLongHashMap runningMemoryByJob = new TIntLongHashMap();
+	private long runningMemory;
 	private boolean cancelAll = false;
+	private boolean finishSignalFired = false;
 
 	public MiapeExtractionBatchManager(File inputBatchFile, MiapeExtractionFrame listener,
 			ControlVocabularyManager cvManager) {
@@ -309,6 +328,22 @@ public class MiapeExtractionBatchManager implements PropertyChangeListener {
 							throw new IllegalMiapeArgumentException(
 									"A positive number should be located after 'MS_REF' tag");
 						}
+					} else if (strLine.startsWith(CONCURRENT_JOBS)) {
+						final String[] split = strLine.split("\t");
+						try {
+							setMaxConcurrentExtractions(Integer.valueOf(split[1].trim()));
+						} catch (final NumberFormatException e) {
+							throw new IllegalMiapeArgumentException(
+									"A positive number should be located after '" + CONCURRENT_JOBS + "' tag");
+						}
+					} else if (strLine.startsWith(RETRIES)) {
+						final String[] split = strLine.split("\t");
+						try {
+							setNumRetries(Integer.valueOf(split[1].trim()));
+						} catch (final NumberFormatException e) {
+							throw new IllegalMiapeArgumentException(
+									"A number should be located after '" + RETRIES + "' tag");
+						}
 					} else if ("".equals(strLine.trim())) {
 						log.info("Skipping blank line");
 						continue;
@@ -386,9 +421,103 @@ public class MiapeExtractionBatchManager implements PropertyChangeListener {
 	}
 
 	/**
-	 * Starts the queue of {@link MiapeExtractionTask}.
-	 * 
-	 * @param startFailedJobs
+	 * Sets the maximum number of import tasks that can run at the same time.
+	 * It can be changed while the queue is running.
+	 *
+	 * @param maxConcurrentExtractions
+	 */
+	public synchronized void setMaxConcurrentExtractions(int maxConcurrentExtractions) {
+		this.maxConcurrentExtractions = Math.max(1, maxConcurrentExtractions);
+		if (executor != null) {
+			if (this.maxConcurrentExtractions > executor.getMaximumPoolSize()) {
+				executor.setMaximumPoolSize(this.maxConcurrentExtractions);
+				executor.setCorePoolSize(this.maxConcurrentExtractions);
+			} else {
+				executor.setCorePoolSize(this.maxConcurrentExtractions);
+				executor.setMaximumPoolSize(this.maxConcurrentExtractions);
+			}
+		}
+	}
+
+	public int getMaxConcurrentExtractions() {
+		return maxConcurrentExtractions;
+	}
+
+	/**
+	 * Sets how many times a failed import task is started again before
+	 * considering it as failed
+	 *
+	 * @param numRetries
+	 */
+	public void setNumRetries(int numRetries) {
+		this.numRetries = Math.max(0, numRetries);
+	}
+
+	public int getNumRetries() {
+		return numRetries;
+	}
+
+	/**
+	 * Sets the memory that all the running import tasks can use together, in
+	 * bytes. See {@link #getEstimatedMemory(MiapeExtractionTask)}
+	 *
+	 * @param memoryBudget
+	 */
+	public void setMemoryBudget(long memoryBudget) {
+		this.memoryBudget = memoryBudget;
+	}
+
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * Default number of import tasks running at the same time, which is the
+	 * number of processors, up to {@link #MAX_DEFAULT_CONCURRENT_EXTRACTIONS}
+	 *
+	 * @return
+	 */
+	public static int getDefaultMaxConcurrentExtractions() {
+		return Math.max(1,
+				Math.min(Runtime.getRuntime().availableProcessors(), MAX_DEFAULT_CONCURRENT_EXTRACTIONS));
+	}
+
+	private synchronized ThreadPoolExecutor getExecutor() {
+		if (executor == null) {
+			final AtomicInteger threadNumber = new AtomicInteger(1);
+			executor = new ThreadPoolExecutor(maxConcurrentExtractions, maxConcurrentExtractions, 30,
+					TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							final Thread thread = new Thread(r, "import-task-" + threadNumber.getAndIncrement());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			executor.allowCoreThreadTimeOut(true);
+		}
+		return executor;
+	}
+
+	/**
+	 * Starts as many {@link MiapeExtractionTask} of the queue as allowed.<br>
+	 * A task is started when:
+	 * <ul>
+	 * <li>there are less than {@link #getMaxConcurrentExtractions()} tasks
+	 * running,</li>
+	 * <li>the task that generates its MS dataset (MS_JOB_REF), if any, is
+	 * completed,</li>
+	 * <li>its estimated memory fits in the memory budget together with the
+	 * running tasks. A task is always started if there is no other task
+	 * running, so that big files are imported alone.</li>
+	 * </ul>
+	 * The tasks are considered in the order of the queue, but a task that
+	 * cannot be started yet doesn't prevent the following ones to start.<br>
+	 * Tasks depending on a task that failed or that doesn't exist, or being
+	 * part of a cycle of dependencies, are marked as failed without being
+	 * started.
+	 *
+	 * @return true if some task has been started
 	 */
 	public synchronized boolean startMiapeExtractionNextInQueue() {
 
@@ -396,90 +525,171 @@ public class MiapeExtractionBatchManager implements PropertyChangeListener {
 		log.debug(miapeExtractionQueueOrder.size() + " tasks in the queue");
 		log.debug(getRunningJobs().size() + " tasks running");
 		log.debug(completedJobs.size() + " tasks completed");
-		boolean allDone = true;
-		if (getRunningJobs().size() < CONCURRENT_MIAPE_EXTRACTIONS) {
-			for (final int jobID : miapeExtractionQueueOrder.toArray()) {
-				final MiapeExtractionTask miapeExtractionTask = miapeExtractionTasks.get(jobID);
-
-				if (!completedJobs.contains(jobID)) {
-					if (miapeExtractionTask.getState() == StateValue.PENDING) {
-						final boolean started = startMiapeExtraction(jobID);
-						if (started) {
-							allDone = false;
-							return true;
-						}
-					}
-					if (miapeExtractionTask.getState() != StateValue.DONE) {
-						allDone = false;
-					}
-				}
-
+		if (cancelAll) {
+			checkFinishSignal();
+			return false;
+		}
+		failJobsWithBrokenDependencies();
+		boolean someStarted = false;
+		for (final int jobID : miapeExtractionQueueOrder.toArray()) {
+			if (runningJobs.size() >= maxConcurrentExtractions) {
+				break;
 			}
+			if (!isPending(jobID)) {
+				continue;
+			}
+			final MiapeExtractionTask miapeExtractionTask = miapeExtractionTasks.get(jobID);
+			final Integer dependency = miapeExtractionTask.getParameters() != null
+					? miapeExtractionTask.getParameters().getAssociatedMiapeMSGeneratorJob() : null;
+			if (dependency != null && !completedJobs.contains(dependency)) {
+				log.debug("Task " + jobID + " is waiting for task " + dependency);
+				continue;
+			}
+			final long estimatedMemory = getEstimatedMemory(miapeExtractionTask);
+			if (!runningJobs.isEmpty() && runningMemory + estimatedMemory > memoryBudget) {
+				log.debug("Task " + jobID + " is waiting for memory: "
+						+ FileUtils.getDescriptiveSizeFromBytes(estimatedMemory) + " estimated, "
+						+ FileUtils.getDescriptiveSizeFromBytes(runningMemory) + " in use");
+				continue;
+			}
+			startMiapeExtraction(miapeExtractionTask, estimatedMemory);
+			someStarted = true;
 		}
-		// if all are done, fire COMPLETION
-		if (allDone) {
+		if (!someStarted) {
+			// if all are done, fire COMPLETION
 			checkFinishSignal();
 		}
-		return false;
+		return someStarted;
 	}
 
-	private synchronized boolean startMiapeExtraction(int jobID) {
-
-		MiapeExtractionTask miapeTask = null;
-		if (numTaskRunning < CONCURRENT_MIAPE_EXTRACTIONS) {
-			if (miapeExtractionTasks.containsKey(jobID)) {
-				final MiapeExtractionTask miapeExtractionTask = miapeExtractionTasks.get(jobID);
-
-				// if (miapeExtractionTask.getRunIdentifier() == jobID) {
-				if (miapeExtractionTask.getState() == StateValue.PENDING) {
-					log.info("Executing import task " + miapeExtractionTask.getRunIdentifier());
-					miapeExtractionTask.addPropertyChangeListener(this);
-					miapeExtractionTask.addPropertyChangeListener(listener);
-					miapeExtractionTask.execute();
-
-					// label this job as started once more
-					increaseStartNumber(jobID);
-					return true;
-				} else if (miapeExtractionTask.getState() == StateValue.DONE) {
-					if (numStartsMap.containsKey(jobID)) {
-						final Integer numStarts = numStartsMap.get(jobID);
-						// if the task has been retried before twice, do not
-						// start again
-						if (numStarts > NUM_RETRIES) {
-							log.info("Job task " + jobID + " cannot be started more than " + NUM_RETRIES + " times");
-							return false;
-						}
-					}
-					log.info("The task " + jobID + " is going to be reanalyzed");
-					miapeTask = new MiapeExtractionTask(miapeExtractionTask.getRunIdentifier(),
-							miapeExtractionTask.getParameters(), miapeExtractionTask.isLocalProcessingInParallel());
-					miapeTask.addPropertyChangeListener(this);
-					miapeTask.addPropertyChangeListener(listener);
-					final TIntIterator iterator = miapeExtractionQueueOrder.iterator();
-					while (iterator.hasNext()) {
-						final Integer jobID2 = iterator.next();
-						if (jobID2 == jobID)
-							iterator.remove();
-					}
-					miapeExtractionTasks.remove(jobID);
-					addTaskToQueue(miapeTask);
-					miapeTask.execute();
-
-					// label this job as started once more
-					increaseStartNumber(jobID);
-					return true;
+	/**
+	 * @param jobID
+	 * @return true if the job has not been started yet and it still can be
+	 *         started
+	 */
+	private boolean isPending(int jobID) {
+		return !completedJobs.contains(jobID) && !failedJobs.contains(jobID) && !runningJobs.contains(jobID)
+				&& miapeExtractionTasks.get(jobID).getState() == StateValue.PENDING;
+	}
 
-				} else if (miapeExtractionTask.getState() == StateValue.STARTED) {
-					log.info("Task " + jobID + " is already running");
+	/**
+	 * Marks as failed the pending jobs whose MS_JOB_REF points to a job that
+	 * is not in the queue, that has failed, or that is part of a cycle
+	 */
+	private void failJobsWithBrokenDependencies() {
+		boolean changed = true;
+		// repeat until no change, so that failures are propagated through
+		// chains of dependencies
+		while (changed) {
+			changed = false;
+			for (final int jobID : miapeExtractionQueueOrder.toArray()) {
+				if (!isPending(jobID)) {
+					continue;
+				}
+				final MiapeExtractionRunParameters parameters = miapeExtractionTasks.get(jobID).getParameters();
+				final Integer dependency = parameters != null ? parameters.getAssociatedMiapeMSGeneratorJob() : null;
+				if (dependency == null || completedJobs.contains(dependency)) {
+					continue;
+				}
+				String errorMessage = null;
+				if (!miapeExtractionTasks.containsKey(dependency)) {
+					errorMessage = "The job '" + jobID + "' refers to the MS dataset of job '" + dependency
+							+ "' that is not in the queue";
+				} else if (failedJobs.contains(dependency)) {
+					errorMessage = "The job '" + jobID + "' has not been started because the job '" + dependency
+							+ "' that generates its MS dataset failed";
+				} else if (isInDependencyCycle(jobID)) {
+					errorMessage = "The job '" + jobID + "' is in a cycle of MS dataset references ("
+							+ MS_JOB_REF + ")";
+				}
+				if (errorMessage != null) {
+					log.info(errorMessage);
+					failedJobs.add(jobID);
+					listener.propertyChange(new PropertyChangeEvent(this, MiapeExtractionTask.MIAPE_CREATION_ERROR,
+							null, new MiapeExtractionResult(jobID, errorMessage)));
+					changed = true;
 				}
 			}
-		} else {
-			log.info("Only " + MiapeExtractionBatchManager.CONCURRENT_MIAPE_EXTRACTIONS
-					+ " are allowed to be running at once");
+		}
+	}
+
+	private boolean isInDependencyCycle(int jobID) {
+		final TIntHashSet visited = new TIntHashSet();
+		Integer current = jobID;
+		while (current != null && miapeExtractionTasks.containsKey(current)) {
+			if (!visited.add(current)) {
+				return current == jobID;
+			}
+			final MiapeExtractionRunParameters parameters = miapeExtractionTasks.get(current).getParameters();
+			current = parameters != null ? parameters.getAssociatedMiapeMSGeneratorJob() : null;
 		}
 		return false;
 	}
 
+	/**
+	 * Estimates the memory that a task will need from the size of its input
+	 * files. The XML parsers build the whole document in memory, so they need
+	 * several times the size of the file, while the text parsers need less.
+	 *
+	 * @param task
+	 * @return the estimated memory in bytes
+	 */
+	private long getEstimatedMemory(MiapeExtractionTask task) {
+		final MiapeExtractionRunParameters parameters = task.getParameters();
+		if (parameters == null) {
+			return 0;
+		}
+		long ret = 0;
+		final File inputFile = parameters.getInputFile();
+		if (inputFile != null && inputFile.exists()) {
+			final InputFileType inputFileType = parameters.getInputFileType();
+			if (inputFileType == InputFileType.DTASELECT || inputFileType == InputFileType.DTASELECTPLUSMGF
+					|| inputFileType == InputFileType.TABLETEXT || inputFileType == InputFileType.PROTEINPILOT) {
+				ret += inputFile.length() * TEXT_PARSER_MEMORY_FACTOR;
+			} else {
+				ret += inputFile.length() * XML_PARSER_MEMORY_FACTOR;
+			}
+		}
+		final File associatedMSFile = parameters.getAssociatedMSFile();
+		if (associatedMSFile != null && associatedMSFile.exists()) {
+			ret += associatedMSFile.length() * TEXT_PARSER_MEMORY_FACTOR;
+		}
+		return ret;
+	}
+
+	private synchronized void startMiapeExtraction(MiapeExtractionTask miapeExtractionTask, long estimatedMemory) {
+		final int jobID = miapeExtractionTask.getRunIdentifier();
+		log.info("Executing import task " + jobID + " (" + (runningJobs.size() + 1) + "/" + maxConcurrentExtractions
+				+ " running)");
+		miapeExtractionTask.addPropertyChangeListener(this);
+		miapeExtractionTask.addPropertyChangeListener(listener);
+		runningJobs.add(jobID);
+		runningMemoryByJob.put(jobID, estimatedMemory);
+		runningMemory += estimatedMemory;
+		// label this job as started once more
+		increaseStartNumber(jobID);
+		// the SwingWorker is run in the pool of this queue instead of in the
+		// default SwingWorker executor, which is limited to 10 threads
+		getExecutor().execute(miapeExtractionTask);
+	}
+
+	/**
+	 * Creates a new task with the same parameters of a task that cannot be
+	 * executed again, replacing it in the queue. The listener is notified with
+	 * a {@link #IMPORT_TASK_REPLACED} event, so that it can update its
+	 * references to the task.
+	 *
+	 * @param jobID
+	 */
+	private void requeue(int jobID) {
+		final MiapeExtractionTask miapeExtractionTask = miapeExtractionTasks.get(jobID);
+		miapeExtractionTask.removePropertyChangeListener(this);
+		final MiapeExtractionTask miapeTask = new MiapeExtractionTask(miapeExtractionTask.getRunIdentifier(),
+				miapeExtractionTask.getParameters(), miapeExtractionTask.isLocalProcessingInParallel());
+		miapeExtractionTasks.put(jobID, miapeTask);
+		listener.propertyChange(new PropertyChangeEvent(this, IMPORT_TASK_REPLACED, miapeExtractionTask, miapeTask));
+	}
+
 	private void increaseStartNumber(int jobID) {
 
 		if (numStartsMap.containsKey(jobID)) {
@@ -492,24 +702,28 @@ public class MiapeExtractionBatchManager implements PropertyChangeListener {
 		}
 	}
 
+	private int getNumStarts(int jobID) {
+		if (numStartsMap.containsKey(jobID)) {
+			return numStartsMap.get(jobID);
+		}
+		return 0;
+	}
+
 	public synchronized void cancelMiapeExtractions() {
 		log.info("Cancelling all tasks");
 		cancelAll = true;
 		// if none where started, fire MIAPE_BATCHDONE
 		boolean someStarted = false;
-		for (final MiapeExtractionTask miapeExtractionTask : miapeExtractionTasks.valueCollection()) {
-			if (miapeExtractionTask.getState() == StateValue.STARTED) {
+		for (final int jobID : runningJobs.toArray()) {
+			final MiapeExtractionTask miapeExtractionTask = miapeExtractionTasks.get(jobID);
+			if (!miapeExtractionTask.isDone()) {
 				someStarted = true;
-				while (true) {
-					final boolean cancelled = miapeExtractionTask.cancel(true);
-					if (cancelled) {
-						log.info("Task " + miapeExtractionTask.getRunIdentifier() + " cancelled=" + cancelled);
-						break;
-					}
-				}
+				final boolean cancelled = miapeExtractionTask.cancel(true);
+				log.info("Task " + miapeExtractionTask.getRunIdentifier() + " cancelled=" + cancelled);
 			}
 		}
-		if (!someStarted) {
+		if (!someStarted && !finishSignalFired) {
+			finishSignalFired = true;
 			listener.propertyChange(new PropertyChangeEvent(this, MIAPE_BATCH_DONE, null, getStatisticsOnTasks()));
 		}
 	}
@@ -517,60 +731,76 @@ public class MiapeExtractionBatchManager implements PropertyChangeListener {
 	public synchronized void cancelMiapeExtraction(int runID) {
 		log.info("Cancelling task " + runID);
 		final MiapeExtractionTask miapeExtractionTask = miapeExtractionTasks.get(runID);
-		if (miapeExtractionTask.getState() == StateValue.STARTED && miapeExtractionTask.getRunIdentifier() == runID) {
+		if (runningJobs.contains(runID) && !miapeExtractionTask.isDone()) {
 			miapeExtractionTask.cancel(true);
 		}
 	}
 
+	/**
+	 * Removes the job from the running ones, releasing its memory
+	 *
+	 * @param jobID
+	 * @return false if the job was not running
+	 */
+	private boolean finishRunningJob(int jobID) {
+		if (!runningJobs.remove(jobID)) {
+			return false;
+		}
+		if (runningMemoryByJob.containsKey(jobID)) {
+			runningMemory -= runningMemoryByJob.remove(jobID);
+		}
+		return true;
+	}
+
 	@Override
-	public void propertyChange(PropertyChangeEvent evt) {
+	public synchronized void propertyChange(PropertyChangeEvent evt) {
 		if (MiapeExtractionTask.MIAPE_CREATION_TOTAL_DONE.equals(evt.getPropertyName())) {
 
 			final MiapeExtractionResult result = (MiapeExtractionResult) evt.getNewValue();
-			log.info("Import task " + result.getMiapeExtractionTaskIdentifier() + " is done in "
+			final int jobID = result.getMiapeExtractionTaskIdentifier();
+			log.info("Import task " + jobID + " is done in "
 					+ DatesUtil.getDescriptiveTimeFromMillisecs(result.getMilliseconds()));
-			log.info(getNumberOfPendingTasks() + " still in the queue");
 			// remove from running job set
-			runningJobs.remove(result.getMiapeExtractionTaskIdentifier());
-			// print queue status
-			printqueueStatus();
+			finishRunningJob(jobID);
 			// tag job a correctly completed
-			completedJobs.add(result.getMiapeExtractionTaskIdentifier());
+			completedJobs.add(jobID);
+			// update if the completed job was a failed one
+			removeFromFailedJobs(jobID);
 
 			// update, if any, any reference to MIAPE MS creation of this task
 			updateMiapeMSGeneratorTaskReference(result);
-
-			// update if the completed job was a failed one
-			removeFromFailedJobs(result.getMiapeExtractionTaskIdentifier());
-
-			numTaskRunning--;
+			log.info(getNumberOfPendingTasks() + " still in the queue");
+			// print queue status
+			printqueueStatus();
 
 			startMiapeExtractionNextInQueue();
-			printqueueStatus();
-			// if no more tasks are launched, fire the end
-			checkFinishSignal();
 
 		} else if (MiapeExtractionTask.MIAPE_CREATION_ERROR.equals(evt.getPropertyName())) {
-			numTaskRunning--;
 
 			final MiapeExtractionResult result = (MiapeExtractionResult) evt.getNewValue();
-			log.info("Error in task " + result.getMiapeExtractionTaskIdentifier() + " message: "
-					+ result.getErrorMessage());
+			final int jobID = result.getMiapeExtractionTaskIdentifier();
+			if (!finishRunningJob(jobID)) {
+				// already processed
+				return;
+			}
+			log.info("Error in task " + jobID + " message: " + result.getErrorMessage());
+			if (!cancelAll && getNumStarts(jobID) <= numRetries) {
+				log.info("The task " + jobID + " is going to be reanalyzed (attempt " + (getNumStarts(jobID) + 1)
+						+ " of " + (numRetries + 1) + ")");
+				requeue(jobID);
+			} else {
+				// add to failed job set
+				failedJobs.add(jobID);
+			}
 			log.info(getNumberOfPendingTasks() + " still in the queue");
 
-			// add to failed job set
-			failedJobs.add(result.getMiapeExtractionTaskIdentifier());
-			// remove from running job set
-			runningJobs.remove(result.getMiapeExtractionTaskIdentifier());
-
 			startMiapeExtractionNextInQueue();
 
 		} else if (MiapeExtractionTask.MIAPE_CREATION_CANCELED.equals(evt.getPropertyName())) {
-			numTaskRunning--;
 
 			final int jobID = (Integer) evt.getNewValue();
 			// remove from running job set
-			runningJobs.remove(jobID);
+			finishRunningJob(jobID);
 			// add to failed jobs
 			failedJobs.add(jobID);
 			log.info("Import tasks cancelled");
@@ -581,22 +811,17 @@ public class MiapeExtractionBatchManager implements PropertyChangeListener {
 
 		} else if (MiapeExtractionTask.MIAPE_CREATION_WAITING_FOR_OTHER_JOB_COMPLETION.equals(evt.getPropertyName())) {
 			final MiapeExtractionResult result = (MiapeExtractionResult) evt.getNewValue();
+			final int jobID = result.getMiapeExtractionTaskIdentifier();
 			log.info("Error message: " + result.getErrorMessage());
-			log.info(getNumberOfPendingTasks() + " still in the queue");
-			numTaskRunning--;
-
 			// remove from running job set
-			runningJobs.remove(result.getMiapeExtractionTaskIdentifier());
-
-			startMiapeExtractionNextInQueue();
-
-		} else if (MiapeExtractionTask.MIAPE_CREATION_STARTS.equals(evt.getPropertyName())) {
-			numTaskRunning++;
-			cancelAll = false;
+			if (finishRunningJob(jobID)) {
+				// it was started before its MS dataset was available. It
+				// doesn't count as an attempt
+				numStartsMap.put(jobID, getNumStarts(jobID) - 1);
+				requeue(jobID);
+			}
+			log.info(getNumberOfPendingTasks() + " still in the queue");
 
-			// add to running job set
-			final int jobID = (Integer) evt.getNewValue();
-			runningJobs.add(jobID);
 			startMiapeExtractionNextInQueue();
 
 		}
@@ -604,8 +829,11 @@ public class MiapeExtractionBatchManager implements PropertyChangeListener {
 	}
 
 	private void checkFinishSignal() {
-		if (getNumberOfPendingTasks() == 0 && getRunningJobs().size() == 0) {
-			listener.propertyChange(new PropertyChangeEvent(this, MIAPE_BATCH_DONE, null, getStatisticsOnTasks()));
+		if ((cancelAll || getNumberOfPendingTasks() == 0) && getRunningJobs().isEmpty()) {
+			if (!finishSignalFired) {
+				finishSignalFired = true;
+				listener.propertyChange(new PropertyChangeEvent(this, MIAPE_BATCH_DONE, null, getStatisticsOnTasks()));
+			}
 		} else {
 			log.debug("Still not finished!");
 		}
@@ -655,8 +883,8 @@ public class MiapeExtractionBatchManager implements PropertyChangeListener {
 
 	private synchronized int getNumberOfPendingTasks() {
 		int ret = 0;
-		for (final MiapeExtractionTask miapeTask : miapeExtractionTasks.valueCollection()) {
-			if (miapeTask.getState() == StateValue.PENDING) {
+		for (final int jobID : miapeExtractionQueueOrder.toArray()) {
+			if (isPending(jobID)) {
 				ret++;
 			}
 		}
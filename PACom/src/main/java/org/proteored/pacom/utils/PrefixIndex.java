@@ -0,0 +1,236 @@
+package org.proteored.pacom.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import gnu.trove.iterator.TObjectIntIterator;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+/**
+ * Case insensitive prefix index of words, for suggestions while typing.<br>
+ * The words are kept sorted by their lower case form, so that the words
+ * starting with a prefix are a contiguous range that is found by binary
+ * search. When the new prefix extends the previous one (the user keeps
+ * typing), the search is done only in the range of the previous prefix.<br>
+ * The suggestions are the words of the range with more occurrences.
+ *
+ * @author Salva
+ *
+ */
+public class PrefixIndex {
+	private final String[] words;
+	private final String[] lowerCaseWords;
+	private final int[] occurrences;
+	// the last search, to narrow the next one
+	private String lastPrefix;
+	private int lastFrom;
+	private int lastTo;
+
+	/**
+	 *
+	 * @param words
+	 *            the words, where the repeated ones are counted as
+	 *            occurrences
+	 */
+	public PrefixIndex(Collection<String> words) {
+		this(countOccurrences(words));
+	}
+
+	/**
+	 *
+	 * @param occurrences
+	 *            the number of occurrences of each word
+	 */
+	public PrefixIndex(TObjectIntHashMap<String> occurrences) {
+		final int size = occurrences.size();
+		final String[] unsortedWords = new String[size];
+		final String[] unsortedLowerCaseWords = new String[size];
+		final int[] unsortedOccurrences = new int[size];
+		final Integer[] order = new Integer[size];
+		final TObjectIntIterator<String> iterator = occurrences.iterator();
+		for (int i = 0; i < size; i++) {
+			iterator.advance();
+			unsortedWords[i] = iterator.key();
+			unsortedLowerCaseWords[i] = iterator.key().toLowerCase();
+			unsortedOccurrences[i] = iterator.value();
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				final int ret = unsortedLowerCaseWords[o1].compareTo(unsortedLowerCaseWords[o2]);
+				if (ret != 0) {
+					return ret;
+				}
+				return unsortedWords[o1].compareTo(unsortedWords[o2]);
+			}
+		});
+		words = new String[size];
+		lowerCaseWords = new String[size];
+		this.occurrences = new int[size];
+		for (int i = 0; i < size; i++) {
+			words[i] = unsortedWords[order[i]];
+			lowerCaseWords[i] = unsortedLowerCaseWords[order[i]];
+			this.occurrences[i] = unsortedOccurrences[order[i]];
+		}
+	}
+
+	private static TObjectIntHashMap<String> countOccurrences(Collection<String> words) {
+		final TObjectIntHashMap<String> ret = new TObjectIntHashMap<String>();
+		if (words != null) {
+			for (final String word : words) {
+				if (word != null) {
+					ret.adjustOrPutValue(word, 1, 1);
+				}
+			}
+		}
+		return ret;
+	}
+
+	public int size() {
+		return words.length;
+	}
+
+	/**
+	 *
+	 * @param prefix
+	 * @return the number of words starting with the prefix
+	 */
+	public synchronized int count(String prefix) {
+		search(prefix);
+		return lastTo - lastFrom;
+	}
+
+	/**
+	 * Gets the words starting with a prefix, ignoring the case, with the ones
+	 * with more occurrences first
+	 *
+	 * @param prefix
+	 * @param maxSuggestions
+	 *            the maximum number of words to return
+	 * @return
+	 */
+	public synchronized List<String> getSuggestions(String prefix, int maxSuggestions) {
+		final List<String> ret = new ArrayList<String>();
+		if (prefix == null || "".equals(prefix) || maxSuggestions <= 0) {
+			return ret;
+		}
+		search(prefix);
+		if (lastTo - lastFrom <= maxSuggestions) {
+			final Integer[] range = new Integer[lastTo - lastFrom];
+			for (int i = lastFrom; i < lastTo; i++) {
+				range[i - lastFrom] = i;
+			}
+			Arrays.sort(range, getByOccurrencesComparator());
+			for (final Integer index : range) {
+				ret.add(words[index]);
+			}
+			return ret;
+		}
+		// keep the top ones, with the worst of them at the head
+		final Comparator<Integer> byOccurrences = getByOccurrencesComparator();
+		final PriorityQueue<Integer> top = new PriorityQueue<Integer>(maxSuggestions + 1,
+				new Comparator<Integer>() {
+					@Override
+					public int compare(Integer o1, Integer o2) {
+						return byOccurrences.compare(o2, o1);
+					}
+				});
+		for (int i = lastFrom; i < lastTo; i++) {
+			if (top.size() < maxSuggestions) {
+				top.add(i);
+			} else if (occurrences[i] > occurrences[top.peek()]) {
+				top.poll();
+				top.add(i);
+			}
+		}
+		final Integer[] sorted = top.toArray(new Integer[top.size()]);
+		Arrays.sort(sorted, byOccurrences);
+		for (final Integer index : sorted) {
+			ret.add(words[index]);
+		}
+		return ret;
+	}
+
+	/**
+	 * More occurrences first, and then in alphabetical order
+	 *
+	 * @return
+	 */
+	private Comparator<Integer> getByOccurrencesComparator() {
+		return new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				final int ret = Integer.compare(occurrences[o2], occurrences[o1]);
+				if (ret != 0) {
+					return ret;
+				}
+				return Integer.compare(o1, o2);
+			}
+		};
+	}
+
+	/**
+	 * Sets lastFrom and lastTo to the range of the words starting with the
+	 * prefix
+	 *
+	 * @param prefix
+	 */
+	private void search(String prefix) {
+		final String lowerCasePrefix = prefix.toLowerCase();
+		if (lowerCasePrefix.equals(lastPrefix)) {
+			return;
+		}
+		int from = 0;
+		int to = words.length;
+		if (lastPrefix != null && lowerCasePrefix.startsWith(lastPrefix)) {
+			from = lastFrom;
+			to = lastTo;
+		}
+		lastFrom = lowerBound(lowerCasePrefix, from, to);
+		lastTo = upperBound(lowerCasePrefix, lastFrom, to);
+		lastPrefix = lowerCasePrefix;
+	}
+
+	/**
+	 *
+	 * @return the first index in [from,to) of a word not lower than the prefix
+	 */
+	private int lowerBound(String prefix, int from, int to) {
+		int low = from;
+		int high = to;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (lowerCaseWords[mid].compareTo(prefix) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 *
+	 * @return the first index in [from,to) of a word not starting with the
+	 *         prefix, being all the words from 'from' not lower than the
+	 *         prefix
+	 */
+	private int upperBound(String prefix, int from, int to) {
+		int low = from;
+		int high = to;
+		while (low < high) {
+			final int mid = (low + high) >>> 1;
+			if (lowerCaseWords[mid].startsWith(prefix)) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
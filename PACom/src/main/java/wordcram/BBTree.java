@@ -82,6 +82,14 @@ class BBTree {
 		return false;
 	}
 
+	/**
+	 * The bounds of this tree at its current location, including the
+	 * swelling: {left, top, right, bottom}. They contain all its kids.
+	 */
+	int[] getBounds() {
+		return getPoints();
+	}
+
 	private int[] getPoints() {
 		return new int[] {
 				rootX - swelling + x,
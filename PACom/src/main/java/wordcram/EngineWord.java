@@ -51,6 +51,10 @@ class EngineWord {
 		return bbTree.overlaps(other.bbTree);
 	}
 
+	int[] getBounds() {
+		return bbTree.getBounds();
+	}
+
 	void setDesiredLocation(WordPlacer placer, int count, int wordImageWidth, int wordImageHeight, int fieldWidth, int fieldHeight) {
 		desiredLocation = word.getTargetPlace(placer, rank, count, wordImageWidth, wordImageHeight, fieldWidth, fieldHeight);
 		currentLocation = desiredLocation.get();
@@ -0,0 +1,106 @@
+package wordcram;
+
+import java.util.ArrayList;
+
+/**
+ * A uniform grid over the field, holding the words that have already been
+ * placed in the cells that their bounding boxes cover. When WordCram tries a
+ * spot for a word, only the words in the cells covered by the word are checked
+ * for overlaps, instead of all the words placed so far.
+ * <p>
+ * Words can be looked up from several threads at once, as long as no word is
+ * being added at the same time.
+ */
+class PlacedWordGrid {
+
+	static final int DEFAULT_CELL_SIZE = 32;
+
+	private final int cellSize;
+	private final int columns;
+	private final int rows;
+	private final ArrayList<Entry>[] cells;
+
+	@SuppressWarnings("unchecked")
+	PlacedWordGrid(int fieldWidth, int fieldHeight, int cellSize) {
+		this.cellSize = cellSize;
+		this.columns = Math.max(1, (fieldWidth + cellSize - 1) / cellSize);
+		this.rows = Math.max(1, (fieldHeight + cellSize - 1) / cellSize);
+		this.cells = new ArrayList[columns * rows];
+	}
+
+	/**
+	 * Adds a word at its final location.
+	 */
+	void add(EngineWord eWord) {
+		int[] bounds = eWord.getBounds();
+		int firstColumn = column(bounds[0]);
+		int lastColumn = column(bounds[2]);
+		int firstRow = row(bounds[1]);
+		int lastRow = row(bounds[3]);
+		Entry entry = new Entry(eWord, firstColumn, firstRow);
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				int cell = row * columns + column;
+				if (cells[cell] == null) {
+					cells[cell] = new ArrayList<Entry>(4);
+				}
+				cells[cell].add(entry);
+			}
+		}
+	}
+
+	/**
+	 * Finds a placed word that overlaps the word at its current location.
+	 *
+	 * @return the overlapping word, or null if the word doesn't overlap any
+	 *         placed word.
+	 */
+	EngineWord findOverlap(EngineWord eWord) {
+		int[] bounds = eWord.getBounds();
+		int firstColumn = column(bounds[0]);
+		int lastColumn = column(bounds[2]);
+		int firstRow = row(bounds[1]);
+		int lastRow = row(bounds[3]);
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				ArrayList<Entry> cell = cells[row * columns + column];
+				if (cell == null) {
+					continue;
+				}
+				for (int i = 0; i < cell.size(); i++) {
+					Entry entry = cell.get(i);
+					// a word covering several of these cells is only checked in
+					// the first cell shared by both words
+					if (Math.max(firstColumn, entry.firstColumn) != column
+							|| Math.max(firstRow, entry.firstRow) != row) {
+						continue;
+					}
+					if (eWord.overlaps(entry.eWord)) {
+						return entry.eWord;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	private int column(int x) {
+		return x < 0 ? 0 : Math.min(columns - 1, x / cellSize);
+	}
+
+	private int row(int y) {
+		return y < 0 ? 0 : Math.min(rows - 1, y / cellSize);
+	}
+
+	private static class Entry {
+		private final EngineWord eWord;
+		private final int firstColumn;
+		private final int firstRow;
+
+		private Entry(EngineWord eWord, int firstColumn, int firstRow) {
+			this.eWord = eWord;
+			this.firstColumn = firstColumn;
+			this.firstRow = firstRow;
+		}
+	}
+}
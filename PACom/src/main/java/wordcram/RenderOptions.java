@@ -5,4 +5,5 @@ class RenderOptions {
 	int maxNumberOfWordsToDraw = -1; // default: unlimited
 	int minShapeSize = 7;
 	int wordPadding = 0;
+	int placementThreads = 1; // default: place the words one by one
 }
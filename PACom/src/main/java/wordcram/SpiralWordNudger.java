@@ -23,12 +23,12 @@ public class SpiralWordNudger implements WordNudger {
 
 	// Who knows? this seems to be good, but it seems to depend on the font --
 	// bigger fonts need a bigger thetaIncrement.
-	private float thetaIncrement = (float) (Math.PI * 0.03);
-
+	// It's computed per attempt, and not kept in a field, so the nudger can
+	// be used from several threads (see WordCram.withParallelPlacement).
 	public PVector nudgeFor(Word w, int attempt) {
 		float rad = powerMap(0.6f, attempt, 0, 600, 1, 100);
 
-		thetaIncrement = powerMap(1, attempt, 0, 600, 0.5f, 0.3f);
+		float thetaIncrement = powerMap(1, attempt, 0, 600, 0.5f, 0.3f);
 		float theta = thetaIncrement * attempt;
 		float x = PApplet.cos(theta) * rad;
 		float y = PApplet.sin(theta) * rad;
@@ -710,6 +710,21 @@ public class WordCram {
 		renderOptions.wordPadding = padding;
 		return this;
 	}
+
+	/**
+	 * Look for a spot for several words at the same time, using the given
+	 * number of threads. The words are still drawn one by one, in order, so
+	 * the result is the same as placing them one by one, as long as the
+	 * WordPlacer and the WordNudger give the same spots when called from
+	 * several threads. Don't use it with a WordNudger that draws on the
+	 * canvas, like the PlottingWordNudger. By default, it's 1 (no threads).
+	 * @param threads the number of threads used to place the words.
+	 * @return The WordCram, for further setup or drawing.
+	 */
+	public WordCram withParallelPlacement(int threads) {
+		renderOptions.placementThreads = threads;
+		return this;
+	}
 	
 	
 	private WordCramEngine getWordCramEngine() {
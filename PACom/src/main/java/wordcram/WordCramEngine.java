@@ -23,6 +23,13 @@ import java.awt.Shape;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import processing.core.PFont;
 import processing.core.PGraphics;
@@ -47,6 +54,14 @@ class WordCramEngine {
 
 	private RenderOptions renderOptions;
 
+	private PlacedWordGrid placedWords;
+
+	// parallel placement: the words of a batch look for a spot at the same
+	// time, and then they are committed in order
+	private ExecutorService placementExecutor;
+	private int batchStart = 0;
+	private boolean[] batchFoundPlace = new boolean[0];
+
 	WordCramEngine(PGraphics destination, Word[] words, WordFonter fonter,
 			WordSizer sizer, WordColorer colorer, WordAngler angler,
 			WordPlacer placer, WordNudger nudger, WordShaper shaper,
@@ -69,6 +84,8 @@ class WordCramEngine {
 		this.renderOptions = renderOptions;
 		this.words = words;
 		this.eWords = wordsIntoEngineWords(words, shaper, bbTreeBuilder);
+		this.placedWords = new PlacedWordGrid(destination.width,
+				destination.height, PlacedWordGrid.DEFAULT_CELL_SIZE);
 	}
 
 	private EngineWord[] wordsIntoEngineWords(Word[] words,
@@ -131,14 +148,102 @@ class WordCramEngine {
 
 		EngineWord eWord = eWords[++eWordIndex];
 
-		boolean wasPlaced = placeWord(eWord);
+		boolean wasPlaced = renderOptions.placementThreads > 1 ? placeWordInBatch(eWordIndex)
+				: placeWord(eWord);
 		if (wasPlaced) { // TODO unit test (somehow)
 			drawWordImage(eWord);
 		}
+
+		if (!hasMore() && placementExecutor != null) {
+			placementExecutor.shutdown();
+			placementExecutor = null;
+		}
 	}
 
 	private boolean placeWord(EngineWord eWord) {
-		Word word = eWord.word;
+		setDesiredLocation(eWord);
+
+		if (findPlace(eWord)) {
+			commitWord(eWord);
+			return true;
+		}
+
+		skipWord(eWord.word, WordCram.NO_SPACE);
+		return false;
+	}
+
+	/**
+	 * Places the word at the given index, which belongs to a batch of words
+	 * that looked for a spot in parallel, against the words placed before the
+	 * batch. The words of the batch are committed in order: if a word now
+	 * overlaps a word of its own batch that was committed before it, it looks
+	 * for a spot again.
+	 */
+	private boolean placeWordInBatch(int index) {
+		if (index >= batchStart + batchFoundPlace.length) {
+			findPlacesForBatch(index);
+		}
+		EngineWord eWord = eWords[index];
+
+		// If it didn't fit with fewer words around, it won't fit now.
+		if (batchFoundPlace[index - batchStart]) {
+			if (placedWords.findOverlap(eWord) == null || findPlace(eWord)) {
+				commitWord(eWord);
+				return true;
+			}
+		}
+
+		skipWord(eWord.word, WordCram.NO_SPACE);
+		return false;
+	}
+
+	private void findPlacesForBatch(int start) {
+		int end = Math.min(eWords.length, start + renderOptions.placementThreads * 2);
+
+		// the placer is called in order, as when placing them one by one
+		for (int i = start; i < end; i++) {
+			setDesiredLocation(eWords[i]);
+		}
+
+		List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+		for (int i = start; i < end; i++) {
+			final EngineWord eWord = eWords[i];
+			futures.add(getPlacementExecutor().submit(new Callable<Boolean>() {
+				public Boolean call() {
+					return findPlace(eWord);
+				}
+			}));
+		}
+
+		batchStart = start;
+		batchFoundPlace = new boolean[end - start];
+		try {
+			for (int i = 0; i < futures.size(); i++) {
+				batchFoundPlace[i] = futures.get(i).get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while placing the words", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Error placing the words", e.getCause());
+		}
+	}
+
+	private ExecutorService getPlacementExecutor() {
+		if (placementExecutor == null) {
+			placementExecutor = Executors.newFixedThreadPool(
+					renderOptions.placementThreads, new ThreadFactory() {
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "WordCram placer");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		return placementExecutor;
+	}
+
+	private void setDesiredLocation(EngineWord eWord) {
 		Rectangle2D rect = eWord.getShape().getBounds2D(); // TODO can we move
 															// these into
 															// EngineWord.setDesiredLocation?
@@ -149,6 +254,20 @@ class WordCramEngine {
 
 		eWord.setDesiredLocation(placer, eWords.length, wordImageWidth,
 				wordImageHeight, destination.width, destination.height);
+	}
+
+	/**
+	 * Nudges the word from its desired location until it doesn't overlap any
+	 * placed word. Only the words around it are checked, using the
+	 * {@link PlacedWordGrid}.
+	 *
+	 * @return true if a spot was found; the word is left there.
+	 */
+	private boolean findPlace(EngineWord eWord) {
+		Word word = eWord.word;
+		Rectangle2D rect = eWord.getShape().getBounds2D();
+		int wordImageWidth = (int) rect.getWidth();
+		int wordImageHeight = (int) rect.getHeight();
 
 		// Set maximum number of placement trials
 		int maxAttemptsToPlace = renderOptions.maxAttemptsToPlaceWord > 0 ? renderOptions.maxAttemptsToPlaceWord
@@ -170,28 +289,20 @@ class WordCramEngine {
 				continue;
 			}
 
-			boolean foundOverlap = false;
-			for (int i = 0; !foundOverlap && i < eWordIndex; i++) {
-				EngineWord otherWord = eWords[i];
-				if (otherWord.wasSkipped())
-					continue; // can't overlap with skipped word
-
-				if (eWord.overlaps(otherWord)) {
-					foundOverlap = true;
-					lastCollidedWith = otherWord;
-				}
-			}
-
-			if (!foundOverlap) {
-				eWord.finalizeLocation();
+			EngineWord overlapped = placedWords.findOverlap(eWord);
+			if (overlapped == null) {
 				return true;
 			}
+			lastCollidedWith = overlapped;
 		}
-
-		skipWord(eWord.word, WordCram.NO_SPACE);
 		return false;
 	}
 
+	private void commitWord(EngineWord eWord) {
+		eWord.finalizeLocation();
+		placedWords.add(eWord);
+	}
+
 	private int calculateMaxAttemptsFromWordWeight(Word word) {
 		return (int) ((1.0 - word.weight) * 600) + 100;
 	}
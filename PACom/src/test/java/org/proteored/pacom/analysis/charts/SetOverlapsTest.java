@@ -0,0 +1,87 @@
+package org.proteored.pacom.analysis.charts;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Test;
+import org.proteored.miapeapi.exceptions.IllegalMiapeArgumentException;
+
+/**
+ * Tests of the {@link SetOverlaps}
+ *
+ * @author Salva
+ *
+ */
+public class SetOverlapsTest {
+
+	private SetOverlaps createOverlaps() {
+		final List<Collection<String>> keySets = new ArrayList<Collection<String>>();
+		// "a" is repeated in the first set
+		keySets.add(Arrays.asList("a", "b", "c", "a"));
+		keySets.add(Arrays.asList("b", "c", "d"));
+		keySets.add(Arrays.asList("c", "e"));
+		return new SetOverlaps(keySets);
+	}
+
+	@Test
+	public void countsTheItemsOfEachRegion() {
+		final SetOverlaps overlaps = createOverlaps();
+		assertEquals(3, overlaps.getNumSets());
+		assertEquals(0, overlaps.getRegionSize(0));
+		// only in the first set: a
+		assertEquals(1, overlaps.getRegionSize(1));
+		// only in the second set: d
+		assertEquals(1, overlaps.getRegionSize(2));
+		// in the first and second sets: b
+		assertEquals(1, overlaps.getRegionSize(3));
+		// only in the third set: e
+		assertEquals(1, overlaps.getRegionSize(4));
+		assertEquals(0, overlaps.getRegionSize(5));
+		assertEquals(0, overlaps.getRegionSize(6));
+		// in all the sets: c
+		assertEquals(1, overlaps.getRegionSize(7));
+	}
+
+	@Test
+	public void countsTheIntersectionsAndUnions() {
+		final SetOverlaps overlaps = createOverlaps();
+		assertEquals(2, overlaps.getIntersectionSize(3));
+		assertEquals(1, overlaps.getIntersectionSize(5));
+		assertEquals(1, overlaps.getIntersectionSize(7));
+		assertEquals(4, overlaps.getUnionSize(3));
+		assertEquals(4, overlaps.getUnionSize(5));
+		assertEquals(3, overlaps.getSize(0));
+		assertEquals(3, overlaps.getSize(1));
+		assertEquals(2, overlaps.getSize(2));
+		assertEquals(5, overlaps.getTotalSize());
+	}
+
+	@Test
+	public void createsTheOverlapsFromTheRegionSizes() {
+		final int[] regionSizes = new int[] { 0, 1, 1, 1, 1, 0, 0, 1 };
+		final SetOverlaps overlaps = SetOverlaps.fromRegionSizes(3, regionSizes);
+		// the sizes are copied
+		regionSizes[7] = 10;
+		assertEquals(1, overlaps.getRegionSize(7));
+		assertEquals(5, overlaps.getTotalSize());
+		assertEquals(2, overlaps.getIntersectionSize(3));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsAWrongNumberOfRegions() {
+		SetOverlaps.fromRegionSizes(3, new int[4]);
+	}
+
+	@Test(expected = IllegalMiapeArgumentException.class)
+	public void rejectsTooManySets() {
+		final List<Collection<String>> keySets = new ArrayList<Collection<String>>();
+		for (int i = 0; i <= SetOverlaps.MAX_SETS; i++) {
+			keySets.add(Arrays.asList(String.valueOf(i)));
+		}
+		new SetOverlaps(keySets);
+	}
+}
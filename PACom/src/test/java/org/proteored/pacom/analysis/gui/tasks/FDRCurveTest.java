@@ -0,0 +1,80 @@
+package org.proteored.pacom.analysis.gui.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.jfree.data.xy.XYSeries;
+import org.junit.Test;
+
+/**
+ * Tests of the series of the {@link FDRCurve}
+ *
+ * @author Salva
+ *
+ */
+public class FDRCurveTest {
+
+	private static void assertPoint(XYSeries series, int index, double x, double y) {
+		assertEquals(x, series.getX(index).doubleValue(), 0.0001);
+		assertEquals(y, series.getY(index).doubleValue(), 0.0001);
+	}
+
+	@Test
+	public void theFDRvsNumItemsSeriesReplacesThePointsWithTheSameFDR() {
+		final float[] fdrs = new float[] { 0f, 0f, 0.1f, 0.1f, 0.2f };
+		final FDRCurve curve = new FDRCurve(new float[] { 10f, 9f, 8f, 7f, 6f }, fdrs, fdrs);
+		assertEquals(5, curve.size());
+		final XYSeries series = curve.getFDRvsNumItemsSeries("series", FDRCurve.DEFAULT_MAX_POINTS);
+		assertEquals(5, series.getItemCount());
+		assertPoint(series, 0, 0, 0);
+		assertPoint(series, 1, 0, 1);
+		assertPoint(series, 2, 0, 2);
+		assertPoint(series, 3, 0.1, 4);
+		assertPoint(series, 4, 0.2, 5);
+	}
+
+	@Test
+	public void theScoreVsFDRSeriesSkipsTheItemsWithoutScore() {
+		final float[] fdrs = new float[] { 0f, 0f, 0.1f, 0.2f };
+		final FDRCurve curve = new FDRCurve(new float[] { 10f, Float.NaN, 8f, 7f }, fdrs, fdrs);
+		final XYSeries series = curve.getScoreVsFDRSeries("series", FDRCurve.DEFAULT_MAX_POINTS);
+		assertEquals(3, series.getItemCount());
+		assertPoint(series, 0, 10, 0);
+		assertPoint(series, 1, 8, 0.1);
+		assertPoint(series, 2, 7, 0.2);
+	}
+
+	@Test
+	public void theScoreVsFDRSeriesUsesItsOwnFDRs() {
+		// as in the protein level, where the groups without a best peptide are
+		// not counted for the score vs FDR series
+		final FDRCurve curve = new FDRCurve(new float[] { 10f, Float.NaN, 8f }, new float[] { 0f, 0.5f, 0.6f },
+				new float[] { 0f, 0f, 0.3f });
+		final XYSeries series = curve.getScoreVsFDRSeries("series", FDRCurve.DEFAULT_MAX_POINTS);
+		assertEquals(2, series.getItemCount());
+		assertPoint(series, 0, 10, 0);
+		assertPoint(series, 1, 8, 0.3);
+	}
+
+	@Test
+	public void decimatesTheSeriesKeepingTheFirstAndLastPoints() {
+		final int size = 1000;
+		final float[] scores = new float[size];
+		final float[] fdrs = new float[size];
+		for (int i = 0; i < size; i++) {
+			scores[i] = size - i;
+			fdrs[i] = (i + 1) / 10000f;
+		}
+		final FDRCurve curve = new FDRCurve(scores, fdrs, fdrs);
+		final XYSeries series = curve.getFDRvsNumItemsSeries("series", 10);
+		assertTrue(series.getItemCount() <= 10);
+		assertPoint(series, 0, 0, 0);
+		assertPoint(series, series.getItemCount() - 1, fdrs[size - 1], size);
+		// the points keep their order
+		for (int i = 1; i < series.getItemCount(); i++) {
+			assertTrue(series.getY(i).doubleValue() > series.getY(i - 1).doubleValue());
+		}
+		// less than 4 points are not decimated
+		assertEquals(size + 1, curve.getFDRvsNumItemsSeries("series", 3).getItemCount());
+	}
+}
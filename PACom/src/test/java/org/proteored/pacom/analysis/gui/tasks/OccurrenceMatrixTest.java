@@ -0,0 +1,105 @@
+package org.proteored.pacom.analysis.gui.tasks;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import gnu.trove.list.array.TIntArrayList;
+
+/**
+ * Tests of the {@link OccurrenceMatrix}
+ *
+ * @author Salva
+ *
+ */
+public class OccurrenceMatrixTest {
+
+	/**
+	 * <pre>
+	 *     c0 c1 c2
+	 * A    1  0  2
+	 * B    0  0  0
+	 * C    3  1  0
+	 * D    0  2  1
+	 * </pre>
+	 */
+	private OccurrenceMatrix createMatrix() {
+		final OccurrenceMatrix matrix = new OccurrenceMatrix(3);
+		for (final String key : Arrays.asList("A", "B", "C", "D")) {
+			matrix.addRow(key);
+		}
+		matrix.set(matrix.getRowId("A"), 0, 1);
+		matrix.set(matrix.getRowId("A"), 2, 2);
+		matrix.set(matrix.getRowId("C"), 0, 3);
+		matrix.set(matrix.getRowId("C"), 1, 1);
+		matrix.set(matrix.getRowId("D"), 1, 2);
+		matrix.set(matrix.getRowId("D"), 2, 1);
+		return matrix;
+	}
+
+	@Test
+	public void addsEachRowOnce() {
+		final OccurrenceMatrix matrix = new OccurrenceMatrix(2);
+		assertEquals(0, matrix.addRow("A"));
+		assertEquals(1, matrix.addRow("B"));
+		assertEquals(0, matrix.addRow("A"));
+		assertEquals(2, matrix.getNumRows());
+		assertEquals(2, matrix.getNumColumns());
+		assertEquals(-1, matrix.getRowId("C"));
+		assertEquals("B", matrix.getRowKey(1));
+		assertFalse(matrix.hasNonZeroValues());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void rowsCannotBeAddedAfterSettingValues() {
+		final OccurrenceMatrix matrix = new OccurrenceMatrix(2);
+		matrix.addRow("A");
+		matrix.set(0, 1, 1);
+		// an existing row is fine
+		matrix.addRow("A");
+		matrix.addRow("B");
+	}
+
+	@Test
+	public void sumsAndCountsTheRows() {
+		final OccurrenceMatrix matrix = createMatrix();
+		assertTrue(matrix.hasNonZeroValues());
+		assertEquals(3, matrix.get(matrix.getRowId("C"), 0));
+		assertArrayEquals(new int[] { 3, 0, 4, 3 }, matrix.getRowTotals());
+		assertArrayEquals(new int[] { 2, 0, 2, 2 }, matrix.getRowPresences());
+	}
+
+	@Test
+	public void sortsTheRowsByScoreKeepingTheOrderOfTheTies() {
+		final OccurrenceMatrix matrix = createMatrix();
+		final TIntArrayList rows = matrix.getRowsSortedByScore(matrix.getRowTotals(), 1);
+		assertArrayEquals(new int[] { 2, 0, 3 }, rows.toArray());
+		assertEquals(Arrays.asList("C", "A", "D"), matrix.getRowKeys(rows));
+		assertEquals(0, matrix.getRowsSortedByScore(matrix.getRowTotals(), 5).size());
+	}
+
+	@Test
+	public void getsTheRowsOfTheSelectedKeys() {
+		final OccurrenceMatrix matrix = createMatrix();
+		assertArrayEquals(new int[] { 3, -1, 0 },
+				matrix.getRowIds(Arrays.asList("D", "X", "A"), null).toArray());
+		final TIntArrayList selected = new TIntArrayList(new int[] { 0, 2 });
+		assertArrayEquals(new int[] { -1, -1, 0 },
+				matrix.getRowIds(Arrays.asList("D", "X", "A"), selected).toArray());
+	}
+
+	@Test
+	public void createsTheDatasetOfSomeRows() {
+		final OccurrenceMatrix matrix = createMatrix();
+		final double[][] dataset = matrix.toDataset(new TIntArrayList(new int[] { 3, -1, 0 }));
+		assertEquals(3, dataset.length);
+		assertArrayEquals(new double[] { 0, 2, 1 }, dataset[0], 0.0);
+		assertArrayEquals(new double[] { 0, 0, 0 }, dataset[1], 0.0);
+		assertArrayEquals(new double[] { 1, 0, 2 }, dataset[2], 0.0);
+	}
+}
@@ -0,0 +1,87 @@
+package org.proteored.pacom.analysis.gui.tasks;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.proteored.miapeapi.experiment.model.ExtendedIdentifiedPeptide;
+
+/**
+ * Tests of the {@link PSMColumns}
+ *
+ * @author Salva
+ *
+ */
+public class PSMColumnsTest {
+
+	private static ExtendedIdentifiedPeptide createPeptide(Float mz, String charge, String rt, String sequence,
+			boolean decoy, Float score) {
+		final ExtendedIdentifiedPeptide peptide = mock(ExtendedIdentifiedPeptide.class);
+		when(peptide.getExperimentalMassToCharge()).thenReturn(mz);
+		when(peptide.getTheoreticMass()).thenReturn(1000.5);
+		when(peptide.getCharge()).thenReturn(charge);
+		when(peptide.getRetentionTimeInSeconds()).thenReturn(rt);
+		when(peptide.getSequence()).thenReturn(sequence);
+		when(peptide.isDecoy()).thenReturn(decoy);
+		when(peptide.getScore("Xcorr")).thenReturn(score);
+		return peptide;
+	}
+
+	@Test
+	public void takesTheValuesOfEachPSM() {
+		final ExtendedIdentifiedPeptide peptide = createPeptide(500.25f, "2", "120.5", "PEPTIDE", true, 3.5f);
+		final PSMColumns columns = new PSMColumns(Collections.singletonList(peptide));
+		assertEquals(1, columns.size());
+		assertArrayEquals(new double[] { 500.25 }, columns.getExperimentalMz(), 0.001);
+		assertArrayEquals(new double[] { 1000.5 }, columns.getTheoreticMass(), 0.001);
+		assertArrayEquals(new int[] { 2 }, columns.getCharge());
+		assertArrayEquals(new double[] { 120.5 }, columns.getRtInSeconds(), 0.001);
+		assertArrayEquals(new int[] { 7 }, columns.getLength());
+		assertArrayEquals(new boolean[] { true }, columns.getDecoy());
+		assertArrayEquals(new double[] { 3.5 }, columns.getScore("Xcorr"), 0.001);
+	}
+
+	@Test
+	public void theMissingValuesAreNaNOrOutOfRange() {
+		final ExtendedIdentifiedPeptide peptide = createPeptide(null, "not a charge", "not a time", null, false,
+				null);
+		final PSMColumns columns = new PSMColumns(Collections.singletonList(peptide));
+		assertEquals(Double.NaN, columns.getExperimentalMz()[0], 0.0);
+		assertArrayEquals(new int[] { 0 }, columns.getCharge());
+		assertEquals(Double.NaN, columns.getRtInSeconds()[0], 0.0);
+		assertArrayEquals(new int[] { -1 }, columns.getLength());
+		assertEquals(Double.NaN, columns.getScore("Xcorr")[0], 0.0);
+		assertEquals(Double.NaN, columns.getScore("other score")[0], 0.0);
+		// negative charges are not valid
+		final PSMColumns negativeCharge = new PSMColumns(
+				Collections.singletonList(createPeptide(500f, "-1", null, "PEPTIDE", false, 1f)));
+		assertArrayEquals(new int[] { 0 }, negativeCharge.getCharge());
+		assertEquals(Double.NaN, negativeCharge.getRtInSeconds()[0], 0.0);
+	}
+
+	@Test
+	public void buildsTheColumnOfEachScoreOnce() {
+		final ExtendedIdentifiedPeptide peptide1 = createPeptide(500f, "2", null, "PEPTIDE", false, 1f);
+		final ExtendedIdentifiedPeptide peptide2 = createPeptide(600f, "3", null, "PEPTIDES", false, 2f);
+		final PSMColumns columns = new PSMColumns(Arrays.asList(peptide1, peptide2));
+		final double[] scores = columns.getScore("Xcorr");
+		assertArrayEquals(new double[] { 1, 2 }, scores, 0.0);
+		assertSame(scores, columns.getScore("Xcorr"));
+		verify(peptide1, times(1)).getScore("Xcorr");
+		verify(peptide2, times(1)).getScore("Xcorr");
+	}
+
+	@Test
+	public void acceptsNoPeptides() {
+		assertEquals(0, new PSMColumns(null).size());
+		assertEquals(0, new PSMColumns(null).getScore("Xcorr").length);
+	}
+}
@@ -0,0 +1,98 @@
+package org.proteored.pacom.analysis.gui.tasks;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests of the {@link SetMemberships}
+ *
+ * @author Salva
+ *
+ */
+public class SetMembershipsTest {
+
+	private SetMemberships createMemberships() {
+		final List<Collection<String>> keySets = new ArrayList<Collection<String>>();
+		// "a" is repeated in the first set
+		keySets.add(Arrays.asList("a", "b", "c", "a"));
+		keySets.add(Arrays.asList("b", "c", "d"));
+		keySets.add(Arrays.asList("c", "e"));
+		return new SetMemberships(keySets);
+	}
+
+	@Test
+	public void countsTheDifferentItems() {
+		final SetMemberships memberships = createMemberships();
+		assertEquals(3, memberships.getNumSets());
+		assertEquals(5, memberships.getNumKeys());
+	}
+
+	@Test
+	public void countsTheItemsExclusiveToEachSet() {
+		// a, d and e
+		assertArrayEquals(new int[] { 1, 1, 1 }, createMemberships().getExclusiveCounts());
+	}
+
+	@Test
+	public void countsTheAccumulativeItemsInTheOrderOfTheSets() {
+		assertArrayEquals(new int[] { 3, 4, 5 }, createMemberships().getAccumulativeCounts());
+	}
+
+	@Test
+	public void theSaturationCurveEndsInTheUnionOfAllTheSets() {
+		final double[] curve = createMemberships().getSaturationCurve(SetMemberships.DEFAULT_NUM_ORDERINGS, 1L);
+		assertEquals(3, curve.length);
+		// the first set has 2 or 3 items, whatever the order
+		assertTrue(curve[0] >= 2 && curve[0] <= 3);
+		assertTrue(curve[1] >= curve[0]);
+		assertTrue(curve[2] >= curve[1]);
+		assertEquals(5.0, curve[2], 0.0);
+	}
+
+	@Test
+	public void theRandomOrdersAreUniformlyDistributed() {
+		final int numOrderings = 8000;
+		for (final int numSets : new int[] { 2, 3, 4, 8 }) {
+			// times that each set is first and last
+			final int[] first = new int[numSets];
+			final int[] last = new int[numSets];
+			final int[] order = new int[numSets];
+			for (int ordering = 0; ordering < numOrderings; ordering++) {
+				SetMemberships.shuffle(order, ordering, 0L);
+				first[order[0]]++;
+				last[order[numSets - 1]]++;
+			}
+			final double expected = (double) numOrderings / numSets;
+			for (int set = 0; set < numSets; set++) {
+				assertEquals(numSets + " sets, set " + set + " first", expected, first[set], expected * 0.15);
+				assertEquals(numSets + " sets, set " + set + " last", expected, last[set], expected * 0.15);
+			}
+		}
+	}
+
+	@Test
+	public void theSaturationCurveStartsInTheAverageSize() {
+		final List<Collection<String>> keySets = new ArrayList<Collection<String>>();
+		keySets.add(Arrays.asList("a"));
+		keySets.add(Arrays.asList("b", "c"));
+		keySets.add(Arrays.asList("d", "e", "f"));
+		keySets.add(Arrays.asList("g", "h", "i", "j"));
+		final double[] curve = new SetMemberships(keySets).getSaturationCurve(4000, 0L);
+		assertEquals(2.5, curve[0], 0.1);
+		assertEquals(10.0, curve[3], 0.0);
+	}
+
+	@Test
+	public void theSaturationCurveDependsOnlyOnTheSeed() {
+		final SetMemberships memberships = createMemberships();
+		assertArrayEquals(memberships.getSaturationCurve(35, 7L), memberships.getSaturationCurve(35, 7L), 0.0);
+	}
+}
@@ -0,0 +1,142 @@
+package org.proteored.pacom.analysis.headless;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.jfree.data.statistics.HistogramType;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.proteored.miapeapi.exceptions.IllegalMiapeArgumentException;
+import org.proteored.miapeapi.experiment.model.IdentificationItemEnum;
+import org.proteored.miapeapi.experiment.model.sort.ProteinGroupComparisonType;
+import org.proteored.pacom.analysis.gui.ChartType;
+import org.proteored.pacom.analysis.util.DataLevel;
+
+/**
+ * Tests of the parsing of the command line of the {@link HeadlessRunner}
+ *
+ * @author Salva
+ *
+ */
+public class HeadlessOptionsTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private String projectPath;
+
+	@Before
+	public void setUp() throws IOException {
+		projectPath = folder.newFile("project.xml").getAbsolutePath();
+	}
+
+	private HeadlessOptions parse(String... args) {
+		return HeadlessOptions.parse(args);
+	}
+
+	@Test
+	public void parsesTheTablesWithTheDefaultOptions() {
+		final HeadlessOptions options = parse("-project", projectPath, "-tables", "protein,PEPTIDE");
+		assertEquals(Collections.singletonList(new File(projectPath)), options.getProjectFiles());
+		assertEquals(Arrays.asList(IdentificationItemEnum.PROTEIN, IdentificationItemEnum.PEPTIDE),
+				options.getTables());
+		assertTrue(options.getChartTypes().isEmpty());
+		assertEquals(Collections.singletonList(ChartFileFormat.PNG), options.getFormats());
+		assertEquals(new File("."), options.getOutputFolder());
+		assertEquals(DataLevel.LEVEL1, options.getDataLevel());
+		assertNull(options.getFdrThreshold());
+		assertEquals(ProteinGroupComparisonType.BEST_PROTEIN, options.getComparisonType());
+		assertFalse(options.isDistinguishModifiedPeptides());
+	}
+
+	@Test
+	public void parsesTheCharts() {
+		final HeadlessOptions options = parse("-project", projectPath, "-charts", "PEPTIDE_RT, peptide_charge_histogram",
+				"-formats", "svg,PDF", "-out", folder.getRoot().getAbsolutePath(), "-width", "800", "-height", "600",
+				"-level", "level2", "-threads", "1");
+		assertEquals(Arrays.asList(ChartType.PEPTIDE_RT, ChartType.PEPTIDE_CHARGE_HISTOGRAM), options.getChartTypes());
+		assertEquals(Arrays.asList(ChartFileFormat.SVG, ChartFileFormat.PDF), options.getFormats());
+		assertEquals(folder.getRoot().getAbsoluteFile(), options.getOutputFolder().getAbsoluteFile());
+		assertEquals(800, options.getWidth());
+		assertEquals(600, options.getHeight());
+		assertEquals(DataLevel.LEVEL2, options.getDataLevel());
+	}
+
+	@Test
+	public void parsesTheFiltersAndTheFlags() {
+		final HeadlessOptions options = parse("-project", projectPath, "-tables", "peptide", "-fdr", "1.5", "-fdrScore",
+				"Xcorr", "-decoyPrefix", "REV_", "-fdrLevel", "protein", "-concatenatedDecoyDB", "-peptideLength",
+				"7-30", "-minPeptidesPerProtein", "2", "-distinguishModifiedPeptides", "-includeDecoyHits",
+				"-annotateProteins", "-histogramType", "relative_frequency", "-comparisonType", "all_proteins");
+		assertEquals(1.5f, options.getFdrThreshold(), 0.0f);
+		assertEquals("Xcorr", options.getFdrScoreName());
+		assertEquals("REV_", options.getDecoyPrefix());
+		assertEquals(IdentificationItemEnum.PROTEIN, options.getFdrItem());
+		assertTrue(options.isConcatenatedDecoyDB());
+		assertEquals(Integer.valueOf(7), options.getMinLength());
+		assertEquals(Integer.valueOf(30), options.getMaxLength());
+		assertEquals(Integer.valueOf(2), options.getMinPeptidesPerProtein());
+		assertTrue(options.isDistinguishModifiedPeptides());
+		assertTrue(options.isIncludeDecoyHits());
+		assertTrue(options.isAnnotateProteinsInUniprot());
+		assertEquals(HistogramType.RELATIVE_FREQUENCY, options.getHistogramType());
+		assertEquals(ProteinGroupComparisonType.ALL_PROTEINS, options.getComparisonType());
+	}
+
+	@Test(expected = IllegalMiapeArgumentException.class)
+	public void requiresAProject() {
+		parse("-tables", "protein");
+	}
+
+	@Test(expected = IllegalMiapeArgumentException.class)
+	public void requiresSomethingToDo() {
+		parse("-project", projectPath);
+	}
+
+	@Test(expected = IllegalMiapeArgumentException.class)
+	public void theFDRRequiresTheScoreAndTheDecoyPrefix() {
+		parse("-project", projectPath, "-tables", "protein", "-fdr", "1", "-fdrScore", "Xcorr");
+	}
+
+	@Test(expected = IllegalMiapeArgumentException.class)
+	public void rejectsUnknownOptions() {
+		parse("-project", projectPath, "-tables", "protein", "-unknown", "value");
+	}
+
+	@Test(expected = IllegalMiapeArgumentException.class)
+	public void rejectsOptionsWithoutValue() {
+		parse("-project", projectPath, "-tables");
+	}
+
+	@Test(expected = IllegalMiapeArgumentException.class)
+	public void rejectsInvertedPeptideLengths() {
+		parse("-project", projectPath, "-tables", "protein", "-peptideLength", "30-7");
+	}
+
+	@Test(expected = IllegalMiapeArgumentException.class)
+	public void rejectsNonPositiveSizes() {
+		parse("-project", projectPath, "-tables", "protein", "-width", "0");
+	}
+
+	@Test(expected = IllegalMiapeArgumentException.class)
+	public void rejectsMoreThanOneThread() {
+		parse("-project", projectPath, "-tables", "protein", "-threads", "2");
+	}
+
+	@Test(expected = IllegalMiapeArgumentException.class)
+	public void rejectsUnknownFormats() {
+		parse("-project", projectPath, "-tables", "protein", "-formats", "gif");
+	}
+
+	@Test(expected = IllegalMiapeArgumentException.class)
+	public void rejectsTablesOfOtherItems() {
+		parse("-project", projectPath, "-tables", "psm");
+	}
+}
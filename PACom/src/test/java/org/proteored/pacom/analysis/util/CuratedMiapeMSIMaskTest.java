@@ -0,0 +1,248 @@
+package org.proteored.pacom.analysis.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.proteored.miapeapi.interfaces.msi.IdentifiedPeptide;
+import org.proteored.miapeapi.interfaces.msi.IdentifiedProtein;
+import org.proteored.miapeapi.interfaces.msi.IdentifiedProteinSet;
+import org.proteored.miapeapi.interfaces.msi.MiapeMSIDocument;
+
+/**
+ * Tests of the save, load and apply round trip of the
+ * {@link CuratedMiapeMSIMask}, over documents made of proxies of the MIAPE MSI
+ * interfaces
+ *
+ * @author Salva
+ *
+ */
+public class CuratedMiapeMSIMaskTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private File originalFile;
+	private File maskFile;
+
+	/**
+	 * Returns the values of a map by method name, and the default values of
+	 * the primitive types for the rest
+	 */
+	private static class StubHandler implements InvocationHandler {
+		private final Map<String, Object> values = new HashMap<String, Object>();
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			final String methodName = method.getName();
+			if ("hashCode".equals(methodName)) {
+				return System.identityHashCode(proxy);
+			}
+			if ("equals".equals(methodName)) {
+				return proxy == args[0];
+			}
+			if ("toString".equals(methodName)) {
+				return String.valueOf(values.get("getId"));
+			}
+			final Object value = values.get(methodName);
+			if (value == null && method.getReturnType() == int.class) {
+				return 0;
+			}
+			if (value == null && method.getReturnType() == boolean.class) {
+				return false;
+			}
+			return value;
+		}
+	}
+
+	private static <T> T stub(Class<T> clazz, StubHandler handler) {
+		return clazz.cast(
+				Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[] { clazz }, handler));
+	}
+
+	private static StubHandler handler(int id) {
+		final StubHandler handler = new StubHandler();
+		handler.values.put("getId", id);
+		return handler;
+	}
+
+	/**
+	 * A document with proteins 1, 2 and 3 and peptides 10 (of protein 1), 11
+	 * (of proteins 1 and 2) and 12 (of protein 3)
+	 */
+	private static MiapeMSIDocument createDocument(int[] proteinIds, int[] peptideIds) {
+		final Map<Integer, StubHandler> proteinHandlers = new LinkedHashMap<Integer, StubHandler>();
+		final Map<Integer, IdentifiedProtein> proteins = new LinkedHashMap<Integer, IdentifiedProtein>();
+		for (final int id : proteinIds) {
+			final StubHandler handler = handler(id);
+			handler.values.put("getAccession", "P" + id);
+			handler.values.put("getIdentifiedPeptides", new ArrayList<IdentifiedPeptide>());
+			proteinHandlers.put(id, handler);
+			proteins.put(id, stub(IdentifiedProtein.class, handler));
+		}
+		final List<IdentifiedPeptide> peptides = new ArrayList<IdentifiedPeptide>();
+		for (final int id : peptideIds) {
+			final StubHandler handler = handler(id);
+			final List<IdentifiedProtein> peptideProteins = new ArrayList<IdentifiedProtein>();
+			final List<Integer> peptideProteinIds = id == 10 ? Arrays.asList(1)
+					: id == 11 ? Arrays.asList(1, 2) : Arrays.asList(3);
+			final IdentifiedPeptide peptide = stub(IdentifiedPeptide.class, handler);
+			for (final Integer proteinId : peptideProteinIds) {
+				if (proteins.containsKey(proteinId)) {
+					peptideProteins.add(proteins.get(proteinId));
+					getPeptides(proteinHandlers.get(proteinId)).add(peptide);
+				}
+			}
+			handler.values.put("getIdentifiedProteins", peptideProteins);
+			peptides.add(peptide);
+		}
+		final Map<String, IdentifiedProtein> proteinMap = new LinkedHashMap<String, IdentifiedProtein>();
+		for (final IdentifiedProtein protein : proteins.values()) {
+			proteinMap.put(protein.getAccession(), protein);
+		}
+		final StubHandler proteinSetHandler = new StubHandler();
+		proteinSetHandler.values.put("getName", "protein set");
+		proteinSetHandler.values.put("getIdentifiedProteins", proteinMap);
+		final Set<IdentifiedProteinSet> proteinSets = new HashSet<IdentifiedProteinSet>();
+		proteinSets.add(stub(IdentifiedProteinSet.class, proteinSetHandler));
+		final StubHandler documentHandler = handler(100);
+		documentHandler.values.put("getName", "document");
+		documentHandler.values.put("getIdentifiedPeptides", peptides);
+		documentHandler.values.put("getIdentifiedProteinSets", proteinSets);
+		return stub(MiapeMSIDocument.class, documentHandler);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<IdentifiedPeptide> getPeptides(StubHandler proteinHandler) {
+		return (List<IdentifiedPeptide>) proteinHandler.values.get("getIdentifiedPeptides");
+	}
+
+	private static Set<Integer> getIds(List<IdentifiedPeptide> peptides) {
+		final Set<Integer> ret = new HashSet<Integer>();
+		for (final IdentifiedPeptide peptide : peptides) {
+			ret.add(peptide.getId());
+		}
+		return ret;
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		originalFile = folder.newFile("original.xml");
+		final FileOutputStream fos = new FileOutputStream(originalFile);
+		try {
+			fos.write("<MiapeMSI/>".getBytes("UTF-8"));
+		} finally {
+			fos.close();
+		}
+		maskFile = new File(folder.getRoot(), "curated" + CuratedMiapeMSIMask.MASK_EXTENSION);
+	}
+
+	@Test
+	public void savesAndLoadsTheMask() throws IOException {
+		final MiapeMSIDocument filtered = createDocument(new int[] { 1, 2 }, new int[] { 10, 11 });
+		assertTrue(CuratedMiapeMSIMask.save(maskFile, originalFile, filtered, folder.getRoot()));
+		final CuratedMiapeMSIMask mask = CuratedMiapeMSIMask.load(maskFile, folder.getRoot());
+		assertEquals(originalFile.getAbsoluteFile(), mask.getOriginalFile().getAbsoluteFile());
+		assertFalse(mask.isOriginalFileModified());
+		assertEquals(2, mask.getNumProteins());
+		assertEquals(2, mask.getNumPeptides());
+		// no temporal files left
+		assertEquals(2, folder.getRoot().listFiles().length);
+	}
+
+	@Test
+	public void appliesTheMaskToTheOriginalDocument() throws IOException {
+		final MiapeMSIDocument filtered = createDocument(new int[] { 1, 2 }, new int[] { 10, 11 });
+		assertTrue(CuratedMiapeMSIMask.save(maskFile, originalFile, filtered, folder.getRoot()));
+		final MiapeMSIDocument original = createDocument(new int[] { 1, 2, 3 }, new int[] { 10, 11, 12 });
+		final MiapeMSIDocument masked = CuratedMiapeMSIMask.load(maskFile, folder.getRoot()).apply(original);
+		assertEquals("document", masked.getName());
+		assertEquals(new HashSet<Integer>(Arrays.asList(10, 11)), getIds(masked.getIdentifiedPeptides()));
+		assertEquals(1, masked.getIdentifiedProteinSets().size());
+		final IdentifiedProteinSet proteinSet = masked.getIdentifiedProteinSets().iterator().next();
+		assertEquals("protein set", proteinSet.getName());
+		final Map<String, IdentifiedProtein> proteins = proteinSet.getIdentifiedProteins();
+		assertEquals(new HashSet<String>(Arrays.asList("P1", "P2")), proteins.keySet());
+		assertEquals(new HashSet<Integer>(Arrays.asList(10, 11)),
+				getIds(proteins.get("P1").getIdentifiedPeptides()));
+		assertEquals(Collections.singleton(11), getIds(proteins.get("P2").getIdentifiedPeptides()));
+		// the relations go to the masked objects
+		for (final IdentifiedPeptide peptide : masked.getIdentifiedPeptides()) {
+			for (final IdentifiedProtein protein : peptide.getIdentifiedProteins()) {
+				assertNotNull(protein);
+				assertTrue(protein == proteins.get(protein.getAccession()));
+			}
+		}
+		// the original document is not modified
+		assertEquals(3, original.getIdentifiedPeptides().size());
+	}
+
+	@Test
+	public void detectsTheChangesInTheOriginalFile() throws IOException {
+		assertTrue(CuratedMiapeMSIMask.save(maskFile, originalFile,
+				createDocument(new int[] { 1 }, new int[] { 10 }), folder.getRoot()));
+		final FileOutputStream fos = new FileOutputStream(originalFile, true);
+		try {
+			fos.write("<!-- modified -->".getBytes("UTF-8"));
+		} finally {
+			fos.close();
+		}
+		assertTrue(CuratedMiapeMSIMask.load(maskFile, folder.getRoot()).isOriginalFileModified());
+		originalFile.delete();
+		assertTrue(CuratedMiapeMSIMask.load(maskFile, folder.getRoot()).isOriginalFileModified());
+	}
+
+	@Test
+	public void detectsTheChangesInTheOriginalFileWithTheSameSize() throws IOException {
+		assertTrue(CuratedMiapeMSIMask.save(maskFile, originalFile,
+				createDocument(new int[] { 1 }, new int[] { 10 }), folder.getRoot()));
+		assertTrue(originalFile.setLastModified(originalFile.lastModified() - 60000));
+		assertTrue(CuratedMiapeMSIMask.load(maskFile, folder.getRoot()).isOriginalFileModified());
+	}
+
+	@Test
+	public void resolvesTheOriginalFileAfterMovingTheBaseFolder() throws IOException {
+		final File baseFolder = folder.newFolder("user_data");
+		final File projectFolder = new File(baseFolder, "project");
+		assertTrue(projectFolder.mkdir());
+		final File movedOriginalFile = new File(projectFolder, "original.xml");
+		assertTrue(originalFile.renameTo(movedOriginalFile));
+		final File curatedMaskFile = new File(baseFolder, "curated" + CuratedMiapeMSIMask.MASK_EXTENSION);
+		assertTrue(CuratedMiapeMSIMask.save(curatedMaskFile, movedOriginalFile,
+				createDocument(new int[] { 1 }, new int[] { 10 }), baseFolder));
+
+		final File newBaseFolder = new File(folder.getRoot(), "moved_user_data");
+		assertTrue(baseFolder.renameTo(newBaseFolder));
+		final CuratedMiapeMSIMask mask = CuratedMiapeMSIMask.load(
+				new File(newBaseFolder, curatedMaskFile.getName()), newBaseFolder);
+		assertEquals(new File(new File(newBaseFolder, "project"), "original.xml").getAbsoluteFile(),
+				mask.getOriginalFile().getAbsoluteFile());
+		assertFalse(mask.isOriginalFileModified());
+	}
+
+	@Test
+	public void doesNotSaveAMaskOfPeptidesWithoutUniqueIds() {
+		final MiapeMSIDocument filtered = createDocument(new int[] { 1 }, new int[] { 10, 10 });
+		assertFalse(CuratedMiapeMSIMask.save(maskFile, originalFile, filtered, folder.getRoot()));
+		assertFalse(maskFile.exists());
+	}
+}
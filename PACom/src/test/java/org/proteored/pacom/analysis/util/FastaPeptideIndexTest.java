@@ -0,0 +1,88 @@
+package org.proteored.pacom.analysis.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.proteored.pacom.analysis.util.FastaPeptideIndex.Digestion;
+
+/**
+ * Tests of the {@link FastaPeptideIndex}
+ *
+ * @author Salva
+ *
+ */
+public class FastaPeptideIndexTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private File fastaFile;
+
+	@Before
+	public void setUp() throws IOException {
+		fastaFile = folder.newFile("test.fasta");
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(fastaFile), "UTF-8");
+		try {
+			writer.write(">sp|P00001|PROT1_HUMAN Protein 1\nMAAAKPEPTIDERGGG\n");
+			writer.write(">sp|P00002|PROT2_HUMAN Protein 2\nGGKPEPTIDEKLLL\n");
+			writer.write(">sp|P00003|PROT3_HUMAN Protein 3\nPEPTIDEPEP\nTIDE\n");
+			writer.write(">sp|P00004|PROT4_HUMAN Protein 4\nRARARARA\n");
+		} finally {
+			writer.close();
+		}
+	}
+
+	private void assertProteins(FastaPeptideIndex index, String peptide, Digestion digestion, String... accessions) {
+		assertEquals(peptide + " " + digestion, Arrays.asList(accessions),
+				index.getProteinAccessions(peptide, digestion));
+	}
+
+	private void assertDigestions(FastaPeptideIndex index) {
+		assertEquals(4, index.getNumProteins());
+		assertProteins(index, "PEPTIDER", Digestion.TRYPSIN, "P00001");
+		assertProteins(index, "peptider", Digestion.TRYPSIN, "P00001");
+		assertProteins(index, "PEPTIDEK", Digestion.TRYPSIN, "P00002");
+		// neither of them ends in a cleavage site
+		assertProteins(index, "PEPTIDE", Digestion.TRYPSIN);
+		assertProteins(index, "PEPTIDE", Digestion.SEMI_TRYPSIN, "P00001", "P00002", "P00003");
+		assertProteins(index, "TIDEK", Digestion.SEMI_TRYPSIN, "P00002");
+		assertProteins(index, "EPTID", Digestion.SEMI_TRYPSIN);
+		assertProteins(index, "EPTID", Digestion.NON_SPECIFIC, "P00001", "P00002", "P00003");
+		// after the initiator methionine
+		assertProteins(index, "AAAK", Digestion.TRYPSIN, "P00001");
+		// up to two missed cleavages
+		assertProteins(index, "ARARA", Digestion.TRYPSIN, "P00004");
+		assertProteins(index, "ARARARA", Digestion.TRYPSIN);
+		assertProteins(index, "ARARARA", Digestion.NON_SPECIFIC, "P00004");
+		// not across two proteins
+		assertProteins(index, "GGGGGK", Digestion.NON_SPECIFIC);
+		assertProteins(index, "WWW", Digestion.NON_SPECIFIC);
+		assertEquals(Collections.emptyList(), index.getProteinAccessions("", Digestion.NON_SPECIFIC));
+	}
+
+	@Test
+	public void findsTheProteinsOfThePeptidesInMemory() throws IOException {
+		assertDigestions(FastaPeptideIndex.build(fastaFile, null));
+	}
+
+	@Test
+	public void findsTheProteinsOfThePeptidesInTheSavedIndex() throws IOException {
+		final File indexFile = new File(folder.getRoot(), "test.pidx");
+		final FastaPeptideIndex index = FastaPeptideIndex.build(fastaFile, indexFile);
+		assertTrue(indexFile.exists());
+		// no temporal files left
+		assertEquals(2, folder.getRoot().listFiles().length);
+		assertEquals(fastaFile, index.getFastaFile());
+		assertDigestions(index);
+	}
+}
@@ -0,0 +1,126 @@
+package org.proteored.pacom.analysis.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of the write and read round trip of the {@link MiapeMSISnapshotCache}
+ *
+ * @author Salva
+ *
+ */
+public class MiapeMSISnapshotCacheTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private File xmlFile;
+
+	private static class SnapshotDocument implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private final String name;
+		private final List<String> accessions = new ArrayList<String>();
+		private SnapshotDocument parent;
+		private Object content;
+
+		private SnapshotDocument(String name, String... accessions) {
+			this.name = name;
+			this.accessions.addAll(Arrays.asList(accessions));
+		}
+	}
+
+	private static class NotSerializableDocument {
+	}
+
+	/**
+	 * Serializable class that can contain objects that are not serializable.
+	 * Only used in one test, as the result of the check is kept by class
+	 */
+	private static class DocumentWithContent implements Serializable {
+		private static final long serialVersionUID = 1L;
+		private Object content;
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		xmlFile = writeFile(folder.newFile("Dataset_MSI_1.xml"), "<MSI/>");
+	}
+
+	private static File writeFile(File file, String content) throws IOException {
+		final FileOutputStream out = new FileOutputStream(file, true);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	@Test
+	public void readsTheSameDocumentThatWasWritten() {
+		final SnapshotDocument document = new SnapshotDocument("dataset", "P12345", "Q67890");
+		final SnapshotDocument child = new SnapshotDocument("child", "P12345");
+		// a cycle
+		child.parent = document;
+		document.content = child;
+
+		assertTrue(MiapeMSISnapshotCache.write(xmlFile, document));
+		assertTrue(MiapeMSISnapshotCache.getSnapshotFile(xmlFile).exists());
+		final Object read = MiapeMSISnapshotCache.read(xmlFile);
+		assertNotNull(read);
+		final SnapshotDocument readDocument = (SnapshotDocument) read;
+		assertEquals("dataset", readDocument.name);
+		assertEquals(Arrays.asList("P12345", "Q67890"), readDocument.accessions);
+		final SnapshotDocument readChild = (SnapshotDocument) readDocument.content;
+		assertEquals("child", readChild.name);
+		assertSame(readDocument, readChild.parent);
+		assertTrue(MiapeMSISnapshotCache.isSerializable(SnapshotDocument.class));
+	}
+
+	@Test
+	public void discardsTheSnapshotWhenTheFileChanges() throws IOException {
+		assertTrue(MiapeMSISnapshotCache.write(xmlFile, new SnapshotDocument("dataset")));
+		writeFile(xmlFile, "<!-- changed -->");
+
+		assertNull(MiapeMSISnapshotCache.read(xmlFile));
+		assertFalse(MiapeMSISnapshotCache.getSnapshotFile(xmlFile).exists());
+	}
+
+	@Test
+	public void doesNotWriteClassesThatAreNotSerializable() {
+		assertFalse(MiapeMSISnapshotCache.write(xmlFile, new NotSerializableDocument()));
+		assertFalse(MiapeMSISnapshotCache.isSerializable(NotSerializableDocument.class));
+		assertFalse(MiapeMSISnapshotCache.getSnapshotFile(xmlFile).getParentFile().exists());
+	}
+
+	@Test
+	public void doesNotWriteDocumentsWithObjectsThatAreNotSerializable() {
+		final DocumentWithContent document = new DocumentWithContent();
+		document.content = new NotSerializableDocument();
+
+		assertTrue(MiapeMSISnapshotCache.isSerializable(DocumentWithContent.class));
+		assertFalse(MiapeMSISnapshotCache.write(xmlFile, document));
+		assertFalse(MiapeMSISnapshotCache.getSnapshotFile(xmlFile).exists());
+		// no temporal files are left
+		assertEquals(0, MiapeMSISnapshotCache.getSnapshotFile(xmlFile).getParentFile().list().length);
+		// it is not tried again
+		document.content = null;
+		assertFalse(MiapeMSISnapshotCache.isSerializable(DocumentWithContent.class));
+		assertFalse(MiapeMSISnapshotCache.write(xmlFile, document));
+	}
+}
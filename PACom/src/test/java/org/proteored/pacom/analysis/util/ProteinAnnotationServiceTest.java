@@ -0,0 +1,146 @@
+package org.proteored.pacom.analysis.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.proteored.pacom.analysis.util.ProteinAnnotationService.AnnotationSource;
+
+/**
+ * Tests of the {@link ProteinAnnotationService} with a local
+ * {@link AnnotationSource} instead of UniprotKB
+ *
+ * @author Salva
+ *
+ */
+public class ProteinAnnotationServiceTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	private File storeFile;
+	private LocalAnnotationSource source;
+
+	/**
+	 * Source with the annotations of a map, that records the requests
+	 */
+	private static class LocalAnnotationSource implements AnnotationSource {
+		private final Map<String, ProteinAnnotation> annotations = new HashMap<String, ProteinAnnotation>();
+		private final List<Collection<String>> requests = new ArrayList<Collection<String>>();
+
+		@Override
+		public synchronized Map<String, ProteinAnnotation> getAnnotations(Collection<String> uniprotAccs) {
+			requests.add(new ArrayList<String>(uniprotAccs));
+			final Map<String, ProteinAnnotation> ret = new HashMap<String, ProteinAnnotation>();
+			for (final String acc : uniprotAccs) {
+				if (annotations.containsKey(acc)) {
+					ret.put(acc, annotations.get(acc));
+				}
+			}
+			return ret;
+		}
+
+		private void add(ProteinAnnotation annotation) {
+			annotations.put(annotation.getAccession(), annotation);
+		}
+	}
+
+	private static ProteinAnnotation createAnnotation(String acc) {
+		return new ProteinAnnotation(acc, 1234.5, "MPEPTIDE", "Protein " + acc, "GENE_" + acc, "ENSG0001", "16",
+				"Evidence at protein level");
+	}
+
+	@Before
+	public void setUp() {
+		storeFile = new File(folder.getRoot(), "annotations.store");
+		source = new LocalAnnotationSource();
+	}
+
+	@Test
+	public void servesTheStoredAnnotationsWithoutTheSource() {
+		final ProteinAnnotationStore store = new ProteinAnnotationStore(storeFile);
+		store.addAll(Collections.singletonList(createAnnotation("P00001")));
+		final ProteinAnnotationService service = new ProteinAnnotationService(store, source);
+		final ProteinAnnotation annotation = service.getAnnotation("P00001");
+		assertNotNull(annotation);
+		assertEquals("GENE_P00001", annotation.getGeneName());
+		assertTrue(source.requests.isEmpty());
+	}
+
+	@Test
+	public void retrievesTheMissingAnnotationsAtOnceAndStoresThem() {
+		source.add(createAnnotation("P00002"));
+		final ProteinAnnotationService service = new ProteinAnnotationService(new ProteinAnnotationStore(storeFile),
+				source);
+		final Map<String, ProteinAnnotation> annotations = service.getAnnotations(Arrays.asList("P00002", "P00003"));
+		assertEquals(1, annotations.size());
+		assertEquals(1, source.requests.size());
+		assertEquals(2, source.requests.get(0).size());
+		// now it is in the store
+		assertNotNull(service.getAnnotation("P00002"));
+		assertEquals(1, source.requests.size());
+		// and in the file
+		final ProteinAnnotation stored = new ProteinAnnotationStore(storeFile).get("P00002");
+		assertNotNull(stored);
+		assertEquals(1234.5, stored.getMass(), 0.0);
+		assertEquals("MPEPTIDE", stored.getSequence());
+		assertEquals("16", stored.getChromosomeName());
+	}
+
+	@Test
+	public void doesNotRequestTheNotFoundAccessionsAgainBeforeTheyExpire() {
+		final ProteinAnnotationService service = new ProteinAnnotationService(new ProteinAnnotationStore(storeFile),
+				source);
+		assertNull(service.getAnnotation("P00004"));
+		assertNull(service.getAnnotation("P00004"));
+		assertEquals(1, source.requests.size());
+	}
+
+	@Test
+	public void requestsTheNotFoundAccessionsAgainWhenTheyExpire() {
+		final ProteinAnnotationService service = new ProteinAnnotationService(new ProteinAnnotationStore(storeFile),
+				source, 0);
+		assertNull(service.getAnnotation("P00005"));
+		// as if the source failed temporarily
+		source.add(createAnnotation("P00005"));
+		assertNotNull(service.getAnnotation("P00005"));
+		assertEquals(2, source.requests.size());
+	}
+
+	@Test
+	public void discardsAStoreWithACorruptedRecord() throws IOException {
+		final DataOutputStream dos = new DataOutputStream(new FileOutputStream(storeFile));
+		try {
+			// header
+			dos.writeInt(0x50414E4E);
+			dos.writeInt(1);
+			// a record with a negative length of the accession
+			dos.writeInt(36);
+			dos.writeInt(-5);
+			dos.write(new byte[32]);
+		} finally {
+			dos.close();
+		}
+		final ProteinAnnotationStore store = new ProteinAnnotationStore(storeFile);
+		assertFalse(storeFile.exists());
+		// and a new one is created
+		store.addAll(Collections.singletonList(createAnnotation("P00006")));
+		assertNotNull(new ProteinAnnotationStore(storeFile).get("P00006"));
+	}
+}
@@ -0,0 +1,68 @@
+package org.proteored.pacom.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests of the {@link PrefixIndex}
+ *
+ * @author Salva
+ *
+ */
+public class PrefixIndexTest {
+
+	private PrefixIndex createIndex() {
+		return new PrefixIndex(Arrays.asList("Keratin", "kinase", "Kinase", "kinase", "KINASE", "Actin", "keratin",
+				"kinesin", "kinesin", "Albumin"));
+	}
+
+	@Test
+	public void countsTheWordsStartingWithThePrefixIgnoringTheCase() {
+		final PrefixIndex index = createIndex();
+		// Keratin, keratin, kinase, Kinase, KINASE, kinesin
+		assertEquals(6, index.count("k"));
+		assertEquals(6, index.count("K"));
+		assertEquals(4, index.count("kin"));
+		assertEquals(2, index.count("ker"));
+		assertEquals(0, index.count("z"));
+		assertEquals(8, index.size());
+	}
+
+	@Test
+	public void narrowingAndWideningThePrefixGivesTheSameCounts() {
+		final PrefixIndex index = createIndex();
+		assertEquals(4, index.count("ki"));
+		assertEquals(3, index.count("kina"));
+		// not an extension of the previous prefix
+		assertEquals(2, index.count("a"));
+		assertEquals(6, index.count("k"));
+		assertEquals(1, index.count("kines"));
+		assertEquals(0, index.count("kinesins"));
+	}
+
+	@Test
+	public void suggestsTheWordsWithMoreOccurrencesFirst() {
+		final PrefixIndex index = createIndex();
+		final List<String> suggestions = index.getSuggestions("kin", 10);
+		assertEquals(4, suggestions.size());
+		// kinase and kinesin appear twice
+		assertEquals("kinase", suggestions.get(0));
+		assertEquals("kinesin", suggestions.get(1));
+		assertTrue(suggestions.containsAll(Arrays.asList("Kinase", "KINASE")));
+	}
+
+	@Test
+	public void limitsTheNumberOfSuggestions() {
+		final PrefixIndex index = createIndex();
+		final List<String> suggestions = index.getSuggestions("k", 2);
+		assertEquals(Arrays.asList("kinase", "kinesin"), suggestions);
+		assertTrue(index.getSuggestions("k", 0).isEmpty());
+		assertTrue(index.getSuggestions("", 5).isEmpty());
+		assertTrue(index.getSuggestions(null, 5).isEmpty());
+	}
+}